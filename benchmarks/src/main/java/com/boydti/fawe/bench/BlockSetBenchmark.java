@@ -0,0 +1,156 @@
+package com.boydti.fawe.bench;
+
+import com.boydti.fawe.object.collection.BlockBitSet;
+import com.boydti.fawe.object.collection.BlockVectorSet;
+import com.boydti.fawe.object.collection.LocalBlockVectorSet;
+import com.boydti.fawe.object.collection.PackedBlockQueue;
+import com.sk89q.worldedit.Vector;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the sets used by a breadth first search (e.g. //fill, //drain, recursive brushes)<br/>
+ * - vector = BlockVectorSet frontier + BlockVectorSet visited<br/>
+ * - packed = PackedBlockQueue frontier + BlockBitSet visited
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlockSetBenchmark {
+
+    private static final int[][] DIRECTIONS = {{0, -1, 0}, {0, 1, 0}, {-1, 0, 0}, {1, 0, 0}, {0, 0, -1}, {0, 0, 1}};
+
+    @Param({"vector", "packed"})
+    public String impl;
+
+    /**
+     * The radius of the cube being flood filled
+     */
+    @Param({"16", "64"})
+    public int radius;
+
+    private boolean inside(int x, int y, int z) {
+        return Math.abs(x) <= radius && y >= 128 - radius && y <= 128 + radius && Math.abs(z) <= radius;
+    }
+
+    @Benchmark
+    public int floodFill() {
+        return impl.equals("vector") ? floodFillVector() : floodFillPacked();
+    }
+
+    @Benchmark
+    public int addAndIterate() {
+        int total = 0;
+        if (impl.equals("vector")) {
+            BlockVectorSet set = new BlockVectorSet();
+            addCube(set);
+            for (Vector pos : set) {
+                total += pos.getBlockX();
+            }
+        } else {
+            BlockBitSet set = new BlockBitSet();
+            addCube(set);
+            final int[] sum = new int[1];
+            set.forEach(new LocalBlockVectorSet.BlockVectorSetVisitor() {
+                @Override
+                public void run(int x, int y, int z, int index) {
+                    sum[0] += x;
+                }
+            });
+            total = sum[0];
+        }
+        return total;
+    }
+
+    private void addCube(BlockVectorSet set) {
+        for (int y = 128 - radius; y <= 128 + radius; y++) {
+            for (int z = -radius; z <= radius; z++) {
+                for (int x = -radius; x <= radius; x++) {
+                    set.add(x, y, z);
+                }
+            }
+        }
+    }
+
+    private void addCube(BlockBitSet set) {
+        for (int y = 128 - radius; y <= 128 + radius; y++) {
+            for (int z = -radius; z <= radius; z++) {
+                for (int x = -radius; x <= radius; x++) {
+                    set.add(x, y, z);
+                }
+            }
+        }
+    }
+
+    private int floodFillVector() {
+        BlockVectorSet visited = new BlockVectorSet();
+        BlockVectorSet queue = new BlockVectorSet();
+        BlockVectorSet tempQueue = new BlockVectorSet();
+        queue.add(0, 128, 0);
+        visited.add(0, 128, 0);
+        int affected = 0;
+        while (!queue.isEmpty()) {
+            for (Vector from : queue) {
+                affected++;
+                for (int[] dir : DIRECTIONS) {
+                    int x = from.getBlockX() + dir[0];
+                    int y = from.getBlockY() + dir[1];
+                    int z = from.getBlockZ() + dir[2];
+                    if (!visited.contains(x, y, z) && inside(x, y, z)) {
+                        visited.add(x, y, z);
+                        tempQueue.add(x, y, z);
+                    }
+                }
+            }
+            BlockVectorSet tmp = queue;
+            queue = tempQueue;
+            tmp.clear();
+            tempQueue = tmp;
+        }
+        return affected;
+    }
+
+    private int floodFillPacked() {
+        BlockBitSet visited = new BlockBitSet();
+        PackedBlockQueue queue = new PackedBlockQueue();
+        PackedBlockQueue tempQueue = new PackedBlockQueue();
+        queue.add(0, 128, 0);
+        visited.add(0, 128, 0);
+        int affected = 0;
+        while (!queue.isEmpty()) {
+            for (int i = 0, size = queue.size(); i < size; i++) {
+                long from = queue.get(i);
+                int fromX = PackedBlockQueue.unpackX(from);
+                int fromY = PackedBlockQueue.unpackY(from);
+                int fromZ = PackedBlockQueue.unpackZ(from);
+                affected++;
+                for (int[] dir : DIRECTIONS) {
+                    int x = fromX + dir[0];
+                    int y = fromY + dir[1];
+                    int z = fromZ + dir[2];
+                    if (!visited.contains(x, y, z) && inside(x, y, z)) {
+                        visited.add(x, y, z);
+                        tempQueue.add(x, y, z);
+                    }
+                }
+            }
+            PackedBlockQueue tmp = queue;
+            queue = tempQueue;
+            tmp.clear();
+            tempQueue = tmp;
+        }
+        return affected;
+    }
+}
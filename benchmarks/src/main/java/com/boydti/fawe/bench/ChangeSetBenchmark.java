@@ -0,0 +1,101 @@
+package com.boydti.fawe.bench;
+
+import com.boydti.fawe.object.change.MutableBlockChange;
+import com.boydti.fawe.object.changeset.DiskStorageHistory;
+import com.boydti.fawe.object.changeset.FaweStreamChangeSet;
+import com.boydti.fawe.object.changeset.MemoryOptimizedHistory;
+import com.boydti.fawe.util.MainUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing block changes to a {@link FaweStreamChangeSet} and iterating them back (as an undo would)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChangeSetBenchmark {
+
+    @Param({"memory", "disk"})
+    public String type;
+
+    /**
+     * Side length of the cube of changes
+     */
+    @Param({"64"})
+    public int size;
+
+    private File folder;
+    private int index;
+    private FaweStreamChangeSet written;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("fawe-bench-history").toFile();
+        written = write();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        MainUtil.deleteDirectory(folder, false);
+    }
+
+    private FaweStreamChangeSet newChangeSet() {
+        switch (type) {
+            case "disk":
+                return new DiskStorageHistory(folder, HeadlessWorld.WORLD_NAME, UUID.randomUUID(), index++);
+            case "memory":
+            default:
+                return new MemoryOptimizedHistory(HeadlessWorld.WORLD_NAME);
+        }
+    }
+
+    private FaweStreamChangeSet write() {
+        FaweStreamChangeSet changeSet = newChangeSet();
+        int height = Math.min(256, size);
+        for (int y = 0; y < height; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    changeSet.add(x, y, z, (3 << 4), (1 << 4) + (x & 3));
+                }
+            }
+        }
+        changeSet.close();
+        return changeSet;
+    }
+
+    @Benchmark
+    public FaweStreamChangeSet add() {
+        return write();
+    }
+
+    @Benchmark
+    public int read() throws IOException {
+        int total = 0;
+        Iterator<MutableBlockChange> iter = written.getBlockIterator(false);
+        while (iter.hasNext()) {
+            total += iter.next().id;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,65 @@
+package com.boydti.fawe.bench;
+
+import com.boydti.fawe.example.CharFaweChunk;
+import com.boydti.fawe.example.NullQueueCharFaweChunk;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures queuing a full chunk of blocks and reading it back
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CharFaweChunkBenchmark {
+
+    /**
+     * The number of distinct block ids written (1 = homogeneous fill)
+     */
+    @Param({"1", "16", "256"})
+    public int distinct;
+
+    private CharFaweChunk newChunk() {
+        CharFaweChunk chunk = new NullQueueCharFaweChunk(0, 0);
+        int i = 0;
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    chunk.setBlock(x, y, z, 1 + (i++ % distinct), 0);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    @Benchmark
+    public CharFaweChunk setBlock() {
+        return newChunk();
+    }
+
+    @Benchmark
+    public int setAndGet() {
+        CharFaweChunk chunk = newChunk();
+        int total = 0;
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    total += chunk.getBlockCombinedId(x, y, z);
+                }
+            }
+        }
+        return total;
+    }
+}
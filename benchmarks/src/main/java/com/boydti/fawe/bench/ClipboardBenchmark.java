@@ -0,0 +1,119 @@
+package com.boydti.fawe.bench;
+
+import com.boydti.fawe.object.clipboard.CPUOptimizedClipboard;
+import com.boydti.fawe.object.clipboard.DiskOptimizedClipboard;
+import com.boydti.fawe.object.clipboard.FaweClipboard;
+import com.boydti.fawe.object.clipboard.MemoryOptimizedClipboard;
+import com.boydti.fawe.util.MainUtil;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures filling, random reads and full iteration of each {@link FaweClipboard} implementation
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClipboardBenchmark {
+
+    @Param({"cpu", "memory", "disk"})
+    public String type;
+
+    @Param({"128"})
+    public int size;
+
+    private File folder;
+    private FaweClipboard filled;
+    private BaseBlock[] blocks;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("fawe-bench-clipboard").toFile();
+        blocks = new BaseBlock[16];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new BaseBlock(1 + i);
+        }
+        filled = fill(newClipboard());
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        filled.close();
+        MainUtil.deleteDirectory(folder, false);
+    }
+
+    private FaweClipboard newClipboard() {
+        switch (type) {
+            case "cpu":
+                return new CPUOptimizedClipboard(size, size, size);
+            case "disk":
+                return new DiskOptimizedClipboard(size, size, size, new File(folder, System.nanoTime() + ".bd"));
+            case "memory":
+            default:
+                return new MemoryOptimizedClipboard(size, size, size);
+        }
+    }
+
+    private FaweClipboard fill(FaweClipboard clipboard) {
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    clipboard.setBlock(x, y, z, blocks[(x >> 2) & 15]);
+                }
+            }
+        }
+        return clipboard;
+    }
+
+    @Benchmark
+    public FaweClipboard setBlock() {
+        FaweClipboard clipboard = fill(newClipboard());
+        clipboard.close();
+        return clipboard;
+    }
+
+    @Benchmark
+    public int getBlock() {
+        int total = 0;
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                for (int y = 0; y < size; y++) {
+                    total += filled.getBlock(x, y, z).getId();
+                }
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int forEach() {
+        final AtomicInteger total = new AtomicInteger();
+        filled.forEach(new FaweClipboard.BlockReader() {
+            @Override
+            public void run(int x, int y, int z, BaseBlock block) {
+                total.addAndGet(block.getId());
+            }
+        }, true);
+        return total.get();
+    }
+}
@@ -0,0 +1,93 @@
+package com.boydti.fawe.bench;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full EditSession pipeline (extent chain, history, queue) for the common region operations
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EditSessionBenchmark {
+
+    @Param({"mca", "null"})
+    public String queue;
+
+    @Param({"true", "false"})
+    public boolean history;
+
+    @Param({"64"})
+    public int size;
+
+    private HeadlessWorld world;
+    private EditSession session;
+    private CuboidRegion region;
+    private Vector center;
+    private BaseBlock stone;
+    private BaseBlock dirt;
+    private Set<BaseBlock> filter;
+
+    @Setup(Level.Trial)
+    public void setupWorld() throws IOException {
+        world = new HeadlessWorld("null".equals(queue));
+        region = new CuboidRegion(new Vector(0, 0, 0), new Vector(size - 1, Math.min(255, size - 1), size - 1));
+        center = new Vector(size >> 1, 128, size >> 1);
+        stone = new BaseBlock(1);
+        dirt = new BaseBlock(3);
+        filter = Collections.singleton(stone);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupSession() {
+        session = world.newEditSession(history);
+    }
+
+    @TearDown(Level.Invocation)
+    public void flush() {
+        session.flushQueue();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        world.close();
+    }
+
+    @Benchmark
+    public int setBlocks() {
+        return session.setBlocks(region, stone);
+    }
+
+    @Benchmark
+    public int replaceBlocks() {
+        session.setBlocks(region, stone);
+        return session.replaceBlocks(region, filter, dirt);
+    }
+
+    @Benchmark
+    public int makeSphere() {
+        return session.makeSphere(center, stone, size >> 1, true);
+    }
+}
@@ -0,0 +1,64 @@
+package com.boydti.fawe.bench;
+
+import com.boydti.fawe.jnbt.anvil.MCAQueue;
+import com.boydti.fawe.jnbt.anvil.MCAWorld;
+import com.boydti.fawe.object.FaweLimit;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.changeset.FaweChangeSet;
+import com.boydti.fawe.object.changeset.MemoryOptimizedHistory;
+import com.boydti.fawe.object.queue.NullFaweQueue;
+import com.boydti.fawe.util.MainUtil;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.event.extent.EditSessionEvent;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.eventbus.EventBus;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A world that needs no running server<br>
+ * - Chunks are created in memory by an {@link MCAQueue} backed by a temporary folder<br>
+ * - Or discarded by a {@link NullFaweQueue} to measure the extent chain on its own
+ */
+public class HeadlessWorld {
+    public static final String WORLD_NAME = "benchmark";
+
+    private final File folder;
+    private final MCAWorld world;
+    private final FaweQueue queue;
+
+    public HeadlessWorld(boolean nullQueue) throws IOException {
+        this.folder = Files.createTempDirectory("fawe-bench").toFile();
+        this.world = new MCAWorld(WORLD_NAME, new File(folder, "region"), true);
+        this.queue = nullQueue ? new NullFaweQueue(WORLD_NAME) : world.getQueue();
+    }
+
+    public MCAWorld getWorld() {
+        return world;
+    }
+
+    public FaweQueue getQueue() {
+        return queue;
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Create a new EditSession without a player, region restrictions or event listeners
+     *
+     * @param history If changes should be recorded to a {@link MemoryOptimizedHistory}
+     * @return
+     */
+    public EditSession newEditSession(boolean history) {
+        FaweChangeSet changeSet = history ? new MemoryOptimizedHistory(WORLD_NAME) : null;
+        EditSessionEvent event = new EditSessionEvent(world, null, -1, null);
+        return new EditSession(WORLD_NAME, world, queue, null, FaweLimit.MAX.copy(), changeSet, (Region[]) null, false, !history, false, false, null, new EventBus(), event);
+    }
+
+    public void close() {
+        MainUtil.deleteDirectory(folder, false);
+    }
+}
@@ -3,7 +3,8 @@ package com.boydti.fawe.bukkit.v0;
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.bukkit.FaweBukkit;
 import com.boydti.fawe.config.Settings;
-import com.boydti.fawe.util.FaweTimer;
+import com.boydti.fawe.object.collection.ChunkCostTracker;
+import com.boydti.fawe.object.collection.LongHashSet;
 import com.boydti.fawe.util.MathMan;
 import com.boydti.fawe.util.TaskManager;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
@@ -64,9 +65,14 @@ public abstract class ChunkListener implements Listener {
                     physicsFreeze = false;
                     itemFreeze = false;
                     lastZ = Integer.MIN_VALUE;
-                    physSkip = 0;
+                    if (!physThrottled.isEmpty()) {
+                        reportPhysics();
+                        physThrottled = new LongHashSet();
+                    }
+                    physOverIntervals = physOverrun ? physOverIntervals + 1 : 0;
+                    physOverrun = false;
                     physCancelPair = Long.MIN_VALUE;
-                    physCancel = false;
+                    physicsCost.clear();
 
                     counter.clear();
                     for (Long2ObjectMap.Entry<Boolean> entry : badChunks.long2ObjectEntrySet()) {
@@ -78,6 +84,16 @@ public abstract class ChunkListener implements Listener {
                     badChunks.clear();
                 }
             }, Settings.IMP.TICK_LIMITER.INTERVAL);
+            TaskManager.IMP.repeat(new Runnable() {
+                @Override
+                public void run() {
+                    // The time between ticks isn't physics
+                    if (closePhysics()) {
+                        onPhysicsOverrun();
+                    }
+                    physTickNanos = 0;
+                }
+            }, 1);
         }
     }
 
@@ -116,17 +132,113 @@ public abstract class ChunkListener implements Listener {
 
     }
 
-    protected int physSkip;
-    protected boolean physCancel;
-    protected long physCancelPair;
-
-    protected long physStart;
-    protected long physTick;
+    // An update costing more than this is assumed to include unrelated work between events
+    private static final long MAX_EVENT_NANOS = 100000;
+    // Physics events are timed in batches, so most events only increment a counter
+    private static final int PHYS_BATCH = 64;
+    // A physics update with a deeper stack than this is assumed to be recursive
+    private static final int RECURSION_DEPTH = 256;
+    // The number of consecutive intervals physics must go over the limit before non recursive physics is throttled
+    private static final int SUSTAINED_INTERVALS = 3;
+    // The number of chunks to report when physics is throttled
+    private static final int REPORT_SIZE = 5;
+
+    // The physics cost per chunk this window
+    protected final ChunkCostTracker physicsCost = new ChunkCostTracker(256);
+    // The chunks with physics cancelled for the rest of this window
+    protected LongHashSet physThrottled = new LongHashSet();
+    protected long physCancelPair = Long.MIN_VALUE;
+
+    // The physics cost this tick
+    protected long physTickNanos;
+    // If physics has gone over the limit this interval, and for how many intervals before it
+    protected boolean physOverrun;
+    protected int physOverIntervals;
+    // The chunk of the last physics event, which the current batch is charged to
+    protected long physLastPair = Long.MIN_VALUE;
+    // The start of the current batch of physics events (or 0)
+    protected long physBatchStart;
+    protected int physBatchEvents;
+    // The average cost of an event in the last complete batch
+    protected long physEventNanos;
 
+    /**
+     * Close the current batch of physics events<br/>
+     * - Called when something else happens, so the time until the next physics event isn't charged
+     */
     public final void reset() {
-        physSkip = 0;
-        physStart = System.currentTimeMillis();
-        physCancel = false;
+        if (closePhysics()) {
+            onPhysicsOverrun();
+        }
+    }
+
+    /**
+     * Charge an incomplete batch at the average cost of the last complete one<br/>
+     * - The time since the batch started may include other work (e.g. entities, or the wait for the next tick)
+     *
+     * @return if the physics this tick has gone over the limit
+     */
+    private boolean closePhysics() {
+        if (physBatchStart == 0) {
+            return false;
+        }
+        physBatchStart = 0;
+        int events = physBatchEvents;
+        physBatchEvents = 0;
+        return chargePhysics(events, events * physEventNanos);
+    }
+
+    /**
+     * Charge a cost to the chunk of the last physics event
+     *
+     * @return if the physics this tick has gone over the limit
+     */
+    private boolean chargePhysics(int events, long cost) {
+        physicsCost.add(physLastPair, events, cost);
+        physTickNanos += cost;
+        if (physTickNanos > Settings.IMP.TICK_LIMITER.PHYSICS_MS * 1000000L) {
+            physTickNanos = 0;
+            physOverrun = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Physics went over the limit this tick (and the update isn't recursive)<br/>
+     * - A chunk is only throttled once physics has been over the limit for several intervals, not for a single lag spike
+     */
+    private void onPhysicsOverrun() {
+        if (physOverIntervals >= SUSTAINED_INTERVALS) {
+            throttleWorstPhysics();
+        }
+    }
+
+    /**
+     * Cancel physics for the rest of the window in the chunk which has used the most time
+     */
+    protected void throttleWorstPhysics() {
+        long pair = physicsCost.getWorst(physThrottled);
+        if (pair == Long.MIN_VALUE) {
+            return;
+        }
+        physThrottled.add(pair);
+        if (rateLimit <= 0) {
+            rateLimit = 20;
+            int cx = MathMan.unpairIntX(pair);
+            int cz = MathMan.unpairIntY(pair);
+            Fawe.debug("[FAWE `tick-limiter`] Detected and cancelled physics lag source at chunk " + cx + "," + cz);
+        }
+    }
+
+    protected void reportPhysics() {
+        StringBuilder msg = new StringBuilder("[FAWE `tick-limiter`] Physics lag sources (chunk: events, ms):");
+        for (long pair : physicsCost.getTop(REPORT_SIZE)) {
+            msg.append(' ').append(MathMan.unpairIntX(pair)).append(',').append(MathMan.unpairIntY(pair))
+                    .append(": ").append(physicsCost.getEvents(pair))
+                    .append(", ").append(physicsCost.getNanos(pair) / 1000000).append(';');
+        }
+        Fawe.debug(msg.toString());
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
@@ -186,59 +298,69 @@ public abstract class ChunkListener implements Listener {
     @EventHandler(priority = EventPriority.LOWEST)
     public void event(BlockRedstoneEvent event) { reset(); }
 
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
     public void onPhysics(BlockPhysicsEvent event) {
-        if (physCancel) {
-            Block block = event.getBlock();
-            long pair = MathMan.pairInt(block.getX() >> 4, block.getZ() >> 4);
-            if (physCancelPair == pair) {
-                event.setCancelled(true);
-                return;
-            }
-            if (badChunks.containsKey(pair)) {
-                physCancelPair = pair;
-                event.setCancelled(true);
-                return;
-            }
-        } else {
-            if ((++physSkip & 1023) != 0) return;
-            FaweTimer timer = Fawe.get().getTimer();
-            if (timer.getTick() != physTick) {
-                physTick = timer.getTick();
-                physStart = System.currentTimeMillis();
-                return;
-            } else if (System.currentTimeMillis() - physStart < Settings.IMP.TICK_LIMITER.PHYSICS_MS) {
-                return;
-            }
-        }
         if (physicsFreeze) {
             event.setCancelled(true);
             return;
         }
-        if (event.getChangedTypeId() == 0) return;
-        Exception e = new Exception();
-        int depth = getDepth(e);
-        if (depth >= 256) {
-            if (containsSetAir(e, event)) {
-                Block block = event.getBlock();
-                int cx = block.getX() >> 4;
-                int cz = block.getZ() >> 4;
-                physCancelPair = MathMan.pairInt(cx, cz);
-                    if (rateLimit <= 0) {
-                        rateLimit = 20;
-                        Fawe.debug("[FAWE `tick-limiter`] Detected and cancelled physics  lag source at " + block.getLocation());
-                    }
+        Block block = event.getBlock();
+        int cx = block.getX() >> 4;
+        int cz = block.getZ() >> 4;
+        long pair = MathMan.pairInt(cx, cz);
+        if (pair == physCancelPair) {
+            event.setCancelled(true);
+            return;
+        }
+        if ((!badChunks.isEmpty() && badChunks.containsKey(pair)) || (!physThrottled.isEmpty() && physThrottled.containsKey(pair))) {
+            physCancelPair = pair;
+            event.setCancelled(true);
+            return;
+        }
+        physLastPair = pair;
+        if (physBatchStart == 0) {
+            physBatchStart = System.nanoTime();
+            physBatchEvents = 1;
+            return;
+        }
+        if (++physBatchEvents < PHYS_BATCH) {
+            return;
+        }
+        long now = System.nanoTime();
+        int events = physBatchEvents;
+        long cost = Math.min(now - physBatchStart, events * MAX_EVENT_NANOS);
+        physEventNanos = cost / events;
+        physBatchStart = now;
+        physBatchEvents = 0;
+        if (chargePhysics(events, cost)) {
+            if (isRecursive(event)) {
+                physCancelPair = pair;
                 cancelNearby(cx, cz);
+                if (rateLimit <= 0) {
+                    rateLimit = 20;
+                    Fawe.debug("[FAWE `tick-limiter`] Detected and cancelled recursive physics at " + block.getLocation());
+                }
                 event.setCancelled(true);
-                physCancel = true;
                 return;
             }
+            onPhysicsOverrun();
+        }
+    }
+
+    /**
+     * If a physics update is part of a deep recursive update (e.g. blocks repeatedly being set to air)<br/>
+     * - Bukkit fires the event before the update runs, so the nesting can only be seen from the stack<br/>
+     * - Walks the stack, so it's only checked once physics has gone over the limit for the tick
+     */
+    protected boolean isRecursive(BlockPhysicsEvent event) {
+        if (event.getChangedTypeId() == 0) {
+            return false;
         }
-        physSkip = 1;
-        physCancel = false;
+        Exception e = new Exception();
+        return getDepth(e) >= RECURSION_DEPTH && containsSetAir(e);
     }
 
-    protected boolean containsSetAir(Exception e, BlockPhysicsEvent event) {
+    protected boolean containsSetAir(Exception e) {
         for (int frame = 25; frame < 35; frame++) {
             StackTraceElement elem = getElement(e, frame);
             if (elem != null) {
@@ -278,6 +400,7 @@ public abstract class ChunkListener implements Listener {
     // Falling
     @EventHandler(priority = EventPriority.LOWEST)
     public void onBlockChange(EntityChangeBlockEvent event) {
+        reset();
         if (physicsFreeze) {
             event.setCancelled(true);
             return;
@@ -317,6 +440,7 @@ public abstract class ChunkListener implements Listener {
      */
     @EventHandler(priority = EventPriority.LOWEST)
     public void onChunkLoad(ChunkLoadEvent event) {
+        reset();
         if (!Settings.IMP.TICK_LIMITER.FIREWORKS_LOAD_CHUNKS) {
             Chunk chunk = event.getChunk();
             Entity[] entities = chunk.getEntities();
@@ -352,6 +476,7 @@ public abstract class ChunkListener implements Listener {
 
     @EventHandler(priority = EventPriority.LOWEST)
     public void onItemSpawn(ItemSpawnEvent event) {
+        reset();
         if (physicsFreeze) {
             event.setCancelled(true);
             return;
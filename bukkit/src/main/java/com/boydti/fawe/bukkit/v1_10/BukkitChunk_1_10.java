@@ -44,11 +44,11 @@ public class BukkitChunk_1_10 extends CharFaweChunk<Chunk, BukkitQueue_1_10> {
     public CharFaweChunk copy(boolean shallow) {
         BukkitChunk_1_10 copy;
         if (shallow) {
-            copy = new BukkitChunk_1_10(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new BukkitChunk_1_10(getParent(), getX(), getZ(), getCombinedIdArrays(), count, air, heightMap);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new BukkitChunk_1_10(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new BukkitChunk_1_10(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(getCombinedIdArrays()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
             copy.chunk = chunk;
         }
@@ -122,7 +122,6 @@ public class BukkitChunk_1_10 extends CharFaweChunk<Chunk, BukkitQueue_1_10> {
         if (sectionPalettes != null) {
             return;
         }
-        char[][] arrays = getCombinedIdArrays();
         IBlockData lastBlock = null;
         char lastChar = Character.MAX_VALUE;
         for (int layer = 0; layer < 16; layer++) {
@@ -131,11 +130,10 @@ public class BukkitChunk_1_10 extends CharFaweChunk<Chunk, BukkitQueue_1_10> {
                     sectionPalettes = new DataPaletteBlock[16];
                 }
                 DataPaletteBlock palette = newDataPaletteBlock();
-                char[] blocks = getIdArray(layer);
                 for (int y = 0; y < 16; y++) {
                     for (int z = 0; z < 16; z++) {
                         for (int x = 0; x < 16; x++) {
-                            char combinedId = blocks[FaweCache.CACHE_J[y][z][x]];
+                            char combinedId = getCombinedId(layer, FaweCache.CACHE_J[y][z][x]);
                             if (combinedId > 1) {
                                 palette.setBlock(x, y, z, Block.getById(combinedId >> 4).fromLegacyData(combinedId & 0xF));
                             }
@@ -254,8 +252,7 @@ public class BukkitChunk_1_10 extends CharFaweChunk<Chunk, BukkitQueue_1_10> {
                 } else {
                     Collection<net.minecraft.server.v1_10_R1.Entity> ents = entities[i];
                     if (!ents.isEmpty()) {
-                        char[] array = this.getIdArray(i);
-                        if (array == null) continue;
+                        if (!hasSection(i)) continue;
                         Iterator<net.minecraft.server.v1_10_R1.Entity> iter = ents.iterator();
                         while (iter.hasNext()) {
                             net.minecraft.server.v1_10_R1.Entity entity = iter.next();
@@ -266,7 +263,7 @@ public class BukkitChunk_1_10 extends CharFaweChunk<Chunk, BukkitQueue_1_10> {
                             int z = (MathMan.roundInt(entity.locZ) & 15);
                             int y = MathMan.roundInt(entity.locY);
                             if (y < 0 || y > 255) continue;
-                            if (array[FaweCache.CACHE_J[y][z][x]] != 0) {
+                            if (getCombinedId(i, FaweCache.CACHE_J[y][z][x]) != 0) {
                                 if (copy != null) {
                                     copy.storeEntity(entity);
                                 }
@@ -407,12 +404,8 @@ public class BukkitChunk_1_10 extends CharFaweChunk<Chunk, BukkitQueue_1_10> {
                 int ly = pos.getY();
                 int lz = pos.getZ() & 15;
                 int j = FaweCache.CACHE_I[ly][lz][lx];
-                char[] array = this.getIdArray(j);
-                if (array == null) {
-                    continue;
-                }
                 int k = FaweCache.CACHE_J[ly][lz][lx];
-                if (array[k] != 0) {
+                if (getCombinedId(j, k) != 0) {
                     if (toRemove == null) {
                         toRemove = new HashMap<>();
                     }
@@ -106,11 +106,11 @@ public class BukkitChunk_1_11 extends CharFaweChunk<Chunk, com.boydti.fawe.bukki
     public CharFaweChunk copy(boolean shallow) {
         BukkitChunk_1_11 copy;
         if (shallow) {
-            copy = new BukkitChunk_1_11(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new BukkitChunk_1_11(getParent(), getX(), getZ(), getCombinedIdArrays(), count, air, heightMap);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new BukkitChunk_1_11(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new BukkitChunk_1_11(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(getCombinedIdArrays()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
             copy.chunk = chunk;
         }
@@ -178,7 +178,6 @@ public class BukkitChunk_1_11 extends CharFaweChunk<Chunk, com.boydti.fawe.bukki
         if (sectionPalettes != null) {
             return;
         }
-        char[][] arrays = getCombinedIdArrays();
         IBlockData lastBlock = null;
         char lastChar = Character.MAX_VALUE;
         for (int layer = 0; layer < 16; layer++) {
@@ -187,11 +186,10 @@ public class BukkitChunk_1_11 extends CharFaweChunk<Chunk, com.boydti.fawe.bukki
                     sectionPalettes = new DataPaletteBlock[16];
                 }
                 DataPaletteBlock palette = newDataPaletteBlock();
-                char[] blocks = getIdArray(layer);
                 for (int y = 0; y < 16; y++) {
                     for (int z = 0; z < 16; z++) {
                         for (int x = 0; x < 16; x++) {
-                            char combinedId = blocks[FaweCache.CACHE_J[y][z][x]];
+                            char combinedId = getCombinedId(layer, FaweCache.CACHE_J[y][z][x]);
                             if (combinedId > 1) {
                                 palette.setBlock(x, y, z, Block.getById(combinedId >> 4).fromLegacyData(combinedId & 0xF));
                             }
@@ -277,8 +275,7 @@ public class BukkitChunk_1_11 extends CharFaweChunk<Chunk, com.boydti.fawe.bukki
                 } else {
                     Collection<Entity> ents = entities[i];
                     if (!ents.isEmpty()) {
-                        char[] array = this.getIdArray(i);
-                        if (array == null) continue;
+                        if (!hasSection(i)) continue;
                         Iterator<Entity> iter = ents.iterator();
                         while (iter.hasNext()) {
                             Entity entity = iter.next();
@@ -289,7 +286,7 @@ public class BukkitChunk_1_11 extends CharFaweChunk<Chunk, com.boydti.fawe.bukki
                             int z = (MathMan.roundInt(entity.locZ) & 15);
                             int y = MathMan.roundInt(entity.locY);
                             if (y < 0 || y > 255) continue;
-                            if (array[FaweCache.CACHE_J[y][z][x]] != 0) {
+                            if (getCombinedId(i, FaweCache.CACHE_J[y][z][x]) != 0) {
                                 if (copy != null) {
                                     copy.storeEntity(entity);
                                 }
@@ -443,12 +440,8 @@ public class BukkitChunk_1_11 extends CharFaweChunk<Chunk, com.boydti.fawe.bukki
                 int ly = pos.getY();
                 int lz = pos.getZ() & 15;
                 int j = FaweCache.CACHE_I[ly][lz][lx];
-                char[] array = this.getIdArray(j);
-                if (array == null) {
-                    continue;
-                }
                 int k = FaweCache.CACHE_J[ly][lz][lx];
-                if (array[k] != 0) {
+                if (getCombinedId(j, k) != 0) {
                     if (toRemove == null) {
                         toRemove = new HashMap<>();
                     }
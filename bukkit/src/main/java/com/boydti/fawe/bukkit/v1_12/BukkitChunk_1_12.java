@@ -82,11 +82,11 @@ public class BukkitChunk_1_12 extends CharFaweChunk<Chunk, BukkitQueue_1_12> {
     public CharFaweChunk copy(boolean shallow) {
         BukkitChunk_1_12 copy;
         if (shallow) {
-            copy = new BukkitChunk_1_12(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new BukkitChunk_1_12(getParent(), getX(), getZ(), getCombinedIdArrays(), count, air, heightMap);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new BukkitChunk_1_12(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new BukkitChunk_1_12(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(getCombinedIdArrays()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
             copy.chunk = chunk;
         }
@@ -155,7 +155,6 @@ public class BukkitChunk_1_12 extends CharFaweChunk<Chunk, BukkitQueue_1_12> {
         if (sectionPalettes != null) {
             return;
         }
-        char[][] arrays = getCombinedIdArrays();
         IBlockData lastBlock = null;
         char lastChar = Character.MAX_VALUE;
         for (int layer = 0; layer < 16; layer++) {
@@ -164,11 +163,10 @@ public class BukkitChunk_1_12 extends CharFaweChunk<Chunk, BukkitQueue_1_12> {
                     sectionPalettes = new DataPaletteBlock[16];
                 }
                 DataPaletteBlock palette = newDataPaletteBlock();
-                char[] blocks = getIdArray(layer);
                 for (int y = 0; y < 16; y++) {
                     for (int z = 0; z < 16; z++) {
                         for (int x = 0; x < 16; x++) {
-                            char combinedId = blocks[FaweCache.CACHE_J[y][z][x]];
+                            char combinedId = getCombinedId(layer, FaweCache.CACHE_J[y][z][x]);
                             if (combinedId > 1) {
                                 palette.setBlock(x, y, z, Block.getById(combinedId >> 4).fromLegacyData(combinedId & 0xF));
                             }
@@ -258,8 +256,7 @@ public class BukkitChunk_1_12 extends CharFaweChunk<Chunk, BukkitQueue_1_12> {
                     if (!ents.isEmpty()) {
                         int layerYStart = i << 4;
                         int layerYEnd = layerYStart + 15;
-                        char[] array = this.getIdArray(i);
-                        if (array == null) continue;
+                        if (!hasSection(i)) continue;
                         Iterator<Entity> iter = ents.iterator();
                         while (iter.hasNext()) {
                             Entity entity = iter.next();
@@ -270,7 +267,7 @@ public class BukkitChunk_1_12 extends CharFaweChunk<Chunk, BukkitQueue_1_12> {
                             if (y > layerYEnd || y < layerYStart) continue;
                             int x = (MathMan.roundInt(entity.locX) & 15);
                             int z = (MathMan.roundInt(entity.locZ) & 15);
-                            if (array[FaweCache.CACHE_J[y][z][x]] != 0) {
+                            if (getCombinedId(i, FaweCache.CACHE_J[y][z][x]) != 0) {
                                 if (copy != null) {
                                     copy.storeEntity(entity);
                                 }
@@ -344,6 +341,15 @@ public class BukkitChunk_1_12 extends CharFaweChunk<Chunk, BukkitQueue_1_12> {
                     continue;
                 }
                 int countAir = this.getAir(j);
+                char single = this.getSingleValue(j);
+                if (single != 0) {
+                    // The whole section was set to one block, create it without expanding the palette
+                    if (copy != null) {
+                        copy.storeSection(sections[j], j);
+                    }
+                    sections[j] = single == 1 ? null : getParent().newChunkSection(j << 4, flag, single);
+                    continue;
+                }
                 final char[] array = this.getIdArray(j);
                 if (array == null) {
                     continue;
@@ -430,12 +436,8 @@ public class BukkitChunk_1_12 extends CharFaweChunk<Chunk, BukkitQueue_1_12> {
                     int ly = pos.getY();
                     int lz = pos.getZ() & 15;
                     int j = FaweCache.CACHE_I[ly][lz][lx];
-                    char[] array = this.getIdArray(j);
-                    if (array == null) {
-                        continue;
-                    }
                     int k = FaweCache.CACHE_J[ly][lz][lx];
-                    if (array[k] != 0) {
+                    if (getCombinedId(j, k) != 0) {
                         if (toRemove == null) {
                             toRemove = new HashMap<>();
                         }
@@ -782,6 +782,29 @@ public class BukkitQueue_1_12 extends BukkitQueue_0<net.minecraft.server.v1_12_R
         Arrays.fill(section.getEmittedLightArray().asBytes(), (byte) 0);
     }
 
+    /**
+     * Create a section filled with a single block
+     *
+     * @param y2
+     * @param flag
+     * @param combinedId
+     * @return
+     */
+    public ChunkSection newChunkSection(int y2, boolean flag, char combinedId) throws NoSuchFieldException, IllegalAccessException {
+        ChunkSection section = newChunkSection(y2, flag, null);
+        IBlockData state = IBD_CACHE[combinedId];
+        DataPaletteBlock blocks = section.getBlocks();
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    blocks.setBlock(x, y, z, state);
+                }
+            }
+        }
+        setCount(0, 4096, section);
+        return section;
+    }
+
     public ChunkSection newChunkSection(int y2, boolean flag, char[] array) {
         try {
             if (array == null) {
@@ -47,11 +47,11 @@ public class BukkitChunk_1_7 extends CharFaweChunk<Chunk, BukkitQueue17> {
     public CharFaweChunk copy(boolean shallow) {
         BukkitChunk_1_7 copy;
         if (shallow) {
-            copy = new BukkitChunk_1_7(getParent(), getX(), getZ(), ids, count, air, heightMap, byteIds, datas);
+            copy = new BukkitChunk_1_7(getParent(), getX(), getZ(), getCombinedIdArrays(), count, air, heightMap, byteIds, datas);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new BukkitChunk_1_7(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone(), (byte[][]) MainUtil.copyNd(byteIds), datas.clone());
+            copy = new BukkitChunk_1_7(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(getCombinedIdArrays()), count.clone(), air.clone(), heightMap.clone(), (byte[][]) MainUtil.copyNd(byteIds), datas.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
             copy.chunk = chunk;
         }
@@ -66,6 +66,27 @@ public class BukkitChunk_1_7 extends CharFaweChunk<Chunk, BukkitQueue17> {
         return datas[i];
     }
 
+    @Override
+    public void setSection(int i, char[] combined) {
+        int by = i << 4;
+        for (int j = 0; j < 4096; j++) {
+            int value = combined[j];
+            setBlock(j & 15, by + (j >> 8), (j >> 4) & 15, value >> 4, value & 0xF);
+        }
+    }
+
+    @Override
+    public void fillCuboid(int x1, int x2, int y1, int y2, int z1, int z2, int id, byte data) {
+        // The byte ids and data are stored separately, so each block must be set
+        for (int x = x1; x <= x2; x++) {
+            for (int y = y1; y <= y2; y++) {
+                for (int z = z1; z <= z2; z++) {
+                    setBlock(x, y, z, id, data);
+                }
+            }
+        }
+    }
+
     @Override
     public void setBlock(int x, int y, int z, int id) {
         this.setBlock(x, y, z, id, 0);
@@ -172,8 +193,7 @@ public class BukkitChunk_1_7 extends CharFaweChunk<Chunk, BukkitQueue17> {
                 } else {
                     Collection<Entity> ents = entities[i];
                     if (!ents.isEmpty()) {
-                        char[] array = this.getIdArray(i);
-                        if (array == null || entities[i] == null || entities[i].isEmpty()) continue;
+                        if (!hasSection(i) || entities[i] == null || entities[i].isEmpty()) continue;
                         Entity[] entsArr = ents.toArray(new Entity[ents.size()]);
                         synchronized (BukkitQueue_0.class) {
                             for (Entity entity : entsArr) {
@@ -184,7 +204,7 @@ public class BukkitChunk_1_7 extends CharFaweChunk<Chunk, BukkitQueue17> {
                                 int z = (MathMan.roundInt(entity.locZ) & 15);
                                 int y = MathMan.roundInt(entity.locY);
                                 if (y < 0 || y > 255) continue;
-                                if (array[FaweCache.CACHE_J[y][z][x]] != 0) {
+                                if (getCombinedId(i, FaweCache.CACHE_J[y][z][x]) != 0) {
                                     nmsWorld.removeEntity(entity);
                                 }
                             }
@@ -390,12 +410,8 @@ public class BukkitChunk_1_7 extends CharFaweChunk<Chunk, BukkitQueue17> {
                 int ly = pos.y;
                 int lz = pos.z & 15;
                 int j = FaweCache.CACHE_I[ly][lz][lx];
-                char[] array = this.getIdArray(j);
-                if (array == null) {
-                    continue;
-                }
                 int k = FaweCache.CACHE_J[ly][lz][lx];
-                if (array[k] != 0) {
+                if (getCombinedId(j, k) != 0) {
                     if (toRemove == null) {
                         toRemove = new HashMap<>();
                     }
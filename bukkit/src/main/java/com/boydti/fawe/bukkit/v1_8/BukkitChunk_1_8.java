@@ -41,11 +41,11 @@ public class BukkitChunk_1_8 extends CharFaweChunk<Chunk, BukkitQueue18R3> {
     public CharFaweChunk copy(boolean shallow) {
         BukkitChunk_1_8 copy;
         if (shallow) {
-            copy = new BukkitChunk_1_8(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new BukkitChunk_1_8(getParent(), getX(), getZ(), getCombinedIdArrays(), count, air, heightMap);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new BukkitChunk_1_8(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new BukkitChunk_1_8(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(getCombinedIdArrays()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
             copy.chunk = chunk;
         }
@@ -102,8 +102,7 @@ public class BukkitChunk_1_8 extends CharFaweChunk<Chunk, BukkitQueue18R3> {
                 } else {
                     Collection<Entity> ents = entities[i];
                     if (!ents.isEmpty()) {
-                        char[] array = this.getIdArray(i);
-                        if (array == null || entities[i] == null || entities[i].isEmpty()) continue;
+                        if (!hasSection(i) || entities[i] == null || entities[i].isEmpty()) continue;
                         Entity[] entsArr = ents.toArray(new Entity[ents.size()]);
                         synchronized (BukkitQueue_0.class) {
                             for (Entity entity : entsArr) {
@@ -114,7 +113,7 @@ public class BukkitChunk_1_8 extends CharFaweChunk<Chunk, BukkitQueue18R3> {
                                 int z = (MathMan.roundInt(entity.locZ) & 15);
                                 int y = MathMan.roundInt(entity.locY);
                                 if (y < 0 || y > 255) continue;
-                                if (array[FaweCache.CACHE_J[y][z][x]] != 0) {
+                                if (getCombinedId(i, FaweCache.CACHE_J[y][z][x]) != 0) {
                                     nmsWorld.removeEntity(entity);
                                 }
                             }
@@ -257,12 +256,8 @@ public class BukkitChunk_1_8 extends CharFaweChunk<Chunk, BukkitQueue18R3> {
                 int ly = pos.getY();
                 int lz = pos.getZ() & 15;
                 int j = FaweCache.CACHE_I[ly][lz][lx];
-                char[] array = this.getIdArray(j);
-                if (array == null) {
-                    continue;
-                }
                 int k = FaweCache.CACHE_J[ly][lz][lx];
-                if (array[k] != 0) {
+                if (getCombinedId(j, k) != 0) {
                     if (toRemove == null) {
                         toRemove = new HashMap<>();
                     }
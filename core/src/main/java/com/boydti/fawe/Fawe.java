@@ -12,6 +12,8 @@ import com.boydti.fawe.util.chat.ChatManager;
 import com.boydti.fawe.util.chat.PlainChatManager;
 import com.boydti.fawe.util.cui.CUI;
 import com.boydti.fawe.util.metrics.BStats;
+import com.boydti.fawe.util.metrics.FaweMetrics;
+import com.boydti.fawe.util.metrics.PrometheusFileExporter;
 import com.sk89q.jnbt.*;
 import com.sk89q.worldedit.*;
 import com.sk89q.worldedit.Vector;
@@ -287,6 +289,11 @@ public class Fawe {
 
         TaskManager.IMP.repeat(timer, 1);
 
+        if (!Settings.IMP.STATS.PROMETHEUS_FILE.isEmpty()) {
+            FaweMetrics.IMP.addExporter(new PrometheusFileExporter(MainUtil.getFile(IMP.getDirectory(), Settings.IMP.STATS.PROMETHEUS_FILE)));
+            TaskManager.IMP.repeatAsync(() -> FaweMetrics.IMP.export(), Math.max(1, Settings.IMP.STATS.EXPORT_INTERVAL) * 20);
+        }
+
         if (!Settings.IMP.UPDATE.equalsIgnoreCase("false")) {
             // Delayed updating
             updater = new Updater();
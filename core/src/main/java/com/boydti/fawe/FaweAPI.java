@@ -4,6 +4,7 @@ import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.example.NMSMappedFaweQueue;
 import com.boydti.fawe.example.NMSRelighter;
+import com.boydti.fawe.jnbt.SchematicPasteStreamer;
 import com.boydti.fawe.object.FaweLocation;
 import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.FaweQueue;
@@ -33,6 +34,7 @@ import com.sk89q.worldedit.extension.factory.DefaultTransformParser;
 import com.sk89q.worldedit.extension.factory.HashTagPatternParser;
 import com.sk89q.worldedit.extension.platform.CommandManager;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
 import com.sk89q.worldedit.internal.registry.AbstractFactory;
@@ -505,17 +507,39 @@ public class FaweAPI {
     /**
      * If a schematic is too large to be pasted normally<br>
      * - Skips any block history
-     * - Ignores nbt
+     * - Small schematics are decoded straight into the queue, without a clipboard (see {@link SchematicPasteStreamer})
+     * - Schematics larger than clipboard.stream-paste-max-volume (or with the dimensions after the blocks) are loaded into a clipboard and pasted from there
      *
      * @param file
      * @param loc
      * @return
      */
-    @Deprecated
     public static void streamSchematic(final File file, final FaweLocation loc) {
         try {
-            final FileInputStream is = new FileInputStream(file);
-            streamSchematic(is, loc);
+            World world = getWorld(loc.world);
+            Vector to = new Vector(loc.x, loc.y, loc.z);
+            FaweQueue queue = SetQueue.IMP.getNewQueue(world, true, false);
+            boolean streamed;
+            try (NBTInputStream stream = new NBTInputStream(new GZIPInputStream(new FileInputStream(file)))) {
+                streamed = new SchematicPasteStreamer(stream, queue, to, true).paste();
+            } catch (Throwable e) {
+                // Don't leave a partial paste queued
+                queue.clear();
+                throw e;
+            }
+            if (streamed) {
+                queue.enqueue();
+                return;
+            }
+            Schematic schematic = load(file);
+            try {
+                schematic.paste(world, to, false, true, null);
+            } finally {
+                Clipboard clipboard = schematic.getClipboard();
+                if (clipboard instanceof BlockArrayClipboard) {
+                    ((BlockArrayClipboard) clipboard).close();
+                }
+            }
         } catch (final IOException e) {
             MainUtil.handleError(e);
         }
@@ -7,6 +7,7 @@ import com.boydti.fawe.config.Commands;
 import com.boydti.fawe.jnbt.anvil.HeightMapMCAGenerator;
 import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.RunnableVal;
+import com.boydti.fawe.object.RunnableVal3;
 import com.boydti.fawe.object.clipboard.MultiClipboardHolder;
 import com.boydti.fawe.object.pattern.PatternExtent;
 import com.boydti.fawe.util.*;
@@ -233,7 +234,14 @@ public class CFICommands extends MethodCommands {
             generator.setFolder(folder);
 
             fp.sendMessage(BBC.getPrefix() + "Generating");
+            generator.setProgressTask(new RunnableVal3<Long, Long, Double>() {
+                @Override
+                public void run(Long done, Long total, Double perSecond) {
+                    fp.sendMessage(BBC.getPrefix() + "Generating " + (done * 100 / Math.max(1, total)) + "% (" + perSecond.intValue() + " chunks/s)");
+                }
+            });
             generator.generate();
+            generator.setProgressTask(null);
             generator.setPacketViewer(null);
             generator.setImageViewer(null);
             settings.remove();
@@ -68,7 +68,13 @@ public class Settings extends Config {
     @Create
     public PATHS PATHS;
     @Create
+    public STATS STATS;
+    @Create
+    public CFI CFI;
+    @Create
     public REGION_RESTRICTIONS_OPTIONS REGION_RESTRICTIONS_OPTIONS;
+    @Create
+    public VISUALIZATION VISUALIZATION;
 
     @Comment("Paths for various directories")
     public static final class PATHS {
@@ -87,6 +93,36 @@ public class Settings extends Config {
         @Comment("Each player has their own sub directory for schematics")
         public boolean PER_PLAYER_SCHEMATICS = true;
         public String COMMANDS = "commands";
+        @Comment("Scratch files for large /cfi worlds")
+        public String CFI_SCRATCH = "cfi";
+    }
+
+    @Comment({
+            "Queue, lighting and history metrics (see `/fawe stats`)",
+    })
+    public static final class STATS {
+        @Comment({
+                "Write the metrics in the Prometheus text format to this file",
+                " - e.g. `metrics/fawe.prom` for the node_exporter textfile collector",
+                " - Leave blank to disable",
+        })
+        public String PROMETHEUS_FILE = "";
+        @Comment("How often the metrics file is written (seconds)")
+        public int EXPORT_INTERVAL = 15;
+    }
+
+    @Comment("Settings for /cfi")
+    public static final class CFI {
+        @Comment({
+                "Page the layers (height, biome, floor, main, overlay) of large worlds to disk",
+                " - Only used when a layer has more tiles than MAX_RESIDENT_TILES",
+        })
+        public boolean USE_DISK = true;
+        @Comment({
+                "The number of tiles of each layer to keep in memory",
+                " - A tile is 65536 columns, using 128-512KB",
+        })
+        public int MAX_RESIDENT_TILES = 512;
     }
 
     @Comment("Region restriction settings")
@@ -247,6 +283,26 @@ public class Settings extends Config {
                 " - Reduces history size by ~10%",
         })
         public boolean SMALL_EDITS = false;
+        @Comment({
+                "Store block changes grouped by chunk section (ids and positions in separate columns):",
+                " - Better compression for large edits",
+                " - Allows undo/redo to be applied per chunk",
+                " - Uses up to 8MB extra memory per edit while recording",
+                " - History recorded in the old format can still be read",
+        })
+        public boolean CHUNK_GROUPED = true;
+        @Comment({
+                "Store chunk sections which are completely set by a cuboid //set as a single record:",
+                " - The previous blocks are stored as a palette, the new block once",
+                " - Only used when `chunk-grouped` is enabled",
+        })
+        public boolean SECTION_SNAPSHOTS = true;
+        @Comment({
+                "Apply undo/redo to each chunk in parallel:",
+                " - Much faster for large edits",
+                " - Not used when the edit uses an inventory (block bag)",
+        })
+        public boolean PARALLEL_UNDO = true;
     }
 
     @Comment("This relates to how FAWE places chunks")
@@ -284,6 +340,14 @@ public class Settings extends Config {
         })
         public int EXTRA_TIME_MS = 0;
 
+        @Comment({
+                "Size the time used each tick based on how busy the server is",
+                " - Shrinks the time when ticks run long, and grows it while they finish on time",
+                " - Stops before a chunk which is expected to go over the time",
+                " - The time is shared evenly between players with edits placing",
+        })
+        public boolean ADAPTIVE = true;
+
         @Comment({
                 "Loading the right amount of chunks beforehand can speed up operations",
                 " - Low values may result in FAWE waiting on requests to the main thread",
@@ -323,6 +387,29 @@ public class Settings extends Config {
                 " - IMPROPER USE CAN CAUSE WORLD CORRUPTION!",
         })
         public boolean ANVIL_QUEUE_MODE = false;
+        @Comment({
+                "[SAFE] Memory map region files when reading chunks for anvil commands",
+                " - Threads can read chunks from the same region file at the same time",
+                " - Disable if your file system does not support memory mapped files",
+        })
+        public boolean ANVIL_MAPPED_READS = true;
+        @Comment({
+                "[SAFE] Write modified chunks into free sectors of a region file, rather than moving the chunks after them",
+                " - Greatly reduces the data written when /anvil commands modify a few chunks per region",
+                " - Region files are not compacted, so may contain unused sectors",
+        })
+        public boolean ANVIL_SECTOR_ALLOCATION = true;
+        @Comment({
+                "Compile expressions (//generate, expression masks and patterns) to bytecode",
+                " - Anything which can't be compiled is still evaluated by the interpreter",
+                " - Disabled by default until it has seen more use",
+        })
+        public boolean COMPILE_EXPRESSIONS = false;
+        @Comment({
+                "[SAFE] Match colors to the nearest of 32 levels per channel (image brushes, /cfi image imports)",
+                " - Much faster for large images, but a color may match a block slightly further away",
+        })
+        public boolean FAST_COLOR_LOOKUP = false;
         @Comment({
                 "[SAFE] Dynamically increase the number of chunks rendered",
                 " - Requires Paper: ci.destroystokyo.com/job/PaperSpigot/",
@@ -405,7 +492,11 @@ public class Settings extends Config {
         public int INTERVAL = 20;
         @Comment("Max falling blocks per interval (per chunk)")
         public int FALLING = 64;
-        @Comment("Max physics per interval (excluding redstone)")
+        @Comment({
+                "Max physics time (ms) per tick",
+                " - If this keeps happening for several intervals, the chunk which has used the most this interval has physics cancelled until the end of the interval",
+                " - Recursive physics (e.g. a chain of blocks breaking) is cancelled in the surrounding chunks instead",
+        })
         public int PHYSICS_MS = 10;
         @Comment("Max item spawns per interval (per chunk)")
         public int ITEMS = 256;
@@ -417,6 +508,21 @@ public class Settings extends Config {
         public boolean FIREWORKS_LOAD_CHUNKS = false;
     }
 
+    @Comment("Brush visualization (`/br visualize`)")
+    public static class VISUALIZATION {
+        @Comment({
+                "The maximum number of blocks visualized each tick (shared by all players)",
+                " - Players over the limit are visualized on a later tick",
+                " - -1 = Unlimited",
+        })
+        public int MAX_BLOCKS_PER_TICK = 250000;
+        @Comment({
+                "Reuse the last brush shape when only the target moves",
+                " - Applies to sphere and cylinder brushes with a single block",
+        })
+        public boolean CACHE_SHAPE = true;
+    }
+
     public static class CLIPBOARD {
         @Comment({
                 "Store the clipboard on disk instead of memory",
@@ -424,9 +530,17 @@ public class Settings extends Config {
                 " - Uses 2 bytes per block",
         })
         public boolean USE_DISK = true;
+        @Comment({
+                "Store the clipboard on disk as compressed 16x16x16 bricks",
+                " - Uses much less disk space than 2 bytes per block",
+                " - Clipboards saved in the old format can still be loaded",
+        })
+        public boolean DISK_BRICKS = true;
+        @Comment("The number of decompressed bricks (8KB each) to keep in memory per disk clipboard")
+        public int BRICK_CACHE = 512;
         @Comment({
                 "Compress the clipboard to reduce the size:",
-                " - TODO: Buffered random access with compression is not implemented on disk yet",
+                " - Disk bricks use at least fast compression",
                 " - 0 = No compression",
                 " - 1 = Fast compression",
                 " - 2-17 = Slower compression"
@@ -434,6 +548,12 @@ public class Settings extends Config {
         public int COMPRESSION_LEVEL = 1;
         @Comment("Number of days to keep history on disk before deleting it")
         public int DELETE_AFTER_DAYS = 1;
+        @Comment({
+                "The largest schematic (in blocks) which is streamed straight into the queue",
+                " - The queued chunks are kept in memory until the whole file is read (at least 2 bytes per block)",
+                " - Larger schematics are loaded into a clipboard (on disk with use-disk) and pasted from there",
+        })
+        public int STREAM_PASTE_MAX_VOLUME = 16777216;
     }
 
     public static class LIGHTING {
@@ -451,6 +571,11 @@ public class Settings extends Config {
         public int MODE = 1;
         @Comment({"If existing lighting should be removed before relighting"})
         public boolean REMOVE_FIRST = false;
+        @Comment({
+                "If relighting should be split between threads",
+                " - Chunks are relit in independent groups, then light is spread across their borders",
+        })
+        public boolean PARALLEL = true;
     }
 
     public void reload(File file) {
@@ -19,6 +19,7 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
@@ -33,6 +34,10 @@ public class RollbackDatabase extends AsyncNotifyQueue {
 
     private String INSERT_EDIT;
     private String CREATE_TABLE;
+    private String CREATE_INDEX;
+    private String[] CREATE_TRIGGERS;
+    private String FILL_INDEX;
+    private String INDEX_BOUNDS;
     //    private String GET_EDITS_POINT;
     private String GET_EDITS;
     private String GET_EDITS_USER;
@@ -42,6 +47,11 @@ public class RollbackDatabase extends AsyncNotifyQueue {
     private String DELETE_EDIT_USER;
     private String PURGE;
 
+    // The number of inserts sent to the database at once
+    private static final int BATCH_SIZE = 1024;
+    // If the R*Tree index of the edit bounds is available
+    private boolean spatialIndex;
+
     private ConcurrentLinkedQueue<RollbackOptimizedHistory> historyChanges = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
 
@@ -65,6 +75,14 @@ public class RollbackDatabase extends AsyncNotifyQueue {
         GET_EDITS_USER_ASC = "SELECT `player`,`id` FROM `" + prefix + "edits` WHERE `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=? AND `time`>? AND `player`=? ORDER BY `time` ASC, `id` ASC";
         DELETE_EDITS_USER = "DELETE FROM `" + prefix + "edits` WHERE `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=? AND `time`>? AND `player`=?";
         DELETE_EDIT_USER = "DELETE FROM `" + prefix + "edits` WHERE `player`=? AND `id`=?";
+        // The R*Tree stores floats (rounded outwards), so it's used to find the candidate rows for the exact checks above
+        CREATE_INDEX = "CREATE VIRTUAL TABLE `" + prefix + "edits_index` USING rtree(`id`,`x1`,`x2`,`y1`,`y2`,`z1`,`z2`)";
+        CREATE_TRIGGERS = new String[]{
+                "CREATE TRIGGER IF NOT EXISTS `" + prefix + "edits_insert` AFTER INSERT ON `" + prefix + "edits` BEGIN INSERT OR REPLACE INTO `" + prefix + "edits_index` VALUES(new.rowid,new.`x1`,new.`x2`,new.`y1`,new.`y2`,new.`z1`,new.`z2`); END",
+                "CREATE TRIGGER IF NOT EXISTS `" + prefix + "edits_delete` AFTER DELETE ON `" + prefix + "edits` BEGIN DELETE FROM `" + prefix + "edits_index` WHERE `id`=old.rowid; END"
+        };
+        FILL_INDEX = "INSERT OR REPLACE INTO `" + prefix + "edits_index` SELECT rowid,`x1`,`x2`,`y1`,`y2`,`z1`,`z2` FROM `" + prefix + "edits`";
+        INDEX_BOUNDS = " AND rowid IN (SELECT `id` FROM `" + prefix + "edits_index` WHERE `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=?)";
         init();
         purge((int) TimeUnit.DAYS.toMillis(Settings.IMP.HISTORY.DELETE_AFTER_DAYS));
     }
@@ -93,6 +111,53 @@ public class RollbackDatabase extends AsyncNotifyQueue {
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        initIndex();
+    }
+
+    /**
+     * Create the spatial index (and fill it from existing edits)<br/>
+     * - Without R*Tree support in the driver, lookups fall back to scanning the table
+     */
+    private void initIndex() {
+        try (Statement stmt = connection.createStatement()) {
+            // Rows replaced by INSERT OR REPLACE should fire the delete trigger
+            stmt.executeUpdate("PRAGMA recursive_triggers = ON");
+            boolean exists;
+            try (ResultSet result = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE `name`='" + prefix + "edits_index'")) {
+                exists = result.next();
+            }
+            if (!exists) {
+                stmt.executeUpdate(CREATE_INDEX);
+                stmt.executeUpdate(FILL_INDEX);
+            }
+            for (String trigger : CREATE_TRIGGERS) {
+                stmt.executeUpdate(trigger);
+            }
+            spatialIndex = true;
+        } catch (SQLException e) {
+            spatialIndex = false;
+            Fawe.debug("Rollback lookups will not be indexed (" + e.getMessage() + ")");
+        }
+    }
+
+    private String withBounds(String query) {
+        if (!spatialIndex) {
+            return query;
+        }
+        int orderBy = query.indexOf(" ORDER BY");
+        if (orderBy == -1) {
+            return query + INDEX_BOUNDS;
+        }
+        return query.substring(0, orderBy) + INDEX_BOUNDS + query.substring(orderBy);
+    }
+
+    private void setBounds(PreparedStatement stmt, int index, Vector pos1, Vector pos2) throws SQLException {
+        stmt.setInt(index, pos1.getBlockX());
+        stmt.setInt(index + 1, pos2.getBlockX());
+        stmt.setByte(index + 2, (byte) (pos1.getBlockY() - 128));
+        stmt.setByte(index + 3, (byte) (pos2.getBlockY() - 128));
+        stmt.setInt(index + 4, pos1.getBlockZ());
+        stmt.setInt(index + 5, pos2.getBlockZ());
     }
 
     public void delete(final UUID uuid, final int id) {
@@ -132,18 +197,16 @@ public class RollbackDatabase extends AsyncNotifyQueue {
             @Override
             public void run() {
                 String stmtStr = ascending ? (uuid == null ? GET_EDITS_ASC : GET_EDITS_USER_ASC) : (uuid == null ? GET_EDITS : GET_EDITS_USER);
-                try (PreparedStatement stmt = connection.prepareStatement(stmtStr)) {
-                    stmt.setInt(1, pos1.getBlockX());
-                    stmt.setInt(2, pos2.getBlockX());
-                    stmt.setByte(3, (byte) (pos1.getBlockY() - 128));
-                    stmt.setByte(4, (byte) (pos2.getBlockY() - 128));
-                    stmt.setInt(5, pos1.getBlockZ());
-                    stmt.setInt(6, pos2.getBlockZ());
+                try (PreparedStatement stmt = connection.prepareStatement(withBounds(stmtStr))) {
+                    setBounds(stmt, 1, pos1, pos2);
                     stmt.setInt(7, (int) (minTime / 1000));
                     if (uuid != null) {
                         byte[] uuidBytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
                         stmt.setBytes(8, uuidBytes);
                     }
+                    if (spatialIndex) {
+                        setBounds(stmt, uuid == null ? 8 : 9, pos1, pos2);
+                    }
                     ResultSet result = stmt.executeQuery();
                     if (!result.next()) {
                         TaskManager.IMP.taskNow(whenDone, false);
@@ -221,6 +284,7 @@ public class RollbackDatabase extends AsyncNotifyQueue {
             }
 
             try (PreparedStatement stmt = connection.prepareStatement(INSERT_EDIT)) {
+                int batched = 0;
                 for (RollbackOptimizedHistory change : copy) {
                     // `player`,`id`,`x1`,`y1`,`z1`,`x2`,`y2`,`z2`,`time`
                     UUID uuid = change.getUUID();
@@ -234,8 +298,14 @@ public class RollbackDatabase extends AsyncNotifyQueue {
                     stmt.setByte(7, (byte) (change.getMaxY() - 128));
                     stmt.setInt(8, change.getMaxZ());
                     stmt.setInt(9, (int) (change.getTime() / 1000));
-                    stmt.executeUpdate();
-                    stmt.clearParameters();
+                    stmt.addBatch();
+                    if (++batched == BATCH_SIZE) {
+                        stmt.executeBatch();
+                        batched = 0;
+                    }
+                }
+                if (batched != 0) {
+                    stmt.executeBatch();
                 }
             } catch (Exception e) {
                 e.printStackTrace();
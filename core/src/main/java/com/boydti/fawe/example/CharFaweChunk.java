@@ -3,6 +3,7 @@ package com.boydti.fawe.example;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.collection.CharPaletteSection;
 import com.boydti.fawe.util.MathMan;
 import com.sk89q.jnbt.CompoundTag;
 
@@ -14,6 +15,10 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     public final short[] count;
     public final short[] air;
     public final byte[] heightMap;
+    /**
+     * Sections which are still palette compressed (the corresponding {@link #ids} entry is null)
+     */
+    private final CharPaletteSection[] palettes;
 
     public byte[] biomes;
     public HashMap<Short, CompoundTag> tiles;
@@ -28,6 +33,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
         this.count = count;
         this.air = air;
         this.heightMap = heightMap;
+        this.palettes = new CharPaletteSection[ids.length];
     }
 
     /**
@@ -43,6 +49,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
         this.count = new short[HEIGHT >> 4];
         this.air = new short[HEIGHT >> 4];
         this.heightMap = new byte[256];
+        this.palettes = new CharPaletteSection[HEIGHT >> 4];
     }
 
     @Override
@@ -104,7 +111,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     public int getBitMask() {
         int bitMask = 0;
         for (int section = 0; section < ids.length; section++) {
-            if (ids[section] != null) {
+            if (ids[section] != null || palettes[section] != null) {
                 bitMask += 1 << section;
             }
         }
@@ -112,21 +119,95 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     }
 
     /**
-     * Get the raw data for a section
+     * Get the raw data for a section<br>
+     * - A palette compressed section is decoded to a new array (see {@link #expandSection(int)})
      *
      * @param i
      * @return
      */
     @Override
     public char[] getIdArray(final int i) {
-        return this.ids[i];
+        char[] array = this.ids[i];
+        if (array == null) {
+            CharPaletteSection palette = palettes[i];
+            if (palette != null) {
+                return palette.toArray();
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Convert a palette compressed section to a char[4096] which is kept for later access
+     *
+     * @param i
+     * @return the raw data, or null if the section is unchanged
+     */
+    public char[] expandSection(final int i) {
+        char[] array = this.ids[i];
+        if (array == null) {
+            CharPaletteSection palette = palettes[i];
+            if (palette != null) {
+                array = this.ids[i] = palette.toArray();
+                palettes[i] = null;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Get the palette compressed data for a section, without expanding it
+     *
+     * @param i
+     * @return the palette or null if the section is unchanged or already expanded (see {@link #expandSection(int)})
+     */
+    public CharPaletteSection getPalette(final int i) {
+        return this.palettes[i];
+    }
+
+    /**
+     * Get the value of a section which has been completely set to a single block
+     *
+     * @param i
+     * @return the combined id, or 0 if the section is not a single value
+     */
+    public char getSingleValue(final int i) {
+        CharPaletteSection palette = this.palettes[i];
+        if (palette != null && palette.isSingleValue()) {
+            return palette.getSingleValue();
+        }
+        return 0;
     }
 
+    /**
+     * Get the raw data for every section<br>
+     * - Palette compressed sections are expanded
+     *
+     * @return
+     */
     @Override
     public char[][] getCombinedIdArrays() {
+        for (int i = 0; i < palettes.length; i++) {
+            if (palettes[i] != null) {
+                expandSection(i);
+            }
+        }
         return this.ids;
     }
 
+    /**
+     * Expand the palette sections which hold more than one value, so they aren't decoded on each access when the chunk is applied
+     */
+    @Override
+    public void optimize() {
+        for (int i = 0; i < palettes.length; i++) {
+            CharPaletteSection palette = palettes[i];
+            if (palette != null && !palette.isSingleValue()) {
+                expandSection(i);
+            }
+        }
+    }
+
     @Override
     public byte[] getBiomeArray() {
         return this.biomes;
@@ -134,12 +215,34 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
 
     @Override
     public int getBlockCombinedId(int x, int y, int z) {
-        short i = FaweCache.CACHE_I[y][z][x];
-        char[] array = getIdArray(i);
+        return getCombinedId(FaweCache.CACHE_I[y][z][x], FaweCache.CACHE_J[y][z][x]);
+    }
+
+    /**
+     * Get the combined id at an index of a section, without expanding or decoding a palette compressed section
+     *
+     * @param i the section
+     * @param j the index in the section (see {@link FaweCache#CACHE_J})
+     * @return the combined id, or 0 if unset
+     */
+    public char getCombinedId(final int i, final int j) {
+        char[] array = this.ids[i];
         if (array == null) {
-            return 0;
+            CharPaletteSection palette = palettes[i];
+            if (palette == null) {
+                return 0;
+            }
+            return palette.get(j);
         }
-        return array[FaweCache.CACHE_J[y][z][x]];
+        return array[j];
+    }
+
+    /**
+     * @param i the section
+     * @return if the section has any changes (raw or palette compressed)
+     */
+    public boolean hasSection(final int i) {
+        return this.ids[i] != null || palettes[i] != null;
     }
 
     @Override
@@ -195,24 +298,9 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     public void setBlock(int x, int y, int z, int id) {
         final int i = FaweCache.CACHE_I[y][z][x];
         final int j = FaweCache.CACHE_J[y][z][x];
-        char[] vs = this.ids[i];
-        if (vs == null) {
-            vs = this.ids[i] = new char[4096];
-            this.count[i]++;
-        } else {
-            switch (vs[j]) {
-                case 0:
-                    this.count[i]++;
-                    break;
-                case 1:
-                    this.air[i]--;
-                    break;
-            }
-        }
         switch (id) {
             case 0:
-                this.air[i]++;
-                vs[j] = (char) 1;
+                setCombined(i, j, (char) 1);
                 return;
             case 11:
             case 39:
@@ -231,7 +319,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
             case 50:
             case 10:
             default:
-                vs[j] = (char) (id << 4);
+                setCombined(i, j, (char) (id << 4));
                 heightMap[z << 4 | x] = (byte) y;
                 return;
         }
@@ -241,24 +329,9 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     public void setBlock(final int x, final int y, final int z, final int id, int data) {
         final int i = FaweCache.CACHE_I[y][z][x];
         final int j = FaweCache.CACHE_J[y][z][x];
-        char[] vs = this.ids[i];
-        if (vs == null) {
-            vs = this.ids[i] = new char[4096];
-            this.count[i]++;
-        } else {
-            switch (vs[j]) {
-                case 0:
-                    this.count[i]++;
-                    break;
-                case 1:
-                    this.air[i]--;
-                    break;
-            }
-        }
         switch (id) {
             case 0:
-                this.air[i]++;
-                vs[j] = (char) 1;
+                setCombined(i, j, (char) 1);
                 return;
             case 39:
             case 40:
@@ -318,7 +391,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
             case 190:
             case 191:
             case 192:
-                vs[j] = (char) (id << 4);
+                setCombined(i, j, (char) (id << 4));
                 heightMap[z << 4 | x] = (byte) y;
                 return;
             case 130:
@@ -335,12 +408,140 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
             case 65:
             case 68: // removed
             default:
-                vs[j] = (char) ((id << 4) + data);
+                setCombined(i, j, (char) ((id << 4) + data));
                 heightMap[z << 4 | x] = (byte) y;
                 return;
         }
     }
 
+    /**
+     * Fill a cuboid in this chunk with a block<br>
+     * - Sections which are completely covered are replaced with a single value palette, without touching each index
+     */
+    @Override
+    public void fillCuboid(int x1, int x2, int y1, int y2, int z1, int z2, int id, byte data) {
+        // Let setBlock decide which data values are kept for the id
+        setBlock(x1, y1, z1, id, data);
+        final char combined = (char) getBlockCombinedId(x1, y1, z1);
+        boolean fullLayer = x1 == 0 && x2 == 15 && z1 == 0 && z2 == 15;
+        for (int i = y1 >> 4; i <= y2 >> 4; i++) {
+            int minY = Math.max(y1, i << 4) & 15;
+            int maxY = Math.min(y2, (i << 4) + 15) & 15;
+            if (fullLayer && minY == 0 && maxY == 15) {
+                fillSection(i, combined);
+                continue;
+            }
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = z1; z <= z2; z++) {
+                    int j = (y << 8) | (z << 4);
+                    for (int x = x1; x <= x2; x++) {
+                        setCombined(i, j | x, combined);
+                    }
+                }
+            }
+        }
+        if (combined != 1) {
+            for (int z = z1; z <= z2; z++) {
+                for (int x = x1; x <= x2; x++) {
+                    heightMap[z << 4 | x] = (byte) y2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Set every index in a section to the same combined id
+     *
+     * @param i the section
+     * @param combined the combined id (1 = air)
+     */
+    protected final void fillSection(final int i, final char combined) {
+        char[] vs = this.ids[i];
+        CharPaletteSection palette = palettes[i];
+        if (vs != null) {
+            Arrays.fill(vs, combined);
+        } else if (palette == null) {
+            palettes[i] = new CharPaletteSection(combined);
+        } else {
+            palette.fill(combined);
+        }
+        this.count[i] = 4096;
+        this.air[i] = (short) (combined == 1 ? 4096 : 0);
+    }
+
+    /**
+     * Set every index in a section (e.g. to restore a section from history)
+     *
+     * @param i the section
+     * @param combined the combined ids, with 0 as air (the same as the world)
+     */
+    public void setSection(final int i, final char[] combined) {
+        char[] vs = this.ids[i];
+        if (vs == null) {
+            vs = this.ids[i] = new char[4096];
+            palettes[i] = null;
+        }
+        int by = i << 4;
+        short airCount = 0;
+        for (int j = 0; j < 4096; j++) {
+            char value = combined[j];
+            if (value == 0) {
+                value = 1;
+            }
+            if (value == 1) {
+                airCount++;
+            } else {
+                heightMap[j & 255] = (byte) (by + (j >> 8));
+            }
+            vs[j] = value;
+        }
+        this.count[i] = 4096;
+        this.air[i] = airCount;
+    }
+
+    /**
+     * Set the combined id at an index in a section and update the count and air<br>
+     * - A section starts palette compressed and is expanded to a char[4096] once it needs more than 256 values
+     *
+     * @param i the section
+     * @param j the index in the section
+     * @param combined the combined id (1 = air)
+     */
+    protected final void setCombined(final int i, final int j, final char combined) {
+        char[] vs = this.ids[i];
+        char previous;
+        CharPaletteSection palette = null;
+        if (vs == null) {
+            palette = palettes[i];
+            if (palette == null) {
+                palette = palettes[i] = new CharPaletteSection((char) 0);
+            }
+            previous = palette.get(j);
+            if (!palette.set(j, combined)) {
+                vs = this.ids[i] = palette.toArray();
+                palettes[i] = palette = null;
+                vs[j] = combined;
+            }
+        } else {
+            previous = vs[j];
+            vs[j] = combined;
+        }
+        switch (previous) {
+            case 0:
+                if (++this.count[i] == 4096 && palette != null) {
+                    // The whole section has been set, it may now be a single value
+                    palette.compact();
+                }
+                break;
+            case 1:
+                this.air[i]--;
+                break;
+        }
+        if (combined == 1) {
+            this.air[i]++;
+        }
+    }
+
     @Deprecated
     public void setBitMask(int ignore) {
         // Remove
@@ -1,8 +1,10 @@
 package com.boydti.fawe.example;
 
+import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.RunnableVal;
+import com.boydti.fawe.util.AdaptiveScheduler;
 import com.boydti.fawe.util.MathMan;
 import com.boydti.fawe.util.SetQueue;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
@@ -118,6 +120,13 @@ public class DefaultFaweQueueMap implements IFaweQueueMap {
     private int lastX = Integer.MIN_VALUE;
     private int lastZ = Integer.MIN_VALUE;
 
+    @Override
+    public void runLocked(Runnable task) {
+        synchronized (blocks) {
+            task.run();
+        }
+    }
+
     @Override
     public boolean next(int amount, long time) {
         synchronized (blocks) {
@@ -125,6 +134,7 @@ public class DefaultFaweQueueMap implements IFaweQueueMap {
                 boolean skip = parent.getStage() == SetQueue.QueueStage.INACTIVE;
                 int added = 0;
                 Iterator<Map.Entry<Long, FaweChunk>> iter = blocks.entrySet().iterator();
+                AdaptiveScheduler scheduler = Settings.IMP.QUEUE.ADAPTIVE ? SetQueue.IMP.getScheduler() : null;
                 if (amount == 1) {
                     long start = System.currentTimeMillis();
                     do {
@@ -133,6 +143,11 @@ public class DefaultFaweQueueMap implements IFaweQueueMap {
                             if (skip && chunk == lastWrappedChunk) {
                                 continue;
                             }
+                            // Stop before a chunk which would go over the time (but always place one)
+                            if (scheduler != null && added != 0 && System.currentTimeMillis() - start + scheduler.estimate(chunk) > time) {
+                                break;
+                            }
+                            added++;
                             iter.remove();
                             parent.start(chunk);
                             chunk.call();
@@ -168,6 +183,11 @@ public class DefaultFaweQueueMap implements IFaweQueueMap {
                                 if (skip && chunk == lastWrappedChunk) {
                                     continue;
                                 }
+                                // Stop before a chunk which would go over the time (but always place one)
+                                if (scheduler != null && added != 0 && System.currentTimeMillis() - start + scheduler.estimate(chunk) > time) {
+                                    break;
+                                }
+                                added++;
                                 iter.remove();
                                 parent.start(chunk);
                                 service.submit(chunk);
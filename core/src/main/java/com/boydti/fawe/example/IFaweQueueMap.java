@@ -21,4 +21,12 @@ public interface IFaweQueueMap {
     int size();
 
     boolean next(int size, long time);
+
+    /**
+     * Run a task while no chunks can be dispatched from this map<br/>
+     * - e.g. so chunks being written by other threads aren't sent before they are complete
+     *
+     * @param task
+     */
+    void runLocked(Runnable task);
 }
@@ -15,6 +15,9 @@ import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
 import com.boydti.fawe.util.SetQueue;
 import com.boydti.fawe.util.TaskManager;
+import com.boydti.fawe.util.metrics.Counter;
+import com.boydti.fawe.util.metrics.FaweMetrics;
+import com.boydti.fawe.util.metrics.Histogram;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.blocks.BlockMaterial;
@@ -215,12 +218,42 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
         return true;
     }
 
+    private Histogram nextTime;
+    private Histogram chunksPerTick;
+    private Counter chunksTotal;
+    // The estimated cost of the chunks started by the current call to next
+    private double dispatchedCost;
+
+    private void initMetrics() {
+        String worldName = String.valueOf(getWorldName());
+        nextTime = FaweMetrics.IMP.histogram("fawe_queue_next_ms", "Time spent dispatching chunks per tick", "world", worldName);
+        chunksPerTick = FaweMetrics.IMP.histogram("fawe_queue_chunks_per_tick", "Chunks dispatched per tick", "world", worldName);
+        chunksTotal = FaweMetrics.IMP.counter("fawe_queue_chunks_total", "Chunks dispatched", "world", worldName);
+    }
+
     @Override
     public boolean next(int amount, long time) {
-        return map.next(amount, time);
+        if (nextTime == null) {
+            initMetrics();
+        }
+        long chunksBefore = chunksTotal.get();
+        dispatchedCost = 0;
+        long start = System.nanoTime();
+        try {
+            return map.next(amount, time);
+        } finally {
+            if (Settings.IMP.QUEUE.ADAPTIVE) {
+                SetQueue.IMP.getScheduler().record(dispatchedCost, System.nanoTime() - start);
+            }
+            nextTime.recordTime(start);
+            chunksPerTick.record(chunksTotal.get() - chunksBefore);
+        }
     }
 
     public void start(FaweChunk chunk) {
+        if (Settings.IMP.QUEUE.ADAPTIVE) {
+            dispatchedCost += SetQueue.IMP.getScheduler().getCost(chunk);
+        }
         chunk.start();
     }
 
@@ -228,6 +261,9 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
         if (getProgressTask() != null) {
             getProgressTask().run(ProgressType.DISPATCH, size() + 1);
         }
+        if (chunksTotal != null) {
+            chunksTotal.inc();
+        }
         chunk.end();
     }
 
@@ -8,7 +8,10 @@ import com.boydti.fawe.object.IntegerTrio;
 import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.collection.BlockVectorSet;
 import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.SetQueue;
 import com.boydti.fawe.util.TaskManager;
+import com.boydti.fawe.util.metrics.FaweMetrics;
+import com.boydti.fawe.util.metrics.Histogram;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -21,9 +24,14 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class NMSRelighter implements Relighter {
+    private static final Histogram SKY_TIME = FaweMetrics.IMP.histogram("fawe_relight_sky_ms", "Time spent relighting sky light");
+    private static final Histogram BLOCK_TIME = FaweMetrics.IMP.histogram("fawe_relight_block_ms", "Time spent relighting block light");
+
     private final NMSMappedFaweQueue queue;
 
     private final Map<Long, RelightSkyEntry> skyToRelight;
@@ -41,6 +49,8 @@ public class NMSRelighter implements Relighter {
     public final IntegerTrio mutableBlockPos = new IntegerTrio();
 
     private static final int DISPATCH_SIZE = 64;
+    // Block light spreads at most 30 blocks from a change (removal, then spreading from the remaining light)
+    private static final int BLOCK_RADIUS = 2;
     private boolean removeFirst;
 
     public NMSRelighter(NMSMappedFaweQueue queue) {
@@ -92,12 +102,16 @@ public class NMSRelighter implements Relighter {
                 }
             }
         } else {
-            long[][][] currentMap = concurrentLightQueue.get(index);
-            if (currentMap == null) {
-                currentMap = new long[16][][];
-                this.concurrentLightQueue.put(index, currentMap);
+            while (true) {
+                long[][][] currentMap = concurrentLightQueue.computeIfAbsent(index, k -> new long[16][][]);
+                synchronized (currentMap) {
+                    // Retry if the map was merged into the light queue in the meantime
+                    if (concurrentLightQueue.get(index) == currentMap) {
+                        set(x & 15, y, z & 15, currentMap);
+                        return;
+                    }
+                }
             }
-            set(x & 15, y, z & 15, currentMap);
         }
     }
 
@@ -148,6 +162,57 @@ public class NMSRelighter implements Relighter {
     }
 
     public void updateBlockLight(Map<Long, long[][][]> map) {
+        updateBlockLight(map, new LightAccess(), mutableBlockPos);
+    }
+
+    /**
+     * Relight block light with chunks split into groups which are at least 5 chunks apart<br/>
+     * - The changes in each chunk are relit on the {@link SetQueue} pool, and can't reach the chunks of another task in the group<br/>
+     * - Light spread into a neighbouring chunk is then adjusted by the groups after it
+     *
+     * @param map
+     */
+    public void updateBlockLightParallel(Map<Long, long[][][]> map) {
+        if (map.isEmpty()) {
+            return;
+        }
+        // Chunks are loaded on this thread as the queue caches are not thread safe
+        Long2ObjectOpenHashMap<Object> sectionMap = new Long2ObjectOpenHashMap<>();
+        int span = BLOCK_RADIUS * 2 + 1;
+        List<Runnable>[] groups = new List[span * span];
+        for (Map.Entry<Long, long[][][]> entry : map.entrySet()) {
+            long index = entry.getKey();
+            int chunkX = MathMan.unpairIntX(index);
+            int chunkZ = MathMan.unpairIntY(index);
+            Object chunk = queue.ensureChunkLoaded(chunkX, chunkZ);
+            sectionMap.put(index, chunk == null ? null : queue.getSections(chunk));
+            for (int x = chunkX - BLOCK_RADIUS; x <= chunkX + BLOCK_RADIUS; x++) {
+                for (int z = chunkZ - BLOCK_RADIUS; z <= chunkZ + BLOCK_RADIUS; z++) {
+                    long pair = MathMan.pairInt(x, z);
+                    if (!sectionMap.containsKey(pair)) {
+                        // The light may spread into a neighbour which isn't loaded yet
+                        Object neighbor = queue.ensureChunkLoaded(x, z);
+                        sectionMap.put(pair, neighbor == null ? null : queue.getSections(neighbor));
+                    }
+                }
+            }
+            final Map<Long, long[][][]> chunkMap = new Long2ObjectOpenHashMap<>(1);
+            chunkMap.put(index, entry.getValue());
+            int group = Math.floorMod(chunkX, span) * span + Math.floorMod(chunkZ, span);
+            if (groups[group] == null) {
+                groups[group] = new ArrayList<>();
+            }
+            groups[group].add(() -> updateBlockLight(chunkMap, new SectionLightAccess(sectionMap), new IntegerTrio()));
+        }
+        map.clear();
+        for (List<Runnable> group : groups) {
+            if (group != null) {
+                invokeAll(group);
+            }
+        }
+    }
+
+    private void updateBlockLight(Map<Long, long[][][]> map, LightAccess access, IntegerTrio mutable) {
         int size = map.size();
         if (size == 0) {
             return;
@@ -181,10 +246,10 @@ public class NMSRelighter implements Relighter {
                                     int x = lx + bx;
                                     int y = yStart + j;
                                     int z = lz + bz;
-                                    int oldLevel = queue.getEmmittedLight(x, y, z);
-                                    int newLevel = queue.getBrightness(x, y, z);
+                                    int oldLevel = access.getEmmittedLight(x, y, z);
+                                    int newLevel = access.getBrightness(x, y, z);
                                     if (oldLevel != newLevel) {
-                                        queue.setBlockLight(x, y, z, newLevel);
+                                        access.setBlockLight(x, y, z, newLevel);
                                         IntegerTrio node = new IntegerTrio(x, y, z);
                                         if (newLevel < oldLevel) {
                                             removalVisited.put(node, present);
@@ -208,51 +273,52 @@ public class NMSRelighter implements Relighter {
             IntegerTrio node = (IntegerTrio) val[0];
             int lightLevel = (int) val[1];
 
-            this.computeRemoveBlockLight(node.x - 1, node.y, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(node.x + 1, node.y, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            this.computeRemoveBlockLight(node.x - 1, node.y, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited, access, mutable);
+            this.computeRemoveBlockLight(node.x + 1, node.y, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited, access, mutable);
             if (node.y > 0) {
-                this.computeRemoveBlockLight(node.x, node.y - 1, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+                this.computeRemoveBlockLight(node.x, node.y - 1, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited, access, mutable);
             }
             if (node.y < 255) {
-                this.computeRemoveBlockLight(node.x, node.y + 1, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+                this.computeRemoveBlockLight(node.x, node.y + 1, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited, access, mutable);
             }
-            this.computeRemoveBlockLight(node.x, node.y, node.z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(node.x, node.y, node.z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            this.computeRemoveBlockLight(node.x, node.y, node.z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited, access, mutable);
+            this.computeRemoveBlockLight(node.x, node.y, node.z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited, access, mutable);
         }
 
         while (!lightPropagationQueue.isEmpty()) {
             IntegerTrio node = lightPropagationQueue.poll();
-            int lightLevel = queue.getEmmittedLight(node.x, node.y, node.z);
+            int lightLevel = access.getEmmittedLight(node.x, node.y, node.z);
             if (lightLevel > 1) {
-                this.computeSpreadBlockLight(node.x - 1, node.y, node.z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(node.x + 1, node.y, node.z, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(node.x - 1, node.y, node.z, lightLevel, lightPropagationQueue, visited, access, mutable);
+                this.computeSpreadBlockLight(node.x + 1, node.y, node.z, lightLevel, lightPropagationQueue, visited, access, mutable);
                 if (node.y > 0) {
-                    this.computeSpreadBlockLight(node.x, node.y - 1, node.z, lightLevel, lightPropagationQueue, visited);
+                    this.computeSpreadBlockLight(node.x, node.y - 1, node.z, lightLevel, lightPropagationQueue, visited, access, mutable);
                 }
                 if (node.y < 255) {
-                    this.computeSpreadBlockLight(node.x, node.y + 1, node.z, lightLevel, lightPropagationQueue, visited);
+                    this.computeSpreadBlockLight(node.x, node.y + 1, node.z, lightLevel, lightPropagationQueue, visited, access, mutable);
                 }
-                this.computeSpreadBlockLight(node.x, node.y, node.z - 1, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(node.x, node.y, node.z + 1, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(node.x, node.y, node.z - 1, lightLevel, lightPropagationQueue, visited, access, mutable);
+                this.computeSpreadBlockLight(node.x, node.y, node.z + 1, lightLevel, lightPropagationQueue, visited, access, mutable);
             }
         }
     }
 
     private void computeRemoveBlockLight(int x, int y, int z, int currentLight, Queue<Object[]> queue, Queue<IntegerTrio> spreadQueue, Map<IntegerTrio, Object> visited,
-                                         Map<IntegerTrio, Object> spreadVisited) {
-        int current = this.queue.getEmmittedLight(x, y, z);
+                                         Map<IntegerTrio, Object> spreadVisited, LightAccess access, IntegerTrio mutable) {
+        int current = access.getEmmittedLight(x, y, z);
         if (current != 0 && current < currentLight) {
-            this.queue.setBlockLight(x, y, z, 0);
+            access.setBlockLight(x, y, z, 0);
             if (current > 1) {
-                if (!visited.containsKey(mutableBlockPos)) {
+                mutable.set(x, y, z);
+                if (!visited.containsKey(mutable)) {
                     IntegerTrio index = new IntegerTrio(x, y, z);
                     visited.put(index, present);
                     queue.add(new Object[]{index, current});
                 }
             }
         } else if (current >= currentLight) {
-            mutableBlockPos.set(x, y, z);
-            if (!spreadVisited.containsKey(mutableBlockPos)) {
+            mutable.set(x, y, z);
+            if (!spreadVisited.containsKey(mutable)) {
                 IntegerTrio index = new IntegerTrio(x, y, z);
                 spreadVisited.put(index, present);
                 spreadQueue.add(index);
@@ -260,14 +326,15 @@ public class NMSRelighter implements Relighter {
         }
     }
 
-    private void computeSpreadBlockLight(int x, int y, int z, int currentLight, Queue<IntegerTrio> queue, Map<IntegerTrio, Object> visited) {
-        currentLight = currentLight - Math.max(1, this.queue.getOpacity(x, y, z));
+    private void computeSpreadBlockLight(int x, int y, int z, int currentLight, Queue<IntegerTrio> queue, Map<IntegerTrio, Object> visited, LightAccess access,
+                                         IntegerTrio mutable) {
+        currentLight = currentLight - Math.max(1, access.getOpacity(x, y, z));
         if (currentLight > 0) {
-            int current = this.queue.getEmmittedLight(x, y, z);
+            int current = access.getEmmittedLight(x, y, z);
             if (current < currentLight) {
-                this.queue.setBlockLight(x, y, z, currentLight);
-                mutableBlockPos.set(x, y, z);
-                if (!visited.containsKey(mutableBlockPos)) {
+                access.setBlockLight(x, y, z, currentLight);
+                mutable.set(x, y, z);
+                if (!visited.containsKey(mutable)) {
                     visited.put(new IntegerTrio(x, y, z), present);
                     if (currentLight > 1) {
                         queue.add(new IntegerTrio(x, y, z));
@@ -303,14 +370,91 @@ public class NMSRelighter implements Relighter {
     public void fixBlockLighting() {
         synchronized (lightQueue) {
             while (!lightLock.compareAndSet(false, true));
+            long start = System.nanoTime();
             try {
-                updateBlockLight(this.lightQueue);
+                mergeConcurrentLightQueue();
+                if (Settings.IMP.LIGHTING.PARALLEL && lightQueue.size() > 1) {
+                    updateBlockLightParallel(this.lightQueue);
+                } else {
+                    updateBlockLight(this.lightQueue);
+                }
             } finally {
                 lightLock.set(false);
+                BLOCK_TIME.recordTime(start);
             }
         }
     }
 
+    /**
+     * Move the updates added by other threads while the light queue was locked into the light queue
+     */
+    private void mergeConcurrentLightQueue() {
+        for (Map.Entry<Long, long[][][]> entry : concurrentLightQueue.entrySet()) {
+            long[][][] added = entry.getValue();
+            synchronized (added) {
+                if (concurrentLightQueue.remove(entry.getKey(), added)) {
+                    mergeLightUpdates(entry.getKey(), added);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the updates for a chunk to the light queue (the light lock must be held)
+     *
+     * @param index the chunk pair
+     * @param added the updates (z x y bits)
+     */
+    private void mergeLightUpdates(long index, long[][][] added) {
+        long[][][] existing = lightQueue.get(index);
+        if (existing == null) {
+            lightQueue.put(index, added);
+            return;
+        }
+        for (int z = 0; z < added.length; z++) {
+            long[][] m1 = added[z];
+            if (m1 == null) continue;
+            if (existing[z] == null) {
+                existing[z] = m1;
+                continue;
+            }
+            for (int x = 0; x < m1.length; x++) {
+                long[] m2 = m1[x];
+                if (m2 == null) continue;
+                long[] e2 = existing[z][x];
+                if (e2 == null) {
+                    existing[z][x] = m2;
+                    continue;
+                }
+                for (int i = 0; i < m2.length; i++) {
+                    e2[i] |= m2[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Run tasks on the {@link SetQueue} pool and wait for them to finish
+     *
+     * @param tasks
+     */
+    private void invokeAll(List<Runnable> tasks) {
+        if (tasks.size() <= 1) {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            return;
+        }
+        ForkJoinPool pool = SetQueue.IMP.getForkJoinPool();
+        ForkJoinTask[] futures = new ForkJoinTask[tasks.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = pool.submit(tasks.get(i));
+        }
+        for (ForkJoinTask future : futures) {
+            future.join();
+        }
+    }
+
     public synchronized void sendChunks() {
         RunnableVal<Object> runnable = new RunnableVal<Object>() {
             @Override
@@ -339,6 +483,7 @@ public class NMSRelighter implements Relighter {
     }
 
     public synchronized void fixSkyLighting() {
+        long startTime = System.nanoTime();
         // Order chunks
         Map<Long, RelightSkyEntry> map = getSkyMap();
         ArrayList<RelightSkyEntry> chunksList = new ArrayList<>(map.size());
@@ -351,17 +496,20 @@ public class NMSRelighter implements Relighter {
         }
         Collections.sort(chunksList);
         int size = chunksList.size();
-        if (size > DISPATCH_SIZE) {
-            int amount = (size + DISPATCH_SIZE - 1) / DISPATCH_SIZE;
+        // Larger batches give each thread more chunks to relight between the border exchanges
+        int dispatch = Settings.IMP.LIGHTING.PARALLEL ? DISPATCH_SIZE * SetQueue.IMP.getForkJoinPool().getParallelism() : DISPATCH_SIZE;
+        if (size > dispatch) {
+            int amount = (size + dispatch - 1) / dispatch;
             for (int i = 0; i < amount; i++) {
-                int start = i * DISPATCH_SIZE;
-                int end = Math.min(size, start + DISPATCH_SIZE);
+                int start = i * dispatch;
+                int end = Math.min(size, start + dispatch);
                 List<RelightSkyEntry> sub = chunksList.subList(start, end);
                 fixSkyLighting(sub);
             }
         } else {
             fixSkyLighting(chunksList);
         }
+        SKY_TIME.recordTime(startTime);
     }
 
     public void fill(byte[] mask, int chunkX, int y, int chunkZ, byte reason) {
@@ -406,85 +554,23 @@ public class NMSRelighter implements Relighter {
             }
         }
 
-        byte[] cacheX = FaweCache.CACHE_X[0];
-        byte[] cacheZ = FaweCache.CACHE_Z[0];
+        if (Settings.IMP.LIGHTING.PARALLEL && chunks.length > 1) {
+            fixSkyLightingParallel(chunks, remove, chunkSet);
+            return;
+        }
         for (int y = FaweChunk.HEIGHT - 1; y > 0; y--) {
             for (RelightSkyEntry chunk : chunks) { // Propogate skylight
                 int layer = y >> 4;
-                byte[] mask = chunk.mask;
                 if (chunk.fix[layer] != SkipReason.NONE) {
                     if ((y & 15) == 0 && layer != 0 && chunk.fix[layer - 1] == SkipReason.NONE) {
-                        fill(mask, chunk.x, y, chunk.z, chunk.fix[layer]);
+                        fill(chunk.mask, chunk.x, y, chunk.z, chunk.fix[layer]);
                     }
                     continue;
                 }
-                int bx = chunk.x << 4;
-                int bz = chunk.z << 4;
                 Object chunkObj = queue.ensureChunkLoaded(chunk.x, chunk.z);
                 Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
                 if (sections == null) continue;
-                Object section = queue.getCachedSection(sections, layer);
-                if (section == null) continue;
-                chunk.smooth = false;
-
-                if (remove && (y & 15) == 15 && chunkSet.contains(chunk.x, 0, chunk.z)) {
-                    queue.removeSectionLighting(section, y >> 4, true);
-                }
-
-                for (int j = 0; j <= maxY; j++) {
-                    int x = cacheX[j];
-                    int z = cacheZ[j];
-                    byte value = mask[j];
-                    byte pair = (byte) queue.getOpacityBrightnessPair(section, x, y, z);
-                    int opacity = MathMan.unpair16x(pair);
-                    int brightness = MathMan.unpair16y(pair);
-                    if (brightness > 1 && (brightness != 15 || opacity != 15)) {
-                        addLightUpdate(bx + x, y, bz + z);
-                    }
-                    switch (value) {
-                        case 0:
-                            if (opacity > 1) {
-                                queue.setSkyLight(section, x, y, z, 0);
-                                continue;
-                            }
-                            break;
-                        case 1:
-                        case 2:
-                        case 3:
-                        case 4:
-                        case 5:
-                        case 6:
-                        case 7:
-                        case 8:
-                        case 9:
-                        case 10:
-                        case 11:
-                        case 12:
-                        case 13:
-                        case 14:
-                            if (opacity >= value) {
-                                mask[j] = 0;
-                                queue.setSkyLight(section, x, y, z, 0);
-                                continue;
-                            }
-                            if (opacity <= 1) {
-                                mask[j] = --value;
-                            } else {
-                                mask[j] = value = (byte) Math.max(0, value - opacity);
-                            }
-                            break;
-                        case 15:
-                            if (opacity > 1) {
-                                value -= opacity;
-                                mask[j] = value;
-                            }
-                            queue.setSkyLight(section, x, y, z, value);
-                            continue;
-                    }
-                    chunk.smooth = true;
-                    queue.setSkyLight(section, x, y, z, value);
-                }
-                queue.saveChunk(chunkObj);
+                propagateSkyLight(chunk, chunkObj, sections, y, remove && chunkSet.contains(chunk.x, 0, chunk.z), false);
             }
             for (RelightSkyEntry chunk : chunks) { // Smooth forwards
                 if (chunk.smooth) {
@@ -500,12 +586,195 @@ public class NMSRelighter implements Relighter {
         }
     }
 
+    /**
+     * Relight the sky light of a chunk layer from the layer above (using the chunk's mask)
+     *
+     * @param collect if the block light updates should be kept in the entry and the chunk saved later (i.e. when not on the owning thread)
+     */
+    private void propagateSkyLight(RelightSkyEntry chunk, Object chunkObj, Object sections, int y, boolean removeSection, boolean collect) {
+        Object section = queue.getCachedSection(sections, y >> 4);
+        if (section == null) return;
+        chunk.smooth = false;
+
+        if (removeSection && (y & 15) == 15) {
+            queue.removeSectionLighting(section, y >> 4, true);
+        }
+
+        byte[] mask = chunk.mask;
+        int bx = chunk.x << 4;
+        int bz = chunk.z << 4;
+        byte[] cacheX = FaweCache.CACHE_X[0];
+        byte[] cacheZ = FaweCache.CACHE_Z[0];
+        for (int j = 0; j <= maxY; j++) {
+            int x = cacheX[j];
+            int z = cacheZ[j];
+            byte value = mask[j];
+            byte pair = (byte) queue.getOpacityBrightnessPair(section, x, y, z);
+            int opacity = MathMan.unpair16x(pair);
+            int brightness = MathMan.unpair16y(pair);
+            if (brightness > 1 && (brightness != 15 || opacity != 15)) {
+                if (collect) {
+                    if (chunk.lightUpdates == null) {
+                        chunk.lightUpdates = new long[16][][];
+                    }
+                    set(x, y, z, chunk.lightUpdates);
+                } else {
+                    addLightUpdate(bx + x, y, bz + z);
+                }
+            }
+            switch (value) {
+                case 0:
+                    if (opacity > 1) {
+                        queue.setSkyLight(section, x, y, z, 0);
+                        continue;
+                    }
+                    break;
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                case 8:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 13:
+                case 14:
+                    if (opacity >= value) {
+                        mask[j] = 0;
+                        queue.setSkyLight(section, x, y, z, 0);
+                        continue;
+                    }
+                    if (opacity <= 1) {
+                        mask[j] = --value;
+                    } else {
+                        mask[j] = value = (byte) Math.max(0, value - opacity);
+                    }
+                    break;
+                case 15:
+                    if (opacity > 1) {
+                        value -= opacity;
+                        mask[j] = value;
+                    }
+                    queue.setSkyLight(section, x, y, z, value);
+                    continue;
+            }
+            chunk.smooth = true;
+            queue.setSkyLight(section, x, y, z, value);
+        }
+        if (collect) {
+            chunk.save = true;
+        } else {
+            queue.saveChunk(chunkObj);
+        }
+    }
+
+    /**
+     * Relight the sky with each layer split into tasks on the {@link SetQueue} pool<br/>
+     * - Propagating the light down a chunk only uses that chunk<br/>
+     * - Smoothing reads the chunks before it (forwards) or after it (backwards), so it's done in diagonal waves of chunks which don't border each other<br/>
+     * - This gives the same result as relighting the chunks one at a time
+     */
+    private void fixSkyLightingParallel(RelightSkyEntry[] chunks, boolean remove, BlockVectorSet chunkSet) {
+        // Chunks are loaded on this thread as the queue caches are not thread safe
+        Long2ObjectOpenHashMap<Object> sectionMap = new Long2ObjectOpenHashMap<>();
+        for (RelightSkyEntry chunk : chunks) {
+            chunk.chunk = queue.ensureChunkLoaded(chunk.x, chunk.z);
+            chunk.sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
+            chunk.removeSection = remove && chunkSet.contains(chunk.x, 0, chunk.z);
+            sectionMap.put(MathMan.pairInt(chunk.x, chunk.z), chunk.sections);
+        }
+        for (RelightSkyEntry chunk : chunks) {
+            for (int i = 0; i < 4; i++) {
+                int x = chunk.x + (i == 0 ? -1 : i == 1 ? 1 : 0);
+                int z = chunk.z + (i == 2 ? -1 : i == 3 ? 1 : 0);
+                long pair = MathMan.pairInt(x, z);
+                if (!sectionMap.containsKey(pair)) {
+                    Object neighbor = queue.ensureChunkLoaded(x, z);
+                    sectionMap.put(pair, neighbor == null ? null : queue.getSections(neighbor));
+                }
+            }
+        }
+        // Chunks on the same diagonal (x + z) only read chunks on the diagonals either side
+        RelightSkyEntry[] byDiagonal = chunks.clone();
+        Arrays.sort(byDiagonal, (a, b) -> Integer.compare(a.x + a.z, b.x + b.z));
+        List<RelightSkyEntry[]> waves = new ArrayList<>();
+        for (int start = 0, end; start < byDiagonal.length; start = end) {
+            int diagonal = byDiagonal[start].x + byDiagonal[start].z;
+            for (end = start + 1; end < byDiagonal.length && byDiagonal[end].x + byDiagonal[end].z == diagonal; end++);
+            waves.add(Arrays.copyOfRange(byDiagonal, start, end));
+        }
+
+        List<Runnable> tasks = new ArrayList<>(chunks.length);
+        for (int y = FaweChunk.HEIGHT - 1; y > 0; y--) {
+            final int layerY = y;
+            int layer = y >> 4;
+            for (RelightSkyEntry chunk : chunks) { // Propogate skylight
+                if (chunk.fix[layer] != SkipReason.NONE) {
+                    if ((y & 15) == 0 && layer != 0 && chunk.fix[layer - 1] == SkipReason.NONE) {
+                        fill(chunk.mask, chunk.x, y, chunk.z, chunk.fix[layer]);
+                    }
+                    continue;
+                }
+                if (chunk.sections == null) continue;
+                tasks.add(() -> propagateSkyLight(chunk, chunk.chunk, chunk.sections, layerY, chunk.removeSection, true));
+            }
+            invokeAll(tasks);
+            tasks.clear();
+            for (int i = 0; i < waves.size() * 2; i++) { // Smooth forwards, then backwards
+                final boolean forwards = i < waves.size();
+                for (RelightSkyEntry chunk : waves.get(forwards ? i : waves.size() * 2 - 1 - i)) {
+                    if (chunk.smooth) {
+                        tasks.add(() -> smoothSkyLight(chunk, layerY, forwards, sectionMap));
+                    }
+                }
+                invokeAll(tasks);
+                tasks.clear();
+            }
+        }
+        // The queue's chunk caches and the light queue aren't thread safe, so the results are applied on this thread
+        for (RelightSkyEntry chunk : chunks) {
+            if (chunk.save) {
+                queue.saveChunk(chunk.chunk);
+                chunk.save = false;
+            }
+        }
+        synchronized (lightQueue) {
+            while (!lightLock.compareAndSet(false, true));
+            try {
+                for (RelightSkyEntry chunk : chunks) {
+                    if (chunk.lightUpdates != null) {
+                        mergeLightUpdates(MathMan.pairInt(chunk.x, chunk.z), chunk.lightUpdates);
+                        chunk.lightUpdates = null;
+                    }
+                }
+            } finally {
+                lightLock.set(false);
+            }
+        }
+    }
+
     public void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
+        smoothSkyLight(chunk, y, direction, null);
+    }
+
+    /**
+     * @param sectionMap the loaded chunks to read neighbouring light from, or null to use the queue
+     */
+    private void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction, Long2ObjectOpenHashMap<Object> sectionMap) {
         byte[] mask = chunk.mask;
         int bx = chunk.x << 4;
         int bz = chunk.z << 4;
-        queue.ensureChunkLoaded(chunk.x, chunk.z);
-        Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
+        Object sections;
+        if (sectionMap == null) {
+            queue.ensureChunkLoaded(chunk.x, chunk.z);
+            sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
+        } else {
+            sections = chunk.sections;
+        }
         if (sections == null) return;
         Object section = queue.getCachedSection(sections, y >> 4);
         if (section == null) return;
@@ -517,8 +786,8 @@ public class NMSRelighter implements Relighter {
                     continue;
                 }
                 byte value = mask[j];
-                if ((value = (byte) Math.max(queue.getSkyLight(bx + x - 1, y, bz + z) - 1, value)) >= 14) ;
-                else if ((value = (byte) Math.max(queue.getSkyLight(bx + x, y, bz + z - 1) - 1, value)) >= 14) ;
+                if ((value = (byte) Math.max(getSkyLight(sectionMap, bx + x - 1, y, bz + z) - 1, value)) >= 14) ;
+                else if ((value = (byte) Math.max(getSkyLight(sectionMap, bx + x, y, bz + z - 1) - 1, value)) >= 14) ;
                 if (value > mask[j]) queue.setSkyLight(section, x, y, z, mask[j] = value);
             }
         } else {
@@ -529,13 +798,31 @@ public class NMSRelighter implements Relighter {
                     continue;
                 }
                 byte value = mask[j];
-                if ((value = (byte) Math.max(queue.getSkyLight(bx + x + 1, y, bz + z) - 1, value)) >= 14) ;
-                else if ((value = (byte) Math.max(queue.getSkyLight(bx + x, y, bz + z + 1) - 1, value)) >= 14) ;
+                if ((value = (byte) Math.max(getSkyLight(sectionMap, bx + x + 1, y, bz + z) - 1, value)) >= 14) ;
+                else if ((value = (byte) Math.max(getSkyLight(sectionMap, bx + x, y, bz + z + 1) - 1, value)) >= 14) ;
                 if (value > mask[j]) queue.setSkyLight(section, x, y, z, mask[j] = value);
             }
         }
     }
 
+    private int getSkyLight(Long2ObjectOpenHashMap<Object> sectionMap, int x, int y, int z) {
+        if (sectionMap == null) {
+            return queue.getSkyLight(x, y, z);
+        }
+        Object sections = sectionMap.get(MathMan.pairInt(x >> 4, z >> 4));
+        if (sections == null) {
+            return 0;
+        }
+        // Same as the queue, a missing section uses the light of the section above it
+        for (int cy = y >> 4, max = FaweChunk.HEIGHT >> 4; cy < max; cy++) {
+            Object section = queue.getCachedSection(sections, cy);
+            if (section != null) {
+                return queue.getSkyLight(section, x, y, z);
+            }
+        }
+        return 15;
+    }
+
     public boolean isUnlit(byte[] array) {
         for (byte val : array) {
             if (val != 0) {
@@ -545,6 +832,79 @@ public class NMSRelighter implements Relighter {
         return true;
     }
 
+    /**
+     * Block light access in world coordinates
+     */
+    private class LightAccess {
+        public int getEmmittedLight(int x, int y, int z) {
+            return queue.getEmmittedLight(x, y, z);
+        }
+
+        public int getBrightness(int x, int y, int z) {
+            return queue.getBrightness(x, y, z);
+        }
+
+        public int getOpacity(int x, int y, int z) {
+            return queue.getOpacity(x, y, z);
+        }
+
+        public void setBlockLight(int x, int y, int z, int value) {
+            queue.setBlockLight(x, y, z, value);
+        }
+    }
+
+    /**
+     * Block light access for a single thread, using chunks loaded beforehand<br/>
+     * - The queue's own accessors share a cached section between threads
+     */
+    private class SectionLightAccess extends LightAccess {
+        private final Long2ObjectOpenHashMap<Object> sectionMap;
+        private int lastX = Integer.MIN_VALUE;
+        private int lastZ = Integer.MIN_VALUE;
+        private Object lastSections;
+
+        public SectionLightAccess(Long2ObjectOpenHashMap<Object> sectionMap) {
+            this.sectionMap = sectionMap;
+        }
+
+        private Object getSection(int x, int y, int z) {
+            int cx = x >> 4;
+            int cz = z >> 4;
+            if (cx != lastX || cz != lastZ) {
+                lastX = cx;
+                lastZ = cz;
+                lastSections = sectionMap.get(MathMan.pairInt(cx, cz));
+            }
+            return lastSections == null ? null : queue.getCachedSection(lastSections, y >> 4);
+        }
+
+        @Override
+        public int getEmmittedLight(int x, int y, int z) {
+            Object section = getSection(x, y, z);
+            return section == null ? 0 : queue.getEmmittedLight(section, x, y, z);
+        }
+
+        @Override
+        public int getBrightness(int x, int y, int z) {
+            Object section = getSection(x, y, z);
+            return section == null ? 0 : queue.getBrightness(section, x, y, z);
+        }
+
+        @Override
+        public int getOpacity(int x, int y, int z) {
+            Object section = getSection(x, y, z);
+            return section == null ? 0 : queue.getOpacity(section, x, y, z);
+        }
+
+        @Override
+        public void setBlockLight(int x, int y, int z, int value) {
+            Object section = getSection(x, y, z);
+            if (section != null) {
+                queue.setBlockLight(section, x, y, z, value);
+            }
+        }
+    }
+
     private class RelightSkyEntry implements Comparable {
         public final int x;
         public final int z;
@@ -552,6 +912,13 @@ public class NMSRelighter implements Relighter {
         public final byte[] fix;
         public int bitmask;
         public boolean smooth;
+        // Set before parallel relighting
+        public Object chunk;
+        public Object sections;
+        public boolean removeSection;
+        // Collected by the parallel tasks, then applied on the relighting thread
+        public long[][][] lightUpdates;
+        public boolean save;
 
         public RelightSkyEntry(int x, int z, byte[] fix, int bitmask) {
             this.x = x;
@@ -21,9 +21,9 @@ public class NullQueueCharFaweChunk extends CharFaweChunk {
     @Override
     public CharFaweChunk copy(boolean shallow) {
         if (shallow) {
-            return new NullQueueCharFaweChunk(getX(), getZ(), ids, count, air, heightMap);
+            return new NullQueueCharFaweChunk(getX(), getZ(), getCombinedIdArrays(), count, air, heightMap);
         } else {
-            return new NullQueueCharFaweChunk(getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            return new NullQueueCharFaweChunk(getX(), getZ(), (char[][]) MainUtil.copyNd(getCombinedIdArrays()), count.clone(), air.clone(), heightMap.clone());
         }
     }
 
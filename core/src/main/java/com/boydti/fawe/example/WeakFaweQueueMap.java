@@ -151,6 +151,13 @@ public class WeakFaweQueueMap implements IFaweQueueMap {
     private int lastX = Integer.MIN_VALUE;
     private int lastZ = Integer.MIN_VALUE;
 
+    @Override
+    public void runLocked(Runnable task) {
+        synchronized (blocks) {
+            task.run();
+        }
+    }
+
     @Override
     public boolean next(int amount, long time) {
         synchronized (blocks) {
@@ -3,17 +3,24 @@ package com.boydti.fawe.jnbt;
 import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.object.RunnableVal2;
 import com.boydti.fawe.object.exception.FaweException;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Arrays;
 
+/**
+ * Streams a NBT file to readers registered for a path (e.g. `Schematic.Blocks.#`)<br/>
+ * - The paths are compiled into a trie of tag names, tags which aren't on a path are skipped without being read<br/>
+ * - `?` is the size of a list or array, `#` each element (array elements are delivered in bulk to a {@link ByteReader})
+ */
 public class NBTStreamer {
     private final NBTInputStream is;
-    private final HashMap<String, RunnableVal2> readers;
+    private final Node root;
+    private boolean quick;
 
     public NBTStreamer(NBTInputStream stream) {
         this.is = stream;
-        readers = new HashMap<>();
+        this.root = new Node(null, new byte[0]);
     }
 
     /**
@@ -22,12 +29,8 @@ public class NBTStreamer {
      * @throws IOException
      */
     public void readFully() throws IOException {
-        is.readNamedTagLazy(new RunnableVal2<String, RunnableVal2>() {
-            @Override
-            public void run(String node, RunnableVal2 result) {
-                this.value2 = readers.get(node);
-            }
-        });
+        quick = false;
+        is.readNamedTagLazy(root);
         is.close();
     }
 
@@ -39,16 +42,11 @@ public class NBTStreamer {
      * @throws IOException
      */
     public void readQuick() throws IOException {
+        quick = true;
         try {
-            is.readNamedTagLazy(new RunnableVal2<String, RunnableVal2>() {
-                @Override
-                public void run(String node, RunnableVal2 result) {
-                    if (readers.isEmpty()) {
-                        throw new FaweException(BBC.WORLDEDIT_CANCEL_REASON_MANUAL);
-                    }
-                    this.value2 = readers.remove(node);
-                }
-            });
+            if (root.active != 0) {
+                is.readNamedTagLazy(root);
+            }
         } catch (FaweException ignore) {
         }
         is.close();
@@ -58,7 +56,17 @@ public class NBTStreamer {
         if (run instanceof NBTStreamReader) {
             ((NBTStreamReader) run).init(node);
         }
-        readers.put(node, run);
+        Node current = root;
+        int start = 0;
+        while (true) {
+            int end = node.indexOf('.', start);
+            current = current.getOrCreate(end == -1 ? node.substring(start) : node.substring(start, end));
+            if (end == -1) {
+                break;
+            }
+            start = end + 1;
+        }
+        current.setReader(run);
     }
 
     public <T, V> void addReader(RunnableVal2<T, V> run, String... nodes) {
@@ -67,6 +75,120 @@ public class NBTStreamer {
         }
     }
 
+    /**
+     * A tag name in the path of one or more readers
+     */
+    public final class Node {
+        private final Node parent;
+        private final byte[] name;
+        private Node[] children = new Node[0];
+        private Node size;
+        private Node element;
+        private RunnableVal2 reader;
+        // The number of readers at or below this node
+        private int active;
+
+        private Node(Node parent, byte[] name) {
+            this.parent = parent;
+            this.name = name;
+        }
+
+        private Node getOrCreate(String childName) {
+            byte[] bytes = childName.getBytes(NBTConstants.CHARSET);
+            Node child = getChild(bytes, bytes.length);
+            if (child == null) {
+                child = new Node(this, bytes);
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+                if (childName.equals("?")) {
+                    size = child;
+                } else if (childName.equals("#")) {
+                    element = child;
+                }
+            }
+            return child;
+        }
+
+        private void setReader(RunnableVal2 reader) {
+            if (this.reader == null) {
+                for (Node node = this; node != null; node = node.parent) {
+                    node.active++;
+                }
+            }
+            this.reader = reader;
+        }
+
+        /**
+         * @param name the tag name (UTF-8)
+         * @param length the length of the name
+         * @return the child with that name, or null if no reader uses it
+         */
+        public Node getChild(byte[] name, int length) {
+            for (Node child : children) {
+                if (child.active != 0 && child.name.length == length && equals(child.name, name, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private boolean equals(byte[] a, byte[] b, int length) {
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return if any reader uses this node or a child of it
+         */
+        public boolean isActive() {
+            return active != 0;
+        }
+
+        /**
+         * @return the node for the size of this list or array (`?`), or null
+         */
+        public Node getSize() {
+            return size != null && size.active != 0 ? size : null;
+        }
+
+        /**
+         * @return the node for each element of this list or array (`#`), or null
+         */
+        public Node getElement() {
+            return element != null && element.active != 0 ? element : null;
+        }
+
+        /**
+         * Get the reader for this node<br/>
+         * - When reading quickly the reader is removed, and the stream is cancelled once no readers remain
+         *
+         * @return the reader, or null
+         */
+        public RunnableVal2 getReader() {
+            RunnableVal2 result = reader;
+            if (result != null && quick) {
+                reader = null;
+                for (Node node = this; node != null; node = node.parent) {
+                    node.active--;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Cancel the stream if there is nothing left to read
+         */
+        public void checkDone() {
+            if (quick && root.active == 0) {
+                throw new FaweException(BBC.WORLDEDIT_CANCEL_REASON_MANUAL);
+            }
+        }
+    }
+
     public static abstract class NBTStreamReader<T, V> extends RunnableVal2<T, V> {
         private String node;
 
@@ -79,6 +201,10 @@ public class NBTStreamer {
         }
     }
 
+    /**
+     * Reads each element of a byte or int array<br/>
+     * - The stream delivers the elements in bulk through {@link #run(int, byte[], int, int)} and {@link #run(int, int[], int, int)}, which can be overridden
+     */
     public static abstract class ByteReader extends RunnableVal2<Integer, Integer> {
         @Override
         public void run(Integer index, Integer value) {
@@ -86,5 +212,29 @@ public class NBTStreamer {
         }
 
         public abstract void run(int index, int byteValue);
+
+        /**
+         * @param index the index of the first element
+         * @param buffer
+         * @param offset
+         * @param length
+         */
+        public void run(int index, byte[] buffer, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                run(index + i, buffer[offset + i] & 0xFF);
+            }
+        }
+
+        /**
+         * @param index the index of the first element
+         * @param buffer
+         * @param offset
+         * @param length
+         */
+        public void run(int index, int[] buffer, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                run(index + i, buffer[offset + i]);
+            }
+        }
     }
 }
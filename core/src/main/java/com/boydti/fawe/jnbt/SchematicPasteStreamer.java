@@ -0,0 +1,299 @@
+package com.boydti.fawe.jnbt;
+
+import com.boydti.fawe.config.BBC;
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.example.IFaweQueueMap;
+import com.boydti.fawe.example.MappedFaweQueue;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.RunnableVal2;
+import com.boydti.fawe.object.exception.FaweException;
+import com.boydti.fawe.util.MainUtil;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.worldedit.Vector;
+import it.unimi.dsi.fastutil.ints.Int2ByteOpenHashMap;
+import java.io.IOException;
+
+/**
+ * Pastes a schematic into a queue while it is being read<br/>
+ * - Blocks are decoded into the queued chunks, no clipboard is created<br/>
+ * - The queued chunks stay in memory until the whole file is read (the Data and AddBlocks arrays are merged with the ids already in the chunk),
+ *   so schematics larger than clipboard.stream-paste-max-volume aren't streamed<br/>
+ * - The dimensions and offset must come before the blocks (as FAWE writes them), otherwise {@link #paste()} returns false<br/>
+ * - Skips any block history and entities
+ */
+public class SchematicPasteStreamer extends NBTStreamer {
+    private final FaweQueue queue;
+    private final boolean pasteAir;
+    private final int toX, toY, toZ;
+
+    private IFaweQueueMap map;
+    private int lastCX = Integer.MIN_VALUE;
+    private int lastCZ = Integer.MIN_VALUE;
+    private FaweChunk lastChunk;
+
+    private int width;
+    private int height;
+    private int length;
+    private int area;
+    private int offsetX;
+    private int offsetY;
+    private int offsetZ;
+    private int headerRead;
+    private boolean started;
+    // The data of blocks with an id byte of 0, until their AddBlocks value is read
+    private final Int2ByteOpenHashMap pendingData = new Int2ByteOpenHashMap();
+
+    // The world position of the last decoded block
+    private int bx, by, bz;
+
+    /**
+     * @param stream   the schematic stream
+     * @param queue    the queue to paste to (should not be flushed until {@link #paste()} returns)
+     * @param to       the paste position
+     * @param pasteAir if air should be pasted
+     */
+    public SchematicPasteStreamer(NBTInputStream stream, FaweQueue queue, Vector to, boolean pasteAir) {
+        super(stream);
+        this.queue = queue;
+        this.pasteAir = pasteAir;
+        this.toX = to.getBlockX();
+        this.toY = to.getBlockY();
+        this.toZ = to.getBlockZ();
+    }
+
+    /**
+     * Read the schematic and write it to the queue
+     *
+     * @return false if the schematic cannot be streamed (nothing was pasted), e.g. if it's too large
+     * @throws IOException
+     */
+    public boolean paste() throws IOException {
+        if (!(queue instanceof MappedFaweQueue)) {
+            return false;
+        }
+        map = ((MappedFaweQueue) queue).getFaweQueueMap();
+        addDimensionReaders();
+        addBlockReaders();
+        try {
+            readFully();
+        } catch (FaweException e) {
+            if (started) {
+                throw e;
+            }
+            return false;
+        } finally {
+            pendingData.clear();
+        }
+        return started;
+    }
+
+    private FaweChunk getChunk(int cx, int cz) {
+        if (cx != lastCX || cz != lastCZ) {
+            lastCX = cx;
+            lastCZ = cz;
+            lastChunk = map.getFaweChunk(cx, cz);
+        }
+        return lastChunk;
+    }
+
+    private boolean hasHeader() {
+        return headerRead == 0b111111;
+    }
+
+    /**
+     * Set bx, by, bz to the world position of a schematic index
+     *
+     * @return false if the position is outside the world
+     */
+    private boolean setPosition(int index) {
+        int y = index / area;
+        int remainder = index - y * area;
+        int z = remainder / width;
+        bx = toX + offsetX + remainder - z * width;
+        by = toY + offsetY + y;
+        bz = toZ + offsetZ + z;
+        return by >= 0 && by < FaweChunk.HEIGHT;
+    }
+
+    /**
+     * Reads the blocks of an array in schematic rows<br/>
+     * - The position is calculated once per row of a bulk read, then incremented for each block
+     */
+    private abstract class RowReader extends ByteReader {
+        @Override
+        public void run(int index, int value) {
+            if (setPosition(index)) {
+                set(index, value);
+            }
+        }
+
+        @Override
+        public void run(int index, byte[] buffer, int offset, int length) {
+            int end = index + length;
+            while (index < end) {
+                int y = index / area;
+                int remainder = index - y * area;
+                int z = remainder / width;
+                int x = remainder - z * width;
+                int row = Math.min(end - index, width - x);
+                by = toY + offsetY + y;
+                if (by >= 0 && by < FaweChunk.HEIGHT) {
+                    bx = toX + offsetX + x;
+                    bz = toZ + offsetZ + z;
+                    for (int i = 0; i < row; i++, bx++) {
+                        set(index + i, buffer[offset + i] & 0xFF);
+                    }
+                }
+                index += row;
+                offset += row;
+            }
+        }
+
+        /**
+         * Set a block at bx, by, bz
+         *
+         * @param index the schematic index
+         * @param value
+         */
+        public abstract void set(int index, int value);
+    }
+
+    private void addBlockReaders() {
+        NBTStreamReader<Integer, Integer> checkHeader = new NBTStreamReader<Integer, Integer>() {
+            @Override
+            public void run(Integer size, Integer type) {
+                area = width * length;
+                if (!started && (!hasHeader() || area == 0)) {
+                    // The blocks can't be placed without knowing where they go
+                    throw new FaweException(BBC.WORLDEDIT_CANCEL_REASON_MANUAL);
+                }
+                if (!started && (long) area * height > Settings.IMP.CLIPBOARD.STREAM_PASTE_MAX_VOLUME) {
+                    // Too large to hold in the queue
+                    throw new FaweException(BBC.WORLDEDIT_CANCEL_REASON_MANUAL);
+                }
+                started = true;
+            }
+        };
+        addReader("Schematic.Blocks.?", checkHeader);
+        addReader("Schematic.Data.?", checkHeader);
+        addReader("Schematic.AddBlocks.?", checkHeader);
+        addReader("Schematic.Blocks.#", new RowReader() {
+            @Override
+            public void set(int index, int value) {
+                if (value != 0 || pasteAir) {
+                    getChunk(bx >> 4, bz >> 4).setBlock(bx & 15, by, bz & 15, value, 0);
+                }
+            }
+        });
+        addReader("Schematic.Data.#", new RowReader() {
+            @Override
+            public void set(int index, int value) {
+                if (value != 0) {
+                    FaweChunk chunk = getChunk(bx >> 4, bz >> 4);
+                    int combined = chunk.getBlockCombinedId(bx & 15, by, bz & 15);
+                    if (combined > 1) {
+                        chunk.setBlock(bx & 15, by, bz & 15, combined >> 4, value);
+                    } else {
+                        // Air can't hold data, but the block may still get an id from AddBlocks
+                        pendingData.put(index, (byte) value);
+                    }
+                }
+            }
+        });
+        addReader("Schematic.AddBlocks.#", new ByteReader() {
+            @Override
+            public void run(int index, int value) {
+                if (value != 0) {
+                    int gIndex = index << 1;
+                    add(gIndex, value & 0x0F);
+                    add(gIndex + 1, (value & 0xF0) >> 4);
+                }
+            }
+
+            private void add(int index, int add) {
+                if (add != 0 && setPosition(index)) {
+                    FaweChunk chunk = getChunk(bx >> 4, bz >> 4);
+                    int combined = chunk.getBlockCombinedId(bx & 15, by, bz & 15);
+                    int data = combined > 1 ? combined & 15 : pendingData.remove(index);
+                    chunk.setBlock(bx & 15, by, bz & 15, (combined >> 4) + (add << 8), data);
+                }
+            }
+        });
+        ByteReader biomeReader = new ByteReader() {
+            @Override
+            public void run(int index, int value) {
+                if (!hasHeader()) {
+                    return;
+                }
+                int z = index / width;
+                int x = toX + offsetX + index - z * width;
+                z += toZ + offsetZ;
+                getChunk(x >> 4, z >> 4).setBiome(x & 15, z & 15, (byte) value);
+            }
+        };
+        addReader("Schematic.AWEBiomes.#", biomeReader);
+        addReader("Schematic.Biomes.#", biomeReader);
+        addReader("Schematic.TileEntities.#", new RunnableVal2<Integer, CompoundTag>() {
+            @Override
+            public void run(Integer index, CompoundTag value) {
+                if (!hasHeader()) {
+                    return;
+                }
+                int x = toX + offsetX + value.getInt("x");
+                int y = toY + offsetY + value.getInt("y");
+                int z = toZ + offsetZ + value.getInt("z");
+                if (y >= 0 && y < FaweChunk.HEIGHT) {
+                    MainUtil.setPosition(value, x, y, z);
+                    getChunk(x >> 4, z >> 4).setTile(x & 15, y, z & 15, value);
+                }
+            }
+        });
+    }
+
+    private void addDimensionReaders() {
+        addReader("Schematic.Width", new RunnableVal2<Integer, Short>() {
+            @Override
+            public void run(Integer index, Short value) {
+                width = value;
+                headerRead |= 1;
+            }
+        });
+        addReader("Schematic.Height", new RunnableVal2<Integer, Short>() {
+            @Override
+            public void run(Integer index, Short value) {
+                height = value;
+                headerRead |= 2;
+            }
+        });
+        addReader("Schematic.Length", new RunnableVal2<Integer, Short>() {
+            @Override
+            public void run(Integer index, Short value) {
+                length = value;
+                headerRead |= 4;
+            }
+        });
+        addReader("Schematic.WEOffsetX", new RunnableVal2<Integer, Integer>() {
+            @Override
+            public void run(Integer index, Integer value) {
+                offsetX = value;
+                headerRead |= 8;
+            }
+        });
+        addReader("Schematic.WEOffsetY", new RunnableVal2<Integer, Integer>() {
+            @Override
+            public void run(Integer index, Integer value) {
+                offsetY = value;
+                headerRead |= 16;
+            }
+        });
+        addReader("Schematic.WEOffsetZ", new RunnableVal2<Integer, Integer>() {
+            @Override
+            public void run(Integer index, Integer value) {
+                offsetZ = value;
+                headerRead |= 32;
+            }
+        });
+    }
+}
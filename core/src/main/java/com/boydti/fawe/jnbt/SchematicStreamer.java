@@ -47,12 +47,22 @@ public class SchematicStreamer extends NBTStreamer {
             public void run(int index, int value) {
                 if (value != 0) fc.setId(index, value);
             }
+
+            @Override
+            public void run(int index, byte[] buffer, int offset, int length) {
+                fc.setIds(index, buffer, offset, length);
+            }
         });
         addReader("Schematic.Data.#", new ByteReader() {
             @Override
             public void run(int index, int value) {
                 if (value != 0) fc.setData(index, value);
             }
+
+            @Override
+            public void run(int index, byte[] buffer, int offset, int length) {
+                fc.setDatas(index, buffer, offset, length);
+            }
         });
         addReader("Schematic.AddBlocks.#", new ByteReader() {
             @Override
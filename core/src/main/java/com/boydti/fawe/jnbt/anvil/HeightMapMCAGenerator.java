@@ -2,6 +2,8 @@ package com.boydti.fawe.jnbt.anvil;
 
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.command.CFICommands;
+import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.example.SimpleCharFaweChunk;
 import com.boydti.fawe.object.*;
 import com.boydti.fawe.object.brush.visualization.VirtualWorld;
@@ -52,11 +54,11 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
     };
 
     private final DifferentialBlockBuffer blocks;
-    protected final DifferentialArray<byte[]> heights;
-    protected final DifferentialArray<byte[]> biomes;
-    protected final DifferentialArray<char[]> floor;
-    protected final DifferentialArray<char[]> main;
-    protected DifferentialArray<char[]> overlay;
+    protected final TiledDifferentialArray heights;
+    protected final TiledDifferentialArray biomes;
+    protected final TiledDifferentialArray floor;
+    protected final TiledDifferentialArray main;
+    protected TiledDifferentialArray overlay;
 
     protected final CFIPrimtives primtives = new CFIPrimtives();
     private CFIPrimtives oldPrimitives = new CFIPrimtives();
@@ -204,15 +206,26 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         int area = getArea();
 
         blocks = new DifferentialBlockBuffer(width, length);
-        heights = new DifferentialArray(new byte[getArea()]);
-        biomes = new DifferentialArray(new byte[getArea()]);
-        floor = new DifferentialArray(new char[getArea()]);
-        main = new DifferentialArray(new char[getArea()]);
-
         char stone = (char) FaweCache.getCombined(1, 0);
         char grass = (char) FaweCache.getCombined(2, 0);
-        Arrays.fill(main.getCharArray(), stone);
-        Arrays.fill(floor.getCharArray(), grass);
+        heights = createLayer(false, (char) 0, "heights");
+        biomes = createLayer(false, (char) 0, "biomes");
+        floor = createLayer(true, grass, "floor");
+        main = createLayer(true, stone, "main");
+    }
+
+    /**
+     * Create a layer, paged to disk if the world is larger than the tiles kept in memory (see {@link Settings.CFI})
+     */
+    private TiledDifferentialArray createLayer(boolean chars, char value, String name) {
+        int area = getArea();
+        File scratch = null;
+        int maxResident = Settings.IMP.CFI.MAX_RESIDENT_TILES;
+        if (Settings.IMP.CFI.USE_DISK && area > (long) maxResident * TiledDifferentialArray.TILE_SIZE) {
+            File folder = MainUtil.getFile(Fawe.imp().getDirectory(), Settings.IMP.PATHS.CFI_SCRATCH);
+            scratch = new File(folder, UUID.randomUUID() + "-" + name + ".bin");
+        }
+        return chars ? TiledDifferentialArray.ofChars(area, value, scratch, maxResident) : TiledDifferentialArray.ofBytes(area, (byte) value, scratch, maxResident);
     }
 
     public Metadatable getMetaData() {
@@ -375,9 +388,6 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         char snowLayer = 78 << 4;
         char snowBlock = 80;
 
-        char[] floor = this.floor.get();
-        byte[] heights = this.heights.get();
-
         int width = getWidth();
         int length = getLength();
 
@@ -403,12 +413,12 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                 for (int z = minZ; z <= maxZ; z++, zIndex += getWidth()) {
                     int index = zIndex + minX;
                     for (int x = minX; x <= maxX; x++, index++, localIndex++) {
-                        char combined = floor[index];
+                        char combined = floor.getChar(index);
                         int id = combined >> 4;
                         if (id == 78) {
-                            layers[localIndex] = (char) (((heights[index] & 0xFF) << 3) + (floor[index] & 0x7) - 7);
+                            layers[localIndex] = (char) (((heights.getByte(index) & 0xFF) << 3) + (combined & 0x7) - 7);
                         } else {
-                            layers[localIndex] = (char) (((heights[index] & 0xFF) << 3));
+                            layers[localIndex] = (char) (((heights.getByte(index) & 0xFF) << 3));
                         }
                     }
                 }
@@ -421,7 +431,6 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                 for (int z = minZ, localZ = 0; z <= maxZ; z++, localZ++, zIndex += getWidth()) {
                     int index = zIndex + minX;
                     for (int x = minX, localX = 0; x <= maxX; x++, localX++, index++, localIndex++) {
-                        int y = heights[index] & 0xFF;
                         int newHeight = table.average(localX, localZ, localIndex);
                         setLayerHeight(index, newHeight);
                     }
@@ -437,7 +446,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
     }
 
     private final void setLayerHeight(int index, int blockHeight, int layerHeight) {
-        int floorId = floor.get()[index] >> 4;
+        int floorId = floor.getChar(index) >> 4;
         if (floorId == 78 || floorId == 80) {
             if (layerHeight != 0) {
                 this.heights.setByte(index, (byte) (blockHeight + 1));
@@ -451,86 +460,61 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         }
     }
 
-    private final void setLayerHeightRaw(int index, int height) {
-        int blockHeight = (height) >> 3;
-        int layerHeight = (height) & 0x7;
-        setLayerHeightRaw(index, blockHeight, layerHeight);
-    }
-
-    private final void setLayerHeightRaw(int index, int blockHeight, int layerHeight) {
-        int floorId = floor.get()[index] >> 4;
-        if (floorId == 78 || floorId == 80) {
-            if (layerHeight != 0) {
-                this.heights.getByteArray()[index] = (byte) (blockHeight + 1);
-                this.floor.getCharArray()[index] = (char) (1248 + layerHeight);
-            } else {
-                this.heights.getByteArray()[index] = (byte) (blockHeight);
-                this.floor.getCharArray()[index] = (char) (1280);
-            }
-        } else {
-            this.heights.getByteArray()[index] = (byte) (blockHeight);
-        }
-    }
-
     private void smooth(BufferedImage img, Mask mask, boolean white, int radius, int iterations) {
         char snowLayer = 78 << 4;
         char snowBlock = 80;
 
-        char[] floor = this.floor.get();
-        byte[] heights = this.heights.get();
-
-        long[] copy = new long[heights.length];
-        char[] layers = new char[heights.length];
-
-        this.floor.record(() -> HeightMapMCAGenerator.this.heights.record(() -> {
-            int width = getWidth();
-            int length = getLength();
-            SummedAreaTable table = new SummedAreaTable(copy, layers, width, radius);
-            for (int j = 0; j < iterations; j++) {
-                for (int i = 0; i < heights.length; i++) {
-                    char combined = floor[i];
-                    int id = combined >> 4;
-                    if (id == 78) {
-                        layers[i] = (char) (((heights[i] & 0xFF) << 3) + (floor[i] & 0x7) - 7);
-                    } else {
-                        layers[i] = (char) (((heights[i] & 0xFF) << 3));
-                    }
+        int area = getArea();
+        long[] copy = new long[area];
+        char[] layers = new char[area];
+
+        int width = getWidth();
+        int length = getLength();
+        SummedAreaTable table = new SummedAreaTable(copy, layers, width, radius);
+        for (int j = 0; j < iterations; j++) {
+            for (int i = 0; i < area; i++) {
+                char combined = floor.getChar(i);
+                int id = combined >> 4;
+                if (id == 78) {
+                    layers[i] = (char) (((heights.getByte(i) & 0xFF) << 3) + (combined & 0x7) - 7);
+                } else {
+                    layers[i] = (char) (((heights.getByte(i) & 0xFF) << 3));
                 }
-                int index = 0;
-                table.processSummedAreaTable();
-                if (img != null) {
-                    for (int z = 0; z < getLength(); z++) {
-                        for (int x = 0; x < getWidth(); x++, index++) {
-                            int height = img.getRGB(x, z) & 0xFF;
-                            if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                                int newHeight = table.average(x, z, index);
-                                setLayerHeightRaw(index, newHeight);
-                            }
-                        }
-                    }
-                } else if (mask != null) {
-                    for (int z = 0; z < getLength(); z++) {
-                        mutable.mutZ(z);
-                        for (int x = 0; x < getWidth(); x++, index++) {
-                            int y = heights[index] & 0xFF;
-                            mutable.mutX(x);
-                            mutable.mutY(y);
-                            if (mask.test(mutable)) {
-                                int newHeight = table.average(x, z, index);
-                                setLayerHeightRaw(index, newHeight);
-                            }
+            }
+            int index = 0;
+            table.processSummedAreaTable();
+            if (img != null) {
+                for (int z = 0; z < getLength(); z++) {
+                    for (int x = 0; x < getWidth(); x++, index++) {
+                        int height = img.getRGB(x, z) & 0xFF;
+                        if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                            int newHeight = table.average(x, z, index);
+                            setLayerHeight(index, newHeight);
                         }
                     }
-                } else {
-                    for (int z = 0; z < getLength(); z++) {
-                        for (int x = 0; x < getWidth(); x++, index++) {
+                }
+            } else if (mask != null) {
+                for (int z = 0; z < getLength(); z++) {
+                    mutable.mutZ(z);
+                    for (int x = 0; x < getWidth(); x++, index++) {
+                        int y = heights.getByte(index) & 0xFF;
+                        mutable.mutX(x);
+                        mutable.mutY(y);
+                        if (mask.test(mutable)) {
                             int newHeight = table.average(x, z, index);
-                            setLayerHeightRaw(index, newHeight);
+                            setLayerHeight(index, newHeight);
                         }
                     }
                 }
+            } else {
+                for (int z = 0; z < getLength(); z++) {
+                    for (int x = 0; x < getWidth(); x++, index++) {
+                        int newHeight = table.average(x, z, index);
+                        setLayerHeight(index, newHeight);
+                    }
+                }
             }
-        }));
+        }
     }
 
     public void setHeight(BufferedImage img) {
@@ -876,8 +860,21 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         this.editSession = null;
     }
 
+    private boolean closed;
+
+    /**
+     * Close the generator and release its layers<br/>
+     * - The player's CFI settings and virtual world no longer reference the generator afterwards
+     *
+     * @param update if the player's chunks should be resent
+     * @throws IOException
+     */
     @Override
-    public void close(boolean update) {
+    public void close(boolean update) throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
         clear();
         if (chunkOffset != null && player != null && update) {
             FaweQueue packetQueue = SetQueue.IMP.getNewQueue(player.getWorld(), true, false);
@@ -904,12 +901,25 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
             }
         }
         if (player != null) {
-            player.deleteMeta("CFISettings");
+            CFICommands.CFISettings settings = player.getMeta("CFISettings");
+            if (settings != null && settings.getGenerator() == this) {
+                settings.remove();
+            } else {
+                player.deleteMeta("CFISettings");
+            }
             LocalSession session = player.getSession();
+            if (session.getVirtualWorld() == this) {
+                session.setVirtualWorld(null);
+            }
             session.clearHistory();
         }
         player = null;
         chunkOffset = null;
+        for (TiledDifferentialArray layer : new TiledDifferentialArray[]{heights, biomes, floor, main, overlay}) {
+            if (layer != null) {
+                layer.close();
+            }
+        }
     }
 
     @Override
@@ -1070,21 +1080,15 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
     public void setBiome(BufferedImage img, byte biome, boolean white) {
         if (img.getWidth() != getWidth() || img.getHeight() != getLength())
             throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
-        biomes.record(new Runnable() {
-            @Override
-            public void run() {
-                byte[] biomeArr = biomes.get();
-                int index = 0;
-                for (int z = 0; z < getLength(); z++) {
-                    for (int x = 0; x < getWidth(); x++, index++) {
-                        int height = img.getRGB(x, z) & 0xFF;
-                        if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                            biomeArr[index] = biome;
-                        }
-                    }
+        int index = 0;
+        for (int z = 0; z < getLength(); z++) {
+            for (int x = 0; x < getWidth(); x++, index++) {
+                int height = img.getRGB(x, z) & 0xFF;
+                if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                    biomes.setByte(index, biome);
                 }
             }
-        });
+        }
     }
 
     public BufferedImage draw() {
@@ -1112,35 +1116,29 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         int heightIndex = img.getHeight() - 1;
         int maxIndex = getArea() - 1;
 
-        biomes.record(() -> floor.record(() -> main.record(() -> {
-            char[] mainArr = main.get();
-            char[] floorArr = floor.get();
-            byte[] biomesArr = biomes.get();
-
-            int index = 0;
-            int[] buffer = new int[2];
-            for (int z = 0; z < img.getHeight(); z++) {
-                mutable.mutZ(z);
-                for (int x = 0; x < img.getWidth(); x++, index++) {
-                    if (mask != null) {
-                        mutable.mutX(z);
-                        mutable.mutY(heights.getByte(index) & 0xFF);
-                        if (!mask.test(mutable)) continue;
-                    }
-                    if (imgMask != null) {
-                        int height = imgMask.getRGB(x, z) & 0xFF;
-                        if (height != 255 && (height <= 0 || !whiteOnly || PseudoRandom.random.nextInt(256) > height)) continue;
-                    }
-                    int color = img.getRGB(x, z);
-                    if (textureUtil.getIsBlockCloserThanBiome(buffer, color, primtives.biomePriority)) {
-                        char combined = (char) buffer[0];
-                        mainArr[index] = combined;
-                        floorArr[index] = combined;
-                    }
-                    biomesArr[index] = (byte) buffer[1];
+        int index = 0;
+        int[] buffer = new int[2];
+        for (int z = 0; z < img.getHeight(); z++) {
+            mutable.mutZ(z);
+            for (int x = 0; x < img.getWidth(); x++, index++) {
+                if (mask != null) {
+                    mutable.mutX(z);
+                    mutable.mutY(heights.getByte(index) & 0xFF);
+                    if (!mask.test(mutable)) continue;
+                }
+                if (imgMask != null) {
+                    int height = imgMask.getRGB(x, z) & 0xFF;
+                    if (height != 255 && (height <= 0 || !whiteOnly || PseudoRandom.random.nextInt(256) > height)) continue;
+                }
+                int color = img.getRGB(x, z);
+                if (textureUtil.getIsBlockCloserThanBiome(buffer, color, primtives.biomePriority)) {
+                    char combined = (char) buffer[0];
+                    main.setChar(index, combined);
+                    floor.setChar(index, combined);
                 }
+                biomes.setByte(index, (byte) buffer[1]);
             }
-        })));
+        }
     }
 
     public void setBlockAndBiomeColor(BufferedImage img) {
@@ -1151,26 +1149,20 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         int heightIndex = img.getHeight() - 1;
         int maxIndex = getArea() - 1;
 
-        biomes.record(() -> floor.record(() -> main.record(() -> {
-            char[] mainArr = main.get();
-            char[] floorArr = floor.get();
-            byte[] biomesArr = biomes.get();
-
-            int[] buffer = new int[2];
-            int index = 0;
-            for (int y = 0; y < img.getHeight(); y++) {
-                boolean yBiome = y > 0 && y < heightIndex;
-                for (int x = 0; x < img.getWidth(); x++, index++) {
-                    int color = img.getRGB(x, y);
-                    if (textureUtil.getIsBlockCloserThanBiome(buffer, color, primtives.biomePriority)) {
-                        char combined = (char) buffer[0];
-                        mainArr[index] = combined;
-                        floorArr[index] = combined;
-                    }
-                    biomesArr[index] = (byte) buffer[1];
+        int[] buffer = new int[2];
+        int index = 0;
+        for (int y = 0; y < img.getHeight(); y++) {
+            boolean yBiome = y > 0 && y < heightIndex;
+            for (int x = 0; x < img.getWidth(); x++, index++) {
+                int color = img.getRGB(x, y);
+                if (textureUtil.getIsBlockCloserThanBiome(buffer, color, primtives.biomePriority)) {
+                    char combined = (char) buffer[0];
+                    main.setChar(index, combined);
+                    floor.setChar(index, combined);
                 }
+                biomes.setByte(index, (byte) buffer[1]);
             }
-        })));
+        }
     }
 
     public void setBiomeColor(BufferedImage img) {
@@ -1178,23 +1170,17 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
             throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
         TextureUtil textureUtil = getTextureUtil();
 
-        biomes.record(new Runnable() {
-            @Override
-            public void run() {
-                byte[] biomesArr = biomes.get();
-                int index = 0;
-                for (int y = 0; y < img.getHeight(); y++) {
-                    for (int x = 0; x < img.getWidth(); x++) {
-                        int color = img.getRGB(x, y);
-                        TextureUtil.BiomeColor biome = textureUtil.getNearestBiome(color);
-                        if (biome != null) {
-                            biomesArr[index] = (byte) biome.id;
-                        }
-                        index++;
-                    }
-                }
+        int index = 0;
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int color = img.getRGB(x, y);
+                TextureUtil.BiomeColor biome = textureUtil.getNearestBiome(color);
+                if (biome != null) {
+                    biomes.setByte(index, (byte) biome.id);
+                }
+                index++;
             }
-        });
+        }
     }
 
     public void setColor(BufferedImage img, BufferedImage mask, boolean white) {
@@ -1205,26 +1191,21 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         primtives.modifiedMain = true;
         TextureUtil textureUtil = getTextureUtil();
 
-        floor.record(() -> main.record(() -> {
-            char[] mainArr = main.get();
-            char[] floorArr = floor.get();
-
-            int index = 0;
-            for (int z = 0; z < getLength(); z++) {
-                for (int x = 0; x < getWidth(); x++, index++) {
-                    int height = mask.getRGB(x, z) & 0xFF;
-                    if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                        int color = img.getRGB(x, z);
-                        BaseBlock block = textureUtil.getNearestBlock(color);
-                        if (block != null) {
-                            char combined = (char) block.getCombined();
-                            mainArr[index] = combined;
-                            floorArr[index] = combined;
-                        }
+        int index = 0;
+        for (int z = 0; z < getLength(); z++) {
+            for (int x = 0; x < getWidth(); x++, index++) {
+                int height = mask.getRGB(x, z) & 0xFF;
+                if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                    int color = img.getRGB(x, z);
+                    BaseBlock block = textureUtil.getNearestBlock(color);
+                    if (block != null) {
+                        char combined = (char) block.getCombined();
+                        main.setChar(index, combined);
+                        floor.setChar(index, combined);
                     }
                 }
             }
-        }));
+        }
     }
 
     public void setColor(BufferedImage img, Mask mask) {
@@ -1233,29 +1214,23 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         primtives.modifiedMain = true;
         TextureUtil textureUtil = getTextureUtil();
 
-
-        floor.record(() -> main.record(() -> {
-            char[] mainArr = main.get();
-            char[] floorArr = floor.get();
-
-            int index = 0;
-            for (int z = 0; z < getLength(); z++) {
-                mutable.mutZ(z);
-                for (int x = 0; x < getWidth(); x++, index++) {
-                    mutable.mutX(x);
-                    mutable.mutY(heights.getByte(index) & 0xFF);
-                    if (mask.test(mutable)) {
-                        int color = img.getRGB(x, z);
-                        BaseBlock block = textureUtil.getNearestBlock(color);
-                        if (block != null) {
-                            char combined = (char) block.getCombined();
-                            mainArr[index] = combined;
-                            floorArr[index] = combined;
-                        }
+        int index = 0;
+        for (int z = 0; z < getLength(); z++) {
+            mutable.mutZ(z);
+            for (int x = 0; x < getWidth(); x++, index++) {
+                mutable.mutX(x);
+                mutable.mutY(heights.getByte(index) & 0xFF);
+                if (mask.test(mutable)) {
+                    int color = img.getRGB(x, z);
+                    BaseBlock block = textureUtil.getNearestBlock(color);
+                    if (block != null) {
+                        char combined = (char) block.getCombined();
+                        main.setChar(index, combined);
+                        floor.setChar(index, combined);
                     }
                 }
             }
-        }));
+        }
     }
 
     public void setColor(BufferedImage img) {
@@ -1264,24 +1239,19 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         primtives.modifiedMain = true;
         TextureUtil textureUtil = getTextureUtil();
 
-        floor.record(() -> main.record(() -> {
-            char[] mainArr = main.get();
-            char[] floorArr = floor.get();
-
-            int index = 0;
-            for (int z = 0; z < img.getHeight(); z++) {
-                for (int x = 0; x < img.getWidth(); x++) {
-                    int color = img.getRGB(x, z);
-                    BaseBlock block = textureUtil.getNearestBlock(color);
-                    if (block != null) {
-                        char combined = (char) block.getCombined();
-                        mainArr[index] = combined;
-                        floorArr[index] = combined;
-                    }
-                    index++;
+        int index = 0;
+        for (int z = 0; z < img.getHeight(); z++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int color = img.getRGB(x, z);
+                BaseBlock block = textureUtil.getNearestBlock(color);
+                if (block != null) {
+                    char combined = (char) block.getCombined();
+                    main.setChar(index, combined);
+                    floor.setChar(index, combined);
                 }
+                index++;
             }
-        }));
+        }
     }
 
     public void setColorWithGlass(BufferedImage img) {
@@ -1289,23 +1259,18 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
             throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
         TextureUtil textureUtil = getTextureUtil();
 
-        floor.record(() -> main.record(() -> {
-            char[] mainArr = main.get();
-            char[] floorArr = floor.get();
-
-            int index = 0;
-            for (int y = 0; y < img.getHeight(); y++) {
-                for (int x = 0; x < img.getWidth(); x++) {
-                    int color = img.getRGB(x, y);
-                    char[] layer = textureUtil.getNearestLayer(color);
-                    if (layer != null) {
-                        floorArr[index] = layer[0];
-                        mainArr[index] = layer[1];
-                    }
-                    index++;
-                }
+        int index = 0;
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int color = img.getRGB(x, y);
+                char[] layer = textureUtil.getNearestLayer(color);
+                if (layer != null) {
+                    floor.setChar(index, layer[0]);
+                    main.setChar(index, layer[1]);
+                }
+                index++;
             }
-        }));
+        }
     }
 
     public void setBiome(Mask mask, byte biome) {
@@ -1330,24 +1295,21 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
             if (img.getWidth() != getWidth() || img.getHeight() != getLength())
                 throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
             if (overlay == null) {
-                overlay = new DifferentialArray<>(new char[getArea()]);
+                overlay = createLayer(true, (char) 0, "overlay");
             }
 
-            overlay.record(() -> {
-                char[] overlayArr = overlay.get();
-                int index = 0;
-                for (int z = 0; z < getLength(); z++) {
-                    mutable.mutZ(z);
-                    for (int x = 0; x < getWidth(); x++, index++) {
-                        int height = img.getRGB(x, z) & 0xFF;
-                        if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                            mutable.mutX(x);
-                            mutable.mutY(height);
-                            overlayArr[index] = (char) pattern.apply(mutable).getCombined();
-                        }
+            int index = 0;
+            for (int z = 0; z < getLength(); z++) {
+                mutable.mutZ(z);
+                for (int x = 0; x < getWidth(); x++, index++) {
+                    int height = img.getRGB(x, z) & 0xFF;
+                    if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                        mutable.mutX(x);
+                        mutable.mutY(height);
+                        overlay.setChar(index, (char) pattern.apply(mutable).getCombined());
                     }
                 }
-            });
+            }
 
         }
     }
@@ -1360,21 +1322,18 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                 throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
             primtives.modifiedMain = true;
 
-            main.record(() -> {
-                char[] mainArr = main.get();
-                int index = 0;
-                for (int z = 0; z < getLength(); z++) {
-                    mutable.mutZ(z);
-                    for (int x = 0; x < getWidth(); x++, index++) {
-                        int height = img.getRGB(x, z) & 0xFF;
-                        if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                            mutable.mutX(x);
-                            mutable.mutY(height);
-                            mainArr[index] = (char) pattern.apply(mutable).getCombined();
-                        }
+            int index = 0;
+            for (int z = 0; z < getLength(); z++) {
+                mutable.mutZ(z);
+                for (int x = 0; x < getWidth(); x++, index++) {
+                    int height = img.getRGB(x, z) & 0xFF;
+                    if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                        mutable.mutX(x);
+                        mutable.mutY(height);
+                        main.setChar(index, (char) pattern.apply(mutable).getCombined());
                     }
                 }
-            });
+            }
         }
     }
 
@@ -1385,21 +1344,18 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
             if (img.getWidth() != getWidth() || img.getHeight() != getLength())
                 throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
 
-            floor.record(() -> {
-                char[] floorArr = floor.get();
-                int index = 0;
-                for (int z = 0; z < getLength(); z++) {
-                    mutable.mutZ(z);
-                    for (int x = 0; x < getWidth(); x++, index++) {
-                        int height = img.getRGB(x, z) & 0xFF;
-                        if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                            mutable.mutX(x);
-                            mutable.mutY(height);
-                            floorArr[index] = (char) pattern.apply(mutable).getCombined();
-                        }
+            int index = 0;
+            for (int z = 0; z < getLength(); z++) {
+                mutable.mutZ(z);
+                for (int x = 0; x < getWidth(); x++, index++) {
+                    int height = img.getRGB(x, z) & 0xFF;
+                    if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                        mutable.mutX(x);
+                        mutable.mutY(height);
+                        floor.setChar(index, (char) pattern.apply(mutable).getCombined());
                     }
                 }
-            });
+            }
         }
     }
 
@@ -1411,24 +1367,20 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                 throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
             primtives.modifiedMain = true;
 
-            main.record(() -> floor.record(() -> {
-                char[] floorArr = floor.get();
-                char[] mainArr = main.get();
-                int index = 0;
-                for (int z = 0; z < getLength(); z++) {
-                    mutable.mutZ(z);
-                    for (int x = 0; x < getWidth(); x++, index++) {
-                        int height = img.getRGB(x, z) & 0xFF;
-                        if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                            mutable.mutX(x);
-                            mutable.mutY(height);
-                            char combined = (char) pattern.apply(mutable).getCombined();
-                            mainArr[index] = combined;
-                            floorArr[index] = combined;
-                        }
+            int index = 0;
+            for (int z = 0; z < getLength(); z++) {
+                mutable.mutZ(z);
+                for (int x = 0; x < getWidth(); x++, index++) {
+                    int height = img.getRGB(x, z) & 0xFF;
+                    if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                        mutable.mutX(x);
+                        mutable.mutY(height);
+                        char combined = (char) pattern.apply(mutable).getCombined();
+                        main.setChar(index, combined);
+                        floor.setChar(index, combined);
                     }
                 }
-            }));
+            }
         }
     }
 
@@ -1437,7 +1389,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
             setOverlay(mask, (char) ((BaseBlock) pattern).getCombined());
         } else {
             int index = 0;
-            if (overlay == null) overlay = new DifferentialArray<>(new char[getArea()]);
+            if (overlay == null) overlay = createLayer(true, (char) 0, "overlay");
             for (int z = 0; z < getLength(); z++) {
                 mutable.mutZ(z);
                 for (int x = 0; x < getWidth(); x++, index++) {
@@ -1514,26 +1466,23 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
     }
 
     public void setBiome(int biome) {
-        biomes.record(() -> Arrays.fill(biomes.get(), (byte) biome));
+        biomes.fill((byte) biome);
     }
 
     public void setFloor(Pattern value) {
         if (value instanceof BaseBlock) {
             setFloor(((BaseBlock) value).getCombined());
         } else {
-            floor.record(() -> {
-                char[] floorArr = floor.get();
-                int index = 0;
-                for (int z = 0; z < getLength(); z++) {
-                    mutable.mutZ(z);
-                    for (int x = 0; x < getWidth(); x++, index++) {
-                        int y = heights.getByte(index) & 0xFF;
-                        mutable.mutX(x);
-                        mutable.mutY(y);
-                        floorArr[index] = (char) value.apply(mutable).getCombined();
-                    }
+            int index = 0;
+            for (int z = 0; z < getLength(); z++) {
+                mutable.mutZ(z);
+                for (int x = 0; x < getWidth(); x++, index++) {
+                    int y = heights.getByte(index) & 0xFF;
+                    mutable.mutX(x);
+                    mutable.mutY(y);
+                    floor.setChar(index, (char) value.apply(mutable).getCombined());
                 }
-            });
+            }
         }
     }
 
@@ -1541,22 +1490,18 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         if (value instanceof BaseBlock) {
             setColumn(((BaseBlock) value).getCombined());
         } else {
-            main.record(() -> floor.record(() -> {
-                char[] floorArr = floor.get();
-                char[] mainArr = main.get();
-                int index = 0;
-                for (int z = 0; z < getLength(); z++) {
-                    mutable.mutZ(z);
-                    for (int x = 0; x < getWidth(); x++, index++) {
-                        int y = heights.getByte(index) & 0xFF;
-                        mutable.mutX(x);
-                        mutable.mutY(y);
-                        char combined = (char) value.apply(mutable).getCombined();
-                        mainArr[index] = combined;
-                        floorArr[index] = combined;
-                    }
+            int index = 0;
+            for (int z = 0; z < getLength(); z++) {
+                mutable.mutZ(z);
+                for (int x = 0; x < getWidth(); x++, index++) {
+                    int y = heights.getByte(index) & 0xFF;
+                    mutable.mutX(x);
+                    mutable.mutY(y);
+                    char combined = (char) value.apply(mutable).getCombined();
+                    main.setChar(index, combined);
+                    floor.setChar(index, combined);
                 }
-            }));
+            }
         }
     }
 
@@ -1564,40 +1509,34 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         if (value instanceof BaseBlock) {
             setMain(((BaseBlock) value).getCombined());
         } else {
-            main.record(() -> {
-                char[] mainArr = main.get();
-                int index = 0;
-                for (int z = 0; z < getLength(); z++) {
-                    mutable.mutZ(z);
-                    for (int x = 0; x < getWidth(); x++, index++) {
-                        int y = heights.getByte(index) & 0xFF;
-                        mutable.mutX(x);
-                        mutable.mutY(y);
-                        mainArr[index] = (char) value.apply(mutable).getCombined();
-                    }
+            int index = 0;
+            for (int z = 0; z < getLength(); z++) {
+                mutable.mutZ(z);
+                for (int x = 0; x < getWidth(); x++, index++) {
+                    int y = heights.getByte(index) & 0xFF;
+                    mutable.mutX(x);
+                    mutable.mutY(y);
+                    main.setChar(index, (char) value.apply(mutable).getCombined());
                 }
-            });
+            }
         }
     }
 
     public void setOverlay(Pattern value) {
-        if (overlay == null) overlay = new DifferentialArray<>(new char[getArea()]);
+        if (overlay == null) overlay = createLayer(true, (char) 0, "overlay");
         if (value instanceof BaseBlock) {
             setOverlay(((BaseBlock) value).getCombined());
         } else {
-            overlay.record(() -> {
-                char[] overlayArr = overlay.get();
-                int index = 0;
-                for (int z = 0; z < getLength(); z++) {
-                    mutable.mutZ(z);
-                    for (int x = 0; x < getWidth(); x++, index++) {
-                        int y = heights.getByte(index) & 0xFF;
-                        mutable.mutX(x);
-                        mutable.mutY(y);
-                        overlayArr[index] = (char) value.apply(mutable).getCombined();
-                    }
+            int index = 0;
+            for (int z = 0; z < getLength(); z++) {
+                mutable.mutZ(z);
+                for (int x = 0; x < getWidth(); x++, index++) {
+                    int y = heights.getByte(index) & 0xFF;
+                    mutable.mutX(x);
+                    mutable.mutY(y);
+                    overlay.setChar(index, (char) value.apply(mutable).getCombined());
                 }
-            });
+            }
         }
     }
 
@@ -1612,9 +1551,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
     }
 
     public void setHeights(int value) {
-        heights.record(() -> {
-            Arrays.fill(heights.get(), (byte) value);
-        });
+        heights.fill((byte) value);
     }
 
     @Override
@@ -1624,11 +1561,6 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
 
     @Override
     public MCAChunk write(MCAChunk chunk, int csx, int cex, int csz, int cez) {
-        byte[] heights = this.heights.get();
-        byte[] biomes = this.biomes.get();
-        char[] main = this.main.get();
-        char[] floor = this.floor.get();
-        char[] overlay = this.overlay != null ? this.overlay.get() : null;
         try {
             int[] indexes = indexStore.get();
             for (int i = 0; i < chunk.ids.length; i++) {
@@ -1648,7 +1580,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                 index = (z & 15) << 4;
                 for (int x = csx; x <= cex; x++, index++, globalIndex++) {
                     indexes[index] = globalIndex;
-                    int height = heights[globalIndex] & 0xFF;
+                    int height = heights.getByte(globalIndex) & 0xFF;
                     heightMap[index] = height;
                     maxY = Math.max(maxY, height);
                     minY = Math.min(minY, height);
@@ -1698,7 +1630,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                         index = (z & 15) << 4;
                         for (int x = csx; x <= cex; x++, index++) {
                             globalIndex = indexes[index];
-                            char mainCombined = main[globalIndex];
+                            char mainCombined = main.getChar(globalIndex);
                             byte id = (byte) FaweCache.getId(mainCombined);
                             int data = FaweCache.getData(mainCombined);
                             if (data != 0) {
@@ -1735,7 +1667,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                             diff = 16;
                         } else if (height >= startY) {
                             diff = height - startY;
-                            char floorCombined = floor[globalIndex];
+                            char floorCombined = floor.getChar(globalIndex);
                             int id = FaweCache.getId(floorCombined);
                             int floorIndex = index + ((height & 15) << 8);
                             layerIds[floorIndex] = (byte) id;
@@ -1744,7 +1676,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                                 chunk.setNibble(floorIndex, layerDatas, data);
                             }
                             if (hasOverlay && height >= startY - 1 && height < endY) {
-                                char overlayCombined = overlay[globalIndex];
+                                char overlayCombined = overlay.getChar(globalIndex);
                                 id = FaweCache.getId(overlayCombined);
                                 int overlayIndex = index + (((height + 1) & 15) << 8);
                                 layerIds[overlayIndex] = (byte) id;
@@ -1754,7 +1686,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                                 }
                             }
                         } else if (hasOverlay && height == startY - 1) {
-                            char overlayCombined = overlay[globalIndex];
+                            char overlayCombined = overlay.getChar(globalIndex);
                             int id = FaweCache.getId(overlayCombined);
                             int overlayIndex = index + (((height + 1) & 15) << 8);
                             layerIds[overlayIndex] = (byte) id;
@@ -1766,7 +1698,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                         } else {
                             continue;
                         }
-                        char mainCombined = main[globalIndex];
+                        char mainCombined = main.getChar(globalIndex);
                         byte id = (byte) FaweCache.getId(mainCombined);
                         int data = FaweCache.getData(mainCombined);
                         if (data != 0) {
@@ -1847,10 +1779,10 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                         int gi = indexes[index];
                         int height = heightMap[index];
                         int min = height;
-                        if (x > 0) min = Math.min(heights[gi - 1] & 0xFF, min);
-                        if (x < getWidth() - 1) min = Math.min(heights[gi + 1] & 0xFF, min);
-                        if (z > 0) min = Math.min(heights[gi - getWidth()] & 0xFF, min);
-                        if (z < getLength() - 1) min = Math.min(heights[gi + getWidth()] & 0xFF, min);
+                        if (x > 0) min = Math.min(heights.getByte(gi - 1) & 0xFF, min);
+                        if (x < getWidth() - 1) min = Math.min(heights.getByte(gi + 1) & 0xFF, min);
+                        if (z > 0) min = Math.min(heights.getByte(gi - getWidth()) & 0xFF, min);
+                        if (z < getLength() - 1) min = Math.min(heights.getByte(gi + getWidth()) & 0xFF, min);
                         minArr[index] = (byte) min;
                     }
                 }
@@ -1878,7 +1810,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
 
 
                                 if (min < max) {
-                                    char floorCombined = floor[globalIndex];
+                                    char floorCombined = floor.getChar(globalIndex);
                                     final byte id = (byte) FaweCache.getId(floorCombined);
                                     final int data = FaweCache.getData(floorCombined);
                                     for (int y = min; y < max; y++) {
@@ -1913,7 +1845,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
                                 int min = (minArr[index] & 0xFF) - primtives.worldThickness;
                                 int localMin = min - startY;
                                 if (localMin > 0) {
-                                    char floorCombined = floor[globalIndex];
+                                    char floorCombined = floor.getChar(globalIndex);
                                     final byte id = (byte) FaweCache.getId(floorCombined);
                                     final int data = FaweCache.getData(floorCombined);
 
@@ -1937,7 +1869,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
             }
 
             for (int i = 0; i < 256; i++) {
-                chunk.biomes[i] = biomes[indexes[i]];
+                chunk.biomes[i] = biomes.getByte(indexes[i]);
             }
 
 
@@ -1973,7 +1905,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
 
     private void setOverlay(Mask mask, char combined) {
         int index = 0;
-        if (overlay == null) overlay = new DifferentialArray<>(new char[getArea()]);
+        if (overlay == null) overlay = createLayer(true, (char) 0, "overlay");
         for (int z = 0; z < getLength(); z++) {
             mutable.mutZ(z);
             for (int x = 0; x < getWidth(); x++, index++) {
@@ -2036,7 +1968,7 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
     }
 
     private void setFloor(int value) {
-        floor.record(() -> Arrays.fill(floor.get(), (char) value));
+        floor.fill((char) value);
     }
 
     private void setColumn(int value) {
@@ -2046,30 +1978,28 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
 
     private void setMain(int value) {
         primtives.modifiedMain = true;
-        main.record(() -> Arrays.fill(main.get(), (char) value));
+        main.fill((char) value);
     }
 
     private void setOverlay(int value) {
-        if (overlay == null) overlay = new DifferentialArray<>(new char[getArea()]);
-        overlay.record(() -> Arrays.fill(overlay.get(), (char) value));
+        if (overlay == null) overlay = createLayer(true, (char) 0, "overlay");
+        overlay.fill((char) value);
     }
 
     private void setOverlay(BufferedImage img, char combined, boolean white) {
         if (img.getWidth() != getWidth() || img.getHeight() != getLength())
             throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
-        if (overlay == null) overlay = new DifferentialArray<>(new char[getArea()]);
+        if (overlay == null) overlay = createLayer(true, (char) 0, "overlay");
 
-        overlay.record(() -> {
-            int index = 0;
-            for (int z = 0; z < getLength(); z++) {
-                for (int x = 0; x < getWidth(); x++, index++) {
-                    int height = img.getRGB(x, z) & 0xFF;
-                    if (height == 255 || height > 0 && white && PseudoRandom.random.nextInt(256) <= height) {
-                        overlay.get()[index] = combined;
-                    }
+        int index = 0;
+        for (int z = 0; z < getLength(); z++) {
+            for (int x = 0; x < getWidth(); x++, index++) {
+                int height = img.getRGB(x, z) & 0xFF;
+                if (height == 255 || height > 0 && white && PseudoRandom.random.nextInt(256) <= height) {
+                    overlay.setChar(index, combined);
                 }
             }
-        });
+        }
     }
 
     private void setMain(BufferedImage img, char combined, boolean white) {
@@ -2077,34 +2007,30 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
             throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
         primtives.modifiedMain = true;
 
-        main.record(() -> {
-            int index = 0;
-            for (int z = 0; z < getLength(); z++) {
-                for (int x = 0; x < getWidth(); x++, index++) {
-                    int height = img.getRGB(x, z) & 0xFF;
-                    if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                        main.get()[index] = combined;
-                    }
+        int index = 0;
+        for (int z = 0; z < getLength(); z++) {
+            for (int x = 0; x < getWidth(); x++, index++) {
+                int height = img.getRGB(x, z) & 0xFF;
+                if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                    main.setChar(index, combined);
                 }
             }
-        });
+        }
     }
 
     private void setFloor(BufferedImage img, char combined, boolean white) {
         if (img.getWidth() != getWidth() || img.getHeight() != getLength())
             throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
 
-        floor.record(() -> {
-            int index = 0;
-            for (int z = 0; z < getLength(); z++) {
-                for (int x = 0; x < getWidth(); x++, index++) {
-                    int height = img.getRGB(x, z) & 0xFF;
-                    if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                        floor.get()[index] = combined;
-                    }
+        int index = 0;
+        for (int z = 0; z < getLength(); z++) {
+            for (int x = 0; x < getWidth(); x++, index++) {
+                int height = img.getRGB(x, z) & 0xFF;
+                if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                    floor.setChar(index, combined);
                 }
             }
-        });
+        }
     }
 
     private void setColumn(BufferedImage img, char combined, boolean white) {
@@ -2112,18 +2038,16 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
             throw new IllegalArgumentException("Input image dimensions do not match the current height map!");
         primtives.modifiedMain = true;
 
-        main.record(() -> floor.record(() -> {
-            int index = 0;
-            for (int z = 0; z < getLength(); z++) {
-                for (int x = 0; x < getWidth(); x++, index++) {
-                    int height = img.getRGB(x, z) & 0xFF;
-                    if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
-                        main.get()[index] = combined;
-                        floor.get()[index] = combined;
-                    }
+        int index = 0;
+        for (int z = 0; z < getLength(); z++) {
+            for (int x = 0; x < getWidth(); x++, index++) {
+                int height = img.getRGB(x, z) & 0xFF;
+                if (height == 255 || height > 0 && !white && PseudoRandom.random.nextInt(256) <= height) {
+                    main.setChar(index, combined);
+                    floor.setChar(index, combined);
                 }
             }
-        }));
+        }
     }
 
     @Override
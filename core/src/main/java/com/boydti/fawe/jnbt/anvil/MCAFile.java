@@ -1,6 +1,7 @@
 package com.boydti.fawe.jnbt.anvil;
 
 import com.boydti.fawe.Fawe;
+import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.jnbt.NBTStreamer;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.RunnableVal;
@@ -8,6 +9,7 @@ import com.boydti.fawe.object.RunnableVal4;
 import com.boydti.fawe.object.collection.IterableThreadLocal;
 import com.boydti.fawe.object.exception.FaweException;
 import com.boydti.fawe.object.io.BufferedRandomAccessFile;
+import com.boydti.fawe.object.io.ByteBufferInputStream;
 import com.boydti.fawe.object.io.FastByteArrayInputStream;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
@@ -17,14 +19,20 @@ import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
@@ -56,6 +64,12 @@ public class MCAFile {
     private final int X, Z;
     private final Int2ObjectOpenHashMap<MCAChunk> chunks = new Int2ObjectOpenHashMap<>();
 
+    // Read only view of the file, so chunks can be read concurrently without locking the raf
+    private volatile MappedByteBuffer mapped;
+    private final Object mapLock = new Object();
+    // Mapped reads hold the read lock, writing the file (and unmapping it) holds the write lock
+    private final ReentrantReadWriteLock mappedLock = new ReentrantReadWriteLock();
+
     final ThreadLocal<byte[]> byteStore1 = new ThreadLocal<byte[]>() {
         @Override
         protected byte[] initialValue() {
@@ -98,17 +112,23 @@ public class MCAFile {
     }
 
     public void clear() {
-        if (raf != null) {
-            try {
-                raf.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+        mappedLock.writeLock().lock();
+        try {
+            unmap();
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
+            synchronized (chunks) {
+                chunks.clear();
+            }
+            locations = null;
+        } finally {
+            mappedLock.writeLock().unlock();
         }
-        synchronized (chunks) {
-            chunks.clear();
-        }
-        locations = null;
         IterableThreadLocal.clean(byteStore1);
         IterableThreadLocal.clean(byteStore2);
         IterableThreadLocal.clean(byteStore3);
@@ -204,9 +224,15 @@ public class MCAFile {
         if (offset == 0) {
             return null;
         }
-        NBTInputStream nis = getChunkIS(offset);
-        MCAChunk chunk = new MCAChunk(nis, queue, cx, cz, false);
-        nis.close();
+        MCAChunk chunk;
+        mappedLock.readLock().lock();
+        try {
+            NBTInputStream nis = getChunkIS(offset);
+            chunk = new MCAChunk(nis, queue, cx, cz, false);
+            nis.close();
+        } finally {
+            mappedLock.readLock().unlock();
+        }
         int pair = MathMan.pair((short) (cx & 31), (short) (cz & 31));
         synchronized (chunks) {
             chunks.put(pair, chunk);
@@ -305,6 +331,87 @@ public class MCAFile {
         return values;
     }
 
+    /**
+     * Get a read only memory mapped view of the file<br>
+     * - Only use the buffer while holding the read lock of {@link #mappedLock}, so it isn't unmapped (or remapped) while in use
+     *
+     * @return the buffer, or null if mapped reads are disabled or the file isn't open
+     */
+    private MappedByteBuffer getMappedBuffer() {
+        MappedByteBuffer tmp = mapped;
+        if (tmp == null && Settings.IMP.EXPERIMENTAL.ANVIL_MAPPED_READS) {
+            synchronized (mapLock) {
+                tmp = mapped;
+                RandomAccessFile tmpRaf = raf;
+                if (tmp == null && tmpRaf != null) {
+                    try {
+                        mapped = tmp = tmpRaf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, tmpRaf.length());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+        return tmp;
+    }
+
+    /**
+     * Release the memory mapped view (e.g. before the file is written to)<br>
+     * - Must hold the write lock of {@link #mappedLock}, so no chunk is being read from the mapped view<br>
+     * - Readers map the file again once the write lock is released
+     */
+    private void unmap() {
+        synchronized (mapLock) {
+            MappedByteBuffer tmp = mapped;
+            if (tmp != null) {
+                mapped = null;
+                MainUtil.closeDirectBuffer(tmp);
+            }
+        }
+    }
+
+    /**
+     * Get the compressed data of a chunk as a slice of the memory mapped file, without copying or locking
+     *
+     * @param offset
+     * @return the slice, or null if the chunk doesn't exist or the file cannot be mapped
+     */
+    private ByteBuffer getChunkCompressedBuffer(int offset) {
+        if (offset == 0) {
+            return null;
+        }
+        MappedByteBuffer tmp = getMappedBuffer();
+        if (tmp == null || offset + 5 > tmp.capacity()) {
+            return null;
+        }
+        int size = tmp.getInt(offset);
+        int start = offset + 5;
+        int end = offset + 4 + size;
+        if (size <= 0 || end > tmp.capacity()) {
+            return null;
+        }
+        ByteBuffer slice = tmp.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        return slice;
+    }
+
+    /**
+     * Get an InputStream of the compressed chunk data, preferring the memory mapped view
+     *
+     * @param offset
+     * @return
+     * @throws IOException
+     */
+    private InputStream getChunkCompressedIS(int offset) throws IOException {
+        ByteBuffer buffer = getChunkCompressedBuffer(offset);
+        if (buffer != null) {
+            return new ByteBufferInputStream(buffer);
+        }
+        byte[] data = getChunkCompressedBytes(offset);
+        return data == null ? null : new FastByteArrayInputStream(data);
+    }
+
     public byte[] getChunkCompressedBytes(int offset) throws IOException {
         if (offset == 0) {
             return null;
@@ -321,8 +428,7 @@ public class MCAFile {
 
     private NBTInputStream getChunkIS(int offset) throws IOException {
         try {
-            byte[] data = getChunkCompressedBytes(offset);
-            FastByteArrayInputStream bais = new FastByteArrayInputStream(data);
+            InputStream bais = getChunkCompressedIS(offset);
             InflaterInputStream iis = new InflaterInputStream(bais, new Inflater(), 1);
             fieldBuf2.set(iis, byteStore2.get());
             BufferedInputStream bis = new BufferedInputStream(iis);
@@ -340,15 +446,23 @@ public class MCAFile {
     }
 
     public void streamChunk(int offset, RunnableVal<NBTStreamer> withStream) throws IOException {
-        byte[] data = getChunkCompressedBytes(offset);
-        streamChunk(data, withStream);
+        mappedLock.readLock().lock();
+        try {
+            streamChunk(getChunkCompressedIS(offset), withStream);
+        } finally {
+            mappedLock.readLock().unlock();
+        }
     }
 
     public void streamChunk(byte[] data, RunnableVal<NBTStreamer> withStream) throws IOException {
         if (data != null) {
+            streamChunk(new FastByteArrayInputStream(data), withStream);
+        }
+    }
+
+    private void streamChunk(InputStream bais, RunnableVal<NBTStreamer> withStream) throws IOException {
+        if (bais != null) {
             try {
-                FastByteArrayInputStream nbtIn = new FastByteArrayInputStream(data);
-                FastByteArrayInputStream bais = new FastByteArrayInputStream(data);
                 InflaterInputStream iis = new InflaterInputStream(bais, new Inflater(), 1);
                 fieldBuf2.set(iis, byteStore2.get());
                 BufferedInputStream bis = new BufferedInputStream(iis);
@@ -443,17 +557,107 @@ public class MCAFile {
 
     public void close(ForkJoinPool pool) {
         if (raf == null) return;
-        synchronized (raf) {
-            if (raf != null) {
-                flush(pool);
-                try {
-                    raf.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+        mappedLock.writeLock().lock();
+        try {
+            unmap();
+            synchronized (raf) {
+                if (raf != null) {
+                    flush(pool);
+                    try {
+                        raf.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    raf = null;
+                    locations = null;
                 }
-                raf = null;
-                locations = null;
             }
+        } finally {
+            mappedLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write the modified chunks without moving the other chunks<br/>
+     * - The free sectors are found from the header<br/>
+     * - A chunk is rewritten in place if it still fits, otherwise it's written to the first free run of sectors (or appended)<br/>
+     * - Only the header entries of the modified chunks are updated
+     *
+     * @param compressedMap the data of the modified chunks which already exist
+     * @param append        the data of the modified chunks which are new
+     * @throws IOException
+     */
+    private void flushAllocated(Int2ObjectOpenHashMap<byte[]> compressedMap, Int2ObjectOpenHashMap<byte[]> append) throws IOException {
+        final int fileSectors = (int) ((raf.length() + 4095) >> 12);
+        final BitSet used = new BitSet(fileSectors);
+        used.set(0, 2);
+        forEachChunk(new RunnableVal4<Integer, Integer, Integer, Integer>() {
+            @Override
+            public void run(Integer cx, Integer cz, Integer offset, Integer size) {
+                int sector = offset >> 12;
+                int sectors = size >> 12;
+                if (sector >= 2 && sector + sectors <= fileSectors) {
+                    used.set(sector, sector + sectors);
+                } else {
+                    Fawe.debug("Ignoring invalid offset " + sector);
+                }
+            }
+        });
+        for (MCAChunk chunk : getCachedChunks()) {
+            if (!chunk.isModified() && !chunk.isDeleted()) {
+                continue;
+            }
+            int cx = chunk.getX();
+            int cz = chunk.getZ();
+            int oldSector = getOffset(cx, cz) >> 12;
+            int oldSectors = getSize(cx, cz) >> 12;
+            if (oldSector >= 2 && oldSector + oldSectors <= fileSectors) {
+                used.clear(oldSector, oldSector + oldSectors);
+            } else {
+                oldSector = 0;
+            }
+            byte[] bytes = null;
+            if (!chunk.isDeleted()) {
+                int pair = MathMan.pair((short) (cx & 31), (short) (cz & 31));
+                bytes = compressedMap.get(pair);
+                if (bytes == null) {
+                    bytes = append.get(pair);
+                }
+                if (bytes == null) {
+                    // Failed to compress, keep the previous data
+                    if (oldSector != 0) {
+                        used.set(oldSector, oldSector + oldSectors);
+                    }
+                    continue;
+                }
+            }
+            if (bytes == null) {
+                writeHeader(raf, cx, cz, 0, 0, false);
+                continue;
+            }
+            int sectors = (bytes.length + 5 + 4095) >> 12;
+            int sector = oldSector != 0 && sectors <= oldSectors ? oldSector : getFreeSectors(used, sectors);
+            used.set(sector, sector + sectors);
+            writeSafe(raf, sector << 12, bytes);
+            writeHeader(raf, cx, cz, sector, sectors, true);
+        }
+        // Drop any free sectors at the end of the file
+        raf.setLength((long) used.length() << 12);
+    }
+
+    /**
+     * @param used     the used sectors
+     * @param sectors  the number of sectors needed
+     * @return the first sector of the first free run which is large enough
+     */
+    private int getFreeSectors(BitSet used, int sectors) {
+        int sector = used.nextClearBit(2);
+        while (true) {
+            int next = used.nextSetBit(sector);
+            if (next == -1 || next - sector >= sectors) {
+                return sector;
+            }
+            sector = used.nextClearBit(next);
         }
     }
 
@@ -473,207 +677,229 @@ public class MCAFile {
     }
 
     /**
-     * Write the chunk to the file
+     * Write the chunk to the file<br/>
+     * - Holds the write lock of {@link #mappedLock}, so chunks aren't read (or the file mapped) while it's rewritten
      * @param pool
      */
     public void flush(ForkJoinPool pool) {
-        synchronized (raf) {
-            // If the file is marked as deleted, nothing is written
-            if (isDeleted()) {
-                clear();
-                file.delete();
-                return;
-            }
+        mappedLock.writeLock().lock();
+        try {
+            unmap();
+            synchronized (raf) {
+                // If the file is marked as deleted, nothing is written
+                if (isDeleted()) {
+                    clear();
+                    file.delete();
+                    return;
+                }
 
-            boolean wait; // If the flush method needs to wait for the pool
-            if (pool == null) {
-                wait = true;
-                pool = new ForkJoinPool();
-            } else wait = false;
-
-            // Chunks that need to be relocated
-            Int2ObjectOpenHashMap<byte[]> relocate = new Int2ObjectOpenHashMap<>();
-            // The position of each chunk
-            final Int2ObjectOpenHashMap<Integer> offsetMap = new Int2ObjectOpenHashMap<>(); // Offset -> <byte cx, byte cz, short size>
-            // The data of each modified chunk
-            final Int2ObjectOpenHashMap<byte[]> compressedMap = new Int2ObjectOpenHashMap<>();
-            // The data of each chunk that needs to be moved
-            final Int2ObjectOpenHashMap<byte[]> append = new Int2ObjectOpenHashMap<>();
-            boolean modified = false;
-            // Get the current time for the chunk timestamp
-            long now = System.currentTimeMillis();
-
-            // Load the chunks into the append or compressed map
-            for (MCAChunk chunk : getCachedChunks()) {
-                if (chunk.isModified() || chunk.isDeleted()) {
-                    modified = true;
-                    chunk.setLastUpdate(now);
-                    if (!chunk.isDeleted()) {
-                        pool.submit(new Runnable() {
-                            @Override
-                            public void run() {
-                                try {
-                                    byte[] compressed = toBytes(chunk);
-                                    int pair = MathMan.pair((short) (chunk.getX() & 31), (short) (chunk.getZ() & 31));
-                                    Int2ObjectOpenHashMap map;
-                                    if (getOffset(chunk.getX(), chunk.getZ()) == 0) {
-                                        map = append;
-                                    } else {
-                                        map = compressedMap;
-                                    }
-                                    synchronized (map) {
-                                        map.put(pair, compressed);
+                boolean wait; // If the flush method needs to wait for the pool
+                if (pool == null) {
+                    wait = true;
+                    pool = new ForkJoinPool();
+                } else wait = false;
+
+                // Chunks that need to be relocated
+                Int2ObjectOpenHashMap<byte[]> relocate = new Int2ObjectOpenHashMap<>();
+                // The position of each chunk
+                final Int2ObjectOpenHashMap<Integer> offsetMap = new Int2ObjectOpenHashMap<>(); // Offset -> <byte cx, byte cz, short size>
+                // The data of each modified chunk
+                final Int2ObjectOpenHashMap<byte[]> compressedMap = new Int2ObjectOpenHashMap<>();
+                // The data of each chunk that needs to be moved
+                final Int2ObjectOpenHashMap<byte[]> append = new Int2ObjectOpenHashMap<>();
+                boolean modified = false;
+                // Get the current time for the chunk timestamp
+                long now = System.currentTimeMillis();
+
+                // Load the chunks into the append or compressed map
+                for (MCAChunk chunk : getCachedChunks()) {
+                    if (chunk.isModified() || chunk.isDeleted()) {
+                        modified = true;
+                        chunk.setLastUpdate(now);
+                        if (!chunk.isDeleted()) {
+                            pool.submit(new Runnable() {
+                                @Override
+                                public void run() {
+                                    try {
+                                        byte[] compressed = toBytes(chunk);
+                                        int pair = MathMan.pair((short) (chunk.getX() & 31), (short) (chunk.getZ() & 31));
+                                        Int2ObjectOpenHashMap map;
+                                        if (getOffset(chunk.getX(), chunk.getZ()) == 0) {
+                                            map = append;
+                                        } else {
+                                            map = compressedMap;
+                                        }
+                                        synchronized (map) {
+                                            map.put(pair, compressed);
+                                        }
+                                    } catch (Throwable e) {
+                                        e.printStackTrace();
                                     }
-                                } catch (Throwable e) {
-                                    e.printStackTrace();
                                 }
-                            }
-                        });
+                            });
+                        }
                     }
                 }
-            }
 
-            // If any changes were detected
-            if (modified) {
-                file.setLastModified(now);
-
-                // Load the offset data into the offset map
-                forEachChunk(new RunnableVal4<Integer, Integer, Integer, Integer>() {
-                    @Override
-                    public void run(Integer cx, Integer cz, Integer offset, Integer size) {
-                        short pair1 = MathMan.pairByte((byte) (cx & 31), (byte) (cz & 31));
-                        short pair2 = (short) (size >> 12);
-                        offsetMap.put((int) offset, (Integer) MathMan.pair(pair1, pair2));
+                if (modified && Settings.IMP.EXPERIMENTAL.ANVIL_SECTOR_ALLOCATION) {
+                    file.setLastModified(now);
+                    pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                    try {
+                        flushAllocated(compressedMap, append);
+                        if (raf instanceof BufferedRandomAccessFile) {
+                            ((BufferedRandomAccessFile) raf).flush();
+                        }
+                        raf.close();
+                    } catch (Throwable e) {
+                        e.printStackTrace();
                     }
-                });
-                // Wait for previous tasks
-                pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                    if (wait) {
+                        pool.shutdown();
+                        pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                    }
+                } else if (modified) { // If any changes were detected
+                    file.setLastModified(now);
+
+                    // Load the offset data into the offset map
+                    forEachChunk(new RunnableVal4<Integer, Integer, Integer, Integer>() {
+                        @Override
+                        public void run(Integer cx, Integer cz, Integer offset, Integer size) {
+                            short pair1 = MathMan.pairByte((byte) (cx & 31), (byte) (cz & 31));
+                            short pair2 = (short) (size >> 12);
+                            offsetMap.put((int) offset, (Integer) MathMan.pair(pair1, pair2));
+                        }
+                    });
+                    // Wait for previous tasks
+                    pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
 
 
-                int start = 8192;
-                int written = start;
-                int end = 8192;
-                int nextOffset = 8192;
-                try {
-                    for (int count = 0; count < offsetMap.size(); count++) {
-                        // Get the previous position of the next chunk
-                        Integer loc = offsetMap.get(nextOffset);
-                        while (loc == null) {
-                            nextOffset += 4096;
-                            loc = offsetMap.get(nextOffset);
-                        }
-                        int offset = nextOffset;
-
-                        // Get the x/z from the paired location
-                        short cxz = MathMan.unpairX(loc);
-                        int cx = MathMan.unpairShortX(cxz);
-                        int cz = MathMan.unpairShortY(cxz);
-
-                        // Get the size from the pair
-                        int size = MathMan.unpairY(loc) << 12;
-
-                        nextOffset += size;
-                        end = Math.min(start + size, end);
-                        int pair = MathMan.pair((short) (cx & 31), (short) (cz & 31));
-                        byte[] newBytes = relocate.get(pair);
-
-                        // newBytes is null if the chunk isn't modified or marked for moving
-                        if (newBytes == null) {
-                            MCAChunk cached = getCachedChunk(cx, cz);
-                            // If the previous offset marks the current write position (start) then we only write the header
-                            if (offset == start) {
-                                if (cached == null || !cached.isModified()) {
-                                    writeHeader(raf, cx, cz, start >> 12, size >> 12, true);
-                                    start += size;
-                                    written = start + size;
-                                    continue;
+                    int start = 8192;
+                    int written = start;
+                    int end = 8192;
+                    int nextOffset = 8192;
+                    try {
+                        for (int count = 0; count < offsetMap.size(); count++) {
+                            // Get the previous position of the next chunk
+                            Integer loc = offsetMap.get(nextOffset);
+                            while (loc == null) {
+                                nextOffset += 4096;
+                                loc = offsetMap.get(nextOffset);
+                            }
+                            int offset = nextOffset;
+
+                            // Get the x/z from the paired location
+                            short cxz = MathMan.unpairX(loc);
+                            int cx = MathMan.unpairShortX(cxz);
+                            int cz = MathMan.unpairShortY(cxz);
+
+                            // Get the size from the pair
+                            int size = MathMan.unpairY(loc) << 12;
+
+                            nextOffset += size;
+                            end = Math.min(start + size, end);
+                            int pair = MathMan.pair((short) (cx & 31), (short) (cz & 31));
+                            byte[] newBytes = relocate.get(pair);
+
+                            // newBytes is null if the chunk isn't modified or marked for moving
+                            if (newBytes == null) {
+                                MCAChunk cached = getCachedChunk(cx, cz);
+                                // If the previous offset marks the current write position (start) then we only write the header
+                                if (offset == start) {
+                                    if (cached == null || !cached.isModified()) {
+                                        writeHeader(raf, cx, cz, start >> 12, size >> 12, true);
+                                        start += size;
+                                        written = start + size;
+                                        continue;
+                                    } else {
+                                        newBytes = compressedMap.get(pair);
+                                    }
                                 } else {
+                                    // The chunk needs to be moved, fetch the data if necessary
                                     newBytes = compressedMap.get(pair);
-                                }
-                            } else {
-                                // The chunk needs to be moved, fetch the data if necessary
-                                newBytes = compressedMap.get(pair);
-                                if (newBytes == null) {
-                                    if (cached == null || !cached.isDeleted()) {
-                                        newBytes = getChunkCompressedBytes(getOffset(cx, cz));
+                                    if (newBytes == null) {
+                                        if (cached == null || !cached.isDeleted()) {
+                                            newBytes = getChunkCompressedBytes(getOffset(cx, cz));
+                                        }
                                     }
                                 }
                             }
-                        }
-
-                        if (newBytes == null) {
-                            writeHeader(raf, cx, cz, 0, 0, false);
-                            continue;
-                        }
 
-                        // The length to be written (compressed data + 5 byte chunk header)
-                        int len = newBytes.length + 5;
-                        int oldSize = (size + 4095) >> 12;
-                        int newSize = (len + 4095) >> 12;
-                        int nextOffset2 = end;
-
-                        // If the current write position (start) + length of data to write (len) are longer than the position of the next chunk, we need to move the next chunks
-                        while (start + len > end) {
-                            Integer nextLoc = offsetMap.get(nextOffset2);
-                            if (nextLoc != null) {
-                                short nextCXZ = MathMan.unpairX(nextLoc);
-                                int nextCX = MathMan.unpairShortX(nextCXZ);
-                                int nextCZ = MathMan.unpairShortY(nextCXZ);
-                                MCAChunk cached = getCachedChunk(nextCX, nextCZ);
-                                if (cached == null || !cached.isModified()) {
-                                    byte[] nextBytes = getChunkCompressedBytes(nextOffset2);
-                                    relocate.put(MathMan.pair((short) (nextCX & 31), (short) (nextCZ & 31)), nextBytes);
-                                }
-                                int nextSize = MathMan.unpairY(nextLoc) << 12;
-                                end += nextSize;
-                                nextOffset2 += nextSize;
-                            } else {
-                                end += 4096;
-                                nextOffset2 += 4096;
+                            if (newBytes == null) {
+                                writeHeader(raf, cx, cz, 0, 0, false);
+                                continue;
                             }
-                        }
-                        // Write the chunk + chunk header
-                        writeSafe(raf, start, newBytes);
-                        // Write the location data (beginning of file)
-                        writeHeader(raf, cx, cz, start >> 12, newSize, true);
-
-                        written = start + newBytes.length + 5;
-                        start += newSize << 12;
-                    }
 
-                    // Write all the chunks which need to be appended
-                    if (!append.isEmpty()) {
-                        for (Int2ObjectMap.Entry<byte[]> entry : append.int2ObjectEntrySet()) {
-                            int pair = entry.getIntKey();
-                            short cx = MathMan.unpairX(pair);
-                            short cz = MathMan.unpairY(pair);
-                            byte[] bytes = entry.getValue();
-                            int len = bytes.length + 5;
+                            // The length to be written (compressed data + 5 byte chunk header)
+                            int len = newBytes.length + 5;
+                            int oldSize = (size + 4095) >> 12;
                             int newSize = (len + 4095) >> 12;
-                            writeSafe(raf, start, bytes);
+                            int nextOffset2 = end;
+
+                            // If the current write position (start) + length of data to write (len) are longer than the position of the next chunk, we need to move the next chunks
+                            while (start + len > end) {
+                                Integer nextLoc = offsetMap.get(nextOffset2);
+                                if (nextLoc != null) {
+                                    short nextCXZ = MathMan.unpairX(nextLoc);
+                                    int nextCX = MathMan.unpairShortX(nextCXZ);
+                                    int nextCZ = MathMan.unpairShortY(nextCXZ);
+                                    MCAChunk cached = getCachedChunk(nextCX, nextCZ);
+                                    if (cached == null || !cached.isModified()) {
+                                        byte[] nextBytes = getChunkCompressedBytes(nextOffset2);
+                                        relocate.put(MathMan.pair((short) (nextCX & 31), (short) (nextCZ & 31)), nextBytes);
+                                    }
+                                    int nextSize = MathMan.unpairY(nextLoc) << 12;
+                                    end += nextSize;
+                                    nextOffset2 += nextSize;
+                                } else {
+                                    end += 4096;
+                                    nextOffset2 += 4096;
+                                }
+                            }
+                            // Write the chunk + chunk header
+                            writeSafe(raf, start, newBytes);
+                            // Write the location data (beginning of file)
                             writeHeader(raf, cx, cz, start >> 12, newSize, true);
-                            written = start + bytes.length + 5;
+
+                            written = start + newBytes.length + 5;
                             start += newSize << 12;
                         }
+
+                        // Write all the chunks which need to be appended
+                        if (!append.isEmpty()) {
+                            for (Int2ObjectMap.Entry<byte[]> entry : append.int2ObjectEntrySet()) {
+                                int pair = entry.getIntKey();
+                                short cx = MathMan.unpairX(pair);
+                                short cz = MathMan.unpairY(pair);
+                                byte[] bytes = entry.getValue();
+                                int len = bytes.length + 5;
+                                int newSize = (len + 4095) >> 12;
+                                writeSafe(raf, start, bytes);
+                                writeHeader(raf, cx, cz, start >> 12, newSize, true);
+                                written = start + bytes.length + 5;
+                                start += newSize << 12;
+                            }
+                        }
+                        // Round the file length, since the vanilla server doesn't like it for some reason
+                        raf.setLength(4096 * ((written + 4095) / 4096));
+                        if (raf instanceof BufferedRandomAccessFile) {
+                            ((BufferedRandomAccessFile) raf).flush();
+                        }
+                        raf.close();
+                    } catch (Throwable e) {
+                        e.printStackTrace();
                     }
-                    // Round the file length, since the vanilla server doesn't like it for some reason
-                    raf.setLength(4096 * ((written + 4095) / 4096));
-                    if (raf instanceof BufferedRandomAccessFile) {
-                        ((BufferedRandomAccessFile) raf).flush();
+                    if (wait) {
+                        pool.shutdown();
+                        pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
                     }
-                    raf.close();
-                } catch (Throwable e) {
-                    e.printStackTrace();
-                }
-                if (wait) {
-                    pool.shutdown();
-                    pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
                 }
+                chunks.clear();
             }
-            chunks.clear();
+            IterableThreadLocal.clean(byteStore1);
+            IterableThreadLocal.clean(byteStore2);
+            IterableThreadLocal.clean(byteStore3);
+        } finally {
+            mappedLock.writeLock().unlock();
         }
-        IterableThreadLocal.clean(byteStore1);
-        IterableThreadLocal.clean(byteStore2);
-        IterableThreadLocal.clean(byteStore3);
     }
 }
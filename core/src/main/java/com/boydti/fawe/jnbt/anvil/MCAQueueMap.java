@@ -26,6 +26,8 @@ public class MCAQueueMap implements IFaweQueueMap {
     private Map<Long, MCAFile> mcaFileMap = new ConcurrentHashMap<>(8, 0.9f, 1);
     private NullFaweChunk nullChunk;
     private boolean isHybridQueue;
+    // Held while dispatching (see runLocked)
+    private final Object dispatchLock = new Object();
 
     public void setParentQueue(FaweQueue queue) {
         this.queue = queue;
@@ -187,8 +189,21 @@ public class MCAQueueMap implements IFaweQueueMap {
         return size;
     }
 
+    @Override
+    public void runLocked(Runnable task) {
+        synchronized (dispatchLock) {
+            task.run();
+        }
+    }
+
     @Override
     public boolean next(int size, long time) {
+        synchronized (dispatchLock) {
+            return nextLocked(size, time);
+        }
+    }
+
+    private boolean nextLocked(int size, long time) {
         lastX = Integer.MIN_VALUE;
         lastZ = Integer.MIN_VALUE;
         lastFileX = Integer.MIN_VALUE;
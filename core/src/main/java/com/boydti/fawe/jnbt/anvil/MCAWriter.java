@@ -1,12 +1,17 @@
 package com.boydti.fawe.jnbt.anvil;
 
+import com.boydti.fawe.object.RunnableVal3;
 import com.boydti.fawe.object.collection.IterableThreadLocal;
 import com.boydti.fawe.object.io.BufferedRandomAccessFile;
 import com.boydti.fawe.util.MainUtil;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.Deflater;
 
 public abstract class MCAWriter {
@@ -15,6 +20,9 @@ public abstract class MCAWriter {
     private final int width;
     private final int area;
     private int OX, OZ;
+    private RunnableVal3<Long, Long, Double> progressTask;
+
+    public static final long PROGRESS_INTERVAL = 5000;
 
 
     public MCAWriter(int width, int length, File regionFolder) {
@@ -69,13 +77,37 @@ public abstract class MCAWriter {
 
     public abstract MCAChunk write(MCAChunk input, int startX, int endX, int startZ, int endZ);
 
+    /**
+     * Set a task to report the progress of {@link #generate()}<br/>
+     * - Called at most every {@link #PROGRESS_INTERVAL} ms, and when done<br/>
+     * - The values are the chunks written, the total chunks and the chunks per second
+     *
+     * @param progressTask
+     */
+    public void setProgressTask(RunnableVal3<Long, Long, Double> progressTask) {
+        this.progressTask = progressTask;
+    }
+
+    public RunnableVal3<Long, Long, Double> getProgressTask() {
+        return progressTask;
+    }
+
+    /**
+     * Generate and write all the region files<br/>
+     * - Chunks are generated and compressed in parallel<br/>
+     * - Each region file is written by a separate thread once its chunks are done, while later regions are generated<br/>
+     * - Limits the regions in progress to bound the memory used
+     *
+     * @throws IOException
+     */
     public void generate() throws IOException {
         if (!folder.exists()) {
             folder.mkdirs();
         }
         final ForkJoinPool pool = new ForkJoinPool();
-        int bcx = 0;
-        int bcz = 0;
+        final ExecutorService writer = Executors.newSingleThreadExecutor();
+        final int maxRegions = Math.max(2, pool.getParallelism());
+        final Semaphore regionPermits = new Semaphore(maxRegions);
         int tcx = (width - 1) >> 4;
         int tcz = (length - 1) >> 4;
         final ThreadLocal<MCAChunk> chunkStore = new ThreadLocal<MCAChunk>() {
@@ -105,117 +137,148 @@ public abstract class MCAWriter {
                 return deflater;
             }
         };
-        byte[] fileBuf = new byte[1 << 16];
+        // Only used by the writer thread
+        final byte[] fileBuf = new byte[1 << 16];
         int mcaXMin = 0;
         int mcaZMin = 0;
         int mcaXMax = mcaXMin + ((width - 1) >> 9);
         int mcaZMax = mcaZMin + ((length - 1) >> 9);
 
-        for (int mcaZ = mcaXMin; mcaZ <= mcaZMax; mcaZ++) {
-            for (int mcaX = mcaXMin; mcaX <= mcaXMax; mcaX++) {
-                final int fmcaX = mcaX;
-                final int fmcaZ = mcaZ;
-                File file = new File(folder, "r." + (mcaX + (getOffsetX() >> 9)) + "." + (mcaZ + (getOffsetZ() >> 9)) + ".mca");
-                if (!file.exists()) {
-                    file.createNewFile();
-                }
-                final BufferedRandomAccessFile raf = new BufferedRandomAccessFile(file, "rw", fileBuf);
-                final byte[] header = new byte[4096];
-                final byte[][] compressed = new byte[1024][];
-                int bx = mcaX << 9;
-                int bz = mcaZ << 9;
-                int scx = bx >> 4;
-                int ecx = Math.min(scx + 31, tcx);
-                int scz = bz >> 4;
-                int ecz = Math.min(scz + 31, tcz);
-                for (int cz = scz; cz <= ecz; cz++) {
-                    final int csz = cz << 4;
-                    final int cez = Math.min(csz + 15, length - 1);
-                    for (int cx = scx; cx <= ecx; cx++) {
-                        final int csx = cx << 4;
-                        final int cex = Math.min(csx + 15, width - 1);
-                        final int fcx = cx;
-                        final int fcz = cz;
-                        if (shouldWrite(cx, cz)) {
-                            pool.submit(new Runnable() {
-                                @Override
-                                public void run() {
-                                    try {
-                                        MCAChunk chunk = chunkStore.get();
-                                        chunk.setLoc(null, fcx, fcz);
-                                        chunk = write(chunk, csx, cex, csz, cez);
-                                        if (chunk != null) {
-                                            // Generation offset
-                                            chunk.setLoc(null, fcx + (getOffsetX() >> 4), fcz + (getOffsetZ() >> 4));
-                                            // Compress
-                                            byte[] bytes = chunk.toBytes(byteStore1.get());
-                                            byte[] compressedBytes = MainUtil.compress(bytes, byteStore2.get(), deflateStore.get());
-                                            int blocks = (compressed.length + 4095) >> 12;
-                                            compressed[((fcx & 31)) + ((fcz & 31) << 5)] = compressedBytes.clone();
-                                        }
-                                    } catch (Throwable e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-                            });
-                        }
-                    }
-                }
-                pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-                pool.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            int totalLength = 8192;
-                            for (int i = 0; i < compressed.length; i++) {
-                                byte[] compressedBytes = compressed[i];
-                                if (compressedBytes != null) {
-                                    int blocks = ((4095 + compressedBytes.length + 5) / 4096) * 4096;
-                                    totalLength += blocks;
-                                }
+        final long totalChunks = (long) (tcx + 1) * (tcz + 1);
+        final AtomicLong chunksDone = new AtomicLong();
+        final long start = System.currentTimeMillis();
+        final long[] lastProgress = {start};
+
+        try {
+            for (int mcaZ = mcaZMin; mcaZ <= mcaZMax; mcaZ++) {
+                for (int mcaX = mcaXMin; mcaX <= mcaXMax; mcaX++) {
+                    final File file = new File(folder, "r." + (mcaX + (getOffsetX() >> 9)) + "." + (mcaZ + (getOffsetZ() >> 9)) + ".mca");
+                    final byte[][] compressed = new byte[1024][];
+                    int bx = mcaX << 9;
+                    int bz = mcaZ << 9;
+                    final int scx = bx >> 4;
+                    final int ecx = Math.min(scx + 31, tcx);
+                    final int scz = bz >> 4;
+                    final int ecz = Math.min(scz + 31, tcz);
+                    final int regionChunks = (ecx - scx + 1) * (ecz - scz + 1);
+                    // Written once the last chunk of the region is done
+                    final Runnable writeTask = new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                writeRegion(file, compressed, fileBuf);
+                            } catch (Throwable e) {
+                                e.printStackTrace();
+                            } finally {
+                                regionPermits.release();
                             }
-                            raf.setLength(totalLength);
-                            int offset = 8192;
-                            for (int i = 0; i < compressed.length; i++) {
-                                byte[] compressedBytes = compressed[i];
-                                if (compressedBytes != null) {
-                                    // Set header
-                                    int index = i << 2;
-                                    int offsetMedium = offset >> 12;
-                                    int blocks = ((4095 + compressedBytes.length + 5) / 4096);
-                                    header[index] = (byte) (offsetMedium >> 16);
-                                    header[index + 1] = (byte) ((offsetMedium >> 8));
-                                    header[index + 2] = (byte) ((offsetMedium >> 0));
-                                    header[index + 3] = (byte) (blocks);
-                                    // Write bytes
-                                    int cx = (fmcaX << 5) + (i & 31);
-                                    int cz = (fmcaZ << 5) + (i >> 5);
-                                    raf.seek(offset);
-                                    raf.writeInt(compressedBytes.length + 1);
-                                    raf.write(2);
-                                    raf.write(compressedBytes);
-                                    offset += blocks * 4096;
+                            long done = chunksDone.addAndGet(regionChunks);
+                            long now = System.currentTimeMillis();
+                            if (progressTask != null && (now - lastProgress[0] >= PROGRESS_INTERVAL || done == totalChunks)) {
+                                lastProgress[0] = now;
+                                double perSecond = done * 1000d / Math.max(1, now - start);
+                                try {
+                                    progressTask.run(done, totalChunks, perSecond);
+                                } catch (Throwable e) {
+                                    e.printStackTrace();
                                 }
                             }
-                            raf.seek(0);
-                            raf.write(header);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        } finally {
-                            try {
-                                raf.close();
-                            } catch (IOException e) {
-                                e.printStackTrace();
+                        }
+                    };
+                    regionPermits.acquire();
+                    final AtomicInteger remaining = new AtomicInteger(1);
+                    for (int cz = scz; cz <= ecz; cz++) {
+                        final int csz = cz << 4;
+                        final int cez = Math.min(csz + 15, length - 1);
+                        for (int cx = scx; cx <= ecx; cx++) {
+                            final int csx = cx << 4;
+                            final int cex = Math.min(csx + 15, width - 1);
+                            final int fcx = cx;
+                            final int fcz = cz;
+                            if (shouldWrite(cx, cz)) {
+                                remaining.incrementAndGet();
+                                pool.submit(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        try {
+                                            MCAChunk chunk = chunkStore.get();
+                                            chunk.setLoc(null, fcx, fcz);
+                                            chunk = write(chunk, csx, cex, csz, cez);
+                                            if (chunk != null) {
+                                                // Generation offset
+                                                chunk.setLoc(null, fcx + (getOffsetX() >> 4), fcz + (getOffsetZ() >> 4));
+                                                // Compress
+                                                byte[] bytes = chunk.toBytes(byteStore1.get());
+                                                byte[] compressedBytes = MainUtil.compress(bytes, byteStore2.get(), deflateStore.get());
+                                                compressed[((fcx & 31)) + ((fcz & 31) << 5)] = compressedBytes.clone();
+                                            }
+                                        } catch (Throwable e) {
+                                            e.printStackTrace();
+                                        } finally {
+                                            if (remaining.decrementAndGet() == 0) {
+                                                writer.submit(writeTask);
+                                            }
+                                        }
+                                    }
+                                });
                             }
                         }
                     }
-                });
+                    if (remaining.decrementAndGet() == 0) {
+                        writer.submit(writeTask);
+                    }
+                }
+            }
+            // Wait for every region to be written
+            regionPermits.acquire(maxRegions);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } finally {
+            pool.shutdown();
+            writer.shutdown();
+            IterableThreadLocal.clean(byteStore1);
+            IterableThreadLocal.clean(byteStore2);
+            IterableThreadLocal.clean(deflateStore);
+        }
+    }
+
+    private void writeRegion(File file, byte[][] compressed, byte[] fileBuf) throws IOException {
+        if (!file.exists()) {
+            file.createNewFile();
+        }
+        final byte[] header = new byte[4096];
+        try (BufferedRandomAccessFile raf = new BufferedRandomAccessFile(file, "rw", fileBuf)) {
+            int totalLength = 8192;
+            for (int i = 0; i < compressed.length; i++) {
+                byte[] compressedBytes = compressed[i];
+                if (compressedBytes != null) {
+                    int blocks = ((4095 + compressedBytes.length + 5) / 4096) * 4096;
+                    totalLength += blocks;
+                }
+            }
+            raf.setLength(totalLength);
+            int offset = 8192;
+            for (int i = 0; i < compressed.length; i++) {
+                byte[] compressedBytes = compressed[i];
+                if (compressedBytes != null) {
+                    // Set header
+                    int index = i << 2;
+                    int offsetMedium = offset >> 12;
+                    int blocks = ((4095 + compressedBytes.length + 5) / 4096);
+                    header[index] = (byte) (offsetMedium >> 16);
+                    header[index + 1] = (byte) ((offsetMedium >> 8));
+                    header[index + 2] = (byte) ((offsetMedium >> 0));
+                    header[index + 3] = (byte) (blocks);
+                    // Write bytes
+                    raf.seek(offset);
+                    raf.writeInt(compressedBytes.length + 1);
+                    raf.write(2);
+                    raf.write(compressedBytes);
+                    offset += blocks * 4096;
+                }
             }
+            raf.seek(0);
+            raf.write(header);
         }
-        pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-        pool.shutdown();
-        IterableThreadLocal.clean(byteStore1);
-        IterableThreadLocal.clean(byteStore2);
-        IterableThreadLocal.clean(deflateStore);
     }
 }
@@ -8,7 +8,7 @@ import com.boydti.fawe.jnbt.anvil.MutableMCABackedBaseBlock;
 import com.boydti.fawe.object.clipboard.remap.ClipboardRemapper;
 import com.boydti.fawe.object.collection.BlockVectorSet;
 import com.boydti.fawe.object.number.MutableLong;
-import com.boydti.fawe.util.ReflectionUtils;
+import com.boydti.fawe.util.MathMan;
 import com.sk89q.jnbt.ByteTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
@@ -29,6 +29,16 @@ public class RemapFilter extends MCAFilterCounter {
     private BlockVectorSet pLocs = new BlockVectorSet();
     private int dimension;
 
+    // The (remapped) ids which need more than a remap when converting from PC
+    private static final boolean[] PC_EXTRA = new boolean[256];
+
+    static {
+        int[] ids = {90, 29, 33, 44, 182, 158, 53, 67, 108, 109, 114, 128, 134, 135, 136, 156, 163, 164, 180, 203, 198};
+        for (int id : ids) {
+            PC_EXTRA[id] = true;
+        }
+    }
+
     public RemapFilter(ClipboardRemapper remapper) {
         this.remapper = remapper;
         this.from = null;
@@ -46,10 +56,61 @@ public class RemapFilter extends MCAFilterCounter {
         return super.applyFile(mca);
     }
 
+    /**
+     * Remap the chunk in bulk, through the remapper's table<br/>
+     * - The chunk is only returned (for the per block conversion) if it has blocks which need more than a remap
+     */
     @Override
     public MCAChunk applyChunk(MCAChunk chunk, MutableLong cache) {
         if (skipRemap) return null;
-        return super.applyChunk(chunk, cache);
+        char[] table = remapper.getTable();
+        for (Map.Entry<Short, CompoundTag> entry : chunk.tiles.entrySet()) {
+            int pair = entry.getKey();
+            int y = MathMan.untripleBlockCoordY(pair);
+            int layer = y >> 4;
+            if (!chunk.doesSectionExist(layer)) {
+                continue;
+            }
+            int index = ((y & 15) << 8) | (MathMan.untripleBlockCoordZ(pair) << 4) | MathMan.untripleBlockCoordX(pair);
+            int combined = ((chunk.ids[layer][index] & 0xFF) << 4) + chunk.getNibble(index, chunk.data[layer]);
+            int newCombined = table[combined];
+            if (newCombined != combined) {
+                remapper.remapTile(combined, newCombined, entry.getValue());
+            }
+        }
+        boolean[] extra = from == ClipboardRemapper.RemapPlatform.PC ? PC_EXTRA : null;
+        boolean hasExtra = false;
+        int changed = 0;
+        for (int layer = 0; layer < 16; layer++) {
+            if (!chunk.doesSectionExist(layer)) {
+                continue;
+            }
+            byte[] ids = chunk.ids[layer];
+            byte[] data = chunk.data[layer];
+            // Two blocks share each data byte
+            for (int i = 0, j = 0; j < data.length; i += 2, j++) {
+                int nibbles = data[j];
+                int from1 = ((ids[i] & 0xFF) << 4) + (nibbles & 15);
+                int from2 = ((ids[i + 1] & 0xFF) << 4) + ((nibbles >> 4) & 15);
+                int to1 = table[from1];
+                int to2 = table[from2];
+                if (to1 != from1 || to2 != from2) {
+                    if (to1 != from1) changed++;
+                    if (to2 != from2) changed++;
+                    ids[i] = (byte) (to1 >> 4);
+                    ids[i + 1] = (byte) (to2 >> 4);
+                    data[j] = (byte) ((to1 & 15) | ((to2 & 15) << 4));
+                }
+                if (extra != null && !hasExtra) {
+                    hasExtra = extra[ids[i] & 0xFF] || extra[ids[i + 1] & 0xFF];
+                }
+            }
+        }
+        if (changed != 0) {
+            chunk.setModified();
+            cache.add(changed);
+        }
+        return hasExtra ? chunk : null;
     }
 
     public List<CompoundTag> getPortals() {
@@ -62,22 +123,8 @@ public class RemapFilter extends MCAFilterCounter {
 
     @Override
     public void applyBlock(int x, int y, int z, BaseBlock block, MutableLong cache) {
+        // The block has already been remapped by applyChunk
         int id = block.getId();
-        if (remapper.hasRemap(id)) {
-            BaseBlock result = remapper.remap(block);
-            if (result != block) {
-                cache.add(1);
-                block.setId(id = result.getId());
-                if (id == 218) {
-                    CompoundTag nbt = block.getNbtData();
-                    if (nbt != null) {
-                        Map<String, Tag> map = ReflectionUtils.getMap(nbt.getValue());
-                        map.putIfAbsent("facing", new ByteTag((byte) block.getData()));
-                    }
-                }
-                block.setData(result.getData());
-            }
-        }
         if (from != null) {
             outer:
             switch (from) {
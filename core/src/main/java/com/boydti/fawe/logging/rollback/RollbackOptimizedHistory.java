@@ -114,6 +114,21 @@ public class RollbackOptimizedHistory extends DiskStorageHistory {
         }
     }
 
+    @Override
+    public void addSection(int cx, int layer, int cz, char[] previous, int combinedTo) {
+        super.addSection(cx, layer, cz, previous, combinedTo);
+        // A section snapshot doesn't go through add
+        int x = cx << 4;
+        int y = layer << 4;
+        int z = cz << 4;
+        minX = Math.min(minX, x);
+        maxX = Math.max(maxX, x + 15);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y + 15);
+        minZ = Math.min(minZ, z);
+        maxZ = Math.max(maxZ, z + 15);
+    }
+
     @Override
     public void writeHeader(OutputStream os, int x, int y, int z) throws IOException {
         minX = x;
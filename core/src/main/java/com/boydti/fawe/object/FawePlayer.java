@@ -6,6 +6,7 @@ import com.boydti.fawe.command.CFICommands;
 import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.brush.visualization.VirtualWorld;
+import com.boydti.fawe.object.clipboard.CompressedDiskClipboard;
 import com.boydti.fawe.object.clipboard.DiskOptimizedClipboard;
 import com.boydti.fawe.object.exception.FaweException;
 import com.boydti.fawe.object.task.SimpleAsyncNotifyQueue;
@@ -370,7 +371,6 @@ public abstract class FawePlayer<T> extends Metadatable {
         File file = MainUtil.getFile(Fawe.imp().getDirectory(), Settings.IMP.PATHS.CLIPBOARD + File.separator + getUUID() + ".bd");
         try {
             if (file.exists() && file.length() > 5) {
-                DiskOptimizedClipboard doc = new DiskOptimizedClipboard(file);
                 Player player = toWorldEditPlayer();
                 LocalSession session = getSession();
                 try {
@@ -381,7 +381,12 @@ public abstract class FawePlayer<T> extends Metadatable {
                 }
                 if (player != null && session != null) {
                     WorldData worldData = player.getWorld().getWorldData();
-                    Clipboard clip = doc.toClipboard();
+                    Clipboard clip;
+                    if (CompressedDiskClipboard.isFormat(file)) {
+                        clip = new CompressedDiskClipboard(file).toClipboard();
+                    } else {
+                        clip = new DiskOptimizedClipboard(file).toClipboard();
+                    }
                     ClipboardHolder holder = new ClipboardHolder(clip, worldData);
                     getSession().setClipboard(holder);
                 }
@@ -3,6 +3,7 @@ package com.boydti.fawe.object;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.object.changeset.FaweChangeSet;
 import com.boydti.fawe.object.exception.FaweException;
+import com.boydti.fawe.util.MainUtil;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.*;
 import com.sk89q.worldedit.blocks.BaseBlock;
@@ -11,6 +12,7 @@ import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.world.biome.BaseBiome;
@@ -90,6 +92,63 @@ public class HistoryExtent extends AbstractDelegateExtent {
         return getExtent().setBlock(x, y, z, block);
     }
 
+    /**
+     * Set a cuboid to a single block (without NBT) directly on the queue<br/>
+     * - The history is recorded for each chunk section, with a single {@link FaweChangeSet#addSection} for sections which are completely covered<br/>
+     * - The extents this delegates to are bypassed
+     *
+     * @param region
+     * @param id
+     * @param data
+     * @return the number of blocks
+     */
+    public int setBlocks(CuboidRegion region, int id, int data) {
+        Vector pos1 = region.getMinimumPoint();
+        Vector pos2 = region.getMaximumPoint();
+        int minX = pos1.getBlockX(), minY = pos1.getBlockY(), minZ = pos1.getBlockZ();
+        int maxX = pos2.getBlockX(), maxY = pos2.getBlockY(), maxZ = pos2.getBlockZ();
+        int combinedTo = (id << 4) + data;
+        boolean hasData = FaweCache.hasData(id);
+        char[] previous = new char[4096];
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            int x1 = Math.max(minX, cx << 4), x2 = Math.min(maxX, (cx << 4) + 15);
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                int z1 = Math.max(minZ, cz << 4), z2 = Math.min(maxZ, (cz << 4) + 15);
+                for (int layer = minY >> 4; layer <= maxY >> 4; layer++) {
+                    int y1 = Math.max(minY, layer << 4), y2 = Math.min(maxY, (layer << 4) + 15);
+                    boolean full = x2 - x1 == 15 && y2 - y1 == 15 && z2 - z1 == 15;
+                    for (int y = y1; y <= y2; y++) {
+                        for (int z = z1; z <= z2; z++) {
+                            int index = ((y & 15) << 8) | ((z & 15) << 4) | (x1 & 15);
+                            for (int x = x1; x <= x2; x++, index++) {
+                                int combined = queue.getCombinedId4DataDebug(x, y, z, 0, session);
+                                int combinedId = combined >> 4;
+                                boolean changed = combinedId != id || (hasData && combined != combinedTo);
+                                if (changed && FaweCache.hasNBT(combinedId)) {
+                                    CompoundTag tag = queue.getTileEntity(x, y, z);
+                                    if (tag != null) {
+                                        MainUtil.setPosition(tag, x, y, z);
+                                        changeSet.addTileRemove(tag);
+                                    }
+                                }
+                                if (full) {
+                                    // Unchanged blocks are skipped when the section is added
+                                    previous[index] = (char) (changed ? combined : combinedTo);
+                                } else if (changed) {
+                                    changeSet.add(x, y, z, combined, combinedTo);
+                                }
+                            }
+                        }
+                    }
+                    if (full) {
+                        changeSet.addSection(cx, layer, cz, previous, combinedTo);
+                    }
+                }
+            }
+        }
+        return queue.setBlocks(region, id, data);
+    }
+
     @Override
     public boolean setBlock(final Vector location, final BaseBlock block) throws WorldEditException {
         return setBlock(location.getBlockX(), location.getBlockY(), location.getBlockZ(), block);
@@ -1,23 +1,19 @@
 package com.boydti.fawe.object.brush;
 
 import com.boydti.fawe.FaweCache;
-import com.boydti.fawe.object.PseudoRandom;
-import com.boydti.fawe.object.clipboard.CPUOptimizedClipboard;
-import com.boydti.fawe.object.clipboard.FaweClipboard;
-import com.boydti.fawe.object.clipboard.OffsetFaweClipboard;
+import com.boydti.fawe.util.SetQueue;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
-import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.command.tool.brush.Brush;
 import com.sk89q.worldedit.function.pattern.Pattern;
-import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class ErodeBrush implements Brush {
 
-    private PseudoRandom rand = new PseudoRandom();
-
-    private static final Vector[] FACES_TO_CHECK = {new Vector(0, 0, 1), new Vector(0, 0, -1), new Vector(0, 1, 0), new Vector(0, -1, 0), new Vector(1, 0, 0), new Vector(-1, 0, 0)};
+    // The minimum number of y layers each thread works on
+    private static final int MIN_SLAB = 4;
 
     @Override
     public void build(EditSession editSession, Vector position, Pattern pattern, double size) throws MaxChangedBlocksException {
@@ -28,128 +24,139 @@ public class ErodeBrush implements Brush {
         int brushSize = (int) size + 1;
         int brushSizeSquared = (int) (size * size);
         int dimension = brushSize * 2 + 1;
-        FaweClipboard buffer1 = new OffsetFaweClipboard(new CPUOptimizedClipboard(dimension, dimension, dimension), brushSize);
-        FaweClipboard buffer2 = new OffsetFaweClipboard(new CPUOptimizedClipboard(dimension, dimension, dimension), brushSize);
+        int area = dimension * dimension;
 
         final int bx = target.getBlockX();
         final int by = target.getBlockY();
         final int bz = target.getBlockZ();
 
-        for (int x = -brushSize; x <= brushSize; x++) {
-            int x0 = x + bx;
-            for (int y = -brushSize; y <= brushSize; y++) {
-                int y0 = y + by;
-                for (int z = -brushSize; z <= brushSize; z++) {
-                    int z0 = z + bz;
-                    BaseBlock state = es.getBlock(x0, y0, z0);
-                    buffer1.setBlock(x, y, z, state);
-                    buffer2.setBlock(x, y, z, state);
+        // Combined ids indexed by (y * dimension + z) * dimension + x, relative to the corner of the brush
+        char[] original = new char[area * dimension];
+        for (int y = 0, index = 0; y < dimension; y++) {
+            int y0 = y - brushSize + by;
+            for (int z = 0; z < dimension; z++) {
+                int z0 = z - brushSize + bz;
+                for (int x = 0; x < dimension; x++, index++) {
+                    int x0 = x - brushSize + bx;
+                    original[index] = (char) FaweCache.getCombined(es.getLazyBlock(x0, y0, z0));
                 }
             }
         }
 
-        int swap = 0;
-        for (int i = 0; i < erodeRec; ++i) {
-            erosionIteration(brushSize, brushSizeSquared, erodeFaces, swap % 2 == 0 ? buffer1 : buffer2, swap % 2 == 1 ? buffer1 : buffer2);
-            swap++;
+        char[] current = original;
+        char[] buffer1 = null;
+        char[] buffer2 = null;
+        for (int i = 0; i < erodeRec + fillRec; i++) {
+            char[] next;
+            if (current == buffer1) {
+                if (buffer2 == null) buffer2 = new char[current.length];
+                next = buffer2;
+            } else {
+                if (buffer1 == null) buffer1 = new char[current.length];
+                next = buffer1;
+            }
+            System.arraycopy(current, 0, next, 0, current.length);
+            iteration(brushSize, brushSizeSquared, i < erodeRec, i < erodeRec ? erodeFaces : fillFaces, current, next);
+            current = next;
         }
 
-        for (int i = 0; i < fillRec; ++i) {
-            fillIteration(brushSize, brushSizeSquared, fillFaces, swap % 2 == 0 ? buffer1 : buffer2, swap % 2 == 1 ? buffer1 : buffer2);
-            swap++;
+        if (current == original) {
+            return;
         }
-        FaweClipboard finalBuffer = swap % 2 == 0 ? buffer1 : buffer2;
-
-        finalBuffer.forEach(new FaweClipboard.BlockReader() {
-            @Override
-            public void run(int x, int y, int z, BaseBlock block) {
-                es.setBlock(x + bx, y + by, z + bz, block);
+        for (int y = 0, index = 0; y < dimension; y++) {
+            for (int z = 0; z < dimension; z++) {
+                for (int x = 0; x < dimension; x++, index++) {
+                    char combined = current[index];
+                    if (combined != original[index]) {
+                        es.setBlock(x - brushSize + bx, y - brushSize + by, z - brushSize + bz, FaweCache.CACHE_BLOCK[combined]);
+                    }
+                }
             }
-        }, true);
+        }
     }
 
-    public void fillIteration(int brushSize, int brushSizeSquared, int fillFaces, FaweClipboard current, FaweClipboard target) {
-        int[] frequency = null;
-        for (int x = -brushSize; x <= brushSize; x++) {
-            int x2 = x * x;
-            for (int z = -brushSize; z <= brushSize; z++) {
-                int x2y2 = x2 + z * z;
-                for (int y = -brushSize; y <= brushSize; y++) {
-                    int cube = x2y2 + y * y;
-                    target.setBlock(x, y, z, current.getBlock(x, y, z));
-                    if (cube >= brushSizeSquared) {
-                        continue;
-                    }
-                    BaseBlock state = current.getBlock(x, y, z);
-                    if (!FaweCache.isLiquidOrGas(state.getId())) {
-                        continue;
-                    }
-                    int total = 0;
-                    int highest = 1;
-                    BaseBlock highestState = state;
-                    if (frequency == null) {
-                        frequency = new int[4096];
-                    } else {
-                        Arrays.fill(frequency, 0);
-                    }
-                    for (Vector offs : FACES_TO_CHECK) {
-                        BaseBlock next = current.getBlock(x + offs.getBlockX(), y + offs.getBlockY(), z + offs.getBlockZ());
-                        if (FaweCache.isLiquidOrGas(next.getId())) {
-                            continue;
-                        }
-                        total++;
-                        int count = ++frequency[next.getType()];
-                        if (count >= highest) {
-                            highest = count;
-                            highestState = next;
-                        }
-                    }
-                    if (total >= fillFaces) {
-                        target.setBlock(x, y, z, highestState);
-                    }
+    /**
+     * Run an erosion or fill pass over the brush, split across threads by y layer<br/>
+     * - The target must start as a copy of the current grid
+     */
+    private void iteration(final int brushSize, final int brushSizeSquared, final boolean erode, final int faces, final char[] current, final char[] target) {
+        // The outermost layers are never inside the sphere
+        int minY = 1;
+        int maxY = brushSize * 2 - 1;
+        ForkJoinPool pool = SetQueue.IMP.getForkJoinPool();
+        int slabs = Math.max(1, Math.min(pool.getParallelism(), (maxY - minY + 1) / MIN_SLAB));
+        if (slabs == 1) {
+            iteration(brushSize, brushSizeSquared, erode, faces, current, target, minY, maxY);
+            return;
+        }
+        ForkJoinTask[] futures = new ForkJoinTask[slabs];
+        int layers = maxY - minY + 1;
+        for (int i = 0; i < slabs; i++) {
+            final int slabMin = minY + (layers * i) / slabs;
+            final int slabMax = minY + (layers * (i + 1)) / slabs - 1;
+            futures[i] = pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    iteration(brushSize, brushSizeSquared, erode, faces, current, target, slabMin, slabMax);
                 }
-            }
+            });
+        }
+        for (ForkJoinTask future : futures) {
+            future.join();
         }
     }
 
-    public void erosionIteration(int brushSize, int brushSizeSquared, int erodeFaces, FaweClipboard current, FaweClipboard target) {
-        int[] frequency = null;
-        for (int x = -brushSize; x <= brushSize; x++) {
-            int x2 = x * x;
-            for (int z = -brushSize; z <= brushSize; z++) {
-                int x2y2 = x2 + z * z;
-                for (int y = -brushSize; y <= brushSize; y++) {
-                    int cube = x2y2 + y * y;
-                    target.setBlock(x, y, z, current.getBlock(x, y, z));
-                    if (cube >= brushSizeSquared) {
+    /**
+     * An erosion pass replaces a solid block with the most common liquid/gas around it, if at least `faces` are exposed<br/>
+     * A fill pass replaces a liquid/gas block with the most common solid around it, if at least `faces` are covered
+     */
+    private void iteration(int brushSize, int brushSizeSquared, boolean erode, int faces, char[] current, char[] target, int minY, int maxY) {
+        int dimension = brushSize * 2 + 1;
+        int area = dimension * dimension;
+        // The faces are checked in the order +z, -z, +y, -y, +x, -x
+        int[] offsets = {dimension, -dimension, area, -area, 1, -1};
+        int[] ids = new int[offsets.length];
+        for (int y = minY; y <= maxY; y++) {
+            int ry = y - brushSize;
+            int y2 = ry * ry;
+            for (int z = 1; z < dimension - 1; z++) {
+                int rz = z - brushSize;
+                int y2z2 = y2 + rz * rz;
+                int index = (y * dimension + z) * dimension;
+                for (int x = 1; x < dimension - 1; x++) {
+                    int rx = x - brushSize;
+                    if (y2z2 + rx * rx >= brushSizeSquared) {
                         continue;
                     }
-                    BaseBlock state = current.getBlock(x, y, z);
-                    if (FaweCache.isLiquidOrGas(state.getId())) {
+                    int i = index + x;
+                    char state = current[i];
+                    if (FaweCache.isLiquidOrGas(state >> 4) == erode) {
                         continue;
                     }
                     int total = 0;
                     int highest = 1;
-                    int highestState = state.getType();
-                    if (frequency == null) {
-                        frequency = new int[4096];
-                    } else {
-                        Arrays.fill(frequency, 0);
-                    }
-                    for (Vector offs : FACES_TO_CHECK) {
-                        BaseBlock next = current.getBlock(x + offs.getBlockX(), y + offs.getBlockY(), z + offs.getBlockZ());
-                        if (!FaweCache.isLiquidOrGas(next.getId())) {
+                    char highestState = erode ? (char) (state & ~0xF) : state;
+                    for (int offset : offsets) {
+                        char next = current[i + offset];
+                        int id = next >> 4;
+                        if (FaweCache.isLiquidOrGas(id) != erode) {
                             continue;
                         }
-                        total++;
-                        int count = ++frequency[next.getType()];
-                        if (count > highest) {
+                        int count = 1;
+                        for (int j = 0; j < total; j++) {
+                            if (ids[j] == id) {
+                                count++;
+                            }
+                        }
+                        ids[total++] = id;
+                        // Erosion picks the first type to reach a count, filling the last
+                        if (erode ? count > highest : count >= highest) {
                             highest = count;
-                            highestState = next.getType();
+                            highestState = erode ? (char) (id << 4) : next;
                         }
                     }
-                    if (total >= erodeFaces) {
-                        target.setBlock(x, y, z, FaweCache.CACHE_BLOCK[highestState << 4]);
+                    if (total >= faces) {
+                        target[i] = highestState;
                     }
                 }
             }
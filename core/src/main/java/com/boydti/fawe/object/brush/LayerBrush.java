@@ -1,7 +1,7 @@
 package com.boydti.fawe.object.brush;
 
 import com.boydti.fawe.object.FaweQueue;
-import com.boydti.fawe.object.collection.BlockVectorSet;
+import com.boydti.fawe.object.collection.BlockBitSet;
 import com.boydti.fawe.object.mask.AdjacentAnyMask;
 import com.boydti.fawe.object.mask.RadiusMask;
 import com.sk89q.worldedit.EditSession;
@@ -39,7 +39,7 @@ public class LayerBrush implements Brush {
         visitor.visit(position);
         visitor.setDirections(Arrays.asList(BreadthFirstSearch.DIAGONAL_DIRECTIONS));
         Operations.completeBlindly(visitor);
-        BlockVectorSet visited = visitor.getVisited();
+        BlockBitSet visited = visitor.getVisitedBits();
         BaseBlock firstPattern = layers[0];
         visitor = new RecursiveVisitor((Mask) pos -> {
             int depth = visitor.getDepth() + 1;
@@ -1,7 +1,7 @@
 package com.boydti.fawe.object.brush;
 
 import com.boydti.fawe.object.PseudoRandom;
-import com.boydti.fawe.object.collection.BlockVectorSet;
+import com.boydti.fawe.object.collection.BlockBitSet;
 import com.boydti.fawe.object.collection.LocalBlockVectorSet;
 import com.boydti.fawe.object.mask.AdjacentAnyMask;
 import com.boydti.fawe.object.mask.RadiusMask;
@@ -53,7 +53,7 @@ public class ScatterBrush implements Brush {
         visitor.visit(position);
         visitor.setDirections(Arrays.asList(BreadthFirstSearch.DIAGONAL_DIRECTIONS));
         Operations.completeBlindly(visitor);
-        BlockVectorSet visited = visitor.getVisited();
+        BlockBitSet visited = visitor.getVisitedBits();
         int length = visited.size();
         if (size == 0) {
             length = 1;
@@ -155,6 +155,14 @@ public class VisualChunk extends FaweChunk<FaweChunk> {
         // Unsupported
     }
 
+    /**
+     * @param other
+     * @return the blocks in this chunk which are not set to the same value in the other
+     */
+    public VisualChunk subtract(VisualChunk other) {
+        return new VisualChunk(getX(), getZ(), SparseBitSet.andNot(add, other.add), SparseBitSet.andNot(remove, other.remove));
+    }
+
     @Override
     public FaweChunk copy(boolean shallow) {
         if (shallow) {
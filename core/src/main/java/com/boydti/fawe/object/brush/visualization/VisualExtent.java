@@ -22,6 +22,7 @@ public class VisualExtent extends AbstractDelegateExtent {
 
     private final FaweQueue queue;
     private Long2ObjectMap<VisualChunk> chunks = new Long2ObjectOpenHashMap<>();
+    private VisualShape shape;
 
     public VisualExtent(Extent parent, FaweQueue queue) {
         super(parent);
@@ -37,8 +38,31 @@ public class VisualExtent extends AbstractDelegateExtent {
         return chunks.get(MathMan.pairInt(cx, cz));
     }
 
+    /**
+     * Record the blocks set to a shape (or stop recording with null)
+     *
+     * @param shape
+     */
+    public void setShape(VisualShape shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * @return the number of blocks being visualized
+     */
+    public int size() {
+        int size = 0;
+        for (VisualChunk chunk : chunks.values()) {
+            size += chunk.size();
+        }
+        return size;
+    }
+
     @Override
     public boolean setBlock(int x, int y, int z, BaseBlock block) throws WorldEditException {
+        if (shape != null) {
+            shape.add(x, y, z);
+        }
         BaseBlock previous = super.getLazyBlock(x, y, z);
         int cx = x >> 4;
         int cz = z >> 4;
@@ -65,7 +89,15 @@ public class VisualExtent extends AbstractDelegateExtent {
         return false;
     }
 
-    public void clear(VisualExtent other, FawePlayer... players) {
+    /**
+     * Restore the blocks which are not visualized by the other extent
+     *
+     * @param other the extent replacing this one (or null)
+     * @param players
+     * @return the number of blocks sent
+     */
+    public int clear(VisualExtent other, FawePlayer... players) {
+        int sent = 0;
         ObjectIterator<Long2ObjectMap.Entry<VisualChunk>> iter = chunks.long2ObjectEntrySet().iterator();
         while (iter.hasNext()) {
             Long2ObjectMap.Entry<VisualChunk> entry = iter.next();
@@ -86,10 +118,11 @@ public class VisualExtent extends AbstractDelegateExtent {
                     }
                 });
             } else {
+                // Blocks the other extent visualizes are sent by it
                 chunk.forEachQueuedBlock(new FaweChunkVisitor() {
                     @Override
                     public void run(int localX, int y, int localZ, int combined) {
-                        if (combined != otherChunk.getBlockCombinedId(localX, y, localZ)) {
+                        if (otherChunk.getBlockCombinedId(localX, y, localZ) == 0) {
                             combined = queue.getCombinedId4Data(bx + localX, y, bz + localZ, 0);
                             newChunk.setBlock(localX, y, localZ, FaweCache.getId(combined), FaweCache.getData(combined));
                         }
@@ -97,14 +130,39 @@ public class VisualExtent extends AbstractDelegateExtent {
                 });
             }
             if (newChunk.getTotalCount() != 0) {
+                sent += newChunk.getTotalCount();
                 queue.sendBlockUpdate(newChunk, players);
             }
         }
+        return sent;
+    }
+
+    public int visualize(FawePlayer players) {
+        return visualize(null, players);
     }
 
-    public void visualize(FawePlayer players) {
+    /**
+     * Send the blocks which are not already visualized by the previous extent
+     *
+     * @param previous the extent previously sent to the players (or null)
+     * @param players
+     * @return the number of blocks sent
+     */
+    public int visualize(VisualExtent previous, FawePlayer... players) {
+        int sent = 0;
+        if (previous != null && !previous.queue.getWorldName().equals(queue.getWorldName())) {
+            previous = null;
+        }
         for (VisualChunk chunk : chunks.values()) {
-            queue.sendBlockUpdate(chunk, players);
+            VisualChunk previousChunk = previous != null ? previous.getChunk(chunk.getX(), chunk.getZ()) : null;
+            if (previousChunk != null) {
+                chunk = chunk.subtract(previousChunk);
+            }
+            if (chunk.size() != 0) {
+                sent += chunk.size();
+                queue.sendBlockUpdate(chunk, players);
+            }
         }
+        return sent;
     }
 }
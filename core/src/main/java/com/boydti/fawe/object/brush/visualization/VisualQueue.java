@@ -1,5 +1,7 @@
 package com.boydti.fawe.object.brush.visualization;
 
+import com.boydti.fawe.Fawe;
+import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.task.SingleThreadIntervalQueue;
 import com.sk89q.worldedit.LocalSession;
@@ -11,8 +13,27 @@ import com.sk89q.worldedit.entity.Player;
 
 public class VisualQueue extends SingleThreadIntervalQueue<FawePlayer> {
 
+    private final int interval;
+    private long lastTick;
+    // The number of blocks which can still be visualized (Settings.VISUALIZATION.MAX_BLOCKS_PER_TICK)
+    private long allowance;
+
     public VisualQueue(int interval) {
         super(interval);
+        this.interval = interval;
+    }
+
+    private boolean hasAllowance() {
+        int limit = Settings.IMP.VISUALIZATION.MAX_BLOCKS_PER_TICK;
+        if (limit < 0) {
+            return true;
+        }
+        long tick = Fawe.get().getTimer().getTick();
+        if (tick != lastTick) {
+            allowance = Math.min(allowance + (tick - lastTick) * limit, (long) limit * interval);
+            lastTick = tick;
+        }
+        return allowance > 0;
     }
 
     @Override
@@ -24,8 +45,13 @@ public class VisualQueue extends SingleThreadIntervalQueue<FawePlayer> {
         if (tool instanceof BrushTool) {
             BrushTool brushTool = (BrushTool) tool;
             if (brushTool.getVisualMode() != VisualMode.NONE) {
+                if (!hasAllowance()) {
+                    // Try again later
+                    queue(fp);
+                    return;
+                }
                 try {
-                    brushTool.visualize(BrushTool.BrushAction.PRIMARY, player);
+                    allowance -= brushTool.visualize(BrushTool.BrushAction.PRIMARY, player);
                 } catch (Throwable e) {
                     WorldEdit.getInstance().getPlatformManager().handleThrowable(e, player);
                 }
@@ -0,0 +1,101 @@
+package com.boydti.fawe.object.brush.visualization;
+
+import com.boydti.fawe.config.Settings;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.command.tool.brush.Brush;
+import com.sk89q.worldedit.command.tool.brush.CylinderBrush;
+import com.sk89q.worldedit.command.tool.brush.HollowCylinderBrush;
+import com.sk89q.worldedit.command.tool.brush.HollowSphereBrush;
+import com.sk89q.worldedit.command.tool.brush.SphereBrush;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * The blocks a brush set for a visualization, relative to the position it was built at<br/>
+ * - Replaying the shape at a new position is much cheaper than building the brush again<br/>
+ * - Only used for brushes which set a single block, in a shape that depends on nothing but the position
+ */
+public class VisualShape {
+    private static final int MAX_SIZE = 1 << 21;
+    private final Brush brush;
+    private final double size;
+    private final Pattern material;
+    private final int ox, oy, oz;
+    private final int maxY;
+    private final boolean clamped;
+    private LongArrayList blocks = new LongArrayList();
+
+    public VisualShape(Brush brush, double size, Pattern material, Vector origin, int maxY) {
+        this.brush = brush;
+        this.size = size;
+        this.material = material;
+        this.ox = origin.getBlockX();
+        this.oy = origin.getBlockY();
+        this.oz = origin.getBlockZ();
+        this.maxY = maxY;
+        // Cylinders are cut off at the world's floor and ceiling when built
+        this.clamped = brush instanceof CylinderBrush || brush instanceof HollowCylinderBrush;
+    }
+
+    /**
+     * @return if the shape of a brush can be reused when the target moves
+     */
+    public static boolean isCacheable(Brush brush, Pattern material) {
+        if (!Settings.IMP.VISUALIZATION.CACHE_SHAPE || !(material instanceof BaseBlock)) {
+            return false;
+        }
+        return brush instanceof SphereBrush
+                || brush instanceof HollowSphereBrush
+                || brush instanceof CylinderBrush
+                || brush instanceof HollowCylinderBrush;
+    }
+
+    /**
+     * @return if this shape was recorded for the same brush settings (and wasn't too large or truncated when recorded)
+     */
+    public boolean isShape(Brush brush, double size, Pattern material) {
+        return blocks != null && this.brush == brush && this.size == size && this.material.equals(material);
+    }
+
+    public void add(int x, int y, int z) {
+        if (blocks == null) {
+            return;
+        }
+        if (blocks.size() >= MAX_SIZE || (clamped && (y <= 0 || y >= maxY))) {
+            // Too large, or possibly truncated at the recording position
+            blocks = null;
+            return;
+        }
+        long dx = (x - ox) & 0x1FFFFFF;
+        long dz = (z - oz) & 0x1FFFFFF;
+        long dy = (y - oy) & 0xFFF;
+        blocks.add((dx << 37) | (dz << 12) | dy);
+    }
+
+    /**
+     * Replay the shape at a position
+     *
+     * @param extent
+     * @param position
+     * @throws WorldEditException
+     */
+    public void paste(VisualExtent extent, Vector position) throws WorldEditException {
+        int px = position.getBlockX();
+        int py = position.getBlockY();
+        int pz = position.getBlockZ();
+        int maxY = extent.getMaxY();
+        BaseBlock block = (BaseBlock) material;
+        for (int i = 0; i < blocks.size(); i++) {
+            long pair = blocks.getLong(i);
+            int y = py + (int) (pair << 52 >> 52);
+            if (y < 0 || y > maxY) {
+                continue;
+            }
+            int x = px + (int) (pair << 2 >> 39);
+            int z = pz + (int) (pair << 27 >> 39);
+            extent.setBlock(x, y, z, block);
+        }
+    }
+}
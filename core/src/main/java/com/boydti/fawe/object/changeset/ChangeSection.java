@@ -0,0 +1,438 @@
+package com.boydti.fawe.object.changeset;
+
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The block changes for a single 16x16x16 chunk section, stored as columns<br/>
+ * - A 4096 bit presence mask (or a short index list when sparse)<br/>
+ * - The combined `from` ids of each changed block<br/>
+ * - The combined `to` ids of each changed block (if redo is stored)<br/>
+ * Each column is stored as a single value, a palette with packed indexes (up to 256 values) or raw<br/>
+ * Indexes are (y << 8) | (z << 4) | x relative to the section
+ */
+public final class ChangeSection {
+    public static final int SIZE = 4096;
+
+    private static final int FORMAT_FULL = 0;
+    private static final int FORMAT_LIST = 1;
+    private static final int FORMAT_MASK = 2;
+
+    private static final int COLUMN_RAW = 0;
+    private static final int COLUMN_SINGLE = 1;
+    private static final int COLUMN_PALETTE = 2;
+
+    private static final int MAX_PALETTE = 256;
+    private static final int TABLE_BITS = 10;
+
+    private int cx;
+    private int cy;
+    private int cz;
+    private int count;
+
+    private final long[] mask = new long[SIZE >> 6];
+    private final char[] from = new char[SIZE];
+    private final char[] to;
+
+    public ChangeSection(int cx, int cy, int cz, boolean redo) {
+        this.cx = cx;
+        this.cy = cy;
+        this.cz = cz;
+        this.to = redo ? new char[SIZE] : null;
+    }
+
+    public ChangeSection(boolean redo) {
+        this(0, 0, 0, redo);
+    }
+
+    public static int getIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    public int getChunkX() {
+        return cx;
+    }
+
+    public int getSectionY() {
+        return cy;
+    }
+
+    public int getChunkZ() {
+        return cz;
+    }
+
+    public int getX(int index) {
+        return (cx << 4) + (index & 15);
+    }
+
+    public int getY(int index) {
+        return (cy << 4) + (index >> 8);
+    }
+
+    public int getZ(int index) {
+        return (cz << 4) + ((index >> 4) & 15);
+    }
+
+    public boolean hasRedo() {
+        return to != null;
+    }
+
+    /**
+     * @return the number of changed blocks in this section
+     */
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Record a change<br/>
+     * - If the position was already changed the original `from` is kept, and the `to` is updated
+     *
+     * @param index
+     * @param combinedFrom
+     * @param combinedTo
+     * @return false if the position was already changed
+     */
+    public boolean add(int index, char combinedFrom, char combinedTo) {
+        int i = index >> 6;
+        long bit = 1L << (index & 63);
+        if (to != null) {
+            to[index] = combinedTo;
+        }
+        if ((mask[i] & bit) != 0) {
+            return false;
+        }
+        mask[i] |= bit;
+        from[index] = combinedFrom;
+        count++;
+        return true;
+    }
+
+    /**
+     * Record a section which has been completely set to a single value<br/>
+     * - An empty section keeps every position (a snapshot), so it can be restored wholesale<br/>
+     * - Otherwise the changed positions are added
+     *
+     * @param previous the previous combined ids, or null if it was all air
+     * @param combinedTo
+     * @return the number of changed positions
+     */
+    public int addSection(char[] previous, char combinedTo) {
+        int changed = 0;
+        if (count == 0) {
+            if (previous != null) {
+                System.arraycopy(previous, 0, from, 0, SIZE);
+                for (int index = 0; index < SIZE; index++) {
+                    if (previous[index] != combinedTo) {
+                        changed++;
+                    }
+                }
+            } else {
+                Arrays.fill(from, (char) 0);
+                changed = combinedTo != 0 ? SIZE : 0;
+            }
+            if (to != null) {
+                Arrays.fill(to, combinedTo);
+            }
+            if (changed != 0) {
+                Arrays.fill(mask, -1L);
+                count = SIZE;
+            }
+            return changed;
+        }
+        for (int index = 0; index < SIZE; index++) {
+            char combinedFrom = previous != null ? previous[index] : 0;
+            if (combinedFrom != combinedTo) {
+                add(index, combinedFrom, combinedTo);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Add the changes of a later record for the same section
+     *
+     * @param other
+     */
+    public void merge(ChangeSection other) {
+        for (int index = other.nextIndex(0); index != -1; index = other.nextIndex(index + 1)) {
+            add(index, other.from[index], other.to == null ? 0 : other.to[index]);
+        }
+    }
+
+    public boolean isSet(int index) {
+        return (mask[index >> 6] & (1L << (index & 63))) != 0;
+    }
+
+    /**
+     * @param index the index to start searching from (inclusive)
+     * @return the next changed index, or -1
+     */
+    public int nextIndex(int index) {
+        int i = index >> 6;
+        if (i >= mask.length) {
+            return -1;
+        }
+        long word = mask[i] & (-1L << (index & 63));
+        while (true) {
+            if (word != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++i == mask.length) {
+                return -1;
+            }
+            word = mask[i];
+        }
+    }
+
+    public char getFrom(int index) {
+        return from[index];
+    }
+
+    public char getTo(int index) {
+        return to == null ? 0 : to[index];
+    }
+
+    /**
+     * @param index
+     * @param dir true for redo (the `to` id), false for undo (the `from` id)
+     * @return the combined id, or the `from` id if redo is not stored
+     */
+    public char getCombined(int index, boolean dir) {
+        return dir && to != null ? to[index] : from[index];
+    }
+
+    /**
+     * Get the ids for undo or redo (see {@link #getCombined(int, boolean)})<br/>
+     * - Only the changed indexes are valid
+     *
+     * @param dir
+     * @return the backing array
+     */
+    public char[] getCombinedArray(boolean dir) {
+        return dir && to != null ? to : from;
+    }
+
+    public void clear() {
+        Arrays.fill(mask, 0);
+        count = 0;
+    }
+
+    /**
+     * Write this section relative to the origin chunk
+     *
+     * @param out
+     * @param originCX
+     * @param originCZ
+     * @throws IOException
+     */
+    public void write(FaweOutputStream out, int originCX, int originCZ) throws IOException {
+        out.writeShort(cx - originCX);
+        out.writeShort(cz - originCZ);
+        out.write(cy);
+        out.writeShort(count);
+        if (count == SIZE) {
+            out.write(FORMAT_FULL);
+        } else if (count < 256) {
+            // Cheaper than the 512 byte mask
+            out.write(FORMAT_LIST);
+            for (int index = nextIndex(0); index != -1; index = nextIndex(index + 1)) {
+                out.writeShort(index);
+            }
+        } else {
+            out.write(FORMAT_MASK);
+            for (long word : mask) {
+                out.writeLong(word);
+            }
+        }
+        writeColumn(out, from);
+        if (to != null) {
+            writeColumn(out, to);
+        }
+    }
+
+    private void writeColumn(FaweOutputStream out, char[] column) throws IOException {
+        int first = nextIndex(0);
+        char value = column[first];
+        boolean single = true;
+        for (int index = nextIndex(first + 1); index != -1; index = nextIndex(index + 1)) {
+            if (column[index] != value) {
+                single = false;
+                break;
+            }
+        }
+        if (single) {
+            out.write(COLUMN_SINGLE);
+            out.writeChar(value);
+        } else if (!writePalette(out, column)) {
+            out.write(COLUMN_RAW);
+            for (int index = first; index != -1; index = nextIndex(index + 1)) {
+                out.writeChar(column[index]);
+            }
+        }
+    }
+
+    /**
+     * Write a column as a palette and packed indexes (1, 2, 4 or 8 bits)
+     *
+     * @return false if there are too many values
+     */
+    private boolean writePalette(FaweOutputStream out, char[] column) throws IOException {
+        char[] palette = new char[MAX_PALETTE];
+        int paletteSize = 0;
+        // Open addressing: palette index + 1 (0 = empty)
+        int[] table = new int[1 << TABLE_BITS];
+        byte[] indexes = new byte[count];
+        int i = 0;
+        for (int index = nextIndex(0); index != -1; index = nextIndex(index + 1)) {
+            char value = column[index];
+            int slot = (value * 0x9E3779B1) >>> (32 - TABLE_BITS);
+            int paletteIndex;
+            while (true) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    if (paletteSize == MAX_PALETTE) {
+                        return false;
+                    }
+                    palette[paletteSize] = value;
+                    table[slot] = ++paletteSize;
+                    paletteIndex = paletteSize - 1;
+                    break;
+                }
+                if (palette[entry - 1] == value) {
+                    paletteIndex = entry - 1;
+                    break;
+                }
+                slot = (slot + 1) & ((1 << TABLE_BITS) - 1);
+            }
+            indexes[i++] = (byte) paletteIndex;
+        }
+        int bits = getPaletteBits(paletteSize);
+        out.write(COLUMN_PALETTE);
+        out.write(paletteSize - 1);
+        for (int j = 0; j < paletteSize; j++) {
+            out.writeChar(palette[j]);
+        }
+        if (bits == 8) {
+            out.write(indexes, 0, i);
+            return true;
+        }
+        int perByte = 8 / bits;
+        for (int j = 0; j < i; j += perByte) {
+            int packed = 0;
+            for (int k = 0; k < perByte && j + k < i; k++) {
+                packed |= (indexes[j + k] & 0xFF) << (k * bits);
+            }
+            out.write(packed);
+        }
+        return true;
+    }
+
+    private static int getPaletteBits(int paletteSize) {
+        if (paletteSize <= 2) return 1;
+        if (paletteSize <= 4) return 2;
+        if (paletteSize <= 16) return 4;
+        return 8;
+    }
+
+    /**
+     * Replace the contents of this section with the next section in the stream
+     *
+     * @param in
+     * @param originCX
+     * @param originCZ
+     * @throws java.io.EOFException if there are no more sections
+     * @throws IOException
+     */
+    public void read(FaweInputStream in, int originCX, int originCZ) throws IOException {
+        clear();
+        cx = in.readShort() + originCX;
+        cz = in.readShort() + originCZ;
+        cy = in.readUnsignedByte();
+        int size = in.readUnsignedShort();
+        switch (in.readUnsignedByte()) {
+            case FORMAT_FULL:
+                Arrays.fill(mask, -1L);
+                break;
+            case FORMAT_LIST:
+                for (int i = 0; i < size; i++) {
+                    int index = in.readUnsignedShort();
+                    mask[index >> 6] |= 1L << (index & 63);
+                }
+                break;
+            case FORMAT_MASK:
+                for (int i = 0; i < mask.length; i++) {
+                    mask[i] = in.readLong();
+                }
+                break;
+            default:
+                throw new IOException("Invalid section format");
+        }
+        count = size;
+        readColumn(in, from);
+        if (to != null) {
+            readColumn(in, to);
+        }
+    }
+
+    private void readColumn(FaweInputStream in, char[] column) throws IOException {
+        switch (in.readUnsignedByte()) {
+            case COLUMN_SINGLE: {
+                char value = in.readChar();
+                for (int index = nextIndex(0); index != -1; index = nextIndex(index + 1)) {
+                    column[index] = value;
+                }
+                break;
+            }
+            case COLUMN_PALETTE: {
+                int paletteSize = in.readUnsignedByte() + 1;
+                char[] palette = new char[paletteSize];
+                for (int i = 0; i < paletteSize; i++) {
+                    palette[i] = in.readChar();
+                }
+                int bits = getPaletteBits(paletteSize);
+                int perByte = 8 / bits;
+                int valueMask = (1 << bits) - 1;
+                int packed = 0;
+                int i = 0;
+                for (int index = nextIndex(0); index != -1; index = nextIndex(index + 1), i++) {
+                    int k = i % perByte;
+                    if (k == 0) {
+                        packed = in.readUnsignedByte();
+                    }
+                    int paletteIndex = (packed >> (k * bits)) & valueMask;
+                    if (paletteIndex >= paletteSize) {
+                        throw new IOException("Invalid palette index");
+                    }
+                    column[index] = palette[paletteIndex];
+                }
+                break;
+            }
+            case COLUMN_RAW:
+                for (int index = nextIndex(0); index != -1; index = nextIndex(index + 1)) {
+                    column[index] = in.readChar();
+                }
+                break;
+            default:
+                throw new IOException("Invalid column format");
+        }
+    }
+
+    public ChangeSection copy() {
+        ChangeSection copy = new ChangeSection(cx, cy, cz, to != null);
+        System.arraycopy(mask, 0, copy.mask, 0, mask.length);
+        System.arraycopy(from, 0, copy.from, 0, SIZE);
+        if (to != null) {
+            System.arraycopy(to, 0, copy.to, 0, SIZE);
+        }
+        copy.count = count;
+        return copy;
+    }
+}
@@ -9,6 +9,8 @@ import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.IntegerPair;
 import com.boydti.fawe.object.RegionWrapper;
 import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.metrics.FaweMetrics;
+import com.boydti.fawe.util.metrics.Histogram;
 import com.sk89q.jnbt.NBTInputStream;
 import com.sk89q.jnbt.NBTOutputStream;
 import com.sk89q.worldedit.EditSession;
@@ -16,6 +18,7 @@ import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.World;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.io.DataOutput;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -33,6 +36,8 @@ import java.util.UUID;
  */
 public class DiskStorageHistory extends FaweStreamChangeSet {
 
+    private static final Histogram FLUSH_TIME = FaweMetrics.IMP.histogram("fawe_history_flush_ms", "Time spent flushing history to disk");
+
     private UUID uuid;
     private File bdFile;
     private File bioFile;
@@ -49,6 +54,9 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
      * 
      * [contents]...
      * { short rel x, short rel z, unsigned byte y, short combinedFrom, short combinedTo }
+     *
+     * [contents] (chunk grouped)...
+     * { ChangeSection }
      */
     private OutputStream osBD;
     // biome
@@ -170,6 +178,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     @Override
     public boolean flush() {
+        long start = System.nanoTime();
         super.flush();
         synchronized (this) {
             boolean flushed = osBD != null || osBIO != null || osNBTF != null || osNBTT != null && osENTCF != null || osENTCT != null;
@@ -183,6 +192,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
             } catch (Exception e) {
                 MainUtil.handleError(e);
             }
+            FLUSH_TIME.recordTime(start);
             return flushed;
         }
     }
@@ -389,8 +399,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
             }
             try (FileInputStream fis = new FileInputStream(bdFile)) {
                 FaweInputStream gis = MainUtil.getCompressedIS(fis);
-                // skip mode
-                gis.skipFully(1);
+                int mode = gis.read();
                 // origin
                 ox = ((gis.read() << 24) + (gis.read() << 16) + (gis.read() << 8) + (gis.read() << 0));
                 oz = ((gis.read() << 24) + (gis.read() << 16) + (gis.read() << 8) + (gis.read() << 0));
@@ -401,9 +410,28 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
                     gis.close();
                     return summary;
                 }
-                byte[] buffer = new byte[9];
                 int i = 0;
                 int amount = (Settings.IMP.HISTORY.BUFFER_SIZE - HEADER_SIZE) / 9;
+                if (mode == 5 || mode == 6) {
+                    ChangeSection section = new ChangeSection(mode == 6);
+                    int originCX = ox >> 4;
+                    int originCZ = oz >> 4;
+                    try {
+                        while (!shallow && i < amount) {
+                            section.read(gis, originCX, originCZ);
+                            for (int index = section.nextIndex(0); index != -1 && i++ < amount; index = section.nextIndex(index + 1)) {
+                                int id = section.getCombined(index, true) >> 4;
+                                if (id < summary.blocks.length) {
+                                    summary.add(section.getX(index), section.getZ(index), id);
+                                }
+                            }
+                        }
+                    } catch (EOFException ignoreEOF) {
+                    }
+                    gis.close();
+                    return summary;
+                }
+                byte[] buffer = new byte[9];
                 while (!shallow && ++i < amount) {
                     if (gis.read(buffer) == -1) {
                         fis.close();
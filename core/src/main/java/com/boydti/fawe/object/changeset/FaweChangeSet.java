@@ -4,6 +4,7 @@ import com.boydti.fawe.Fawe;
 import com.boydti.fawe.FaweAPI;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.example.CharFaweChunk;
 import com.boydti.fawe.logging.rollback.RollbackOptimizedHistory;
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FawePlayer;
@@ -121,6 +122,35 @@ public abstract class FaweChangeSet implements ChangeSet {
 
     public abstract void add(int x, int y, int z, int combinedFrom, int combinedTo);
 
+    /**
+     * Add a chunk section (16x16x16) which has been completely set to a single block<br/>
+     * - By default each changed block is added individually
+     *
+     * @param cx the chunk x
+     * @param layer the section y (0-15)
+     * @param cz the chunk z
+     * @param previous the previous combined ids (in y, z, x order), or null if it was all air
+     * @param combinedTo the new combined id
+     */
+    public void addSection(int cx, int layer, int cz, char[] previous, int combinedTo) {
+        int bx = cx << 4;
+        int by = layer << 4;
+        int bz = cz << 4;
+        int index = 0;
+        for (int y = 0; y < 16; y++) {
+            int yy = by + y;
+            for (int z = 0; z < 16; z++) {
+                int zz = bz + z;
+                for (int x = 0; x < 16; x++, index++) {
+                    int combinedFrom = previous != null ? previous[index] : 0;
+                    if (combinedFrom != combinedTo) {
+                        add(bx + x, yy, zz, combinedFrom, combinedTo);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public Iterator<Change> backwardIterator() {
         return getIterator(false);
@@ -288,6 +318,13 @@ public abstract class FaweChangeSet implements ChangeSet {
                                 }
                                 // Block changes
                                 for (int layer = 0; layer < layers; layer++) {
+                                    if (next instanceof CharFaweChunk) {
+                                        int combinedIdSection = ((CharFaweChunk) next).getSingleValue(layer);
+                                        if (combinedIdSection != 0) {
+                                            addSection(cx, layer, cz, previous.getIdArray(layer), combinedIdSection == 1 ? 0 : combinedIdSection);
+                                            continue;
+                                        }
+                                    }
                                     char[] currentLayer = next.getIdArray(layer);
                                     if (currentLayer == null) {
                                         continue;
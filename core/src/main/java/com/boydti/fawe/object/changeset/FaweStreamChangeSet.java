@@ -17,6 +17,7 @@ import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.history.change.Change;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.biome.BaseBiome;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -28,6 +29,11 @@ import java.util.NoSuchElementException;
 public abstract class FaweStreamChangeSet extends FaweChangeSet {
 
     public static final int HEADER_SIZE = 9;
+    /**
+     * The maximum number of chunk sections to buffer before writing them (when chunk grouped)
+     */
+    public static final int MAX_BUFFERED_SECTIONS = 512;
+
     private int mode;
     private final int compression;
 
@@ -35,27 +41,37 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
     private FaweStreamPositionDelegate posDel;
 
     public FaweStreamChangeSet(World world) {
-        this(world, Settings.IMP.HISTORY.COMPRESSION_LEVEL, Settings.IMP.HISTORY.STORE_REDO, Settings.IMP.HISTORY.SMALL_EDITS);
+        this(world, Settings.IMP.HISTORY.COMPRESSION_LEVEL, Settings.IMP.HISTORY.STORE_REDO, Settings.IMP.HISTORY.SMALL_EDITS, Settings.IMP.HISTORY.CHUNK_GROUPED);
     }
 
     public FaweStreamChangeSet(String world) {
-        this(world, Settings.IMP.HISTORY.COMPRESSION_LEVEL, Settings.IMP.HISTORY.STORE_REDO, Settings.IMP.HISTORY.SMALL_EDITS);
+        this(world, Settings.IMP.HISTORY.COMPRESSION_LEVEL, Settings.IMP.HISTORY.STORE_REDO, Settings.IMP.HISTORY.SMALL_EDITS, Settings.IMP.HISTORY.CHUNK_GROUPED);
     }
 
     public FaweStreamChangeSet(String world, int compression, boolean storeRedo, boolean smallLoc) {
+        this(world, compression, storeRedo, smallLoc, false);
+    }
+
+    public FaweStreamChangeSet(World world, int compression, boolean storeRedo, boolean smallLoc) {
+        this(world, compression, storeRedo, smallLoc, false);
+    }
+
+    public FaweStreamChangeSet(String world, int compression, boolean storeRedo, boolean smallLoc, boolean chunkGrouped) {
         super(world);
         this.compression = compression;
-        init(storeRedo, smallLoc);
+        init(storeRedo, smallLoc, chunkGrouped);
     }
 
-    public FaweStreamChangeSet(World world, int compression, boolean storeRedo, boolean smallLoc) {
+    public FaweStreamChangeSet(World world, int compression, boolean storeRedo, boolean smallLoc, boolean chunkGrouped) {
         super(world);
         this.compression = compression;
-        init(storeRedo, smallLoc);
+        init(storeRedo, smallLoc, chunkGrouped);
     }
 
-    private void init(boolean storeRedo, boolean smallLoc) {
-        if (storeRedo) {
+    private void init(boolean storeRedo, boolean smallLoc, boolean chunkGrouped) {
+        if (chunkGrouped) {
+            mode = storeRedo ? 6 : 5;
+        } else if (storeRedo) {
             if (smallLoc) {
                 mode = 4;
             } else {
@@ -86,8 +102,33 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         void readCombined(FaweInputStream in, MutableFullBlockChange change, boolean dir) throws IOException;
     }
 
+    /**
+     * Use the chunk grouped format (mode 5/6) instead of the block stream (mode 1-4)<br/>
+     * - Must be set before any blocks are added
+     *
+     * @param chunkGrouped
+     */
+    public void setChunkGrouped(boolean chunkGrouped) {
+        boolean storeRedo = mode == 3 || mode == 4 || mode == 6;
+        boolean smallLoc = mode == 1 || mode == 4;
+        init(storeRedo, smallLoc, chunkGrouped);
+    }
+
+    /**
+     * @return if blocks are stored as {@link ChangeSection}s grouped by chunk
+     */
+    public boolean isChunkGrouped() {
+        return mode == 5 || mode == 6;
+    }
+
     private void setupStreamDelegates(int mode) {
         this.mode = mode;
+        if (isChunkGrouped()) {
+            // Positions and ids are stored in columns by each ChangeSection
+            idDel = null;
+            posDel = null;
+            return;
+        }
         if (mode == 3 || mode == 4) {
             idDel = new FaweStreamIdDelegate() {
                 @Override
@@ -322,6 +363,10 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
 
     public void add(int x, int y, int z, int combinedFrom, int combinedTo) {
         blockSize++;
+        if (isChunkGrouped()) {
+            addGrouped(x, y, z, combinedFrom, combinedTo);
+            return;
+        }
         try {
             OutputStream stream = getBlockOS(x, y, z);
             //x
@@ -332,6 +377,102 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         }
     }
 
+    /**
+     * Store a whole section as a single record when chunk grouped (and section snapshots are enabled)<br/>
+     * - The previous ids are stored as a palette, and the new id once
+     */
+    @Override
+    public void addSection(int cx, int layer, int cz, char[] previous, int combinedTo) {
+        if (!isChunkGrouped() || !Settings.IMP.HISTORY.SECTION_SNAPSHOTS) {
+            super.addSection(cx, layer, cz, previous, combinedTo);
+            return;
+        }
+        synchronized (this) {
+            try {
+                getBlockOS(cx << 4, layer << 4, cz << 4);
+                ChangeSection section = getGroupedSection(cx, layer & 15, cz);
+                blockSize += section.addSection(previous, (char) combinedTo);
+                if (sectionCount >= MAX_BUFFERED_SECTIONS) {
+                    writeSections();
+                }
+            } catch (Throwable e) {
+                MainUtil.handleError(e);
+            }
+        }
+    }
+
+    private Long2ObjectOpenHashMap<ChangeSection[]> sections;
+    private ChangeSection lastSection;
+    private int sectionCount;
+
+    private synchronized void addGrouped(int x, int y, int z, int combinedFrom, int combinedTo) {
+        try {
+            // Ensure the header (and origin) is written with the first block
+            getBlockOS(x, y, z);
+            int cx = x >> 4;
+            int cy = (y >> 4) & 15;
+            int cz = z >> 4;
+            ChangeSection section = lastSection;
+            if (section == null || section.getChunkX() != cx || section.getChunkZ() != cz || section.getSectionY() != cy) {
+                section = getGroupedSection(cx, cy, cz);
+            }
+            section.add(ChangeSection.getIndex(x, y, z), (char) combinedFrom, (char) combinedTo);
+            if (sectionCount >= MAX_BUFFERED_SECTIONS) {
+                writeSections();
+            }
+        } catch (Throwable e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    private ChangeSection getGroupedSection(int cx, int cy, int cz) {
+        if (sections == null) {
+            sections = new Long2ObjectOpenHashMap<>();
+        }
+        long pair = MathMan.pairInt(cx, cz);
+        ChangeSection[] chunk = sections.get(pair);
+        if (chunk == null) {
+            sections.put(pair, chunk = new ChangeSection[16]);
+        }
+        ChangeSection section = chunk[cy];
+        if (section == null) {
+            section = chunk[cy] = new ChangeSection(cx, cy, cz, mode == 6);
+            sectionCount++;
+        }
+        return lastSection = section;
+    }
+
+    private synchronized void writeSections() throws IOException {
+        if (sectionCount == 0) {
+            return;
+        }
+        OutputStream os = getBlockOS(originX, 0, originZ);
+        FaweOutputStream out = os instanceof FaweOutputStream ? (FaweOutputStream) os : new FaweOutputStream(os);
+        int originCX = originX >> 4;
+        int originCZ = originZ >> 4;
+        for (ChangeSection[] chunk : sections.values()) {
+            for (ChangeSection section : chunk) {
+                if (section != null && !section.isEmpty()) {
+                    section.write(out, originCX, originCZ);
+                }
+            }
+        }
+        sections.clear();
+        sectionCount = 0;
+        lastSection = null;
+    }
+
+    @Override
+    public boolean flush() {
+        boolean result = super.flush();
+        try {
+            writeSections();
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+        return result;
+    }
+
     @Override
     public void addBiomeChange(int x, int z, BaseBiome from, BaseBiome to) {
         blockSize++;
@@ -410,6 +551,31 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
             return new ArrayList<MutableBlockChange>().iterator();
         }
         final MutableBlockChange change = new MutableBlockChange(0, 0, 0, (short) 0, (byte) 0);
+        if (isChunkGrouped()) {
+            final Iterator<int[]> changes = getGroupedIterator(is, dir);
+            return new Iterator<MutableBlockChange>() {
+                @Override
+                public boolean hasNext() {
+                    return changes.hasNext();
+                }
+
+                @Override
+                public MutableBlockChange next() {
+                    int[] next = changes.next();
+                    change.x = next[0];
+                    change.y = next[1];
+                    change.z = next[2];
+                    change.id = (short) (next[3] >> 4);
+                    change.data = (byte) (next[3] & 0xF);
+                    return change;
+                }
+
+                @Override
+                public void remove() {
+                    throw new IllegalArgumentException("CANNOT REMOVE");
+                }
+            };
+        }
         return new Iterator<MutableBlockChange>() {
             private MutableBlockChange last = read();
 
@@ -455,6 +621,135 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         };
     }
 
+    /**
+     * Iterate over the changed blocks of a chunk grouped stream<br/>
+     * - The returned array is reused: {x, y, z, combined (for dir), from, to}
+     */
+    private Iterator<int[]> getGroupedIterator(final FaweInputStream is, final boolean dir) {
+        final ChangeSection section = new ChangeSection(mode == 6);
+        final int originCX = originX >> 4;
+        final int originCZ = originZ >> 4;
+        final int[] change = new int[6];
+        return new Iterator<int[]>() {
+            private int index = -1;
+            private int[] last = read();
+
+            public int[] read() {
+                try {
+                    if (index != -1) {
+                        index = section.nextIndex(index + 1);
+                    }
+                    while (index == -1) {
+                        section.read(is, originCX, originCZ);
+                        index = section.nextIndex(0);
+                    }
+                    change[0] = section.getX(index);
+                    change[1] = section.getY(index);
+                    change[2] = section.getZ(index);
+                    change[3] = section.getCombined(index, dir);
+                    change[4] = section.getFrom(index);
+                    change[5] = section.getTo(index);
+                    return change;
+                } catch (EOFException ignoreOEF) {
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    MainUtil.handleError(e);
+                }
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    MainUtil.handleError(e);
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return last != null || ((last = read()) != null);
+            }
+
+            @Override
+            public int[] next() {
+                int[] tmp = last;
+                if (tmp == null) {
+                    tmp = read();
+                }
+                if (tmp == null) {
+                    throw new NoSuchElementException("End of iterator");
+                }
+                last = null;
+                return tmp;
+            }
+
+            @Override
+            public void remove() {
+                throw new IllegalArgumentException("CANNOT REMOVE");
+            }
+        };
+    }
+
+    /**
+     * Iterate over each section record of a chunk grouped change set<br/>
+     * - A section may appear more than once if it was written in multiple batches
+     *
+     * @return A new section for each record, or an empty iterator if this change set is not chunk grouped
+     * @throws IOException
+     */
+    public Iterator<ChangeSection> getSectionIterator() throws IOException {
+        final FaweInputStream is = getBlockIS();
+        if (is == null) {
+            return new ArrayList<ChangeSection>().iterator();
+        }
+        if (!isChunkGrouped()) {
+            is.close();
+            return new ArrayList<ChangeSection>().iterator();
+        }
+        final boolean redo = mode == 6;
+        final int originCX = originX >> 4;
+        final int originCZ = originZ >> 4;
+        return new Iterator<ChangeSection>() {
+            private ChangeSection last = read();
+
+            public ChangeSection read() {
+                try {
+                    ChangeSection section = new ChangeSection(redo);
+                    section.read(is, originCX, originCZ);
+                    return section;
+                } catch (EOFException ignoreOEF) {
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    MainUtil.handleError(e);
+                }
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    MainUtil.handleError(e);
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return last != null || ((last = read()) != null);
+            }
+
+            @Override
+            public ChangeSection next() {
+                ChangeSection tmp = last;
+                if (tmp == null) {
+                    tmp = read();
+                }
+                last = null;
+                return tmp;
+            }
+
+            @Override
+            public void remove() {
+                throw new IllegalArgumentException("CANNOT REMOVE");
+            }
+        };
+    }
+
     public Iterator<MutableBiomeChange> getBiomeIterator(final boolean dir) throws IOException {
         final InputStream is = getBiomeIS();
         if (is == null) {
@@ -528,6 +823,31 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
             return new ArrayList<MutableFullBlockChange>().iterator();
         }
         final MutableFullBlockChange change = new MutableFullBlockChange(blockBag, inventory, dir);
+        if (isChunkGrouped()) {
+            final Iterator<int[]> changes = getGroupedIterator(is, dir);
+            return new Iterator<MutableFullBlockChange>() {
+                @Override
+                public boolean hasNext() {
+                    return changes.hasNext();
+                }
+
+                @Override
+                public MutableFullBlockChange next() {
+                    int[] next = changes.next();
+                    change.x = next[0];
+                    change.y = next[1];
+                    change.z = next[2];
+                    change.from = next[4];
+                    change.to = next[5];
+                    return change;
+                }
+
+                @Override
+                public void remove() {
+                    throw new IllegalArgumentException("CANNOT REMOVE");
+                }
+            };
+        }
         return new Iterator<MutableFullBlockChange>() {
             private MutableFullBlockChange last = read();
 
@@ -0,0 +1,206 @@
+package com.boydti.fawe.object.changeset;
+
+import com.boydti.fawe.example.CharFaweChunk;
+import com.boydti.fawe.example.IFaweQueueMap;
+import com.boydti.fawe.example.MappedFaweQueue;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.change.MutableBlockChange;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.SetQueue;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.inventory.BlockBag;
+import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.history.UndoContext;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs an undo or redo by applying the block changes of each chunk in parallel<br/>
+ * - Tiles and entities are applied first, then blocks, then biomes (the same order as {@link ChangeSetExecutor})<br/>
+ * - Blocks are read in windows of chunk sections, each chunk in a window is written by a single task
+ */
+public class ParallelChangeSetExecutor implements Operation {
+
+    /**
+     * The number of chunk sections to read before applying them
+     */
+    public static final int WINDOW_SIZE = 512;
+
+    private final FaweStreamChangeSet changeSet;
+    private final UndoContext context;
+    private final IFaweQueueMap map;
+    private final boolean redo;
+
+    private final Long2ObjectOpenHashMap<ChangeSection[]> window = new Long2ObjectOpenHashMap<>();
+    private int windowSize;
+
+    ParallelChangeSetExecutor(FaweStreamChangeSet changeSet, UndoContext context, ChangeSetExecutor.Type type, IFaweQueueMap map) {
+        this.changeSet = changeSet;
+        this.context = context;
+        this.map = map;
+        this.redo = type == ChangeSetExecutor.Type.REDO;
+    }
+
+    /**
+     * @return if the change set can be applied in parallel to the queue
+     */
+    public static boolean supports(ChangeSet changeSet, FaweQueue queue, BlockBag blockBag, int inventory) {
+        return changeSet instanceof FaweStreamChangeSet && queue instanceof MappedFaweQueue && (blockBag == null || inventory == 0);
+    }
+
+    public static ParallelChangeSetExecutor create(FaweStreamChangeSet changeSet, UndoContext context, ChangeSetExecutor.Type type, MappedFaweQueue queue) {
+        return new ParallelChangeSetExecutor(changeSet, context, type, queue.getFaweQueueMap());
+    }
+
+    @Override
+    public Operation resume(RunContext run) throws WorldEditException {
+        changeSet.close();
+        try {
+            apply(changeSet.getTileIterator(changeSet.getTileCreateIS(), true, redo));
+            apply(changeSet.getTileIterator(changeSet.getTileRemoveIS(), false, redo));
+            apply(changeSet.getEntityIterator(changeSet.getEntityCreateIS(), true, redo));
+            apply(changeSet.getEntityIterator(changeSet.getEntityRemoveIS(), false, redo));
+
+            Iterator<ChangeSection> sections = changeSet.getSectionIterator();
+            if (sections.hasNext()) {
+                while (sections.hasNext()) {
+                    add(sections.next());
+                }
+            } else {
+                Iterator<MutableBlockChange> blocks = changeSet.getBlockIterator(redo);
+                while (blocks.hasNext()) {
+                    MutableBlockChange change = blocks.next();
+                    add(change.x, change.y, change.z, (char) ((change.id << 4) + change.data));
+                }
+            }
+            flushWindow();
+
+            apply(changeSet.getBiomeIterator(redo));
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+        return null;
+    }
+
+    private void apply(Iterator<? extends Change> iterator) throws WorldEditException {
+        if (redo) {
+            while (iterator.hasNext()) {
+                iterator.next().redo(context);
+            }
+        } else {
+            while (iterator.hasNext()) {
+                iterator.next().undo(context);
+            }
+        }
+    }
+
+    private ChangeSection[] getChunk(int cx, int cz) {
+        long pair = MathMan.pairInt(cx, cz);
+        ChangeSection[] chunk = window.get(pair);
+        if (chunk == null) {
+            window.put(pair, chunk = new ChangeSection[16]);
+        }
+        return chunk;
+    }
+
+    private void add(ChangeSection section) {
+        ChangeSection[] chunk = getChunk(section.getChunkX(), section.getChunkZ());
+        ChangeSection existing = chunk[section.getSectionY()];
+        if (existing == null) {
+            chunk[section.getSectionY()] = section;
+            if (++windowSize >= WINDOW_SIZE) {
+                flushWindow();
+            }
+        } else {
+            existing.merge(section);
+        }
+    }
+
+    private void add(int x, int y, int z, char combined) {
+        int cx = x >> 4;
+        int cz = z >> 4;
+        int cy = (y >> 4) & 15;
+        ChangeSection[] chunk = getChunk(cx, cz);
+        ChangeSection section = chunk[cy];
+        if (section == null) {
+            // Undo keeps the first value for a position, redo keeps the last
+            section = chunk[cy] = new ChangeSection(cx, cy, cz, redo);
+            windowSize++;
+        }
+        section.add(ChangeSection.getIndex(x, y, z), combined, combined);
+        if (windowSize >= WINDOW_SIZE) {
+            flushWindow();
+        }
+    }
+
+    private void flushWindow() {
+        if (window.isEmpty()) {
+            return;
+        }
+        // The chunks can't be dispatched until every task has finished writing to them
+        map.runLocked(new Runnable() {
+            @Override
+            public void run() {
+                applyWindow();
+            }
+        });
+        window.clear();
+        windowSize = 0;
+    }
+
+    private void applyWindow() {
+        ForkJoinPool pool = SetQueue.IMP.getForkJoinPool();
+        for (Long2ObjectMap.Entry<ChangeSection[]> entry : window.long2ObjectEntrySet()) {
+            long pair = entry.getLongKey();
+            // Chunks are fetched on this thread as the queue map is not thread safe
+            final FaweChunk chunk = map.getFaweChunk(MathMan.unpairIntX(pair), MathMan.unpairIntY(pair));
+            final ChangeSection[] sections = entry.getValue();
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (ChangeSection section : sections) {
+                            if (section != null) {
+                                apply(chunk, section);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        MainUtil.handleError(e);
+                    }
+                }
+            });
+        }
+        pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    private void apply(FaweChunk chunk, ChangeSection section) {
+        if (section.size() == ChangeSection.SIZE && chunk instanceof CharFaweChunk) {
+            // A section snapshot (e.g. from a //set) is restored wholesale
+            ((CharFaweChunk) chunk).setSection(section.getSectionY(), section.getCombinedArray(redo));
+            return;
+        }
+        for (int index = section.nextIndex(0); index != -1; index = section.nextIndex(index + 1)) {
+            int combined = section.getCombined(index, redo);
+            chunk.setBlock(index & 15, section.getY(index), (index >> 4) & 15, combined >> 4, combined & 0xF);
+        }
+    }
+
+    @Override
+    public void cancel() {
+    }
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+    }
+}
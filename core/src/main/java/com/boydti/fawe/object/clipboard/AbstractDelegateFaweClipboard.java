@@ -1,6 +1,7 @@
 package com.boydti.fawe.object.clipboard;
 
 import com.boydti.fawe.jnbt.NBTStreamer;
+import com.boydti.fawe.object.clipboard.remap.ClipboardRemapper;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
@@ -102,6 +103,11 @@ public class AbstractDelegateFaweClipboard extends FaweClipboard {
         parent.setDimensions(dimensions);
     }
 
+    @Override
+    public boolean remap(ClipboardRemapper remapper) {
+        return parent.remap(remapper);
+    }
+
     @Override
     public void flush() {
         parent.flush();
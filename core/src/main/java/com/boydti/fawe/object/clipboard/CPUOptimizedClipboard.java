@@ -3,7 +3,9 @@ package com.boydti.fawe.object.clipboard;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.jnbt.NBTStreamer;
 import com.boydti.fawe.object.IntegerTrio;
+import com.boydti.fawe.object.clipboard.remap.ClipboardRemapper;
 import com.boydti.fawe.util.ReflectionUtils;
+import com.boydti.fawe.util.SetQueue;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.Tag;
@@ -19,6 +21,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class CPUOptimizedClipboard extends FaweClipboard {
     private int length;
@@ -27,6 +31,9 @@ public class CPUOptimizedClipboard extends FaweClipboard {
     private int area;
     private int volume;
 
+    // The minimum number of blocks each thread remaps
+    private static final int MIN_SLICE = 1 << 16;
+
     private byte[] biomes = null;
     private byte[] ids;
     private byte[] datas;
@@ -161,6 +168,16 @@ public class CPUOptimizedClipboard extends FaweClipboard {
         datas[index] = (byte) value;
     }
 
+    @Override
+    public void setIds(int index, byte[] ids, int offset, int length) {
+        System.arraycopy(ids, offset, this.ids, index, length);
+    }
+
+    @Override
+    public void setDatas(int index, byte[] datas, int offset, int length) {
+        System.arraycopy(datas, offset, this.datas, index, length);
+    }
+
     private int ylast;
     private int ylasti;
     private int zlast;
@@ -263,6 +280,77 @@ public class CPUOptimizedClipboard extends FaweClipboard {
         }
     }
 
+    @Override
+    public boolean remap(final ClipboardRemapper remapper) {
+        final char[] table = remapper.getTable();
+        convertTilesToIndex();
+        for (Map.Entry<Integer, CompoundTag> entry : nbtMapIndex.entrySet()) {
+            int index = entry.getKey();
+            int from = getCombined(index);
+            int to = table[from];
+            if (to != from) {
+                remapper.remapTile(from, to, entry.getValue());
+            }
+        }
+        if (add == null) {
+            // Ids above 255 need the add array
+            for (int combined = 0; combined < 4096; combined++) {
+                if (table[combined] >= 4096) {
+                    add = new byte[volume];
+                    break;
+                }
+            }
+        }
+        ForkJoinPool pool = SetQueue.IMP.getForkJoinPool();
+        int slices = Math.max(1, Math.min(pool.getParallelism(), volume / MIN_SLICE));
+        if (slices == 1) {
+            remap(table, 0, volume);
+            return true;
+        }
+        ForkJoinTask[] futures = new ForkJoinTask[slices];
+        for (int i = 0; i < slices; i++) {
+            final int start = (int) (((long) volume * i) / slices);
+            final int end = (int) (((long) volume * (i + 1)) / slices);
+            futures[i] = pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    remap(table, start, end);
+                }
+            });
+        }
+        for (ForkJoinTask future : futures) {
+            future.join();
+        }
+        return true;
+    }
+
+    private int getCombined(int index) {
+        int id = getId(index);
+        if (add != null) {
+            id += getAdd(index) << 8;
+        }
+        return (id << 4) + (datas[index] & 0xF);
+    }
+
+    private void remap(char[] table, int start, int end) {
+        byte[] add = this.add;
+        for (int i = start; i < end; i++) {
+            int id = ids[i] & 0xFF;
+            if (add != null) {
+                id += (add[i] & 0xFF) << 8;
+            }
+            int from = (id << 4) + (datas[i] & 0xF);
+            int to = table[from];
+            if (to != from) {
+                ids[i] = (byte) (to >> 4);
+                datas[i] = (byte) (to & 0xF);
+                if (add != null) {
+                    add[i] = (byte) (to >> 12);
+                }
+            }
+        }
+    }
+
     @Override
     public List<CompoundTag> getTileEntities() {
         convertTilesToIndex();
@@ -0,0 +1,798 @@
+package com.boydti.fawe.object.clipboard;
+
+import com.boydti.fawe.Fawe;
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.jnbt.NBTStreamer;
+import com.boydti.fawe.object.IntegerTrio;
+import com.boydti.fawe.object.clipboard.remap.ClipboardRemapper;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.ReflectionUtils;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.biome.BaseBiome;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A clipboard with disk backed storage, compressed in 16x16x16 bricks<br/>
+ * - Each brick is compressed separately (LZ4), with an index at the start of the file<br/>
+ * - Bricks of a single block (e.g. air) are stored in the index only<br/>
+ * - Recently used bricks are kept decompressed in memory, and written back when evicted or flushed<br/>
+ * - Like the {@link DiskOptimizedClipboard}, tiles and entities are kept in memory<br/>
+ * - Block access is synchronized, as the brick cache and the (de)compression buffers are shared
+ */
+public class CompressedDiskClipboard extends FaweClipboard implements Closeable {
+    public static final int MAGIC = 0x46434231; // FCB1
+    // magic, width, height, length, origin, biome offset, biome length, biome capacity
+    public static final int HEADER_SIZE = 32;
+    // offset, length, capacity
+    private static final int INDEX_ENTRY = 16;
+    private static final int BRICK_VOLUME = 4096;
+    // Slots are rounded up so bricks which grow a little can be rewritten in place
+    private static final int SLOT_ROUNDING = 256;
+
+    protected int length;
+    protected int height;
+    protected int width;
+    protected int area;
+    protected int volume;
+
+    private int bricksX;
+    private int bricksZ;
+    private int bricks;
+    private long[] offsets;
+    private int[] lengths;
+    private int[] capacities;
+    private long end;
+
+    private final HashMap<IntegerTrio, CompoundTag> nbtMap;
+    private final HashSet<ClipboardEntity> entities;
+    private File file;
+    private RandomAccessFile braf;
+    private FileChannel fc;
+    private final int compression;
+
+    private byte[] biomes;
+    private long biomeOffset;
+    private int biomeLength;
+    private int biomeCapacity;
+    private short ox, oy, oz;
+
+    private final LinkedHashMap<Integer, Brick> cache;
+    private Brick last;
+    private final byte[] buffer = new byte[BRICK_VOLUME << 1];
+    private byte[] compressBuffer;
+
+    private static final class Brick {
+        private final int index;
+        private final char[] blocks = new char[BRICK_VOLUME];
+        private boolean dirty;
+
+        private Brick(int index) {
+            this.index = index;
+        }
+    }
+
+    public CompressedDiskClipboard(int width, int height, int length, UUID uuid) {
+        this(width, height, length, MainUtil.getFile(Fawe.get() != null ? Fawe.imp().getDirectory() : new File("."), Settings.IMP.PATHS.CLIPBOARD + File.separator + uuid + ".bd"));
+    }
+
+    public CompressedDiskClipboard(int width, int height, int length) {
+        this(width, height, length, MainUtil.getFile(Fawe.imp() != null ? Fawe.imp().getDirectory() : new File("."), Settings.IMP.PATHS.CLIPBOARD + File.separator + UUID.randomUUID() + ".bd"));
+    }
+
+    public CompressedDiskClipboard(int width, int height, int length, File file) {
+        this.nbtMap = new HashMap<>();
+        this.entities = new HashSet<>();
+        this.compression = Math.max(1, Settings.IMP.CLIPBOARD.COMPRESSION_LEVEL);
+        this.cache = createCache();
+        this.file = file;
+        try {
+            if (!file.exists()) {
+                File parent = file.getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                file.createNewFile();
+            }
+            this.braf = new RandomAccessFile(file, "rw");
+            braf.setLength(0);
+            this.fc = braf.getChannel();
+            setLayout(width, height, length);
+            writeHeader();
+            writeIndex();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public CompressedDiskClipboard(File file) {
+        this.nbtMap = new HashMap<>();
+        this.entities = new HashSet<>();
+        this.compression = Math.max(1, Settings.IMP.CLIPBOARD.COMPRESSION_LEVEL);
+        this.cache = createCache();
+        this.file = file;
+        try {
+            this.braf = new RandomAccessFile(file, "rw");
+            this.fc = braf.getChannel();
+            ByteBuffer header = read(0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a compressed clipboard: " + file);
+            }
+            setLayout(header.getChar(4), header.getChar(6), header.getChar(8));
+            ox = header.getShort(10);
+            oy = header.getShort(12);
+            oz = header.getShort(14);
+            biomeOffset = header.getLong(16);
+            biomeLength = header.getInt(24);
+            biomeCapacity = header.getInt(28);
+            ByteBuffer index = read(HEADER_SIZE, bricks * INDEX_ENTRY);
+            for (int i = 0; i < bricks; i++) {
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+                capacities[i] = index.getInt();
+                if (lengths[i] != 0) {
+                    end = Math.max(end, offsets[i] + capacities[i]);
+                }
+            }
+            if (biomeOffset != 0) {
+                byte[] compressed = new byte[biomeLength];
+                read(biomeOffset, biomeLength).get(compressed);
+                biomes = MainUtil.decompress(compressed, null, area, compression);
+                end = Math.max(end, biomeOffset + biomeCapacity);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param file
+     * @return if the file uses the compressed clipboard layout
+     */
+    public static boolean isFormat(File file) {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private LinkedHashMap<Integer, Brick> createCache() {
+        final int max = Math.max(1, Settings.IMP.CLIPBOARD.BRICK_CACHE);
+        return new LinkedHashMap<Integer, Brick>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Brick> eldest) {
+                if (size() > max) {
+                    save(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private void setLayout(int width, int height, int length) {
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.area = width * length;
+        this.volume = area * height;
+        this.bricksX = (width + 15) >> 4;
+        this.bricksZ = (length + 15) >> 4;
+        this.bricks = bricksX * bricksZ * ((height + 15) >> 4);
+        this.offsets = new long[bricks];
+        this.lengths = new int[bricks];
+        this.capacities = new int[bricks];
+        this.end = HEADER_SIZE + (long) bricks * INDEX_ENTRY;
+        this.biomeOffset = 0;
+        this.biomeLength = 0;
+        this.biomeCapacity = 0;
+        this.cache.clear();
+        this.last = null;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        while (buf.hasRemaining()) {
+            if (fc.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Unexpected end of file: " + file);
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private void write(long position, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            fc.write(buf, position + buf.position());
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putChar((char) width);
+        header.putChar((char) height);
+        header.putChar((char) length);
+        header.putShort(ox);
+        header.putShort(oy);
+        header.putShort(oz);
+        header.putLong(biomeOffset);
+        header.putInt(biomes == null ? 0 : biomeLength);
+        header.putInt(biomeCapacity);
+        header.flip();
+        write(0, header);
+    }
+
+    private void writeIndex() throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(bricks * INDEX_ENTRY);
+        for (int i = 0; i < bricks; i++) {
+            index.putLong(offsets[i]);
+            index.putInt(lengths[i]);
+            index.putInt(capacities[i]);
+        }
+        index.flip();
+        write(HEADER_SIZE, index);
+    }
+
+    private void writeIndex(int brick) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+        entry.putLong(offsets[brick]);
+        entry.putInt(lengths[brick]);
+        entry.putInt(capacities[brick]);
+        entry.flip();
+        write(HEADER_SIZE + (long) brick * INDEX_ENTRY, entry);
+    }
+
+    private void writeBiomes() throws IOException {
+        if (biomes == null) {
+            return;
+        }
+        byte[] compressed = MainUtil.compress(biomes, null, compression);
+        if (biomeCapacity < compressed.length) {
+            biomeOffset = allocate(compressed.length);
+            biomeCapacity = roundSlot(compressed.length);
+        }
+        biomeLength = compressed.length;
+        write(biomeOffset, ByteBuffer.wrap(compressed));
+        writeHeader();
+    }
+
+    private int roundSlot(int size) {
+        return ((size + SLOT_ROUNDING - 1) / SLOT_ROUNDING) * SLOT_ROUNDING;
+    }
+
+    private long allocate(int size) {
+        long offset = end;
+        end += roundSlot(size);
+        return offset;
+    }
+
+    /**
+     * Move the bricks down over the unused slots (e.g. of bricks which grew), if more than half the data is unused
+     */
+    private void compact() throws IOException {
+        long start = HEADER_SIZE + (long) bricks * INDEX_ENTRY;
+        long used = biomeCapacity;
+        int count = 0;
+        for (int i = 0; i < bricks; i++) {
+            if (lengths[i] != 0) {
+                used += capacities[i];
+                count++;
+            }
+        }
+        if (end - start <= used * 2) {
+            return;
+        }
+        // Sorted by offset, so a slot is only moved over data which has already been moved
+        long[] order = new long[count + (biomeCapacity != 0 ? 1 : 0)];
+        int j = 0;
+        for (int i = 0; i < bricks; i++) {
+            if (lengths[i] != 0) {
+                order[j++] = offsets[i];
+            }
+        }
+        if (biomeCapacity != 0) {
+            order[j] = biomeOffset;
+        }
+        Arrays.sort(order);
+        HashMap<Long, Integer> byOffset = new HashMap<>();
+        for (int i = 0; i < bricks; i++) {
+            if (lengths[i] != 0) {
+                byOffset.put(offsets[i], i);
+            }
+        }
+        long position = start;
+        for (long offset : order) {
+            Integer brick = byOffset.get(offset);
+            int len = brick == null ? biomeLength : lengths[brick];
+            int capacity = roundSlot(len);
+            if (offset != position) {
+                write(position, read(offset, len));
+            }
+            if (brick == null) {
+                biomeOffset = position;
+                biomeCapacity = capacity;
+            } else {
+                offsets[brick] = position;
+                capacities[brick] = capacity;
+            }
+            position += capacity;
+        }
+        end = position;
+        writeIndex();
+        writeHeader();
+        fc.truncate(end);
+    }
+
+    private Brick getBrick(int x, int y, int z) {
+        return getBrick((((y >> 4) * bricksZ) + (z >> 4)) * bricksX + (x >> 4));
+    }
+
+    private synchronized Brick getBrick(int index) {
+        Brick brick = last;
+        if (brick != null && brick.index == index) {
+            return brick;
+        }
+        brick = cache.get(index);
+        if (brick == null) {
+            brick = load(index);
+            cache.put(index, brick);
+        }
+        return last = brick;
+    }
+
+    private Brick load(int index) {
+        Brick brick = new Brick(index);
+        int len = lengths[index];
+        if (len == 0) {
+            // A single block, stored in the offset
+            char value = (char) offsets[index];
+            if (value != 0) {
+                Arrays.fill(brick.blocks, value);
+            }
+            return brick;
+        }
+        try {
+            byte[] compressed = new byte[len];
+            read(offsets[index], len).get(compressed);
+            byte[] bytes = MainUtil.decompress(compressed, buffer, buffer.length, compression);
+            char[] blocks = brick.blocks;
+            // The high and low bytes are stored separately, as they compress better
+            for (int i = 0; i < BRICK_VOLUME; i++) {
+                blocks[i] = (char) (((bytes[i] & 0xFF) << 8) + (bytes[i + BRICK_VOLUME] & 0xFF));
+            }
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+        return brick;
+    }
+
+    private void save(Brick brick) {
+        if (!brick.dirty) {
+            return;
+        }
+        brick.dirty = false;
+        int index = brick.index;
+        try {
+            char[] blocks = brick.blocks;
+            char first = blocks[0];
+            boolean uniform = true;
+            for (int i = 1; i < BRICK_VOLUME; i++) {
+                if (blocks[i] != first) {
+                    uniform = false;
+                    break;
+                }
+            }
+            if (uniform) {
+                offsets[index] = first;
+                lengths[index] = 0;
+                capacities[index] = 0;
+            } else {
+                for (int i = 0; i < BRICK_VOLUME; i++) {
+                    char combined = blocks[i];
+                    buffer[i] = (byte) (combined >> 8);
+                    buffer[i + BRICK_VOLUME] = (byte) combined;
+                }
+                if (compressBuffer == null) {
+                    compressBuffer = new byte[MainUtil.getMaxCompressedLength(buffer.length)];
+                }
+                byte[] compressed = MainUtil.compress(buffer, compressBuffer, compression);
+                if (lengths[index] == 0 || capacities[index] < compressed.length) {
+                    offsets[index] = allocate(compressed.length);
+                    capacities[index] = roundSlot(compressed.length);
+                }
+                lengths[index] = compressed.length;
+                write(offsets[index], ByteBuffer.wrap(compressed));
+            }
+            writeIndex(index);
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    @Override
+    public boolean hasBiomes() {
+        return biomes != null;
+    }
+
+    @Override
+    public boolean setBiome(int x, int z, int biome) {
+        setBiome(x + z * width, biome);
+        return true;
+    }
+
+    @Override
+    public void setBiome(int index, int biome) {
+        if (biomes == null) {
+            biomes = new byte[area];
+        }
+        biomes[index] = (byte) biome;
+    }
+
+    @Override
+    public BaseBiome getBiome(int index) {
+        if (biomes == null) {
+            return EditSession.nullBiome;
+        }
+        return FaweCache.CACHE_BIOME[biomes[index] & 0xFF];
+    }
+
+    @Override
+    public BaseBiome getBiome(int x, int z) {
+        return getBiome(x + z * width);
+    }
+
+    @Override
+    public void streamBiomes(NBTStreamer.ByteReader task) {
+        if (biomes == null) return;
+        for (int index = 0; index < area; index++) {
+            task.run(index, biomes[index] & 0xFF);
+        }
+    }
+
+    @Override
+    public Vector getDimensions() {
+        return new Vector(width, height, length);
+    }
+
+    public BlockArrayClipboard toClipboard() {
+        try {
+            CuboidRegion region = new CuboidRegion(new Vector(0, 0, 0), new Vector(width - 1, height - 1, length - 1));
+            BlockArrayClipboard clipboard = new BlockArrayClipboard(region, this);
+            clipboard.setOrigin(new Vector(ox, oy, oz));
+            return clipboard;
+        } catch (Throwable e) {
+            MainUtil.handleError(e);
+        }
+        return null;
+    }
+
+    @Override
+    public void setOrigin(Vector offset) {
+        ox = (short) offset.getBlockX();
+        oy = (short) offset.getBlockY();
+        oz = (short) offset.getBlockZ();
+        try {
+            writeHeader();
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    /**
+     * Change the dimensions, keeping the blocks at the same index (x + z * width + y * area)<br/>
+     * - The bricks are rewritten if there are any blocks
+     */
+    @Override
+    public synchronized void setDimensions(Vector dimensions) {
+        int newWidth = dimensions.getBlockX();
+        int newHeight = dimensions.getBlockY();
+        int newLength = dimensions.getBlockZ();
+        if (newWidth == width && newHeight == height && newLength == length) {
+            return;
+        }
+        try {
+            boolean empty = cache.isEmpty();
+            for (int i = 0; i < bricks && empty; i++) {
+                empty = lengths[i] == 0 && offsets[i] == 0;
+            }
+            if (empty) {
+                byte[] oldBiomes = biomes;
+                setLayout(newWidth, newHeight, newLength);
+                biomes = oldBiomes == null ? null : Arrays.copyOf(oldBiomes, area);
+                fc.truncate(0);
+                writeHeader();
+                writeIndex();
+                return;
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            CompressedDiskClipboard copy = new CompressedDiskClipboard(newWidth, newHeight, newLength, tmp);
+            int max = Math.min(volume, copy.volume);
+            for (int i = 0; i < max; i++) {
+                int combined = getCombined(i);
+                if (combined != 0) {
+                    copy.setCombined(i, combined);
+                }
+            }
+            if (biomes != null) {
+                copy.biomes = Arrays.copyOf(biomes, copy.area);
+            }
+            copy.setOrigin(new Vector(ox, oy, oz));
+            copy.close();
+            closeFile();
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+            this.braf = new RandomAccessFile(file, "rw");
+            this.fc = braf.getChannel();
+            setLayout(newWidth, newHeight, newLength);
+            System.arraycopy(copy.offsets, 0, offsets, 0, bricks);
+            System.arraycopy(copy.lengths, 0, lengths, 0, bricks);
+            System.arraycopy(copy.capacities, 0, capacities, 0, bricks);
+            this.end = copy.end;
+            this.biomes = copy.biomes;
+            this.biomeOffset = copy.biomeOffset;
+            this.biomeLength = copy.biomeLength;
+            this.biomeCapacity = copy.biomeCapacity;
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (fc == null) {
+            return;
+        }
+        try {
+            for (Brick brick : cache.values()) {
+                save(brick);
+            }
+            writeBiomes();
+            compact();
+            fc.force(false);
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        close();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (fc != null) {
+            flush();
+            closeFile();
+            cache.clear();
+            last = null;
+        }
+    }
+
+    private void closeFile() {
+        try {
+            if (fc != null) {
+                fc.close();
+                braf.close();
+                file.setWritable(true);
+                fc = null;
+                braf = null;
+            }
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    private int getLocal(int x, int y, int z) {
+        return ((y & 15) << 8) + ((z & 15) << 4) + (x & 15);
+    }
+
+    public synchronized int getCombined(int x, int y, int z) {
+        return getBrick(x, y, z).blocks[getLocal(x, y, z)];
+    }
+
+    public synchronized void setCombined(int x, int y, int z, int combined) {
+        Brick brick = getBrick(x, y, z);
+        brick.blocks[getLocal(x, y, z)] = (char) combined;
+        brick.dirty = true;
+    }
+
+    public int getCombined(int i) {
+        int y = i / area;
+        int newI = i - y * area;
+        int z = newI / width;
+        int x = newI - z * width;
+        return getCombined(x, y, z);
+    }
+
+    public void setCombined(int i, int combined) {
+        int y = i / area;
+        int newI = i - y * area;
+        int z = newI / width;
+        int x = newI - z * width;
+        setCombined(x, y, z, combined);
+    }
+
+    @Override
+    public synchronized boolean remap(ClipboardRemapper remapper) {
+        char[] table = remapper.getTable();
+        for (Map.Entry<IntegerTrio, CompoundTag> entry : nbtMap.entrySet()) {
+            IntegerTrio trio = entry.getKey();
+            int from = getCombined(trio.x, trio.y, trio.z);
+            int to = table[from];
+            if (to != from) {
+                remapper.remapTile(from, to, entry.getValue());
+            }
+        }
+        for (int index = 0; index < bricks; index++) {
+            if (lengths[index] == 0 && !cache.containsKey(index)) {
+                // A single block, which can be remapped without loading the brick
+                char from = (char) offsets[index];
+                char to = table[from];
+                if (to != from) {
+                    offsets[index] = to;
+                    try {
+                        writeIndex(index);
+                    } catch (IOException e) {
+                        MainUtil.handleError(e);
+                    }
+                }
+                continue;
+            }
+            Brick brick = getBrick(index);
+            if (remapper.remap(brick.blocks, 0, BRICK_VOLUME) != 0) {
+                brick.dirty = true;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<CompoundTag> getTileEntities() {
+        return new ArrayList<>(nbtMap.values());
+    }
+
+    private BaseBlock getBlock(int x, int y, int z, int combinedId, IntegerTrio trio) {
+        BaseBlock block = FaweCache.CACHE_BLOCK[combinedId];
+        if (block.canStoreNBTData() && !nbtMap.isEmpty()) {
+            trio.set(x, y, z);
+            CompoundTag nbt = nbtMap.get(trio);
+            if (nbt != null) {
+                block = new BaseBlock(block.getId(), block.getData());
+                block.setNbtData(nbt);
+            }
+        }
+        return block;
+    }
+
+    @Override
+    public void forEach(final BlockReader task, boolean air) {
+        IntegerTrio trio = new IntegerTrio();
+        char[] row = new char[16];
+        for (int y = 0; y < height; y++) {
+            for (int z = 0; z < length; z++) {
+                // A row of 16 blocks from each brick, copied so the task runs outside of the lock
+                for (int bx = 0; bx < width; bx += 16) {
+                    synchronized (this) {
+                        System.arraycopy(getBrick(bx, y, z).blocks, getLocal(bx, y, z), row, 0, 16);
+                    }
+                    int maxX = Math.min(width, bx + 16);
+                    for (int x = bx; x < maxX; x++) {
+                        int combinedId = row[x - bx];
+                        if (air || combinedId != 0) {
+                            task.run(x, y, z, getBlock(x, y, z, combinedId, trio));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public BaseBlock getBlock(int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= width || y >= height || z >= length) {
+            return EditSession.nullBlock;
+        }
+        return getBlock(x, y, z, getCombined(x, y, z), new IntegerTrio());
+    }
+
+    @Override
+    public BaseBlock getBlock(int i) {
+        if (i < 0 || i >= volume) {
+            return EditSession.nullBlock;
+        }
+        int y = i / area;
+        int newI = i - y * area;
+        int z = newI / width;
+        int x = newI - z * width;
+        return getBlock(x, y, z);
+    }
+
+    @Override
+    public boolean setTile(int x, int y, int z, CompoundTag tag) {
+        nbtMap.put(new IntegerTrio(x, y, z), tag);
+        Map<String, Tag> values = ReflectionUtils.getMap(tag.getValue());
+        values.put("x", new IntTag(x));
+        values.put("y", new IntTag(y));
+        values.put("z", new IntTag(z));
+        return true;
+    }
+
+    @Override
+    public boolean setBlock(int x, int y, int z, BaseBlock block) {
+        setCombined(x, y, z, (block.getId() << 4) + block.getData());
+        CompoundTag tile = block.getNbtData();
+        if (tile != null) {
+            setTile(x, y, z, tile);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void setId(int i, int id) {
+        int combined = getCombined(i);
+        setCombined(i, (combined & 0xF00F) + (id << 4));
+    }
+
+    @Override
+    public synchronized void setAdd(int i, int add) {
+        int combined = getCombined(i);
+        setCombined(i, (combined & 0x0FFF) + (add << 12));
+    }
+
+    @Override
+    public synchronized void setData(int i, int data) {
+        int combined = getCombined(i);
+        setCombined(i, (combined & 0xFFF0) + data);
+    }
+
+    @Override
+    public Entity createEntity(Extent world, double x, double y, double z, float yaw, float pitch, BaseEntity entity) {
+        FaweClipboard.ClipboardEntity ret = new ClipboardEntity(world, x, y, z, yaw, pitch, entity);
+        entities.add(ret);
+        return ret;
+    }
+
+    @Override
+    public List<? extends Entity> getEntities() {
+        return new ArrayList<>(entities);
+    }
+
+    @Override
+    public boolean remove(ClipboardEntity clipboardEntity) {
+        return entities.remove(clipboardEntity);
+    }
+}
@@ -5,6 +5,7 @@ import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.jnbt.NBTStreamer;
 import com.boydti.fawe.object.IntegerTrio;
+import com.boydti.fawe.object.clipboard.remap.ClipboardRemapper;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.ReflectionUtils;
 import com.sk89q.jnbt.CompoundTag;
@@ -262,30 +263,7 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     }
 
     private void closeDirectBuffer(ByteBuffer cb) {
-        if (cb == null || !cb.isDirect()) return;
-
-        // we could use this type cast and call functions without reflection code,
-        // but static import from sun.* package is risky for non-SUN virtual machine.
-        //try { ((sun.nio.ch.DirectBuffer)cb).cleaner().clean(); } catch (Exception ex) { }
-        try {
-            Method cleaner = cb.getClass().getMethod("cleaner");
-            cleaner.setAccessible(true);
-            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
-            clean.setAccessible(true);
-            clean.invoke(cleaner.invoke(cb));
-        } catch (Exception ex) {
-            try {
-                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
-                final Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
-                theUnsafeField.setAccessible(true);
-                final Object theUnsafe = theUnsafeField.get(null);
-                final Method invokeCleanerMethod = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
-                invokeCleanerMethod.invoke(theUnsafe, cb);
-            } catch (Exception e) {
-                System.gc();
-            }
-        }
-        cb = null;
+        MainUtil.closeDirectBuffer(cb);
     }
 
     @Override
@@ -369,6 +347,31 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
         }
     }
 
+    @Override
+    public boolean remap(ClipboardRemapper remapper) {
+        try {
+            char[] table = remapper.getTable();
+            for (Map.Entry<IntegerTrio, CompoundTag> entry : nbtMap.entrySet()) {
+                IntegerTrio trio = entry.getKey();
+                int from = mbb.getChar(HEADER_SIZE + (getIndex(trio.x, trio.y, trio.z) << 1));
+                int to = table[from];
+                if (to != from) {
+                    remapper.remapTile(from, to, entry.getValue());
+                }
+            }
+            for (int pos = HEADER_SIZE, end = HEADER_SIZE + (volume << 1); pos < end; pos += 2) {
+                char from = mbb.getChar(pos);
+                char to = table[from];
+                if (to != from) {
+                    mbb.putChar(pos, to);
+                }
+            }
+        } catch (Throwable e) {
+            MainUtil.handleError(e);
+        }
+        return true;
+    }
+
     @Override
     public List<CompoundTag> getTileEntities() {
         return new ArrayList<>(nbtMap.values());
@@ -1,6 +1,7 @@
 package com.boydti.fawe.object.clipboard;
 
 import com.boydti.fawe.jnbt.NBTStreamer;
+import com.boydti.fawe.object.clipboard.remap.ClipboardRemapper;
 import com.boydti.fawe.util.ReflectionUtils;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
@@ -43,6 +44,36 @@ public abstract class FaweClipboard {
 
     public abstract void setAdd(int index, int id);
 
+    /**
+     * Set the id byte of consecutive blocks while filling a new clipboard (e.g. from a schematic's Blocks array)
+     *
+     * @param index the index of the first block
+     * @param ids
+     * @param offset
+     * @param length
+     */
+    public void setIds(int index, byte[] ids, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            int id = ids[offset + i] & 0xFF;
+            if (id != 0) setId(index + i, id);
+        }
+    }
+
+    /**
+     * Set the data of consecutive blocks while filling a new clipboard (e.g. from a schematic's Data array)
+     *
+     * @param index the index of the first block
+     * @param datas
+     * @param offset
+     * @param length
+     */
+    public void setDatas(int index, byte[] datas, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            int data = datas[offset + i] & 0xFF;
+            if (data != 0) setData(index + i, data);
+        }
+    }
+
     public abstract boolean setTile(int x, int y, int z, CompoundTag tag);
 
     public abstract Entity createEntity(Extent world, double x, double y, double z, float yaw, float pitch, BaseEntity entity);
@@ -114,6 +145,16 @@ public abstract class FaweClipboard {
         return tiles;
     }
 
+    /**
+     * Remap the blocks in place, in bulk
+     *
+     * @param remapper
+     * @return false if this clipboard can't be remapped in place
+     */
+    public boolean remap(ClipboardRemapper remapper) {
+        return false;
+    }
+
     public void close() {
     }
 
@@ -297,6 +297,58 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
         saveDatas = true;
     }
 
+    @Override
+    public void setIds(int index, byte[] ids, int offset, int length) {
+        while (length > 0) {
+            int i = index >> BLOCK_SHIFT;
+            int local = index & BLOCK_MASK;
+            int amount = Math.min(length, BLOCK_SIZE - local);
+            if (i != lastIdsI) {
+                saveIds();
+                byte[] compressed = this.ids[lastIdsI = i];
+                if (compressed != null) {
+                    lastIds = MainUtil.decompress(compressed, lastIds, BLOCK_SIZE, compressionLevel);
+                } else {
+                    lastIds = null;
+                }
+            }
+            if (lastIds == null) {
+                lastIds = new byte[BLOCK_SIZE];
+            }
+            System.arraycopy(ids, offset, lastIds, local, amount);
+            saveIds = true;
+            index += amount;
+            offset += amount;
+            length -= amount;
+        }
+    }
+
+    @Override
+    public void setDatas(int index, byte[] datas, int offset, int length) {
+        while (length > 0) {
+            int i = index >> BLOCK_SHIFT;
+            int local = index & BLOCK_MASK;
+            int amount = Math.min(length, BLOCK_SIZE - local);
+            if (i != lastDatasI) {
+                saveDatas();
+                byte[] compressed = this.datas[lastDatasI = i];
+                if (compressed != null) {
+                    lastDatas = MainUtil.decompress(compressed, lastDatas, BLOCK_SIZE, compressionLevel);
+                } else {
+                    lastDatas = null;
+                }
+            }
+            if (lastDatas == null) {
+                lastDatas = new byte[BLOCK_SIZE];
+            }
+            System.arraycopy(datas, offset, lastDatas, local, amount);
+            saveDatas = true;
+            index += amount;
+            offset += amount;
+            length -= amount;
+        }
+    }
+
     @Override
     public void setAdd(int index, int value) {
         if (value == 0) {
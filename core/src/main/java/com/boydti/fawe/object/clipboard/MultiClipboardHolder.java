@@ -37,6 +37,8 @@ public class MultiClipboardHolder extends URIClipboardHolder {
             FaweClipboard fc = ((BlockArrayClipboard) clipboard).IMP;
             if (fc instanceof DiskOptimizedClipboard) {
                 uri = ((DiskOptimizedClipboard) fc).getFile().toURI();
+            } else if (fc instanceof CompressedDiskClipboard) {
+                uri = ((CompressedDiskClipboard) fc).getFile().toURI();
             }
         }
         add(uri, clipboard);
@@ -1,12 +1,15 @@
 package com.boydti.fawe.object.clipboard.remap;
 
 import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.util.ReflectionUtils;
 import com.google.common.io.Resources;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.intellectualcrafters.plot.util.MathMan;
+import com.sk89q.jnbt.ByteTag;
 import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
@@ -422,10 +425,20 @@ public class ClipboardRemapper {
         add(to, from);
     }
 
+    /**
+     * Remap the blocks in a clipboard<br/>
+     * - Clipboards backed by block arrays are remapped in place, in bulk<br/>
+     * - Other FAWE clipboards are remapped as blocks are read
+     *
+     * @param clipboard
+     * @throws WorldEditException
+     */
     public void apply(Clipboard clipboard) throws WorldEditException {
         if (clipboard instanceof BlockArrayClipboard) {
             BlockArrayClipboard bac = (BlockArrayClipboard) clipboard;
-            bac.IMP = new RemappedClipboard(bac.IMP, this);
+            if (!bac.IMP.remap(this)) {
+                bac.IMP = new RemappedClipboard(bac.IMP, this);
+            }
         } else {
             Region region = clipboard.getRegion();
             for (BlockVector pos : region) {
@@ -438,6 +451,29 @@ public class ClipboardRemapper {
         }
     }
 
+    /**
+     * A change to the NBT of a tile entity when its block is remapped
+     */
+    public interface TileRemap {
+        void apply(int combinedFrom, int combinedTo, Map<String, Tag> nbt);
+    }
+
+    // Tile rules by the id of the new block
+    private final TileRemap[] tileRemaps = new TileRemap[4096];
+
+    {
+        // The facing of a PE shulker box is stored in the tile
+        addTileRemap(218, new TileRemap() {
+            @Override
+            public void apply(int combinedFrom, int combinedTo, Map<String, Tag> nbt) {
+                nbt.putIfAbsent("facing", new ByteTag((byte) (combinedFrom & 15)));
+            }
+        });
+    }
+
+    // The compiled combined id -> combined id table (null after a change)
+    private char[] table;
+
     private char[] remapCombined = new char[Character.MAX_VALUE + 1];
     private boolean[] remap = new boolean[Character.MAX_VALUE + 1];
     private boolean[] remapIds = new boolean[4096];
@@ -464,7 +500,65 @@ public class ClipboardRemapper {
         return id;
     }
 
+    public void addTileRemap(int id, TileRemap remap) {
+        tileRemaps[id] = remap;
+    }
+
+    /**
+     * Get the dense table of combined id -> combined id (unmapped ids map to themselves)
+     *
+     * @return the table, which shouldn't be modified
+     */
+    public char[] getTable() {
+        char[] result = table;
+        if (result == null) {
+            result = new char[remapCombined.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = remap[i] ? remapCombined[i] : (char) i;
+            }
+            table = result;
+        }
+        return result;
+    }
+
+    /**
+     * Remap an array of combined ids in place
+     *
+     * @param combined
+     * @param offset
+     * @param length
+     * @return the number of blocks changed
+     */
+    public int remap(char[] combined, int offset, int length) {
+        char[] table = getTable();
+        int changed = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char from = combined[i];
+            char to = table[from];
+            if (to != from) {
+                combined[i] = to;
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Apply the tile rules for a block being remapped
+     *
+     * @param combinedFrom
+     * @param combinedTo
+     * @param tag the tile of the block
+     */
+    public void remapTile(int combinedFrom, int combinedTo, CompoundTag tag) {
+        TileRemap rule = tileRemaps[combinedTo >> 4];
+        if (rule != null && tag != null) {
+            rule.apply(combinedFrom, combinedTo, ReflectionUtils.getMap(tag.getValue()));
+        }
+    }
+
     public void add(BaseBlock from, BaseBlock to) {
+        table = null;
         if (from.getData() != to.getData()) {
             if (from.getData() == -1) {
                 Arrays.fill(remapData, true);
@@ -502,14 +596,13 @@ public class ClipboardRemapper {
         int combined = block.getCombined();
         if (remap[combined]) {
             char value = remapCombined[combined];
-            BaseBlock newBlock = FaweCache.CACHE_BLOCK[value];
-            newBlock.setNbtData(block.getNbtData());
-            return newBlock;
+            CompoundTag nbt = block.getNbtData();
+            if (nbt == null) {
+                return FaweCache.CACHE_BLOCK[value];
+            }
+            remapTile(combined, value, nbt);
+            return new BaseBlock(value >> 4, value & 15, nbt);
         }
         return block;
     }
-
-    public void remap(CompoundTag tag) {
-
-    }
 }
@@ -33,6 +33,12 @@ public class RemappedClipboard extends AbstractDelegateFaweClipboard {
         }, air);
     }
 
+    @Override
+    public boolean remap(ClipboardRemapper remapper) {
+        // The blocks are already remapped as they are read
+        return false;
+    }
+
     @Override
     public void streamIds(NBTStreamer.ByteReader task) {
         super.streamIds(new NBTStreamer.ByteReader() {
@@ -45,6 +51,8 @@ public class RemappedClipboard extends AbstractDelegateFaweClipboard {
                     } else {
                         task.run(index, getBlock(index).getId());
                     }
+                } else {
+                    task.run(index, byteValue);
                 }
             }
         });
@@ -57,6 +65,8 @@ public class RemappedClipboard extends AbstractDelegateFaweClipboard {
             public void run(int index, int byteValue) {
                 if (remapper.hasRemapData(byteValue)) {
                     task.run(index, getBlock(index).getData());
+                } else {
+                    task.run(index, byteValue);
                 }
             }
         });
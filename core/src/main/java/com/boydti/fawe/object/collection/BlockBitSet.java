@@ -0,0 +1,251 @@
+package com.boydti.fawe.object.collection;
+
+import com.sk89q.worldedit.MutableBlockVector;
+import com.sk89q.worldedit.Vector;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of block positions stored as a 4096 bit bitmap per 16x16x16 chunk section
+ * - All positions must be a valid world coordinate: y=[0,255],x=[-30000000,30000000],z=[-30000000,30000000]
+ * - Lookups for the same section as the previous call skip the hash lookup
+ * - Use {@link #forEach(LocalBlockVectorSet.BlockVectorSetVisitor)} to iterate without allocating vectors
+ */
+public class BlockBitSet extends AbstractSet<Vector> {
+    private final Long2ObjectOpenHashMap<long[]> sections = new Long2ObjectOpenHashMap<>();
+    private int size;
+
+    private long lastKey = Long.MIN_VALUE;
+    private long[] lastBits;
+
+    private static long getKey(int x, int y, int z) {
+        return (((long) (x >> 4) & 0x3FFFFF) << 26) | (((long) (z >> 4) & 0x3FFFFF) << 4) | ((y >> 4) & 15);
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private long[] getBits(long key, boolean create) {
+        if (key == lastKey) {
+            return lastBits;
+        }
+        long[] bits = sections.get(key);
+        if (bits == null) {
+            if (!create) {
+                return null;
+            }
+            sections.put(key, bits = new long[64]);
+        }
+        lastKey = key;
+        return lastBits = bits;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        long[] bits = getBits(getKey(x, y, z), false);
+        if (bits == null) {
+            return false;
+        }
+        int index = getIndex(x, y, z);
+        return (bits[index >> 6] & (1L << (index & 63))) != 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o instanceof Vector) {
+            Vector v = (Vector) o;
+            return contains(v.getBlockX(), v.getBlockY(), v.getBlockZ());
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the position was not already in the set
+     */
+    public boolean add(int x, int y, int z) {
+        long[] bits = getBits(getKey(x, y, z), true);
+        int index = getIndex(x, y, z);
+        int i = index >> 6;
+        long bit = 1L << (index & 63);
+        long value = bits[i];
+        if ((value & bit) != 0) {
+            return false;
+        }
+        bits[i] = value | bit;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean add(Vector vector) {
+        return add(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    public boolean remove(int x, int y, int z) {
+        long[] bits = getBits(getKey(x, y, z), false);
+        if (bits == null) {
+            return false;
+        }
+        int index = getIndex(x, y, z);
+        int i = index >> 6;
+        long bit = 1L << (index & 63);
+        if ((bits[i] & bit) == 0) {
+            return false;
+        }
+        bits[i] &= ~bit;
+        size--;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o instanceof Vector) {
+            Vector v = (Vector) o;
+            return remove(v.getBlockX(), v.getBlockY(), v.getBlockZ());
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        sections.clear();
+        size = 0;
+        lastKey = Long.MIN_VALUE;
+        lastBits = null;
+    }
+
+    private static int getX(long key, int index) {
+        return ((int) (key >> 26) << 10 >> 6) + (index & 15);
+    }
+
+    private static int getY(long key, int index) {
+        return ((int) (key & 15) << 4) + (index >> 8);
+    }
+
+    private static int getZ(long key, int index) {
+        return ((int) (key >> 4) << 10 >> 6) + ((index >> 4) & 15);
+    }
+
+    /**
+     * Get the position at an index (in iteration order)
+     *
+     * @param index
+     * @return A mutable vector, or null
+     */
+    public Vector get(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        int count = 0;
+        for (Long2ObjectMap.Entry<long[]> entry : sections.long2ObjectEntrySet()) {
+            long[] bits = entry.getValue();
+            for (int i = 0; i < bits.length; i++) {
+                long word = bits[i];
+                int bitCount = Long.bitCount(word);
+                if (count + bitCount > index) {
+                    for (int j = index - count; j > 0; j--) {
+                        word &= word - 1;
+                    }
+                    int localIndex = (i << 6) + Long.numberOfTrailingZeros(word);
+                    long key = entry.getLongKey();
+                    return new MutableBlockVector(getX(key, localIndex), getY(key, localIndex), getZ(key, localIndex));
+                }
+                count += bitCount;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visit every position without allocating (the visitor index is the iteration index)
+     *
+     * @param visitor
+     */
+    public void forEach(LocalBlockVectorSet.BlockVectorSetVisitor visitor) {
+        int count = 0;
+        for (Long2ObjectMap.Entry<long[]> entry : sections.long2ObjectEntrySet()) {
+            long key = entry.getLongKey();
+            int bx = getX(key, 0);
+            int by = getY(key, 0);
+            int bz = getZ(key, 0);
+            long[] bits = entry.getValue();
+            for (int i = 0; i < bits.length; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    int localIndex = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    visitor.run(bx + (localIndex & 15), by + (localIndex >> 8), bz + ((localIndex >> 4) & 15), count++);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Vector> iterator() {
+        final ObjectIterator<Long2ObjectMap.Entry<long[]>> entries = sections.long2ObjectEntrySet().iterator();
+        return new Iterator<Vector>() {
+            private final MutableBlockVector mutable = new MutableBlockVector();
+            private long key;
+            private long[] bits;
+            private int i;
+            private long word;
+            private int lastX, lastY, lastZ;
+
+            private boolean advance() {
+                while (word == 0) {
+                    if (bits != null && ++i < bits.length) {
+                        word = bits[i];
+                        continue;
+                    }
+                    if (!entries.hasNext()) {
+                        return false;
+                    }
+                    Long2ObjectMap.Entry<long[]> entry = entries.next();
+                    key = entry.getLongKey();
+                    bits = entry.getValue();
+                    i = 0;
+                    word = bits[0];
+                }
+                return true;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return advance();
+            }
+
+            @Override
+            public Vector next() {
+                if (!advance()) {
+                    throw new NoSuchElementException("End of iterator");
+                }
+                int localIndex = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                lastX = getX(key, localIndex);
+                lastY = getY(key, localIndex);
+                lastZ = getZ(key, localIndex);
+                return mutable.setComponents(lastX, lastY, lastZ);
+            }
+
+            @Override
+            public void remove() {
+                // Only clears bits which have already been iterated over
+                BlockBitSet.this.remove(lastX, lastY, lastZ);
+            }
+        };
+    }
+}
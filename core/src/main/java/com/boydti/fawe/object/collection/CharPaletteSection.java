@@ -0,0 +1,247 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.Arrays;
+
+/**
+ * A compact store for the 4096 combined ids of a chunk section<br/>
+ * - A single value needs no index data<br/>
+ * - Up to 16 values are stored as 4 bit palette indexes (2KB)<br/>
+ * - Up to 256 values are stored as 8 bit palette indexes (4KB)<br/>
+ * - Beyond that {@link #set(int, char)} returns false and the owner should promote to a full char[4096] with {@link #toArray()}
+ */
+public final class CharPaletteSection {
+    public static final int SIZE = 4096;
+    public static final int MAX_PALETTE = 256;
+
+    private char[] palette;
+    private int paletteSize;
+    // Open addressed palette index + 1 for each value (only for 8 bit palettes, smaller ones are scanned)
+    private short[] lookup;
+    private int bits;
+    private long[] data;
+
+    private char lastValue;
+    private int lastIndex;
+
+    public CharPaletteSection(char value) {
+        this.palette = new char[]{value};
+        this.paletteSize = 1;
+        this.lastValue = value;
+        this.lastIndex = 0;
+    }
+
+    /**
+     * @return the number of bits per index (0 = single value, 4 or 8)
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    public int getPaletteSize() {
+        return paletteSize;
+    }
+
+    /**
+     * @return true if every position holds the same value
+     */
+    public boolean isSingleValue() {
+        return bits == 0;
+    }
+
+    /**
+     * @return the value of the first palette entry (i.e. the value of the whole section if {@link #isSingleValue()})
+     */
+    public char getSingleValue() {
+        return palette[0];
+    }
+
+    public char get(int index) {
+        switch (bits) {
+            case 0:
+                return palette[0];
+            case 4:
+                return palette[(int) (data[index >> 4] >>> ((index & 15) << 2)) & 0xF];
+            default:
+                return palette[(int) (data[index >> 3] >>> ((index & 7) << 3)) & 0xFF];
+        }
+    }
+
+    /**
+     * Set a value
+     *
+     * @param index
+     * @param value
+     * @return false if the value could not be stored (the palette is full)
+     */
+    public boolean set(int index, char value) {
+        int paletteIndex = indexOf(value);
+        if (paletteIndex == -1) {
+            if (paletteSize == MAX_PALETTE) {
+                return false;
+            }
+            paletteIndex = add(value);
+        }
+        switch (bits) {
+            case 0:
+                return true;
+            case 4: {
+                int i = index >> 4;
+                int shift = (index & 15) << 2;
+                data[i] = (data[i] & ~(0xFL << shift)) | ((long) paletteIndex << shift);
+                return true;
+            }
+            default: {
+                int i = index >> 3;
+                int shift = (index & 7) << 3;
+                data[i] = (data[i] & ~(0xFFL << shift)) | ((long) paletteIndex << shift);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Fill every position with a single value
+     *
+     * @param value
+     */
+    public void fill(char value) {
+        this.palette = new char[]{value};
+        this.paletteSize = 1;
+        this.bits = 0;
+        this.data = null;
+        this.lookup = null;
+        this.lastValue = value;
+        this.lastIndex = 0;
+    }
+
+    /**
+     * Rebuild the palette with only the values that are in use<br/>
+     * - e.g. a section which has been fully overwritten by one block becomes single valued again
+     */
+    public void compact() {
+        if (bits == 0) {
+            return;
+        }
+        char[] values = toArray();
+        char first = values[0];
+        boolean single = true;
+        for (int i = 1; i < SIZE; i++) {
+            if (values[i] != first) {
+                single = false;
+                break;
+            }
+        }
+        fill(first);
+        if (!single) {
+            for (int i = 1; i < SIZE; i++) {
+                set(i, values[i]);
+            }
+        }
+    }
+
+    public char[] toArray() {
+        char[] array = new char[SIZE];
+        if (bits == 0) {
+            if (palette[0] != 0) {
+                Arrays.fill(array, palette[0]);
+            }
+            return array;
+        }
+        for (int i = 0; i < SIZE; i++) {
+            array[i] = get(i);
+        }
+        return array;
+    }
+
+    /**
+     * @return The approximate heap usage of the section data
+     */
+    public int getSizeInBytes() {
+        return (palette.length << 1) + (data == null ? 0 : data.length << 3) + (lookup == null ? 0 : lookup.length << 1);
+    }
+
+    public CharPaletteSection copy() {
+        CharPaletteSection copy = new CharPaletteSection(palette[0]);
+        copy.palette = palette.clone();
+        copy.paletteSize = paletteSize;
+        copy.bits = bits;
+        copy.data = data == null ? null : data.clone();
+        copy.lookup = lookup == null ? null : lookup.clone();
+        return copy;
+    }
+
+    private int indexOf(char value) {
+        if (value == lastValue) {
+            return lastIndex;
+        }
+        if (lookup != null) {
+            int mask = lookup.length - 1;
+            for (int slot = hash(value) & mask; ; slot = (slot + 1) & mask) {
+                int entry = lookup[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (palette[entry - 1] == value) {
+                    lastValue = value;
+                    return lastIndex = entry - 1;
+                }
+            }
+        }
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == value) {
+                lastValue = value;
+                return lastIndex = i;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(char value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void addLookup(char value, int index) {
+        int mask = lookup.length - 1;
+        int slot = hash(value) & mask;
+        while (lookup[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        lookup[slot] = (short) (index + 1);
+    }
+
+    private int add(char value) {
+        int index = paletteSize++;
+        if (index >= palette.length) {
+            palette = Arrays.copyOf(palette, Math.min(MAX_PALETTE, palette.length << 1));
+        }
+        palette[index] = value;
+        if (paletteSize > 16) {
+            if (bits != 8) {
+                resize(8);
+                lookup = new short[MAX_PALETTE << 1];
+                for (int i = 0; i < index; i++) {
+                    addLookup(palette[i], i);
+                }
+            }
+            addLookup(value, index);
+        } else if (paletteSize > 1 && bits == 0) {
+            resize(4);
+        }
+        lastValue = value;
+        lastIndex = index;
+        return index;
+    }
+
+    private void resize(int newBits) {
+        long[] newData = new long[(SIZE * newBits) >> 6];
+        if (bits == 4) {
+            for (int index = 0; index < SIZE; index++) {
+                long paletteIndex = (data[index >> 4] >>> ((index & 15) << 2)) & 0xF;
+                newData[index >> 3] |= paletteIndex << ((index & 7) << 3);
+            }
+        }
+        this.data = newData;
+        this.bits = newBits;
+    }
+}
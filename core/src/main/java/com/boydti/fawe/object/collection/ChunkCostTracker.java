@@ -0,0 +1,192 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.Arrays;
+
+/**
+ * Counts events and their estimated cost (nanoseconds) per chunk, for a window of time<br/>
+ * - Chunks are keyed by MathMan.pairInt(cx, cz)<br/>
+ * - Open addressing over primitive arrays, so counting doesn't lock or allocate<br/>
+ * - Written by a single thread (e.g. the main thread), then cleared for the next window
+ */
+public class ChunkCostTracker {
+    // Chunk x = Integer.MIN_VALUE is outside the world
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int initialCapacity;
+    private long[] keys;
+    private int[] events;
+    private long[] nanos;
+    private int size;
+    private long totalNanos;
+
+    private long lastKey = EMPTY;
+    private int lastSlot;
+
+    /**
+     * @param capacity the initial number of chunks (a power of two)
+     */
+    public ChunkCostTracker(int capacity) {
+        this.initialCapacity = capacity;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        events = new int[capacity];
+        nanos = new long[capacity];
+        size = 0;
+        lastKey = EMPTY;
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private int getSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            long current = keys[slot];
+            if (current == key || current == EMPTY) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldEvents = events;
+        long[] oldNanos = nanos;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int slot = getSlot(key);
+                keys[slot] = key;
+                events[slot] = oldEvents[i];
+                nanos[slot] = oldNanos[i];
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Add events and their cost to a chunk
+     *
+     * @param pair the chunk
+     * @param count the number of events
+     * @param cost the estimated cost (nanoseconds)
+     */
+    public void add(long pair, int count, long cost) {
+        int slot;
+        if (pair == lastKey) {
+            slot = lastSlot;
+        } else {
+            slot = getSlot(pair);
+            if (keys[slot] == EMPTY) {
+                if ((size + 1) << 1 > keys.length) {
+                    grow();
+                    slot = getSlot(pair);
+                }
+                keys[slot] = pair;
+                size++;
+            }
+            lastKey = pair;
+            lastSlot = slot;
+        }
+        events[slot] += count;
+        nanos[slot] += cost;
+        totalNanos += cost;
+    }
+
+    public int getEvents(long pair) {
+        int slot = getSlot(pair);
+        return keys[slot] == EMPTY ? 0 : events[slot];
+    }
+
+    public long getNanos(long pair) {
+        int slot = getSlot(pair);
+        return keys[slot] == EMPTY ? 0 : nanos[slot];
+    }
+
+    /**
+     * @return the cost of all chunks this window (nanoseconds)
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the most expensive chunk which isn't excluded
+     *
+     * @param exclude the chunks to skip (or null)
+     * @return the chunk, or Long.MIN_VALUE if there is none
+     */
+    public long getWorst(LongHashSet exclude) {
+        long worst = EMPTY;
+        long worstNanos = -1;
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key != EMPTY && nanos[i] > worstNanos && (exclude == null || !exclude.containsKey(key))) {
+                worst = key;
+                worstNanos = nanos[i];
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * Get the most expensive chunks, in order
+     *
+     * @param amount the maximum number of chunks
+     * @return the chunks
+     */
+    public long[] getTop(int amount) {
+        amount = Math.min(amount, size);
+        long[] top = new long[amount];
+        long[] topNanos = new long[amount];
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key == EMPTY) {
+                continue;
+            }
+            long cost = nanos[i];
+            if (found == amount && cost <= topNanos[amount - 1]) {
+                continue;
+            }
+            int j = found < amount ? found++ : amount - 1;
+            for (; j > 0 && topNanos[j - 1] < cost; j--) {
+                top[j] = top[j - 1];
+                topNanos[j] = topNanos[j - 1];
+            }
+            top[j] = key;
+            topNanos[j] = cost;
+        }
+        return top;
+    }
+
+    /**
+     * Start a new window
+     */
+    public void clear() {
+        if (keys.length > initialCapacity << 2 && size << 3 < keys.length) {
+            // Shrink after a burst of chunks
+            allocate(initialCapacity);
+        } else if (size != 0) {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(events, 0);
+            Arrays.fill(nanos, 0);
+            size = 0;
+            lastKey = EMPTY;
+        }
+        totalNanos = 0;
+    }
+}
@@ -120,6 +120,17 @@ public class LongHashSet {
         }
     }
 
+    /**
+     * Remove all keys, keeping the allocated buckets for reuse
+     */
+    public void clear() {
+        if (count == 0) return;
+        for (long[][] outer : this.values) {
+            if (outer != null) Arrays.fill(outer, null);
+        }
+        count = 0;
+    }
+
     public long popFirst() {
         for (long[][] outer: this.values) {
             if (outer == null) continue;
@@ -0,0 +1,60 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of block positions each packed into a long<br/>
+ * - x and z use 26 bits, y uses 12 bits<br/>
+ * - Positions are kept in insertion order (e.g. a breadth first search frontier)
+ */
+public final class PackedBlockQueue {
+    private long[] values;
+    private int size;
+
+    public PackedBlockQueue() {
+        this(64);
+    }
+
+    public PackedBlockQueue(int capacity) {
+        this.values = new long[Math.max(1, capacity)];
+    }
+
+    public static long pack(int x, int y, int z) {
+        return (((long) x & 0x3FFFFFF) << 38) | (((long) z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed & 0xFFF);
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) ((packed << 26) >> 38);
+    }
+
+    public void add(int x, int y, int z) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size << 1);
+        }
+        values[size++] = pack(x, y, z);
+    }
+
+    public long get(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,569 @@
+package com.boydti.fawe.object.collection;
+
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
+import com.boydti.fawe.object.change.StreamChange;
+import com.boydti.fawe.util.MainUtil;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A byte or char array split into tiles, recording changes the same way as a {@link DifferentialArray}<br/>
+ * - Tiles which have only been filled are stored as a single value<br/>
+ * - With a scratch file, only the most recently used tiles are kept in memory, the rest are paged to a memory mapped file<br/>
+ * - Reads can be from any thread, writes are safe but should be from one thread at a time
+ */
+public final class TiledDifferentialArray implements StreamChange, Closeable {
+    public static final int TILE_BITS = 16;
+    public static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    // Largest mapping of the scratch file
+    private static final long SEGMENT_SIZE = 1 << 30;
+
+    private final boolean chars;
+    private final int length;
+    private final Tile[] tiles;
+
+    private final File scratch;
+    private final int maxResident;
+    private final int slotSize;
+    private final int slotsPerSegment;
+    private RandomAccessFile raf;
+    private MappedByteBuffer[] segments;
+
+    private int resident;
+    private int hand;
+    private volatile boolean changed;
+
+    /**
+     * @param length      the number of entries
+     * @param value       the initial value of every entry
+     * @param scratch     the file to page tiles to, or null to keep every tile in memory
+     * @param maxResident the number of tiles to keep in memory when paging
+     */
+    public static TiledDifferentialArray ofBytes(int length, byte value, File scratch, int maxResident) {
+        return new TiledDifferentialArray(false, length, (char) (value & 0xFF), scratch, maxResident);
+    }
+
+    /**
+     * @see #ofBytes(int, byte, File, int)
+     */
+    public static TiledDifferentialArray ofChars(int length, char value, File scratch, int maxResident) {
+        return new TiledDifferentialArray(true, length, value, scratch, maxResident);
+    }
+
+    private TiledDifferentialArray(boolean chars, int length, char value, File scratch, int maxResident) {
+        this.chars = chars;
+        this.length = length;
+        this.tiles = new Tile[(length + TILE_MASK) >> TILE_BITS];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new Tile(i);
+            tiles[i].fill = value;
+        }
+        this.scratch = scratch;
+        this.maxResident = Math.max(1, maxResident);
+        // Each slot holds the data followed by the changes
+        this.slotSize = (TILE_SIZE << 1) << (chars ? 1 : 0);
+        this.slotsPerSegment = (int) (SEGMENT_SIZE / slotSize);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isModified() {
+        return changed;
+    }
+
+    public byte getByte(int index) {
+        Tile tile = tiles[index >> TILE_BITS];
+        byte[] data = tile.bytes;
+        while (data == null) {
+            if (!tile.stored) {
+                return (byte) tile.fill;
+            }
+            data = load(tile).bytes;
+        }
+        tile.referenced = true;
+        return data[index & TILE_MASK];
+    }
+
+    public char getChar(int index) {
+        Tile tile = tiles[index >> TILE_BITS];
+        char[] data = tile.chars;
+        while (data == null) {
+            if (!tile.stored) {
+                return tile.fill;
+            }
+            data = load(tile).chars;
+        }
+        tile.referenced = true;
+        return data[index & TILE_MASK];
+    }
+
+    public void setByte(int index, byte value) {
+        Tile tile = tiles[index >> TILE_BITS];
+        int i = index & TILE_MASK;
+        while (true) {
+            if (tile.bytes == null && !tile.stored && (byte) tile.fill == value) {
+                return;
+            }
+            materialize(tile);
+            synchronized (tile) {
+                byte[] data = tile.bytes;
+                if (data == null) {
+                    continue; // Paged out in between
+                }
+                byte previous = data[i];
+                if (previous != value) {
+                    byte[] changes = tile.changesBytes;
+                    if (changes == null) {
+                        tile.changesBytes = changes = new byte[TILE_SIZE];
+                    }
+                    changes[i] += previous - value;
+                    data[i] = value;
+                    markChanged(tile);
+                }
+                return;
+            }
+        }
+    }
+
+    public void setChar(int index, char value) {
+        Tile tile = tiles[index >> TILE_BITS];
+        int i = index & TILE_MASK;
+        while (true) {
+            if (tile.chars == null && !tile.stored && tile.fill == value) {
+                return;
+            }
+            materialize(tile);
+            synchronized (tile) {
+                char[] data = tile.chars;
+                if (data == null) {
+                    continue;
+                }
+                char previous = data[i];
+                if (previous != value) {
+                    char[] changes = tile.changesChars;
+                    if (changes == null) {
+                        tile.changesChars = changes = new char[TILE_SIZE];
+                    }
+                    changes[i] += previous - value;
+                    data[i] = value;
+                    markChanged(tile);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Set every entry to a value<br/>
+     * - The data of each tile is replaced by the single value, only the changes are kept
+     *
+     * @param value
+     */
+    public void fill(char value) {
+        for (Tile tile : tiles) {
+            while (true) {
+                if (tile.bytes == null && tile.chars == null && !tile.stored && tile.fill == value) {
+                    break;
+                }
+                load(tile);
+                synchronized (tile) {
+                    if (!tile.resident) {
+                        continue;
+                    }
+                    if (chars) {
+                        char[] changes = tile.changesChars;
+                        if (changes == null) {
+                            tile.changesChars = changes = new char[TILE_SIZE];
+                        }
+                        char[] data = tile.chars;
+                        for (int i = 0; i < TILE_SIZE; i++) {
+                            changes[i] += (data != null ? data[i] : tile.fill) - value;
+                        }
+                    } else {
+                        byte[] changes = tile.changesBytes;
+                        if (changes == null) {
+                            tile.changesBytes = changes = new byte[TILE_SIZE];
+                        }
+                        byte[] data = tile.bytes;
+                        for (int i = 0; i < TILE_SIZE; i++) {
+                            changes[i] += (data != null ? data[i] : (byte) tile.fill) - (byte) value;
+                        }
+                    }
+                    // Readers see the new value once the data is cleared
+                    tile.fill = value;
+                    tile.stored = false;
+                    tile.chars = null;
+                    tile.bytes = null;
+                    markChanged(tile);
+                    break;
+                }
+            }
+        }
+    }
+
+    public void fill(byte value) {
+        fill((char) (value & 0xFF));
+    }
+
+    private void markChanged(Tile tile) {
+        tile.dirty = true;
+        tile.changed = true;
+        tile.referenced = true;
+        changed = true;
+    }
+
+    private int getSize(int tileIndex) {
+        return Math.min(TILE_SIZE, length - (tileIndex << TILE_BITS));
+    }
+
+    @Override
+    public void flushChanges(FaweOutputStream out) throws IOException {
+        boolean modified = isModified();
+        out.writeBoolean(modified);
+        if (modified) {
+            for (int t = 0; t < tiles.length; t++) {
+                Tile tile = tiles[t];
+                while (true) {
+                    if (tile.changed) {
+                        load(tile);
+                    }
+                    synchronized (tile) {
+                        if (tile.changed && !tile.resident) {
+                            continue;
+                        }
+                        out.writeBoolean(tile.changed);
+                        if (tile.changed) {
+                            int size = getSize(t);
+                            if (chars) {
+                                char[] changes = tile.changesChars;
+                                for (int i = 0; i < size; i++) {
+                                    out.writeChar(changes[i]);
+                                }
+                            } else {
+                                out.write(tile.changesBytes, 0, size);
+                            }
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        clearChanges();
+    }
+
+    @Override
+    public void undoChanges(FaweInputStream in) throws IOException {
+        boolean modified = in.readBoolean();
+        if (modified) {
+            for (int t = 0; t < tiles.length; t++) {
+                Tile tile = tiles[t];
+                boolean streamed = in.readBoolean();
+                // Tiles without any changes are left as they are (e.g. uniform, or paged out)
+                if (!streamed && !tile.changed) {
+                    continue;
+                }
+                while (true) {
+                    materialize(tile);
+                    synchronized (tile) {
+                        if (chars ? tile.chars == null : tile.bytes == null) {
+                            continue;
+                        }
+                        int size = getSize(t);
+                        if (chars) {
+                            char[] data = tile.chars;
+                            char[] changes = tile.changesChars;
+                            if (changes != null) {
+                                for (int i = 0; i < size; i++) {
+                                    data[i] += changes[i];
+                                }
+                            }
+                            if (streamed) {
+                                for (int i = 0; i < size; i++) {
+                                    data[i] += in.readChar();
+                                }
+                            }
+                        } else {
+                            byte[] data = tile.bytes;
+                            byte[] changes = tile.changesBytes;
+                            if (changes != null) {
+                                for (int i = 0; i < size; i++) {
+                                    data[i] += changes[i];
+                                }
+                            }
+                            if (streamed) {
+                                for (int i = 0; i < size; i++) {
+                                    data[i] += in.read();
+                                }
+                            }
+                        }
+                        tile.dirty = true;
+                        break;
+                    }
+                }
+            }
+        }
+        clearChanges();
+    }
+
+    @Override
+    public void redoChanges(FaweInputStream in) throws IOException {
+        boolean modified = in.readBoolean();
+        if (modified) {
+            for (int t = 0; t < tiles.length; t++) {
+                if (!in.readBoolean()) {
+                    continue;
+                }
+                Tile tile = tiles[t];
+                while (true) {
+                    materialize(tile);
+                    synchronized (tile) {
+                        if (chars ? tile.chars == null : tile.bytes == null) {
+                            continue;
+                        }
+                        int size = getSize(t);
+                        if (chars) {
+                            char[] data = tile.chars;
+                            for (int i = 0; i < size; i++) {
+                                data[i] -= in.readChar();
+                            }
+                        } else {
+                            byte[] data = tile.bytes;
+                            for (int i = 0; i < size; i++) {
+                                data[i] -= in.read();
+                            }
+                        }
+                        tile.dirty = true;
+                        break;
+                    }
+                }
+            }
+        }
+        clearChanges();
+    }
+
+    public void clearChanges() {
+        if (changed) {
+            changed = false;
+            synchronized (this) {
+                for (Tile tile : tiles) {
+                    synchronized (tile) {
+                        if (tile.changed) {
+                            tile.changed = false;
+                            tile.changesBytes = null;
+                            tile.changesChars = null;
+                            tile.changesStored = false;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Make the data of a tile resident (creating it if the tile is uniform)
+     */
+    private void materialize(Tile tile) {
+        if (chars ? tile.chars != null : tile.bytes != null) {
+            tile.referenced = true;
+            return;
+        }
+        synchronized (this) {
+            load(tile);
+            synchronized (tile) {
+                if (chars) {
+                    if (tile.chars == null) {
+                        char[] data = new char[TILE_SIZE];
+                        Arrays.fill(data, tile.fill);
+                        tile.chars = data;
+                        tile.dirty = true;
+                    }
+                } else if (tile.bytes == null) {
+                    byte[] data = new byte[TILE_SIZE];
+                    Arrays.fill(data, (byte) tile.fill);
+                    tile.bytes = data;
+                    tile.dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a tile to the resident set, reading any stored data and changes
+     */
+    private synchronized Tile load(Tile tile) {
+        tile.referenced = true;
+        if (tile.resident) {
+            return tile;
+        }
+        if (scratch != null && resident >= maxResident) {
+            evict();
+        }
+        try {
+            synchronized (tile) {
+                int slot = tile.index;
+                if (tile.stored) {
+                    if (chars) {
+                        char[] data = new char[TILE_SIZE];
+                        getSlot(slot, 0).asCharBuffer().get(data);
+                        tile.chars = data;
+                    } else {
+                        byte[] data = new byte[TILE_SIZE];
+                        getSlot(slot, 0).get(data);
+                        tile.bytes = data;
+                    }
+                }
+                if (tile.changesStored) {
+                    int offset = slotSize >> 1;
+                    if (chars) {
+                        char[] changes = new char[TILE_SIZE];
+                        getSlot(slot, offset).asCharBuffer().get(changes);
+                        tile.changesChars = changes;
+                    } else {
+                        byte[] changes = new byte[TILE_SIZE];
+                        getSlot(slot, offset).get(changes);
+                        tile.changesBytes = changes;
+                    }
+                }
+                tile.dirty = false;
+                tile.resident = true;
+                resident++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return tile;
+    }
+
+    /**
+     * Page out a tile which hasn't been used recently (CLOCK)
+     */
+    private void evict() {
+        for (int i = 0; i < tiles.length << 1; i++) {
+            Tile tile = tiles[hand];
+            hand = (hand + 1) % tiles.length;
+            if (!tile.resident) {
+                continue;
+            }
+            if (tile.referenced) {
+                tile.referenced = false;
+                continue;
+            }
+            try {
+                synchronized (tile) {
+                    int slot = tile.index;
+                    if (tile.dirty) {
+                        if (tile.chars != null) {
+                            getSlot(slot, 0).asCharBuffer().put(tile.chars);
+                        } else if (tile.bytes != null) {
+                            getSlot(slot, 0).put(tile.bytes);
+                        }
+                        int offset = slotSize >> 1;
+                        if (tile.changesChars != null) {
+                            getSlot(slot, offset).asCharBuffer().put(tile.changesChars);
+                        } else if (tile.changesBytes != null) {
+                            getSlot(slot, offset).put(tile.changesBytes);
+                        }
+                    }
+                    // Set before the data is cleared, so readers see it's stored
+                    tile.stored = tile.chars != null || tile.bytes != null;
+                    tile.changesStored = tile.changesChars != null || tile.changesBytes != null;
+                    tile.chars = null;
+                    tile.bytes = null;
+                    tile.changesChars = null;
+                    tile.changesBytes = null;
+                    tile.resident = false;
+                    resident--;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+    }
+
+    private ByteBuffer getSlot(int slot, int offset) throws IOException {
+        if (raf == null) {
+            File parent = scratch.getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            raf = new RandomAccessFile(scratch, "rw");
+            scratch.deleteOnExit();
+            segments = new MappedByteBuffer[(tiles.length + slotsPerSegment - 1) / slotsPerSegment];
+        }
+        int segmentIndex = slot / slotsPerSegment;
+        MappedByteBuffer segment = segments[segmentIndex];
+        if (segment == null) {
+            int slots = Math.min(slotsPerSegment, tiles.length - segmentIndex * slotsPerSegment);
+            long position = (long) segmentIndex * slotsPerSegment * slotSize;
+            segment = segments[segmentIndex] = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, position, (long) slots * slotSize);
+        }
+        ByteBuffer buffer = segment.duplicate();
+        buffer.position((slot % slotsPerSegment) * slotSize + offset);
+        return buffer;
+    }
+
+    /**
+     * Release the memory and delete the scratch file<br/>
+     * - The array should not be used afterwards
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Tile tile : tiles) {
+            synchronized (tile) {
+                tile.chars = null;
+                tile.bytes = null;
+                tile.changesChars = null;
+                tile.changesBytes = null;
+                tile.stored = false;
+                tile.changesStored = false;
+                tile.resident = false;
+            }
+        }
+        resident = 0;
+        if (segments != null) {
+            for (MappedByteBuffer segment : segments) {
+                if (segment != null) {
+                    MainUtil.closeDirectBuffer(segment);
+                }
+            }
+            segments = null;
+        }
+        if (raf != null) {
+            raf.close();
+            raf = null;
+            scratch.delete();
+        }
+    }
+
+    private static final class Tile {
+        private final int index;
+        private volatile byte[] bytes;
+        private volatile char[] chars;
+        private byte[] changesBytes;
+        private char[] changesChars;
+        // The value of every entry when the data isn't resident or stored
+        private volatile char fill;
+        private volatile boolean stored;
+        private boolean changesStored;
+        private boolean resident;
+        // If the data or changes differ from the stored copy
+        private boolean dirty;
+        private volatile boolean changed;
+        private volatile boolean referenced;
+
+        private Tile(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.boydti.fawe.object.extent;
 
 import com.boydti.fawe.object.FaweLimit;
+import com.boydti.fawe.object.regions.RegionIndex;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.regions.Region;
 import java.util.Arrays;
@@ -11,6 +12,7 @@ public class MultiRegionExtent extends FaweRegionExtent {
     private Region region;
     private final Region[] regions;
     private int index;
+    private final RegionIndex regionIndex;
 
     /**
      * Create a new instance.
@@ -22,10 +24,14 @@ public class MultiRegionExtent extends FaweRegionExtent {
         this.index = 0;
         this.region = regions[0];
         this.regions = regions;
+        this.regionIndex = regions.length > 1 ? new RegionIndex(regions) : null;
     }
 
     @Override
     public boolean contains(int x, int y, int z) {
+        if (regionIndex != null) {
+            return regionIndex.contains(x, y, z);
+        }
         if (region.contains(x, y, z)) {
             return true;
         }
@@ -44,6 +50,9 @@ public class MultiRegionExtent extends FaweRegionExtent {
 
     @Override
     public boolean contains(int x, int z) {
+        if (regionIndex != null) {
+            return regionIndex.contains(x, z);
+        }
         if (region.contains(x, z)) {
             return true;
         }
@@ -0,0 +1,217 @@
+package com.boydti.fawe.object.regions;
+
+import com.boydti.fawe.util.MathMan;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * Fast containment checks against a set of regions (e.g. the regions a player can edit)<br/>
+ * - Each chunk column is classified the first time it's checked, using an R-tree of the region bounds<br/>
+ * - Sections fully inside a cuboid region, and columns outside every region, are answered without checking any region<br/>
+ * - Otherwise only the regions overlapping the column are checked
+ */
+public class RegionIndex {
+    private static final int NODE_SIZE = 8;
+    // Limit the cached columns for very large edits
+    private static final int MAX_COLUMNS = 1 << 16;
+
+    private final Region[] regions;
+    private final int[][] bounds; // minX, minY, minZ, maxX, maxY, maxZ
+    private final Node root;
+
+    private final Long2ObjectOpenHashMap<Column> columns = new Long2ObjectOpenHashMap<>();
+    private int lastX = Integer.MIN_VALUE;
+    private int lastZ = Integer.MIN_VALUE;
+    private Column lastColumn;
+
+    public RegionIndex(Region[] regions) {
+        this.regions = regions;
+        this.bounds = new int[regions.length][];
+        Node[] leaves = new Node[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            Vector min = regions[i].getMinimumPoint();
+            Vector max = regions[i].getMaximumPoint();
+            int[] box = bounds[i] = new int[]{min.getBlockX(), min.getBlockY(), min.getBlockZ(), max.getBlockX(), max.getBlockY(), max.getBlockZ()};
+            leaves[i] = new Node(box[0], box[2], box[3], box[5], null, i);
+        }
+        this.root = regions.length == 0 ? null : build(leaves);
+    }
+
+    public Region[] getRegions() {
+        return regions;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        Column column = getColumn(x >> 4, z >> 4);
+        Region[] candidates = column.candidates;
+        if (candidates.length == 0) {
+            return false;
+        }
+        if (y >= 0 && y < 256 && (column.inside >> (y >> 4) & 1) != 0) {
+            return true;
+        }
+        int last = column.last;
+        if (candidates[last].contains(x, y, z)) {
+            return true;
+        }
+        for (int i = 0; i < candidates.length; i++) {
+            if (i != last && candidates[i].contains(x, y, z)) {
+                column.last = i;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(int x, int z) {
+        Column column = getColumn(x >> 4, z >> 4);
+        Region[] candidates = column.candidates;
+        if (candidates.length == 0) {
+            return false;
+        }
+        if (column.inside2D) {
+            return true;
+        }
+        int last = column.last;
+        if (candidates[last].contains(x, z)) {
+            return true;
+        }
+        for (int i = 0; i < candidates.length; i++) {
+            if (i != last && candidates[i].contains(x, z)) {
+                column.last = i;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Column getColumn(int cx, int cz) {
+        if (cx == lastX && cz == lastZ) {
+            return lastColumn;
+        }
+        long pair = MathMan.pairInt(cx, cz);
+        Column column = columns.get(pair);
+        if (column == null) {
+            if (columns.size() >= MAX_COLUMNS) {
+                columns.clear();
+            }
+            column = classify(cx, cz);
+            columns.put(pair, column);
+        }
+        lastX = cx;
+        lastZ = cz;
+        return lastColumn = column;
+    }
+
+    private Column classify(int cx, int cz) {
+        int minX = cx << 4;
+        int minZ = cz << 4;
+        int maxX = minX + 15;
+        int maxZ = minZ + 15;
+        BitSet found = new BitSet(regions.length);
+        if (root != null) {
+            root.query(minX, minZ, maxX, maxZ, found);
+        }
+        if (found.isEmpty()) {
+            return Column.OUTSIDE;
+        }
+        // Iterated in the original order so earlier regions are checked first
+        Region[] candidates = new Region[found.cardinality()];
+        int inside = 0;
+        boolean inside2D = false;
+        for (int i = 0, index = found.nextSetBit(0); index != -1; i++, index = found.nextSetBit(index + 1)) {
+            Region region = regions[index];
+            candidates[i] = region;
+            int[] box = bounds[index];
+            if (region instanceof CuboidRegion && box[0] <= minX && box[2] <= minZ && box[3] >= maxX && box[5] >= maxZ) {
+                inside2D = true;
+                for (int layer = 0; layer < 16; layer++) {
+                    if (box[1] <= layer << 4 && box[4] >= (layer << 4) + 15) {
+                        inside |= 1 << layer;
+                    }
+                }
+            }
+        }
+        return new Column(candidates, inside, inside2D);
+    }
+
+    /**
+     * Bulk load the tree using Sort-Tile-Recursive packing
+     */
+    private static Node build(Node[] nodes) {
+        while (nodes.length > 1) {
+            int parents = (nodes.length + NODE_SIZE - 1) / NODE_SIZE;
+            int slices = (int) Math.ceil(Math.sqrt(parents));
+            int sliceSize = slices * NODE_SIZE;
+            Arrays.sort(nodes, Comparator.comparingLong(n -> (long) n.minX + n.maxX));
+            for (int start = 0; start < nodes.length; start += sliceSize) {
+                Arrays.sort(nodes, start, Math.min(nodes.length, start + sliceSize), Comparator.comparingLong(n -> (long) n.minZ + n.maxZ));
+            }
+            Node[] next = new Node[parents];
+            for (int i = 0; i < parents; i++) {
+                int start = i * NODE_SIZE;
+                Node[] children = Arrays.copyOfRange(nodes, start, Math.min(nodes.length, start + NODE_SIZE));
+                int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+                for (Node child : children) {
+                    minX = Math.min(minX, child.minX);
+                    minZ = Math.min(minZ, child.minZ);
+                    maxX = Math.max(maxX, child.maxX);
+                    maxZ = Math.max(maxZ, child.maxZ);
+                }
+                next[i] = new Node(minX, minZ, maxX, maxZ, children, -1);
+            }
+            nodes = next;
+        }
+        return nodes[0];
+    }
+
+    private static final class Node {
+        private final int minX, minZ, maxX, maxZ;
+        private final Node[] children;
+        private final int index;
+
+        private Node(int minX, int minZ, int maxX, int maxZ, Node[] children, int index) {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+            this.children = children;
+            this.index = index;
+        }
+
+        private void query(int qMinX, int qMinZ, int qMaxX, int qMaxZ, BitSet result) {
+            if (qMaxX < minX || qMinX > maxX || qMaxZ < minZ || qMinZ > maxZ) {
+                return;
+            }
+            if (children == null) {
+                result.set(index);
+            } else {
+                for (Node child : children) {
+                    child.query(qMinX, qMinZ, qMaxX, qMaxZ, result);
+                }
+            }
+        }
+    }
+
+    private static final class Column {
+        private static final Column OUTSIDE = new Column(new Region[0], 0, false);
+
+        private final Region[] candidates;
+        // Bitmask of the sections which are fully inside a region
+        private final int inside;
+        private final boolean inside2D;
+        // The candidate which last contained a position
+        private int last;
+
+        private Column(Region[] candidates, int inside, boolean inside2D) {
+            this.candidates = candidates;
+            this.inside = inside;
+            this.inside2D = inside2D;
+        }
+    }
+}
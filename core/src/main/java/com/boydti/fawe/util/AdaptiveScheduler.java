@@ -0,0 +1,170 @@
+package com.boydti.fawe.util;
+
+import com.boydti.fawe.Fawe;
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.example.NullRelighter;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.object.FaweQueue;
+import com.sk89q.worldedit.EditSession;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sizes the main thread work done by the {@link SetQueue} each tick<br/>
+ * - The tick budget grows slowly while ticks finish on time, and shrinks by the measured overrun when a tick runs long<br/>
+ * - The cost of a chunk is estimated from its sections, tiles and lighting, then calibrated against the measured apply time<br/>
+ * - The budget is shared evenly between the players with queued edits, with unused time passed on to the next player
+ */
+public class AdaptiveScheduler {
+    /**
+     * Cost units of a chunk (the base cost is 1 unit, plus 1 per section)
+     */
+    private static final double TILE_COST = 0.25;
+    private static final double LIGHT_COST = 1;
+
+    // Weight of the newest sample in the moving averages
+    private static final double SMOOTHING = 0.1;
+    private static final long TICK_MS = 50;
+    private static final long MARGIN_MS = 5;
+    private static final long MIN_BUDGET_MS = 2;
+    // Ticks which are at most this late aren't counted as an overrun
+    private static final long OVERRUN_TOLERANCE_MS = 2;
+
+    private volatile double msPerUnit = 0.05;
+    private long budgetMs = TICK_MS - MARGIN_MS;
+    private long lastTickStart;
+    private int rotation;
+
+    /**
+     * @param chunk
+     * @return the estimated cost (in units) of applying a chunk
+     */
+    public double getCost(FaweChunk chunk) {
+        int sections = Integer.bitCount(chunk.getBitMask());
+        double cost = 1 + sections + chunk.getTiles().size() * TILE_COST;
+        FaweQueue parent = chunk.getParent();
+        if (parent != null && parent.getRelighter() != NullRelighter.INSTANCE) {
+            cost += sections * LIGHT_COST;
+        }
+        return cost;
+    }
+
+    /**
+     * @param chunk
+     * @return the estimated time (ms) to apply a chunk
+     */
+    public double estimate(FaweChunk chunk) {
+        return getCost(chunk) * msPerUnit;
+    }
+
+    /**
+     * Calibrate the cost estimate
+     *
+     * @param units the total cost of the chunks applied
+     * @param nanos the time taken to apply them
+     */
+    public void record(double units, long nanos) {
+        if (units <= 0) {
+            return;
+        }
+        double sample = (nanos / 1000000d) / units;
+        msPerUnit += (sample - msPerUnit) * SMOOTHING;
+    }
+
+    /**
+     * Get the time which can be used this tick<br/>
+     * - Should be called once at the start of each queue tick<br/>
+     * - The time between ticks includes the server's idle time, so only a tick which ran long (an overrun) shrinks the budget
+     *
+     * @param now the tick start (ms)
+     * @return the budget (ms)
+     */
+    public long startTick(long now) {
+        if (lastTickStart != 0) {
+            long interval = now - lastTickStart;
+            // Ignore pauses (e.g. the queue was empty)
+            if (interval < TICK_MS * 20) {
+                long overrun = interval - TICK_MS;
+                if (overrun > OVERRUN_TOLERANCE_MS) {
+                    budgetMs = Math.max(MIN_BUDGET_MS, budgetMs - overrun);
+                } else {
+                    budgetMs = Math.min(TICK_MS - MARGIN_MS, budgetMs + 1);
+                }
+            }
+        }
+        lastTickStart = now;
+        double budget = budgetMs + Settings.IMP.QUEUE.EXTRA_TIME_MS;
+        double targetTPS = 18 - Math.max(Settings.IMP.QUEUE.EXTRA_TIME_MS * 0.05, 0);
+        if (Fawe.get().getTimer().getTPS() < targetTPS) {
+            budget /= 2;
+        }
+        return Math.max(MIN_BUDGET_MS, Math.min(TICK_MS + Settings.IMP.QUEUE.EXTRA_TIME_MS, (long) budget));
+    }
+
+    public double getMsPerUnit() {
+        return msPerUnit;
+    }
+
+    public long getBudgetMs() {
+        return budgetMs;
+    }
+
+    /**
+     * Run the queues for a tick, splitting the time evenly between players<br/>
+     * - Queues without a player are each treated as their own owner<br/>
+     * - The first player is rotated each tick
+     *
+     * @param queues the queues with chunks to place
+     * @param budget the time available (ms)
+     * @param runner runs a queue for up to the given time (ms)
+     */
+    public void run(List<FaweQueue> queues, long budget, QueueRunner runner) {
+        Map<Object, List<FaweQueue>> byOwner = new LinkedHashMap<>();
+        for (FaweQueue queue : queues) {
+            Object owner = getOwner(queue);
+            List<FaweQueue> list = byOwner.get(owner);
+            if (list == null) {
+                byOwner.put(owner, list = new ArrayList<>(1));
+            }
+            list.add(queue);
+        }
+        List<List<FaweQueue>> owners = new ArrayList<>(byOwner.values());
+        int size = owners.size();
+        int offset = rotation = (rotation + 1) % size;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            long remaining = budget - (System.currentTimeMillis() - start);
+            if (remaining <= 0) {
+                break;
+            }
+            long share = Math.max(1, remaining / (size - i));
+            long ownerStart = System.currentTimeMillis();
+            Iterator<FaweQueue> iter = owners.get((i + offset) % size).iterator();
+            while (iter.hasNext()) {
+                long left = share - (System.currentTimeMillis() - ownerStart);
+                if (left <= 0) {
+                    break;
+                }
+                runner.run(iter.next(), left);
+            }
+        }
+    }
+
+    private Object getOwner(FaweQueue queue) {
+        for (EditSession session : queue.getEditSessions()) {
+            FawePlayer player = session.getPlayer();
+            if (player != null) {
+                return player.getUUID();
+            }
+        }
+        return queue;
+    }
+
+    public interface QueueRunner {
+        void run(FaweQueue queue, long time);
+    }
+}
@@ -0,0 +1,197 @@
+package com.boydti.fawe.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the nearest color in a palette (e.g. the block colors of a {@link TextureUtil})<br/>
+ * - Exact: a k-d tree per alpha value, giving the same result as a linear scan<br/>
+ * - Fast: a lookup table of 32 levels per channel, giving the nearest color to the center of the cell (within 4 of each channel)<br/>
+ * - Pruning relies on {@link TextureUtil#colorDistance(int, int, int, int)} being at least 2r^2 + 4g^2 + 2b^2
+ */
+public class ColorIndex {
+    private static final int[] WEIGHTS = {2, 4, 2};
+    private static final int LUT_BITS = 5;
+    private static final int LUT_SHIFT = 8 - LUT_BITS;
+
+    private final TextureUtil util;
+    private final int[] colors;
+    private final boolean matchAlpha;
+    private final Tree[] trees = new Tree[256];
+    private final ConcurrentHashMap<Integer, int[]> tables = new ConcurrentHashMap<>();
+
+    /**
+     * @param util       the distance function
+     * @param colors     the palette
+     * @param matchAlpha if only colors with the same alpha should be matched
+     */
+    public ColorIndex(TextureUtil util, int[] colors, boolean matchAlpha) {
+        this.util = util;
+        this.colors = colors;
+        this.matchAlpha = matchAlpha;
+        int[] counts = new int[256];
+        for (int color : colors) {
+            counts[getBucket(color)]++;
+        }
+        int[][] buckets = new int[256][];
+        for (int i = 0; i < colors.length; i++) {
+            int bucket = getBucket(colors[i]);
+            int[] indexes = buckets[bucket];
+            if (indexes == null) {
+                indexes = buckets[bucket] = new int[counts[bucket]];
+                counts[bucket] = 0;
+            }
+            indexes[counts[bucket]++] = i;
+        }
+        for (int i = 0; i < 256; i++) {
+            if (buckets[i] != null) {
+                trees[i] = new Tree(buckets[i]);
+            }
+        }
+    }
+
+    public int[] getColors() {
+        return colors;
+    }
+
+    private int getBucket(int color) {
+        return matchAlpha ? (color >> 24) & 0xFF : 0;
+    }
+
+    /**
+     * @param color
+     * @return the index of the nearest color, or -1
+     */
+    public int getNearest(int color) {
+        return getNearest(color, color, false);
+    }
+
+    /**
+     * @param color
+     * @return the index of the nearest color which isn't the same color, or -1
+     */
+    public int getNextNearest(int color) {
+        return getNearest(color, color, true);
+    }
+
+    /**
+     * Get the index of an approximate nearest color (see {@link ColorIndex})
+     *
+     * @param color
+     * @return the index, or -1
+     */
+    public int getNearestFast(int color) {
+        int bucket = getBucket(color);
+        if (trees[bucket] == null) {
+            return -1;
+        }
+        int[] table = tables.computeIfAbsent(bucket, k -> new int[1 << (LUT_BITS * 3)]);
+        int red = ((color >> 16) & 0xFF) >> LUT_SHIFT;
+        int green = ((color >> 8) & 0xFF) >> LUT_SHIFT;
+        int blue = (color & 0xFF) >> LUT_SHIFT;
+        int key = (red << (LUT_BITS * 2)) + (green << LUT_BITS) + blue;
+        int value = table[key];
+        if (value == 0) {
+            int half = 1 << (LUT_SHIFT - 1);
+            int center = (color & 0xFF000000) + ((((red << LUT_SHIFT) + half) << 16) + (((green << LUT_SHIFT) + half) << 8) + (blue << LUT_SHIFT) + half);
+            // Racing threads will store the same value
+            table[key] = value = getNearest(center, center, false) + 1;
+        }
+        return value - 1;
+    }
+
+    private int getNearest(int color, int exclude, boolean excludeColor) {
+        Tree tree = trees[getBucket(color)];
+        if (tree == null) {
+            return -1;
+        }
+        Search search = new Search(color, exclude, excludeColor);
+        tree.search(search, 0, tree.indexes.length, 0);
+        return search.closest;
+    }
+
+    private final class Search {
+        private final int[] channels;
+        private final int red, green, blue;
+        private final int exclude;
+        private final boolean excludeColor;
+        private long min = Long.MAX_VALUE;
+        private int closest = -1;
+
+        private Search(int color, int exclude, boolean excludeColor) {
+            this.red = (color >> 16) & 0xFF;
+            this.green = (color >> 8) & 0xFF;
+            this.blue = color & 0xFF;
+            this.channels = new int[]{red, green, blue};
+            this.exclude = exclude;
+            this.excludeColor = excludeColor;
+        }
+
+        private void test(int index) {
+            int other = colors[index];
+            if (excludeColor && other == exclude) {
+                return;
+            }
+            long distance = util.colorDistance(red, green, blue, other);
+            // Prefer the lowest index for equal distances, the same as a linear scan
+            if (distance < min || (distance == min && index < closest)) {
+                min = distance;
+                closest = index;
+            }
+        }
+    }
+
+    private final class Tree {
+        // Color indexes, each range is split on the median of one channel
+        private final int[] indexes;
+
+        private Tree(int[] indexes) {
+            Integer[] boxed = new Integer[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                boxed[i] = indexes[i];
+            }
+            build(boxed, 0, boxed.length, 0);
+            this.indexes = new int[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                this.indexes[i] = boxed[i];
+            }
+        }
+
+        private void build(Integer[] boxed, int start, int end, int depth) {
+            if (end - start <= 1) {
+                return;
+            }
+            int shift = 16 - (depth % 3) * 8;
+            Arrays.sort(boxed, start, end, Comparator.comparingInt(i -> (colors[i] >> shift) & 0xFF));
+            int mid = (start + end) >>> 1;
+            build(boxed, start, mid, depth + 1);
+            build(boxed, mid + 1, end, depth + 1);
+        }
+
+        private void search(Search search, int start, int end, int depth) {
+            if (start >= end) {
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            int index = indexes[mid];
+            search.test(index);
+            int axis = depth % 3;
+            int diff = search.channels[axis] - ((colors[index] >> (16 - axis * 8)) & 0xFF);
+            boolean left = diff < 0;
+            if (left) {
+                search(search, start, mid, depth + 1);
+            } else {
+                search(search, mid + 1, end, depth + 1);
+            }
+            // The nearest color on the other side is at least this far away
+            if ((long) WEIGHTS[axis] * diff * diff <= search.min) {
+                if (left) {
+                    search(search, mid + 1, end, depth + 1);
+                } else {
+                    search(search, start, mid, depth + 1);
+                }
+            }
+        }
+    }
+}
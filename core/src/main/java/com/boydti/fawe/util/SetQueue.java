@@ -3,6 +3,8 @@ package com.boydti.fawe.util;
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.util.metrics.FaweMetrics;
+import com.boydti.fawe.util.metrics.Histogram;
 import com.boydti.fawe.wrappers.WorldWrapper;
 import com.sk89q.worldedit.world.World;
 import java.util.ArrayList;
@@ -10,6 +12,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ForkJoinPool;
@@ -43,6 +46,11 @@ public class SetQueue {
      */
     private final ConcurrentLinkedDeque<Runnable> emptyTasks = new ConcurrentLinkedDeque<>();
 
+    private final Histogram tickTime = FaweMetrics.IMP.histogram("fawe_setqueue_tick_ms", "Time spent by the queue each tick");
+    private final Histogram tickBudget = FaweMetrics.IMP.histogram("fawe_setqueue_budget_ms", "Time allocated to the queue each tick");
+
+    private final AdaptiveScheduler scheduler = new AdaptiveScheduler();
+
     private ForkJoinPool pool = new ForkJoinPool();
     private ExecutorCompletionService completer = new ExecutorCompletionService(pool);
 
@@ -89,20 +97,26 @@ public class SetQueue {
                         return;
                     }
 
-                    targetTPS = 18 - Math.max(Settings.IMP.QUEUE.EXTRA_TIME_MS * 0.05, 0);
+                    boolean adaptive = Settings.IMP.QUEUE.ADAPTIVE;
+                    long currentAllocate;
+                    if (adaptive) {
+                        currentAllocate = scheduler.startTick(now);
+                    } else {
+                        targetTPS = 18 - Math.max(Settings.IMP.QUEUE.EXTRA_TIME_MS * 0.05, 0);
+
+                        long diff = (50 + SetQueue.this.last) - (SetQueue.this.last = now);
+                        long absDiff = Math.abs(diff);
+                        if (diff == 0) {
+                            allocate = Math.min(50, allocate + 1);
+                        } else if (diff < 0) {
+                            allocate = Math.max(5, allocate + diff);
+                        } else if (!Fawe.get().getTimer().isAbove(targetTPS)) {
+                            allocate = Math.max(5, allocate - 1);
+                        }
 
-                    long diff = (50 + SetQueue.this.last) - (SetQueue.this.last = now);
-                    long absDiff = Math.abs(diff);
-                    if (diff == 0) {
-                        allocate = Math.min(50, allocate + 1);
-                    } else if (diff < 0) {
-                        allocate = Math.max(5, allocate + diff);
-                    } else if (!Fawe.get().getTimer().isAbove(targetTPS)) {
-                        allocate = Math.max(5, allocate - 1);
+                        currentAllocate = allocate - absDiff;
                     }
 
-                    long currentAllocate = allocate - absDiff;
-
                     if (!emptyTasks) {
                         long taskAllocate = activeQueues.isEmpty() ? currentAllocate : 1 + (currentAllocate >> 1);
                         long used = 0;
@@ -152,38 +166,25 @@ public class SetQueue {
                         }
                     }
 
-                    FaweQueue queue = getNextQueue();
-                    if (queue == null) {
-                        return;
-                    }
-
-                    long time = Settings.IMP.QUEUE.EXTRA_TIME_MS + currentAllocate - System.currentTimeMillis() + now;
-                    // Disable the async catcher as it can't discern async vs parallel
-                    boolean parallel = Settings.IMP.QUEUE.PARALLEL_THREADS > 1;
-                    queue.startSet(parallel);
-                    try {
-                        if (!queue.next(Settings.IMP.QUEUE.PARALLEL_THREADS, time) && queue.getStage() == QueueStage.ACTIVE) {
-                            queue.setStage(QueueStage.NONE);
-                            queue.runTasks();
+                    if (adaptive) {
+                        List<FaweQueue> queues = getNextQueues();
+                        if (queues.isEmpty()) {
+                            return;
                         }
-                    } catch (Throwable e) {
-                        pool.awaitQuiescence(Settings.IMP.QUEUE.DISCARD_AFTER_MS, TimeUnit.MILLISECONDS);
-                        completer = new ExecutorCompletionService(pool);
-                        e.printStackTrace();
-                    }
-                    if (pool.getQueuedSubmissionCount() != 0 || pool.getRunningThreadCount() != 0 || pool.getQueuedTaskCount() != 0) {
-//                        if (Fawe.get().isJava8())
-                        {
-                            pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                        long time = currentAllocate - System.currentTimeMillis() + now;
+                        tickBudget.record(time);
+                        scheduler.run(queues, time, SetQueue.this::runQueue);
+                    } else {
+                        FaweQueue queue = getNextQueue();
+                        if (queue == null) {
+                            return;
                         }
-//                        else {
-//                            pool.shutdown();
-//                            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-//                            pool = new ForkJoinPool();
-//                            completer = new ExecutorCompletionService(pool);
-//                        }
+
+                        long time = Settings.IMP.QUEUE.EXTRA_TIME_MS + currentAllocate - System.currentTimeMillis() + now;
+                        tickBudget.record(time);
+                        runQueue(queue, time);
                     }
-                    queue.endSet(parallel);
+                    tickTime.record(System.currentTimeMillis() - now);
                 } catch (Throwable e) {
                     e.printStackTrace();
                 }
@@ -191,6 +192,30 @@ public class SetQueue {
         }, 1);
     }
 
+    private void runQueue(FaweQueue queue, long time) {
+        // Disable the async catcher as it can't discern async vs parallel
+        boolean parallel = Settings.IMP.QUEUE.PARALLEL_THREADS > 1;
+        queue.startSet(parallel);
+        try {
+            if (!queue.next(Settings.IMP.QUEUE.PARALLEL_THREADS, time) && queue.getStage() == QueueStage.ACTIVE) {
+                queue.setStage(QueueStage.NONE);
+                queue.runTasks();
+            }
+        } catch (Throwable e) {
+            pool.awaitQuiescence(Settings.IMP.QUEUE.DISCARD_AFTER_MS, TimeUnit.MILLISECONDS);
+            completer = new ExecutorCompletionService(pool);
+            e.printStackTrace();
+        }
+        if (pool.getQueuedSubmissionCount() != 0 || pool.getRunningThreadCount() != 0 || pool.getQueuedTaskCount() != 0) {
+            pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        queue.endSet(parallel);
+    }
+
+    public AdaptiveScheduler getScheduler() {
+        return scheduler;
+    }
+
     public QueueStage getStage(FaweQueue queue) {
         return queue.getStage();
     }
@@ -337,6 +362,63 @@ public class SetQueue {
         return null;
     }
 
+    /**
+     * Get all the queues which should place chunks this tick<br/>
+     * - All non empty active queues<br/>
+     * - Only if there are none: inactive queues which have waited longer than MAX_WAIT_MS, or the first one if TARGET_SIZE is exceeded (as with {@link #getNextQueue()})
+     *
+     * @return the queues
+     */
+    public List<FaweQueue> getNextQueues() {
+        long now = System.currentTimeMillis();
+        List<FaweQueue> result = new ArrayList<>();
+        Iterator<FaweQueue> iter = activeQueues.iterator();
+        while (iter.hasNext()) {
+            FaweQueue queue = iter.next();
+            if (queue.size() > 0) {
+                queue.setModified(now);
+                result.add(queue);
+            } else {
+                queue.setStage(QueueStage.NONE);
+                queue.runTasks();
+                iter.remove();
+            }
+        }
+        if (result.isEmpty() && !inactiveQueues.isEmpty()) {
+            int total = 0;
+            FaweQueue firstNonEmpty = null;
+            boolean added = false;
+            iter = inactiveQueues.iterator();
+            while (iter.hasNext()) {
+                FaweQueue queue = iter.next();
+                long age = now - queue.getModified();
+                int size = queue.size();
+                total += size;
+                if (size == 0) {
+                    if (age > Settings.IMP.QUEUE.DISCARD_AFTER_MS) {
+                        queue.setStage(QueueStage.NONE);
+                        queue.runTasks();
+                        iter.remove();
+                    }
+                    continue;
+                }
+                if (firstNonEmpty == null) {
+                    firstNonEmpty = queue;
+                }
+                if (age > Settings.IMP.QUEUE.MAX_WAIT_MS) {
+                    queue.setModified(now);
+                    result.add(queue);
+                    added = true;
+                }
+            }
+            if (!added && firstNonEmpty != null && total > Settings.IMP.QUEUE.TARGET_SIZE) {
+                firstNonEmpty.setModified(now);
+                result.add(firstNonEmpty);
+            }
+        }
+        return result;
+    }
+
     public boolean next() {
         while (activeQueues.size() > 0) {
             FaweQueue queue = activeQueues.poll();
@@ -364,25 +364,68 @@ public class TextureUtil implements TextureHolder {
         }
     }
 
-    public BaseBlock getNearestBlock(int color) {
-        long min = Long.MAX_VALUE;
-        int closest = 0;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validColors.length; i++) {
-            int other = validColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validBlockIds[i];
-                }
+    private transient ColorIndex blockIndex;
+    private transient ColorIndex layerIndex;
+    private transient ColorIndex mixBiomeIndex;
+    private transient ColorIndex biomeIndex;
+    private transient BiomeColor[] indexedBiomes;
+
+    /**
+     * Get the index of the nearest color
+     *
+     * @param index
+     * @param color
+     * @return the index, or -1
+     */
+    private static int getNearest(ColorIndex index, int color) {
+        return Settings.IMP.EXPERIMENTAL.FAST_COLOR_LOOKUP ? index.getNearestFast(color) : index.getNearest(color);
+    }
+
+    /**
+     * The indexes are rebuilt if the colors are replaced (e.g. by a subclass)
+     */
+    private ColorIndex getBlockIndex() {
+        ColorIndex index = blockIndex;
+        if (index == null || index.getColors() != validColors) {
+            blockIndex = index = new ColorIndex(this, validColors, true);
+        }
+        return index;
+    }
+
+    private ColorIndex getLayerIndex() {
+        ColorIndex index = layerIndex;
+        if (index == null || index.getColors() != validLayerColors) {
+            layerIndex = index = new ColorIndex(this, validLayerColors, true);
+        }
+        return index;
+    }
+
+    private ColorIndex getMixBiomeIndex() {
+        ColorIndex index = mixBiomeIndex;
+        if (index == null || index.getColors() != validMixBiomeColors) {
+            mixBiomeIndex = index = new ColorIndex(this, validMixBiomeColors, true);
+        }
+        return index;
+    }
+
+    private ColorIndex getBiomeIndex() {
+        BiomeColor[] biomes = validBiomes;
+        ColorIndex index = biomeIndex;
+        if (index == null || indexedBiomes != biomes) {
+            int[] colors = new int[biomes.length];
+            for (int i = 0; i < biomes.length; i++) {
+                colors[i] = biomes[i].grassCombined;
             }
+            biomeIndex = index = new ColorIndex(this, colors, false);
+            indexedBiomes = biomes;
         }
-        if (min == Long.MAX_VALUE) return null;
-        return FaweCache.CACHE_BLOCK[closest];
+        return index;
+    }
+
+    public BaseBlock getNearestBlock(int color) {
+        int index = getNearest(getBlockIndex(), color);
+        if (index == -1) return null;
+        return FaweCache.CACHE_BLOCK[validBlockIds[index]];
     }
 
     public BaseBlock getNearestBlock(BaseBlock block) {
@@ -392,24 +435,9 @@ public class TextureUtil implements TextureHolder {
     }
 
     public BaseBlock getNextNearestBlock(int color) {
-        long min = Long.MAX_VALUE;
-        int closest = 0;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validColors.length; i++) {
-            int other = validColors[i];
-            if (other != color && ((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validBlockIds[i];
-                }
-            }
-        }
-        if (min == Long.MAX_VALUE) return null;
-        return FaweCache.CACHE_BLOCK[closest];
+        int index = getBlockIndex().getNextNearest(color);
+        if (index == -1) return null;
+        return FaweCache.CACHE_BLOCK[validBlockIds[index]];
     }
 
     /**
@@ -419,23 +447,8 @@ public class TextureUtil implements TextureHolder {
      * @return
      */
     public char[] getNearestLayer(int color) {
-        char[] closest = null;
-        long min = Long.MAX_VALUE;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validLayerColors.length; i++) {
-            int other = validLayerColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validLayerBlocks[i];
-                }
-            }
-        }
-        return closest;
+        int index = getNearest(getLayerIndex(), color);
+        return index == -1 ? null : validLayerBlocks[index];
     }
 
     public BaseBlock getLighterBlock(BaseBlock block) {
@@ -469,21 +482,10 @@ public class TextureUtil implements TextureHolder {
     public int getBiomeMix(int[] biomeIdsOutput, int color) {
         long closest = Long.MAX_VALUE;
         int closestAverage = Integer.MAX_VALUE;
-        long min = Long.MAX_VALUE;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validMixBiomeColors.length; i++) {
-            int other = validMixBiomeColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validMixBiomeIds[i];
-                    closestAverage = other;
-                }
-            }
+        int index = getNearest(getMixBiomeIndex(), color);
+        if (index != -1) {
+            closest = validMixBiomeIds[index];
+            closestAverage = validMixBiomeColors[index];
         }
         biomeIdsOutput[0] = (int) ((closest >> 0) & 0xFF);
         biomeIdsOutput[1] = (int) ((closest >> 8) & 0xFF);
@@ -496,20 +498,8 @@ public class TextureUtil implements TextureHolder {
         if (grass == 0) {
             return null;
         }
-        BiomeColor closest = null;
-        long min = Long.MAX_VALUE;
-        int red = (color >> 16) & 0xFF;
-        int green = (color >> 8) & 0xFF;
-        int blue = (color >> 0) & 0xFF;
-        for (int i = 0; i < validBiomes.length; i++) {
-            BiomeColor biome = validBiomes[i];
-            long distance = colorDistance(red, green, blue, biome.grassCombined);
-            if (distance < min) {
-                min = distance;
-                closest = biome;
-            }
-        }
-        return closest;
+        int index = getNearest(getBiomeIndex(), color);
+        return index == -1 ? null : indexedBiomes[index];
     }
 
     public File getFolder() {
@@ -0,0 +1,31 @@
+package com.boydti.fawe.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A total which only increases (e.g. chunks dispatched)
+ */
+public class Counter extends Metric {
+    private final LongAdder value = new LongAdder();
+
+    public Counter(String name, String help, String... labels) {
+        super(name, help, labels);
+    }
+
+    public void inc() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    @Override
+    public void reset() {
+        value.reset();
+    }
+}
@@ -0,0 +1,89 @@
+package com.boydti.fawe.util.metrics;
+
+import com.boydti.fawe.util.MainUtil;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Counters and histograms for the queue, lighting and history hot paths<br/>
+ * - Viewed with `/fawe stats`<br/>
+ * - Published by any registered {@link MetricsExporter} (e.g. {@link PrometheusFileExporter})<br/>
+ * Callers should keep the returned metric rather than looking it up each time
+ */
+public class FaweMetrics {
+    public static final FaweMetrics IMP = new FaweMetrics();
+
+    // Sorted so metrics with the same name are adjacent
+    private final ConcurrentSkipListMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+
+    /**
+     * Get or create a counter
+     *
+     * @param name   e.g. fawe_queue_chunks_total
+     * @param help   a short description
+     * @param labels key/value pairs
+     * @return Counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return counters.computeIfAbsent(Metric.getKey(name, labels), k -> new Counter(name, help, labels));
+    }
+
+    /**
+     * Get or create a histogram
+     *
+     * @param name   e.g. fawe_queue_next_ms
+     * @param help   a short description
+     * @param labels key/value pairs
+     * @return Histogram
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return histograms.computeIfAbsent(Metric.getKey(name, labels), k -> new Histogram(name, help, labels));
+    }
+
+    public Collection<Counter> getCounters() {
+        return counters.values();
+    }
+
+    public Collection<Histogram> getHistograms() {
+        return histograms.values();
+    }
+
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    public void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    public boolean removeExporter(MetricsExporter exporter) {
+        return exporters.remove(exporter);
+    }
+
+    public List<MetricsExporter> getExporters() {
+        return new ArrayList<>(exporters);
+    }
+
+    /**
+     * Run all exporters
+     */
+    public void export() {
+        for (MetricsExporter exporter : exporters) {
+            try {
+                exporter.export(this);
+            } catch (Throwable e) {
+                MainUtil.handleError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.boydti.fawe.util.metrics;
+
+import java.util.Arrays;
+
+/**
+ * The distribution of a value (e.g. milliseconds spent per tick)<br/>
+ * - The count, sum and max cover every sample<br/>
+ * - Percentiles are calculated from the most recent {@link #SAMPLES} samples
+ */
+public class Histogram extends Metric {
+    public static final int SAMPLES = 1024;
+
+    private final double[] samples = new double[SAMPLES];
+    private long count;
+    private double sum;
+    private double max;
+
+    public Histogram(String name, String help, String... labels) {
+        super(name, help, labels);
+    }
+
+    public synchronized void record(double value) {
+        samples[(int) (count++ % SAMPLES)] = value;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Record the milliseconds since a {@link System#nanoTime()}
+     *
+     * @param startNanos
+     */
+    public void recordTime(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000000d);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getSum() {
+        return sum;
+    }
+
+    public synchronized double getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @param quantiles between 0 and 1 (e.g. 0.5 for the median)
+     * @return the value at each quantile of the recent samples
+     */
+    public double[] getPercentiles(double... quantiles) {
+        double[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, (int) Math.min(count, SAMPLES));
+        }
+        double[] result = new double[quantiles.length];
+        if (sorted.length == 0) {
+            return result;
+        }
+        Arrays.sort(sorted);
+        for (int i = 0; i < quantiles.length; i++) {
+            int index = (int) Math.ceil(quantiles[i] * sorted.length) - 1;
+            result[i] = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void reset() {
+        Arrays.fill(samples, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+}
@@ -0,0 +1,56 @@
+package com.boydti.fawe.util.metrics;
+
+/**
+ * A named value in the {@link FaweMetrics} registry<br/>
+ * - Labels are key/value pairs (e.g. world=world_nether) which distinguish metrics with the same name
+ */
+public abstract class Metric {
+    private final String name;
+    private final String help;
+    private final String[] labels;
+
+    public Metric(String name, String help, String... labels) {
+        if ((labels.length & 1) != 0) {
+            throw new IllegalArgumentException("Labels must be key/value pairs");
+        }
+        this.name = name;
+        this.help = help;
+        this.labels = labels;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    /**
+     * @return the labels as key/value pairs
+     */
+    public String[] getLabels() {
+        return labels;
+    }
+
+    public abstract void reset();
+
+    static String getKey(String name, String... labels) {
+        if (labels.length == 0) {
+            return name;
+        }
+        StringBuilder key = new StringBuilder(name).append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i != 0) {
+                key.append(',');
+            }
+            key.append(labels[i]).append("=\"").append(labels[i + 1]).append('"');
+        }
+        return key.append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return getKey(name, labels);
+    }
+}
@@ -0,0 +1,12 @@
+package com.boydti.fawe.util.metrics;
+
+import java.io.IOException;
+
+/**
+ * Publishes the metrics somewhere (e.g. a file scraped by Prometheus)
+ *
+ * @see FaweMetrics#addExporter(MetricsExporter)
+ */
+public interface MetricsExporter {
+    void export(FaweMetrics metrics) throws IOException;
+}
@@ -0,0 +1,95 @@
+package com.boydti.fawe.util.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Writes the metrics in the Prometheus text format<br/>
+ * - For use with the node_exporter textfile collector (or any file scraper)<br/>
+ * - Histograms are written as summaries with the 0.5, 0.9, 0.99 quantiles<br/>
+ * - The file is replaced atomically so a scrape never sees a partial file
+ */
+public class PrometheusFileExporter implements MetricsExporter {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final File file;
+
+    public PrometheusFileExporter(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void export(FaweMetrics metrics) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(tmp))) {
+            String lastName = null;
+            for (Counter counter : metrics.getCounters()) {
+                if (!counter.getName().equals(lastName)) {
+                    lastName = counter.getName();
+                    writeHeader(out, counter, "counter");
+                }
+                writeSample(out, counter.getName(), counter.getLabels(), null, counter.get());
+            }
+            for (Histogram histogram : metrics.getHistograms()) {
+                if (!histogram.getName().equals(lastName)) {
+                    lastName = histogram.getName();
+                    writeHeader(out, histogram, "summary");
+                }
+                double[] percentiles = histogram.getPercentiles(QUANTILES);
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    writeSample(out, histogram.getName(), histogram.getLabels(), Double.toString(QUANTILES[i]), percentiles[i]);
+                }
+                writeSample(out, histogram.getName() + "_sum", histogram.getLabels(), null, histogram.getSum());
+                writeSample(out, histogram.getName() + "_count", histogram.getLabels(), null, histogram.getCount());
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeHeader(BufferedWriter out, Metric metric, String type) throws IOException {
+        out.write("# HELP " + metric.getName() + " " + metric.getHelp().replace("\\", "\\\\").replace("\n", "\\n"));
+        out.newLine();
+        out.write("# TYPE " + metric.getName() + " " + type);
+        out.newLine();
+    }
+
+    private void writeSample(BufferedWriter out, String name, String[] labels, String quantile, double value) throws IOException {
+        out.write(name);
+        if (labels.length != 0 || quantile != null) {
+            out.write('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i != 0) {
+                    out.write(',');
+                }
+                out.write(labels[i] + "=\"" + escape(labels[i + 1]) + "\"");
+            }
+            if (quantile != null) {
+                if (labels.length != 0) {
+                    out.write(',');
+                }
+                out.write("quantile=\"" + quantile + "\"");
+            }
+            out.write('}');
+        }
+        out.write(' ');
+        out.write(value == (long) value ? Long.toString((long) value) : String.format(Locale.ROOT, "%.6f", value));
+        out.newLine();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
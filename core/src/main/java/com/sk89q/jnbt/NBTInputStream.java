@@ -110,15 +110,20 @@ public final class NBTInputStream implements Closeable {
         return readDataPayload(type, 0);
     }
 
-    public void readNamedTagLazy(RunnableVal2<String, RunnableVal2> getReader) throws IOException {
+    public void readNamedTagLazy(NBTStreamer.Node root) throws IOException {
         int type = is.readByte();
-        String name = readNamedTagName(type);
-        RunnableVal2 reader = getReader.runAndGet(name, null).value2;
+        NBTStreamer.Node node = readNamedTagNode(type, root);
+        if (node == null) {
+            skipTagPayload(type);
+            return;
+        }
+        RunnableVal2 reader = node.getReader();
         if (reader != null) {
             reader.run(0, readTagPaylodRaw(type, 0));
+            node.checkDone();
             return;
         }
-        readTagPaylodLazy(type, 0, name, getReader);
+        readTagPaylodLazy(type, 0, node);
     }
 
     public String readNamedTagName(int type) throws IOException {
@@ -134,151 +139,218 @@ public final class NBTInputStream implements Closeable {
     }
 
     private byte[] buf;
+    private int[] intBuf;
+    private byte[] nameBuf;
+
+    /**
+     * Read the name of a tag and match it against the children of a node (without creating a String)
+     *
+     * @return the child, or null if no reader uses that name
+     */
+    private NBTStreamer.Node readNamedTagNode(int type, NBTStreamer.Node parent) throws IOException {
+        if (type == NBTConstants.TYPE_END) {
+            return null;
+        }
+        int nameLength = is.readShort() & 0xFFFF;
+        if (nameBuf == null || nameBuf.length < nameLength) {
+            nameBuf = new byte[Math.max(64, nameLength)];
+        }
+        is.readFully(nameBuf, 0, nameLength);
+        return parent.getChild(nameBuf, nameLength);
+    }
 
-    public void readTagPaylodLazy(int type, int depth, String node, RunnableVal2<String, RunnableVal2> getReader) throws IOException {
+    private byte[] getBuffer() {
+        if (buf == null) {
+            buf = new byte[1024];
+        }
+        return buf;
+    }
+
+    private void skipFully(int length) throws IOException {
+        while (length > 0) {
+            int skipped = is.skipBytes(length);
+            if (skipped <= 0) {
+                is.readByte();
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    private void skipTagPayload(int type) throws IOException {
         switch (type) {
             case NBTConstants.TYPE_END:
                 return;
             case NBTConstants.TYPE_BYTE:
-                is.skipBytes(1);
-                return;
             case NBTConstants.TYPE_SHORT:
-                is.skipBytes(2);
-                return;
             case NBTConstants.TYPE_INT:
-                is.skipBytes(4);
-                return;
             case NBTConstants.TYPE_LONG:
-                is.skipBytes(8);
-                return;
             case NBTConstants.TYPE_FLOAT:
-                is.skipBytes(4);
-                return;
             case NBTConstants.TYPE_DOUBLE:
-                is.skipBytes(8);
+                skipFully(getSize(type));
                 return;
             case NBTConstants.TYPE_STRING:
-                int length = is.readShort();
-                is.skipBytes(length);
+                skipFully(is.readShort() & 0xFFFF);
                 return;
             case NBTConstants.TYPE_BYTE_ARRAY:
-                RunnableVal2 reader = getReader.runAndGet(node + ".?", null).value2;
-                length = is.readInt();
-                if (reader != null) {
-                    reader.run(length, NBTConstants.TYPE_BYTE);
+                skipFully(is.readInt());
+                return;
+            case NBTConstants.TYPE_INT_ARRAY:
+                skipFully(is.readInt() << 2);
+                return;
+            case NBTConstants.TYPE_LIST:
+                int childType = is.readByte();
+                if (childType == NBTConstants.TYPE_LIST) {
+                    childType = NBTConstants.TYPE_COMPOUND;
+                }
+                int length = is.readInt();
+                switch (childType) {
+                    case NBTConstants.TYPE_END:
+                        return;
+                    case NBTConstants.TYPE_BYTE:
+                    case NBTConstants.TYPE_SHORT:
+                    case NBTConstants.TYPE_INT:
+                    case NBTConstants.TYPE_LONG:
+                    case NBTConstants.TYPE_FLOAT:
+                    case NBTConstants.TYPE_DOUBLE:
+                        skipFully(length * getSize(childType));
+                        return;
+                }
+                for (int i = 0; i < length; i++) {
+                    skipTagPayload(childType);
+                }
+                return;
+            case NBTConstants.TYPE_COMPOUND:
+                while (true) {
+                    childType = is.readByte();
+                    if (childType == NBTConstants.TYPE_END) {
+                        return;
+                    }
+                    skipFully(is.readShort() & 0xFFFF);
+                    skipTagPayload(childType);
+                }
+            default:
+                throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    private void readSizeLazy(NBTStreamer.Node node, int length, int childType) {
+        NBTStreamer.Node size = node.getSize();
+        if (size != null) {
+            RunnableVal2 reader = size.getReader();
+            if (reader != null) {
+                reader.run(length, childType);
+                size.checkDone();
+            }
+        }
+    }
+
+    public void readTagPaylodLazy(int type, int depth, NBTStreamer.Node node) throws IOException {
+        switch (type) {
+            case NBTConstants.TYPE_BYTE_ARRAY: {
+                int length = is.readInt();
+                readSizeLazy(node, length, NBTConstants.TYPE_BYTE);
+                NBTStreamer.Node element = node.getElement();
+                RunnableVal2 reader = element != null ? element.getReader() : null;
+                if (reader == null) {
+                    skipFully(length);
+                    return;
+                }
+                if (reader instanceof NBTStreamer.ByteReader) {
+                    NBTStreamer.ByteReader byteReader = (NBTStreamer.ByteReader) reader;
+                    byte[] buffer = getBuffer();
+                    for (int i = 0; i < length; i += buffer.length) {
+                        int toRead = Math.min(length - i, buffer.length);
+                        is.readFully(buffer, 0, toRead);
+                        byteReader.run(i, buffer, 0, toRead);
+                    }
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        reader.run(i, is.readByte());
+                    }
                 }
-                reader = getReader.runAndGet(node + ".#", null).value2;
+                element.checkDone();
+                return;
+            }
+            case NBTConstants.TYPE_INT_ARRAY: {
+                int length = is.readInt();
+                readSizeLazy(node, length, NBTConstants.TYPE_INT);
+                NBTStreamer.Node element = node.getElement();
+                RunnableVal2 reader = element != null ? element.getReader() : null;
                 if (reader == null) {
-                    is.skipBytes(length);
+                    skipFully(length << 2);
                     return;
                 }
                 if (reader instanceof NBTStreamer.ByteReader) {
                     NBTStreamer.ByteReader byteReader = (NBTStreamer.ByteReader) reader;
-                    int i = 0;
-                    if (is instanceof InputStream) {
-                        DataInputStream dis = (DataInputStream) is;
-                        if (length > 1024) {
-                            if (buf == null) {
-                                buf = new byte[1024];
-                            }
-                            int left = length;
-                            for (; left > 1024; left -= 1024) {
-                                dis.readFully(buf);
-                                for (byte b : buf) {
-                                    byteReader.run(i++, b & 0xFF);
-                                }
-                            }
-                        }
-                        for (; i < length; i++) {
-                            byteReader.run(i, dis.read());
-                        }
-                    } else {
-                        if (length > 1024) {
-                            if (buf == null) {
-                                buf = new byte[1024];
-                            }
-                            int left = length;
-                            for (; left > 1024; left -= 1024) {
-                                is.readFully(buf);
-                                for (byte b : buf) {
-                                    byteReader.run(i++, b & 0xFF);
-                                }
-                            }
-                        }
-                        for (; i < length; i++) {
-                            byteReader.run(i, is.readByte() & 0xFF);
+                    byte[] buffer = getBuffer();
+                    if (intBuf == null) {
+                        intBuf = new int[buffer.length >> 2];
+                    }
+                    for (int i = 0; i < length; i += intBuf.length) {
+                        int toRead = Math.min(length - i, intBuf.length);
+                        is.readFully(buffer, 0, toRead << 2);
+                        for (int j = 0, k = 0; j < toRead; j++, k += 4) {
+                            intBuf[j] = ((buffer[k] & 0xFF) << 24) + ((buffer[k + 1] & 0xFF) << 16) + ((buffer[k + 2] & 0xFF) << 8) + (buffer[k + 3] & 0xFF);
                         }
+                        byteReader.run(i, intBuf, 0, toRead);
                     }
                 } else {
                     for (int i = 0; i < length; i++) {
-                        reader.run(i, is.readByte());
+                        reader.run(i, is.readInt());
                     }
                 }
+                element.checkDone();
                 return;
-            case NBTConstants.TYPE_LIST:
+            }
+            case NBTConstants.TYPE_LIST: {
                 int childType = is.readByte();
                 if (childType == NBTConstants.TYPE_LIST) {
                     childType = NBTConstants.TYPE_COMPOUND;
                 }
-                length = is.readInt();
-                reader = getReader.runAndGet(node + ".?", null).value2;
-                if (reader != null) {
-                    reader.run(length, childType);
-                }
-                node += ".#";
-                reader = getReader.runAndGet(node, null).value2;
+                int length = is.readInt();
+                readSizeLazy(node, length, childType);
+                NBTStreamer.Node element = node.getElement();
+                RunnableVal2 reader = element != null ? element.getReader() : null;
                 depth++;
-                if (reader == null) {
+                if (reader != null) {
                     for (int i = 0; i < length; ++i) {
-                        readTagPaylodLazy(childType, depth, node, getReader);
+                        reader.run(i, readTagPayload(childType, depth));
                     }
+                    element.checkDone();
                     return;
                 }
                 for (int i = 0; i < length; ++i) {
-                    reader.run(i, readTagPayload(childType, depth));
+                    if (element != null && element.isActive()) {
+                        readTagPaylodLazy(childType, depth, element);
+                    } else {
+                        skipTagPayload(childType);
+                    }
                 }
                 return;
+            }
             case NBTConstants.TYPE_COMPOUND:
                 depth++;
-                // 3
                 for (int i = 0; ; i++) {
-                    childType = is.readByte();
+                    int childType = is.readByte();
                     if (childType == NBTConstants.TYPE_END) {
                         return;
                     }
-                    String name = readNamedTagName(childType);
-                    String childNode = node + "." + name;
-                    reader = getReader.runAndGet(childNode, null).value2;
+                    NBTStreamer.Node child = readNamedTagNode(childType, node);
+                    if (child == null) {
+                        skipTagPayload(childType);
+                        continue;
+                    }
+                    RunnableVal2 reader = child.getReader();
                     if (reader == null) {
-                        readTagPaylodLazy(childType, depth, childNode, getReader);
+                        readTagPaylodLazy(childType, depth, child);
                         continue;
                     }
                     reader.run(i, readTagPaylodRaw(childType, depth));
+                    child.checkDone();
                 }
-            case NBTConstants.TYPE_INT_ARRAY:
-                length = is.readInt();
-                reader = getReader.runAndGet(node + ".?", null).value2;
-                if (reader != null) {
-                    reader.run(length, NBTConstants.TYPE_INT);
-                }
-                reader = getReader.runAndGet(node + ".#", null).value2;
-                if (reader == null) {
-                    is.skipBytes(length << 2);
-                    return;
-                }
-                if (reader instanceof NBTStreamer.ByteReader) {
-                    NBTStreamer.ByteReader byteReader = (NBTStreamer.ByteReader) reader;
-                    for (int i = 0; i < length; i++) {
-                        byteReader.run(i, is.readInt());
-                    }
-                } else {
-                    for (int i = 0; i < length; i++) {
-                        reader.run(i, is.readInt());
-                    }
-                }
-                return;
             default:
-                throw new IOException("Invalid tag type: " + type + ".");
+                skipTagPayload(type);
         }
     }
 
@@ -331,7 +403,7 @@ public final class NBTInputStream implements Closeable {
                 is.readFully(bytes);
                 return (bytes);
             case NBTConstants.TYPE_STRING:
-                length = is.readShort();
+                length = is.readShort() & 0xFFFF;
                 bytes = new byte[length];
                 is.readFully(bytes);
                 return (new String(bytes, NBTConstants.CHARSET));
@@ -373,9 +445,9 @@ public final class NBTInputStream implements Closeable {
                     int toRead = Math.min(length << 2, buf.length);
                     is.readFully(buf, 0, toRead);
                     for (int i = 0; i < toRead; i += 4, index++) {
-                        data[index] = ((buf[i] << 24) + (buf[i + 1] << 16) + (buf[i + 2] << 8) + (buf[i + 3] << 0));
+                        data[index] = ((buf[i] & 0xFF) << 24) + ((buf[i + 1] & 0xFF) << 16) + ((buf[i + 2] & 0xFF) << 8) + (buf[i + 3] & 0xFF);
                     }
-                    length -= toRead;
+                    length -= toRead >> 2;
                 }
                 return (data);
             default:
@@ -410,7 +482,7 @@ public final class NBTInputStream implements Closeable {
                 is.readFully(bytes);
                 return bytes;
             case NBTConstants.TYPE_STRING:
-                length = is.readShort();
+                length = is.readShort() & 0xFFFF;
                 bytes = new byte[length];
                 is.readFully(bytes);
                 return new String(bytes, NBTConstants.CHARSET);
@@ -491,7 +563,7 @@ public final class NBTInputStream implements Closeable {
                 is.readFully(bytes);
                 return new ByteArrayTag(bytes);
             case NBTConstants.TYPE_STRING:
-                length = is.readShort();
+                length = is.readShort() & 0xFFFF;
                 bytes = new byte[length];
                 is.readFully(bytes);
                 return new StringTag(new String(bytes, NBTConstants.CHARSET));
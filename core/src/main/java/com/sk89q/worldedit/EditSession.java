@@ -70,6 +70,7 @@ import com.sk89q.worldedit.function.generator.GardenPatchGenerator;
 import com.sk89q.worldedit.function.mask.*;
 import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
 import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.function.pattern.BlockPattern;
 import com.sk89q.worldedit.function.util.RegionOffset;
@@ -1217,11 +1218,21 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         context.setExtent(editSession.bypassAll);
         ChangeSet changeSet = getChangeSet();
         editSession.getQueue().setChangeTask(null);
-        Operations.completeBlindly(ChangeSetExecutor.create(changeSet, context, ChangeSetExecutor.Type.UNDO, editSession.getBlockBag(), editSession.getLimit().INVENTORY_MODE));
+        Operations.completeBlindly(getChangeSetExecutor(changeSet, context, ChangeSetExecutor.Type.UNDO, editSession));
         flushQueue();
         editSession.changes = 1;
     }
 
+    private Operation getChangeSetExecutor(ChangeSet changeSet, UndoContext context, ChangeSetExecutor.Type type, EditSession editSession) {
+        FaweQueue queue = editSession.getQueue();
+        BlockBag blockBag = editSession.getBlockBag();
+        int inventory = editSession.getLimit().INVENTORY_MODE;
+        if (Settings.IMP.HISTORY.PARALLEL_UNDO && ParallelChangeSetExecutor.supports(changeSet, queue, blockBag, inventory)) {
+            return ParallelChangeSetExecutor.create((FaweStreamChangeSet) changeSet, context, type, (MappedFaweQueue) queue);
+        }
+        return ChangeSetExecutor.create(changeSet, context, type, blockBag, inventory);
+    }
+
     public void setBlocks(ChangeSet changeSet, ChangeSetExecutor.Type type) {
         final UndoContext context = new UndoContext();
         Extent bypass = (history == null) ? bypassAll : history;
@@ -1241,7 +1252,7 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         context.setExtent(editSession.bypassAll);
         ChangeSet changeSet = getChangeSet();
         editSession.getQueue().setChangeTask(null);
-        Operations.completeBlindly(ChangeSetExecutor.create(changeSet, context, ChangeSetExecutor.Type.REDO, editSession.getBlockBag(), editSession.getLimit().INVENTORY_MODE));
+        Operations.completeBlindly(getChangeSetExecutor(changeSet, context, ChangeSetExecutor.Type.REDO, editSession));
         flushQueue();
         editSession.changes = 1;
     }
@@ -1573,9 +1584,18 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         return this.replaceBlocks(region, mask, pattern);
     }
 
+    /**
+     * If an operation on a region can skip the extent chain and use the queue directly<br/>
+     * - A set can still be recorded by the {@link HistoryExtent} (see {@link HistoryExtent#setBlocks})
+     *
+     * @param region
+     * @param get if blocks are read
+     * @param set if blocks are changed
+     * @return
+     */
     public boolean canBypassAll(Region region, boolean get, boolean set) {
         if (wrapped) return false;
-        if (history != null) return false;
+        if (history != null && (get || !set)) return false;
         FaweRegionExtent regionExtent = getRegionExtent();
         if (!(region instanceof CuboidRegion)) return false;
         if (regionExtent != null) {
@@ -1595,7 +1615,7 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         FaweLimit left = getLimitLeft();
         if (!left.isUnlimited() && (((get || getChangeTask() != null) && left.MAX_CHECKS <= area) || (set && left.MAX_CHANGES <= area)))
             return false;
-        if (getChangeTask() != getChangeSet()) return false;
+        if (history == null && getChangeTask() != getChangeSet()) return false;
         if (!Masks.isNull(getMask()) || !Masks.isNull(getSourceMask())) return false;
         if (getBlockBag() != null) return false;
         return true;
@@ -1618,6 +1638,9 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
         checkNotNull(region);
         checkNotNull(block);
         if (canBypassAll(region, false, true) && !block.hasNbtData()) {
+            if (history != null) {
+                return changes = history.setBlocks((CuboidRegion) region, block.getId(), block.getData());
+            }
             return changes = queue.setBlocks((CuboidRegion) region, block.getId(), block.getData());
         }
         try {
@@ -25,6 +25,9 @@ import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.util.*;
+import com.boydti.fawe.util.metrics.Counter;
+import com.boydti.fawe.util.metrics.FaweMetrics;
+import com.boydti.fawe.util.metrics.Histogram;
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandContext;
 import com.sk89q.minecraft.util.commands.CommandPermissions;
@@ -211,6 +214,37 @@ public class WorldEditCommands {
         }
     }
 
+    @Command(
+            aliases = {"stats"},
+            usage = "[reset]",
+            desc = "Print the queue, lighting and history metrics",
+            help = "Print the queue, lighting and history metrics\n" +
+                    "Times are in milliseconds, percentiles are of the most recent samples\n" +
+                    "Use `/fawe stats reset` to clear them",
+            min = 0,
+            max = 1
+    )
+    @CommandPermissions("worldedit.stats")
+    public void stats(Actor actor, CommandContext args) throws WorldEditException {
+        if (args.argsLength() == 1 && args.getString(0).equalsIgnoreCase("reset")) {
+            FaweMetrics.IMP.reset();
+            actor.print("Metrics reset");
+            return;
+        }
+        for (Counter counter : FaweMetrics.IMP.getCounters()) {
+            actor.printDebug(counter + ": " + counter.get());
+        }
+        for (Histogram histogram : FaweMetrics.IMP.getHistograms()) {
+            long count = histogram.getCount();
+            if (count == 0) {
+                continue;
+            }
+            double[] percentiles = histogram.getPercentiles(0.5, 0.95, 0.99);
+            actor.printDebug(String.format(Locale.ROOT, "%s: n=%d mean=%.2f p50=%.2f p95=%.2f p99=%.2f max=%.2f",
+                    histogram, count, histogram.getMean(), percentiles[0], percentiles[1], percentiles[2], histogram.getMax()));
+        }
+    }
+
     @Command(
             aliases = {"cui"},
             usage = "",
@@ -20,11 +20,9 @@
 package com.sk89q.worldedit.command.composition;
 
 import com.boydti.fawe.config.BBC;
-import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.RegionWrapper;
-import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.extent.FaweRegionExtent;
 import com.boydti.fawe.util.MainUtil;
 import com.google.common.base.Joiner;
@@ -108,44 +106,7 @@ public class SelectionCommand extends SimpleCommand<Operation> {
                             if (pattern instanceof BaseBlock) {
                                 BaseBlock block = ((BaseBlock) pattern);
                                 final FaweQueue queue = editSession.getQueue();
-                                final int minY = cuboid.getMinimumY();
-                                final int maxY = cuboid.getMaximumY();
-
-                                final int id = block.getId();
-                                final byte data = (byte) block.getData();
-                                final FaweChunk<?> fc = queue.getFaweChunk(0, 0);
-                                fc.fillCuboid(0, 15, minY, maxY, 0, 15, id, data);
-                                fc.optimize();
-
-                                int bcx = (current.minX) >> 4;
-                                int bcz = (current.minZ) >> 4;
-
-                                int tcx = (current.maxX) >> 4;
-                                int tcz = (current.maxZ) >> 4;
-                                // [chunkx, chunkz, pos1x, pos1z, pos2x, pos2z, isedge]
-                                MainUtil.chunkTaskSync(current, new RunnableVal<int[]>() {
-                                    @Override
-                                    public void run(int[] value) {
-                                        FaweChunk newChunk;
-                                        if (value[6] == 0) {
-                                            newChunk = fc.copy(true);
-                                            newChunk.setLoc(queue, value[0], value[1]);
-                                        } else {
-                                            int bx = value[2] & 15;
-                                            int tx = value[4] & 15;
-                                            int bz = value[3] & 15;
-                                            int tz = value[5] & 15;
-                                            if (bx == 0 && tx == 15 && bz == 0 && tz == 15) {
-                                                newChunk = fc.copy(true);
-                                                newChunk.setLoc(queue, value[0], value[1]);
-                                            } else {
-                                                newChunk = queue.getFaweChunk(value[0], value[1]);
-                                                newChunk.fillCuboid(value[2] & 15, value[4] & 15, minY, maxY, value[3] & 15, value[5] & 15, id, data);
-                                            }
-                                        }
-                                        newChunk.addToQueue();
-                                    }
-                                });
+                                queue.setBlocks(cuboid, block.getId(), block.getData());
                                 queue.enqueue();
                                 BBC.OPERATION.send(actor, BBC.VISITOR_BLOCK.format(cuboid.getArea()));
                                 queue.flush();
@@ -14,6 +14,7 @@ import com.boydti.fawe.object.brush.scroll.ScrollTool;
 import com.boydti.fawe.object.brush.visualization.VisualChunk;
 import com.boydti.fawe.object.brush.visualization.VisualExtent;
 import com.boydti.fawe.object.brush.visualization.VisualMode;
+import com.boydti.fawe.object.brush.visualization.VisualShape;
 import com.boydti.fawe.object.extent.ResettableExtent;
 import com.boydti.fawe.object.mask.MaskedTargetBlock;
 import com.boydti.fawe.object.pattern.PatternTraverser;
@@ -74,6 +75,7 @@ public class BrushTool implements DoubleActionTraceTool, ScrollTool, MovableTool
     private transient BrushSettings context = primary;
 
     private transient VisualExtent visualExtent;
+    private transient VisualShape visualShape;
     private transient Lock lock = new ReentrantLock();
 
     private transient BrushHolder holder;
@@ -595,15 +597,21 @@ public class BrushTool implements DoubleActionTraceTool, ScrollTool, MovableTool
         Fawe.get().getVisualQueue().queue(player);
     }
 
+    /**
+     * Visualize the brush at the player's target<br/>
+     * - Only the blocks which changed since the last visualization are sent
+     *
+     * @return the number of blocks sent
+     */
     @Deprecated
-    public synchronized void visualize(BrushTool.BrushAction action, Player player) throws MaxChangedBlocksException {
+    public synchronized int visualize(BrushTool.BrushAction action, Player player) throws WorldEditException {
         VisualMode mode = getVisualMode();
         if (mode == VisualMode.NONE) {
-            return;
+            return 0;
         }
         BrushSettings current = getContext();
         Brush brush = current.getBrush();
-        if (brush == null) return;
+        if (brush == null) return 0;
         FawePlayer<Object> fp = FawePlayer.wrap(player);
         EditSession editSession = new EditSessionBuilder(player.getWorld())
                 .player(fp)
@@ -623,18 +631,30 @@ public class BrushTool implements DoubleActionTraceTool, ScrollTool, MovableTool
                     break;
                 }
                 case OUTLINE: {
+                    Pattern material = current.getMaterial();
+                    double size = current.getSize();
+                    if (visualShape != null && visualShape.isShape(brush, size, material)) {
+                        visualShape.paste(newVisualExtent, position);
+                        break;
+                    }
+                    VisualShape shape = VisualShape.isCacheable(brush, material) ? new VisualShape(brush, size, material, position, editSession.getMaxY()) : null;
+                    newVisualExtent.setShape(shape);
                     new PatternTraverser(current).reset(editSession);
-                    brush.build(editSession, position, current.getMaterial(), current.getSize());
+                    brush.build(editSession, position, material, size);
+                    newVisualExtent.setShape(null);
+                    visualShape = shape;
                     break;
                 }
             }
         }
+        int sent = 0;
         if (visualExtent != null) {
             // clear old data
-            visualExtent.clear(newVisualExtent, fp);
+            sent += visualExtent.clear(newVisualExtent, fp);
         }
+        sent += newVisualExtent.visualize(visualExtent, fp);
         visualExtent = newVisualExtent;
-        newVisualExtent.visualize(fp);
+        return sent;
     }
 
     public void clear(Player player) {
@@ -642,6 +662,7 @@ public class BrushTool implements DoubleActionTraceTool, ScrollTool, MovableTool
         Fawe.get().getVisualQueue().dequeue(fp);
         if (visualExtent != null) {
             visualExtent.clear(null, fp);
+            visualExtent = null;
         }
     }
 
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.extent.clipboard;
 
 import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.clipboard.CompressedDiskClipboard;
 import com.boydti.fawe.object.clipboard.DiskOptimizedClipboard;
 import com.boydti.fawe.object.clipboard.FaweClipboard;
 import com.boydti.fawe.object.clipboard.MemoryOptimizedClipboard;
@@ -68,7 +69,7 @@ public class BlockArrayClipboard implements Clipboard, LightingExtent, Closeable
         checkNotNull(region);
         this.region = region.clone();
         this.size = getDimensions();
-        this.IMP = Settings.IMP.CLIPBOARD.USE_DISK ? new DiskOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ()) : new MemoryOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ());
+        this.IMP = Settings.IMP.CLIPBOARD.USE_DISK ? createDiskClipboard(null) : new MemoryOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ());
         this.origin = region.getMinimumPoint();
         this.mx = origin.getBlockX();
         this.my = origin.getBlockY();
@@ -86,7 +87,7 @@ public class BlockArrayClipboard implements Clipboard, LightingExtent, Closeable
         checkNotNull(region);
         this.region = region.clone();
         this.size = getDimensions();
-        this.IMP = Settings.IMP.CLIPBOARD.USE_DISK ? new DiskOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ(), clipboardId) : new MemoryOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ());
+        this.IMP = Settings.IMP.CLIPBOARD.USE_DISK ? createDiskClipboard(clipboardId) : new MemoryOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ());
         this.origin = region.getMinimumPoint();
         this.mx = origin.getBlockX();
         this.my = origin.getBlockY();
@@ -104,6 +105,16 @@ public class BlockArrayClipboard implements Clipboard, LightingExtent, Closeable
         this.IMP = clipboard;
     }
 
+    private FaweClipboard createDiskClipboard(@Nullable UUID clipboardId) {
+        int width = size.getBlockX();
+        int height = size.getBlockY();
+        int length = size.getBlockZ();
+        if (Settings.IMP.CLIPBOARD.DISK_BRICKS) {
+            return clipboardId == null ? new CompressedDiskClipboard(width, height, length) : new CompressedDiskClipboard(width, height, length, clipboardId);
+        }
+        return clipboardId == null ? new DiskOptimizedClipboard(width, height, length) : new DiskOptimizedClipboard(width, height, length, clipboardId);
+    }
+
     public void init(Region region, FaweClipboard fc) {
         checkNotNull(region);
         checkNotNull(fc);
@@ -6,7 +6,11 @@ import com.boydti.fawe.example.MappedFaweQueue;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.HasFaweQueue;
 import com.boydti.fawe.object.IntegerTrio;
+import com.boydti.fawe.object.collection.BlockBitSet;
 import com.boydti.fawe.object.collection.BlockVectorSet;
+import com.boydti.fawe.object.collection.LocalBlockVectorSet;
+import com.boydti.fawe.object.collection.LongHashSet;
+import com.boydti.fawe.object.collection.PackedBlockQueue;
 import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
@@ -56,9 +60,9 @@ public abstract class BreadthFirstSearch implements Operation {
 
     private final RegionFunction function;
     private List<Vector> directions = new ArrayList<>();
-    private BlockVectorSet visited;
+    private BlockBitSet visited;
     private final MappedFaweQueue mFaweQueue;
-    private BlockVectorSet queue;
+    private PackedBlockQueue queue;
     private int currentDepth = 0;
     private final int maxDepth;
     private int affected = 0;
@@ -75,8 +79,8 @@ public abstract class BreadthFirstSearch implements Operation {
     public BreadthFirstSearch(final RegionFunction function, int maxDepth, HasFaweQueue faweQueue) {
         FaweQueue fq = faweQueue != null ? faweQueue.getQueue() : null;
         this.mFaweQueue = fq instanceof MappedFaweQueue ? (MappedFaweQueue) fq : null;
-        this.queue = new BlockVectorSet();
-        this.visited = new BlockVectorSet();
+        this.queue = new PackedBlockQueue();
+        this.visited = new BlockBitSet();
         this.function = function;
         this.directions.addAll(Arrays.asList(DEFAULT_DIRECTIONS));
         this.maxDepth = maxDepth;
@@ -104,7 +108,7 @@ public abstract class BreadthFirstSearch implements Operation {
     public void visit(final Vector pos) {
         if (!isVisited(pos)) {
             isVisitable(pos, pos); // Ignore this, just to initialize mask on this point
-            queue.add(pos);
+            queue.add(pos.getBlockX(), pos.getBlockY(), pos.getBlockZ());
             visited.add(pos);
         }
     }
@@ -115,11 +119,42 @@ public abstract class BreadthFirstSearch implements Operation {
         affected = 0;
     }
 
+    /**
+     * Set the visited positions<br/>
+     * - The positions are copied, use {@link #setVisitedBits(BlockBitSet)} to share a set
+     *
+     * @param set
+     */
     public void setVisited(BlockVectorSet set) {
-        this.visited = set;
+        BlockBitSet bits = new BlockBitSet();
+        for (Vector pos : set) {
+            bits.add(pos);
+        }
+        this.visited = bits;
     }
 
+    /**
+     * Get a copy of the visited positions<br/>
+     * - Use {@link #getVisitedBits()} to avoid the copy
+     *
+     * @return
+     */
     public BlockVectorSet getVisited() {
+        final BlockVectorSet set = new BlockVectorSet();
+        visited.forEach(new LocalBlockVectorSet.BlockVectorSetVisitor() {
+            @Override
+            public void run(int x, int y, int z, int index) {
+                set.add(x, y, z);
+            }
+        });
+        return set;
+    }
+
+    public void setVisitedBits(BlockBitSet set) {
+        this.visited = set;
+    }
+
+    public BlockBitSet getVisitedBits() {
         return visited;
     }
 
@@ -135,48 +170,57 @@ public abstract class BreadthFirstSearch implements Operation {
     public Operation resume(RunContext run) throws WorldEditException {
         MutableBlockVector mutable = new MutableBlockVector();
         MutableBlockVector mutable2 = new MutableBlockVector();
-        boolean shouldTrim = false;
         IntegerTrio[] dirs = getIntDirections();
-        BlockVectorSet tempQueue = new BlockVectorSet();
-        BlockVectorSet chunkLoadSet = new BlockVectorSet();
+        PackedBlockQueue tempQueue = new PackedBlockQueue();
+        LongHashSet chunkLoadSet = new LongHashSet();
         for (currentDepth = 0; !queue.isEmpty() && currentDepth <= maxDepth; currentDepth++) {
+            int size = queue.size();
             if (mFaweQueue != null && Settings.IMP.QUEUE.PRELOAD_CHUNKS > 1) {
                 int cx = Integer.MIN_VALUE;
                 int cz = Integer.MIN_VALUE;
-                for (Vector from : queue) {
+                for (int index = 0; index < size; index++) {
+                    long from = queue.get(index);
+                    int fromX = PackedBlockQueue.unpackX(from);
+                    int fromY = PackedBlockQueue.unpackY(from);
+                    int fromZ = PackedBlockQueue.unpackZ(from);
                     for (IntegerTrio direction : dirs) {
-                        int x = from.getBlockX() + direction.x;
-                        int z = from.getBlockZ() + direction.z;
+                        int x = fromX + direction.x;
+                        int z = fromZ + direction.z;
                         if (cx != (cx = x >> 4) || cz != (cz = z >> 4)) {
-                            int y = from.getBlockY() + direction.y;
+                            int y = fromY + direction.y;
                             if (y < 0 || y >= 256) {
                                 continue;
                             }
-                            if (!visited.contains(x, y, z)) {
-                                chunkLoadSet.add(cx, 0, cz);
+                            if (!visited.contains(x, y, z) && !chunkLoadSet.containsKey(cx, cz)) {
+                                chunkLoadSet.add(cx, cz);
+                                mFaweQueue.queueChunkLoad(cx, cz);
                             }
                         }
                     }
                 }
-                for (Vector chunk : chunkLoadSet) {
-                    mFaweQueue.queueChunkLoad(chunk.getBlockX(), chunk.getBlockZ());
-                }
             }
-            for (Vector from : queue) {
-                if (function.apply(from)) affected++;
+            for (int index = 0; index < size; index++) {
+                long packed = queue.get(index);
+                int fromX = PackedBlockQueue.unpackX(packed);
+                int fromY = PackedBlockQueue.unpackY(packed);
+                int fromZ = PackedBlockQueue.unpackZ(packed);
+                mutable.mutX(fromX);
+                mutable.mutY(fromY);
+                mutable.mutZ(fromZ);
+                if (function.apply(mutable)) affected++;
                 for (int i = 0, j = 0; i < dirs.length && j < maxBranch; i++) {
                     IntegerTrio direction = dirs[i];
-                    int y = from.getBlockY() + direction.y;
+                    int y = fromY + direction.y;
                     if (y < 0 || y >= 256) {
                         continue;
                     }
-                    int x = from.getBlockX() + direction.x;
-                    int z = from.getBlockZ() + direction.z;
+                    int x = fromX + direction.x;
+                    int z = fromZ + direction.z;
                     if (!visited.contains(x, y, z)) {
                         mutable2.mutX(x);
                         mutable2.mutY(y);
                         mutable2.mutZ(z);
-                        if (isVisitable(from, mutable2)) {
+                        if (isVisitable(mutable, mutable2)) {
                             j++;
                             visited.add(x, y, z);
                             tempQueue.add(x, y, z);
@@ -187,13 +231,11 @@ public abstract class BreadthFirstSearch implements Operation {
             if (currentDepth == maxDepth) {
                 break;
             }
-            int size = queue.size();
-            BlockVectorSet tmp = queue;
+            PackedBlockQueue tmp = queue;
             queue = tempQueue;
             tmp.clear();
             chunkLoadSet.clear();
             tempQueue = tmp;
-
         }
         return null;
     }
@@ -19,11 +19,14 @@
 
 package com.sk89q.worldedit.internal.expression;
 
+import com.boydti.fawe.config.Settings;
 import com.sk89q.worldedit.internal.expression.lexer.Lexer;
 import com.sk89q.worldedit.internal.expression.lexer.tokens.Token;
 import com.sk89q.worldedit.internal.expression.parser.Parser;
+import com.sk89q.worldedit.internal.expression.runtime.CompiledExpression;
 import com.sk89q.worldedit.internal.expression.runtime.Constant;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.ExpressionCompiler;
 import com.sk89q.worldedit.internal.expression.runtime.ExpressionEnvironment;
 import com.sk89q.worldedit.internal.expression.runtime.Functions;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
@@ -78,6 +81,7 @@ public class Expression {
     private final String[] variableNames;
     private Variable[] variableArray;
     private RValue root;
+    private CompiledExpression compiled;
     private final Functions functions = new Functions();
     private ExpressionEnvironment environment;
 
@@ -125,7 +129,7 @@ public class Expression {
         }
         pushInstance();
         try {
-            return root.getValue();
+            return compiled != null ? compiled.evaluate() : root.getValue();
         } catch (ReturnException e) {
             return e.getValue();
         } finally {
@@ -139,6 +143,7 @@ public class Expression {
 
     public void optimize() throws EvaluationException {
         root = root.optimize();
+        compiled = Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS ? ExpressionCompiler.compile(root) : null;
     }
 
     @Override
@@ -0,0 +1,53 @@
+package com.sk89q.worldedit.internal.expression.runtime;
+
+/**
+ * The base class of an expression compiled by {@link ExpressionCompiler}<br/>
+ * - Variables are copied into local slots when evaluated, and written back when done<br/>
+ * - Unsupported nodes are evaluated by the interpreter via {@link #nodes}
+ */
+public abstract class CompiledExpression {
+    public final Variable[] vars;
+    public final RValue[] nodes;
+
+    public CompiledExpression(Variable[] vars, RValue[] nodes) {
+        this.vars = vars;
+        this.nodes = nodes;
+    }
+
+    public abstract double evaluate() throws EvaluationException;
+
+    /*
+     * Helpers called by the generated code
+     */
+
+    /**
+     * Same checks as {@link For}, {@link While} and {@link SimpleFor}
+     */
+    public static void checkLoop(int iterations, int position) throws EvaluationException {
+        if (iterations > 256) {
+            throw new EvaluationException(position, "Loop exceeded 256 iterations.");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new EvaluationException(position, "Thread has been interrupted.");
+        }
+    }
+
+    public static boolean isContinue(BreakException e) {
+        return e.doContinue;
+    }
+
+    public static ReturnException doReturn(double value) {
+        return new ReturnException(value);
+    }
+
+    /**
+     * Same as {@link Operators#near(RValue, RValue)}
+     */
+    public static double near(double a, double b) {
+        long aLong = Double.doubleToRawLongBits(a);
+        if (aLong < 0) aLong = Long.MIN_VALUE - aLong;
+        long bLong = Double.doubleToRawLongBits(b);
+        if (bLong < 0) bLong = Long.MIN_VALUE - bLong;
+        return Math.abs(aLong - bLong) <= 450359963L ? 1 : 0;
+    }
+}
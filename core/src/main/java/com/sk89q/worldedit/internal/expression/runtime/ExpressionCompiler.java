@@ -0,0 +1,1046 @@
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import com.boydti.fawe.Fawe;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles an optimized expression tree to a JVM class<br/>
+ * - Variables are kept in local double slots, operators and the math functions are inlined<br/>
+ * - For, While and SimpleFor become native loops with the same iteration limit as the interpreter<br/>
+ * - Any other node (e.g. query, megabuf, switch) is evaluated by the interpreter, with the variables synced around the call<br/>
+ * The class file is written directly, as there is no bytecode library available at runtime
+ */
+public final class ExpressionCompiler {
+
+    private static final String PACKAGE = "com/sk89q/worldedit/internal/expression/runtime/";
+    private static final String BASE = PACKAGE + "CompiledExpression";
+    private static final String RVALUE = PACKAGE + "RValue";
+    private static final String VARIABLE = PACKAGE + "Variable";
+    private static final String BREAK = PACKAGE + "BreakException";
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final Loader LOADER = new Loader(CompiledExpression.class.getClassLoader());
+    private static final Map<String, Constructor<?>> CLASSES = new ConcurrentHashMap<>();
+
+    private static final Field CONDITION;
+    private static final Field TRUE_PART;
+    private static final Field FALSE_PART;
+
+    static {
+        Field condition = null, truePart = null, falsePart = null;
+        try {
+            condition = Conditional.class.getDeclaredField("condition");
+            truePart = Conditional.class.getDeclaredField("truePart");
+            falsePart = Conditional.class.getDeclaredField("falsePart");
+            condition.setAccessible(true);
+            truePart.setAccessible(true);
+            falsePart.setAccessible(true);
+        } catch (Throwable ignore) {
+            // Conditionals will use the interpreter
+            condition = null;
+        }
+        CONDITION = condition;
+        TRUE_PART = truePart;
+        FALSE_PART = falsePart;
+    }
+
+    /**
+     * Compile an expression
+     *
+     * @param root the optimized root node
+     * @return the compiled expression, or null if nothing could be compiled
+     */
+    public static CompiledExpression compile(RValue root) {
+        if (root instanceof Constant || root instanceof Variable) {
+            return null;
+        }
+        try {
+            ExpressionCompiler compiler = new ExpressionCompiler();
+            byte[] bytes = compiler.generate(PACKAGE + "GeneratedExpression", root);
+            if (bytes == null) {
+                return null;
+            }
+            // Expressions which compile to the same code (e.g. the same expression for each brush use) share a class
+            String key = new String(bytes, StandardCharsets.ISO_8859_1);
+            Constructor<?> constructor = CLASSES.get(key);
+            if (constructor == null) {
+                synchronized (LOADER) {
+                    constructor = CLASSES.get(key);
+                    if (constructor == null) {
+                        String name = PACKAGE + "GeneratedExpression" + COUNTER.incrementAndGet();
+                        Class<?> clazz = LOADER.define(name.replace('/', '.'), new ExpressionCompiler().generate(name, root));
+                        constructor = clazz.getConstructor(Variable[].class, RValue[].class);
+                        CLASSES.put(key, constructor);
+                    }
+                }
+            }
+            Variable[] vars = compiler.variables.toArray(new Variable[compiler.variables.size()]);
+            RValue[] nodes = compiler.nodes.toArray(new RValue[compiler.nodes.size()]);
+            return (CompiledExpression) constructor.newInstance(vars, nodes);
+        } catch (Throwable e) {
+            Fawe.debug("Unable to compile expression (using the interpreter): " + e);
+            return null;
+        }
+    }
+
+    private static final class Loader extends ClassLoader {
+        private Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class Label {
+        private int position = -1;
+        private final List<int[]> fixups = new ArrayList<>();
+    }
+
+    private static final class Loop {
+        private final Label breakLabel;
+        private final Label continueLabel;
+        private final List<int[]> ranges = new ArrayList<>();
+
+        private Loop(Label breakLabel, Label continueLabel) {
+            this.breakLabel = breakLabel;
+            this.continueLabel = continueLabel;
+        }
+    }
+
+    private final Map<Variable, Integer> slots = new IdentityHashMap<>();
+    private final List<Variable> variables = new ArrayList<>();
+    private final List<RValue> nodes = new ArrayList<>();
+    private final ArrayDeque<Loop> loops = new ArrayDeque<>();
+    private final List<int[]> exceptions = new ArrayList<>();
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolSize = 1;
+
+    private byte[] code = new byte[256];
+    private int length;
+    private int stack;
+    private int maxStack;
+    private int maxLocals = 1;
+    private int compiledNodes;
+
+    private ExpressionCompiler() {
+    }
+
+    private byte[] generate(String name, RValue root) throws IOException, EvaluationException {
+        collect(root);
+        maxLocals = 1 + variables.size() * 2;
+        for (int i = 0; i < variables.size(); i++) {
+            load(i);
+        }
+        emit(root);
+        if (compiledNodes == 0) {
+            return null;
+        }
+        syncOut();
+        op(0xAF, -2); // dreturn
+        if (length > Short.MAX_VALUE || maxLocals > 0xFFFF) {
+            throw new IllegalStateException("Expression too large");
+        }
+
+        int thisClass = classRef(name);
+        int superClass = classRef(BASE);
+        int init = utf8("<init>");
+        int initDesc = utf8("([L" + VARIABLE + ";[L" + RVALUE + ";)V");
+        int superInit = member(10, BASE, "<init>", "([L" + VARIABLE + ";[L" + RVALUE + ";)V");
+        int evaluate = utf8("evaluate");
+        int evaluateDesc = utf8("()D");
+        int codeAttr = utf8("Code");
+        int[][] exceptionTable = new int[exceptions.size()][];
+        for (int i = 0; i < exceptionTable.length; i++) {
+            int[] entry = exceptions.get(i);
+            exceptionTable[i] = new int[]{entry[0], entry[1], entry[2], classRef(BREAK)};
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(length + poolBytes.size() + 256);
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);
+        out.writeShort(poolSize);
+        pool.flush();
+        poolBytes.writeTo(out);
+        out.writeShort(0x0031); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+
+        // Constructor
+        byte[] initCode = {0x2A, 0x2B, 0x2C, (byte) 0xB7, (byte) (superInit >> 8), (byte) superInit, (byte) 0xB1};
+        out.writeShort(0x0001);
+        out.writeShort(init);
+        out.writeShort(initDesc);
+        out.writeShort(1);
+        out.writeShort(codeAttr);
+        out.writeInt(12 + initCode.length);
+        out.writeShort(3);
+        out.writeShort(3);
+        out.writeInt(initCode.length);
+        out.write(initCode);
+        out.writeShort(0);
+        out.writeShort(0);
+
+        // evaluate()
+        out.writeShort(0x0001);
+        out.writeShort(evaluate);
+        out.writeShort(evaluateDesc);
+        out.writeShort(1);
+        out.writeShort(codeAttr);
+        out.writeInt(12 + length + exceptionTable.length * 8);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(length);
+        out.write(code, 0, length);
+        out.writeShort(exceptionTable.length);
+        for (int[] entry : exceptionTable) {
+            for (int value : entry) {
+                out.writeShort(value);
+            }
+        }
+        out.writeShort(0);
+
+        out.writeShort(0); // attributes
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    /*
+     * Tree walking
+     */
+
+    private void collect(RValue node) {
+        if (node == null) {
+            return;
+        }
+        if (node instanceof Variable) {
+            Variable var = (Variable) node;
+            if (!slots.containsKey(var)) {
+                slots.put(var, variables.size());
+                variables.add(var);
+            }
+        } else if (node instanceof Sequence) {
+            for (RValue value : ((Sequence) node).sequence) {
+                collect(value);
+            }
+        } else if (node instanceof Conditional) {
+            RValue[] parts = getParts((Conditional) node);
+            if (parts != null) {
+                for (RValue part : parts) {
+                    collect(part);
+                }
+            }
+        } else if (node instanceof For) {
+            For loop = (For) node;
+            collect(loop.init);
+            collect(loop.condition);
+            collect(loop.increment);
+            collect(loop.body);
+        } else if (node instanceof While) {
+            While loop = (While) node;
+            collect(loop.condition);
+            collect(loop.body);
+        } else if (node instanceof SimpleFor) {
+            SimpleFor loop = (SimpleFor) node;
+            collect(loop.counter);
+            collect(loop.first);
+            collect(loop.last);
+            collect(loop.body);
+        } else if (node instanceof Return) {
+            collect(((Return) node).value);
+        } else if (node instanceof Function) {
+            for (RValue arg : ((Function) node).args) {
+                collect(arg);
+            }
+        }
+    }
+
+    private static RValue[] getParts(Conditional node) {
+        if (CONDITION == null) {
+            return null;
+        }
+        try {
+            return new RValue[]{(RValue) CONDITION.get(node), (RValue) TRUE_PART.get(node), (RValue) FALSE_PART.get(node)};
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private Integer getSlot(RValue node) {
+        Integer index = node instanceof Variable ? slots.get(node) : null;
+        return index == null ? null : 1 + index * 2;
+    }
+
+    private void emit(RValue node) throws EvaluationException {
+        compiledNodes++;
+        if (node instanceof Constant) {
+            pushDouble(node.getValue());
+            return;
+        }
+        Integer slot = getSlot(node);
+        if (slot != null) {
+            local(0x18, slot, 2); // dload
+            return;
+        }
+        if (node instanceof Sequence) {
+            RValue[] sequence = ((Sequence) node).sequence;
+            if (sequence.length == 0) {
+                pushDouble(0);
+                return;
+            }
+            for (int i = 0; i < sequence.length; i++) {
+                if (i != 0) {
+                    op(0x58, -2); // pop2
+                }
+                emit(sequence[i]);
+            }
+            return;
+        }
+        if (node instanceof Conditional) {
+            RValue[] parts = getParts((Conditional) node);
+            if (parts != null) {
+                Label falseLabel = new Label();
+                Label end = new Label();
+                emit(parts[0]);
+                jumpIfNotPositive(falseLabel);
+                emit(parts[1]);
+                jump(0xA7, end);
+                stack -= 2;
+                bind(falseLabel);
+                if (parts[2] == null) {
+                    pushDouble(0);
+                } else {
+                    emit(parts[2]);
+                }
+                bind(end);
+                return;
+            }
+        }
+        if (node instanceof Return) {
+            emit(((Return) node).value);
+            syncOut();
+            invoke(0xB8, BASE, "doReturn", "(D)L" + PACKAGE + "ReturnException;", -1);
+            op(0xBF, -1); // athrow
+            stack += 2;
+            return;
+        }
+        if (node instanceof Break && !loops.isEmpty() && stack == 0) {
+            Loop loop = loops.peek();
+            jump(0xA7, ((Break) node).doContinue ? loop.continueLabel : loop.breakLabel);
+            stack += 2;
+            return;
+        }
+        // Loops must start with an empty stack, as break and continue jump with an empty stack
+        if (stack == 0) {
+            if (node instanceof For) {
+                emitFor((For) node);
+                return;
+            }
+            if (node instanceof While) {
+                emitWhile((While) node);
+                return;
+            }
+            if (node instanceof SimpleFor && getSlot(((SimpleFor) node).counter) != null) {
+                emitSimpleFor((SimpleFor) node);
+                return;
+            }
+        }
+        if (node.getClass() == Function.class && emitFunction((Function) node)) {
+            return;
+        }
+        compiledNodes--;
+        fallback(node);
+    }
+
+    private void fallback(RValue node) {
+        int index = nodes.size();
+        nodes.add(node);
+        syncOut();
+        op(0x2A, 1); // aload_0
+        field(0xB4, BASE, "nodes", "[L" + RVALUE + ";", 0);
+        pushInt(index);
+        op(0x32, -1); // aaload
+        int start = length;
+        op(0xB9, 1); // invokeinterface
+        u2(member(11, RVALUE, "getValue", "()D"));
+        u1(1);
+        u1(0);
+        if (!loops.isEmpty()) {
+            loops.peek().ranges.add(new int[]{start, length});
+        }
+        syncIn();
+    }
+
+    /*
+     * Loops
+     */
+
+    private void checkLoop(int iterations, int position) {
+        local(0x15, iterations, 1); // iload
+        pushInt(position);
+        invoke(0xB8, BASE, "checkLoop", "(II)V", -2);
+        local(0x84, iterations, 0); // iinc
+        u1(1);
+    }
+
+    private void emitLoopStart(int ret, int iterations) {
+        pushDouble(0);
+        local(0x39, ret, -2);
+        pushInt(0);
+        local(0x36, iterations, -1);
+    }
+
+    private void emitBody(Loop loop, RValue body, int ret) throws EvaluationException {
+        loops.push(loop);
+        emit(body);
+        local(0x39, ret, -2); // dstore
+        loops.pop();
+    }
+
+    /**
+     * Ends the loop with `ret` on the stack and writes the handler for breaks thrown by the interpreter
+     */
+    private void emitLoopEnd(Loop loop, int ret) {
+        bind(loop.breakLabel);
+        local(0x18, ret, 2); // dload
+        if (loop.ranges.isEmpty()) {
+            return;
+        }
+        Label after = new Label();
+        jump(0xA7, after);
+        int handler = length;
+        stack = 1;
+        maxStack = Math.max(maxStack, stack);
+        for (int[] range : loop.ranges) {
+            exceptions.add(new int[]{range[0], range[1], handler});
+        }
+        invoke(0xB8, BASE, "isContinue", "(L" + BREAK + ";)Z", 0);
+        syncIn();
+        jump(0x9A, loop.continueLabel); // ifne
+        jump(0xA7, loop.breakLabel);
+        stack = 2;
+        bind(after);
+    }
+
+    private void emitFor(For node) throws EvaluationException {
+        int ret = allocate(2);
+        int iterations = allocate(1);
+        Loop loop = new Loop(new Label(), new Label());
+        Label condition = new Label();
+        emit(node.init);
+        op(0x58, -2); // pop2
+        emitLoopStart(ret, iterations);
+        bind(condition);
+        emit(node.condition);
+        jumpIfNotPositive(loop.breakLabel);
+        checkLoop(iterations, node.getPosition());
+        emitBody(loop, node.body, ret);
+        bind(loop.continueLabel);
+        emit(node.increment);
+        op(0x58, -2); // pop2
+        jump(0xA7, condition);
+        emitLoopEnd(loop, ret);
+    }
+
+    private void emitWhile(While node) throws EvaluationException {
+        int ret = allocate(2);
+        int iterations = allocate(1);
+        Loop loop = new Loop(new Label(), new Label());
+        emitLoopStart(ret, iterations);
+        if (node.footChecked) {
+            Label top = new Label();
+            bind(top);
+            checkLoop(iterations, node.getPosition());
+            emitBody(loop, node.body, ret);
+            bind(loop.continueLabel);
+            emit(node.condition);
+            pushDouble(0);
+            op(0x97, -3); // dcmpl
+            jump(0x9D, top); // ifgt
+        } else {
+            bind(loop.continueLabel);
+            emit(node.condition);
+            jumpIfNotPositive(loop.breakLabel);
+            checkLoop(iterations, node.getPosition());
+            emitBody(loop, node.body, ret);
+            jump(0xA7, loop.continueLabel);
+        }
+        emitLoopEnd(loop, ret);
+    }
+
+    private void emitSimpleFor(SimpleFor node) throws EvaluationException {
+        int counter = getSlot(node.counter);
+        int ret = allocate(2);
+        int iterations = allocate(1);
+        int i = allocate(2);
+        int last = allocate(2);
+        Loop loop = new Loop(new Label(), new Label());
+        Label condition = new Label();
+        emit(node.first);
+        local(0x39, i, -2);
+        emit(node.last);
+        local(0x39, last, -2);
+        emitLoopStart(ret, iterations);
+        bind(condition);
+        local(0x18, i, 2);
+        local(0x18, last, 2);
+        op(0x98, -3); // dcmpg
+        jump(0x9D, loop.breakLabel); // ifgt
+        checkLoop(iterations, node.getPosition());
+        local(0x18, i, 2);
+        local(0x39, counter, -2);
+        emitBody(loop, node.body, ret);
+        bind(loop.continueLabel);
+        local(0x18, i, 2);
+        pushDouble(1);
+        op(0x63, -2); // dadd
+        local(0x39, i, -2);
+        jump(0xA7, condition);
+        emitLoopEnd(loop, ret);
+    }
+
+    /*
+     * Functions
+     */
+
+    private boolean emitFunction(Function function) throws EvaluationException {
+        Class<?> owner = function.method.getDeclaringClass();
+        String name = function.method.getName();
+        RValue[] args = function.args;
+        if (owner == Operators.class) {
+            return emitOperator(name, args);
+        }
+        if (owner == Functions.class) {
+            return emitMath(name, args);
+        }
+        return false;
+    }
+
+    private boolean emitMath(String name, RValue[] args) throws EvaluationException {
+        switch (name) {
+            case "sin":
+            case "cos":
+            case "tan":
+            case "asin":
+            case "acos":
+            case "atan":
+            case "sinh":
+            case "cosh":
+            case "tanh":
+            case "sqrt":
+            case "cbrt":
+            case "abs":
+            case "ceil":
+            case "floor":
+            case "rint":
+            case "exp":
+            case "log10":
+                if (args.length != 1) return false;
+                emit(args[0]);
+                invoke(0xB8, "java/lang/Math", name, "(D)D", 0);
+                return true;
+            case "ln":
+            case "log":
+                if (args.length != 1) return false;
+                emit(args[0]);
+                invoke(0xB8, "java/lang/Math", "log", "(D)D", 0);
+                return true;
+            case "round":
+                if (args.length != 1) return false;
+                emit(args[0]);
+                invoke(0xB8, "java/lang/Math", "round", "(D)J", 0);
+                op(0x8A, 0); // l2d
+                return true;
+            case "atan2":
+                if (args.length != 2) return false;
+                emit(args[0]);
+                emit(args[1]);
+                invoke(0xB8, "java/lang/Math", name, "(DD)D", -2);
+                return true;
+            case "min":
+            case "max":
+                if (args.length != 2 && args.length != 3) return false;
+                for (RValue arg : args) {
+                    emit(arg);
+                }
+                for (int i = 1; i < args.length; i++) {
+                    invoke(0xB8, "java/lang/Math", name, "(DD)D", -2);
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean emitOperator(String name, RValue[] args) throws EvaluationException {
+        if (args.length == 2) {
+            switch (name) {
+                case "add":
+                    return binary(args, 0x63);
+                case "sub":
+                    return binary(args, 0x67);
+                case "mul":
+                    return binary(args, 0x6B);
+                case "div":
+                    return binary(args, 0x6F);
+                case "mod":
+                    return binary(args, 0x73);
+                case "pow":
+                    emit(args[0]);
+                    emit(args[1]);
+                    invoke(0xB8, "java/lang/Math", "pow", "(DD)D", -2);
+                    return true;
+                case "near":
+                    emit(args[0]);
+                    emit(args[1]);
+                    invoke(0xB8, BASE, "near", "(DD)D", -2);
+                    return true;
+                case "lth":
+                    return compare(args, 0x98, 0x9C); // dcmpg, ifge
+                case "gth":
+                    return compare(args, 0x97, 0x9E); // dcmpl, ifle
+                case "leq":
+                    return compare(args, 0x98, 0x9D); // dcmpg, ifgt
+                case "geq":
+                    return compare(args, 0x97, 0x9B); // dcmpl, iflt
+                case "equ":
+                    return compare(args, 0x97, 0x9A); // dcmpl, ifne
+                case "neq":
+                    return compare(args, 0x97, 0x99); // dcmpl, ifeq
+                case "or": {
+                    Label trueLabel = new Label();
+                    Label falseLabel = new Label();
+                    emit(args[0]);
+                    pushDouble(0);
+                    op(0x97, -3); // dcmpl
+                    jump(0x9D, trueLabel); // ifgt
+                    emit(args[1]);
+                    jumpIfNotPositive(falseLabel);
+                    bind(trueLabel);
+                    pushBoolean(falseLabel, 1);
+                    return true;
+                }
+                case "and": {
+                    Label falseLabel = new Label();
+                    emit(args[0]);
+                    jumpIfNotPositive(falseLabel);
+                    emit(args[1]);
+                    jumpIfNotPositive(falseLabel);
+                    pushBoolean(falseLabel, 1);
+                    return true;
+                }
+                case "shl":
+                case "shr":
+                    emit(args[0]);
+                    op(0x8F, 0); // d2l
+                    emit(args[1]);
+                    op(0x8F, 0); // d2l
+                    op(0x88, -1); // l2i
+                    op(name.equals("shl") ? 0x79 : 0x7B, -1); // lshl, lshr
+                    op(0x8A, 0); // l2d
+                    return true;
+            }
+            Integer slot = getSlot(args[0]);
+            if (slot == null) {
+                return false;
+            }
+            int opcode;
+            switch (name) {
+                case "ass":
+                    emit(args[1]);
+                    op(0x5C, 2); // dup2
+                    local(0x39, slot, -2);
+                    return true;
+                case "aadd":
+                    opcode = 0x63;
+                    break;
+                case "asub":
+                    opcode = 0x67;
+                    break;
+                case "amul":
+                    opcode = 0x6B;
+                    break;
+                case "adiv":
+                    opcode = 0x6F;
+                    break;
+                case "amod":
+                    opcode = 0x73;
+                    break;
+                case "aexp":
+                    opcode = -1;
+                    break;
+                default:
+                    return false;
+            }
+            local(0x18, slot, 2);
+            emit(args[1]);
+            if (opcode == -1) {
+                invoke(0xB8, "java/lang/Math", "pow", "(DD)D", -2);
+            } else {
+                op(opcode, -2);
+            }
+            op(0x5C, 2); // dup2
+            local(0x39, slot, -2);
+            return true;
+        }
+        if (args.length == 1) {
+            switch (name) {
+                case "neg":
+                    emit(args[0]);
+                    op(0x77, 0); // dneg
+                    return true;
+                case "not": {
+                    Label one = new Label();
+                    emit(args[0]);
+                    jumpIfNotPositive(one);
+                    pushBoolean(one, 0);
+                    return true;
+                }
+                case "inv":
+                    emit(args[0]);
+                    op(0x8F, 0); // d2l
+                    op(0x14, 2); // ldc2_w
+                    u2(longConst(-1L));
+                    op(0x83, -2); // lxor
+                    op(0x8A, 0); // l2d
+                    return true;
+            }
+            Integer slot = getSlot(args[0]);
+            if (slot == null) {
+                return false;
+            }
+            switch (name) {
+                case "inc":
+                case "dec":
+                    local(0x18, slot, 2);
+                    pushDouble(1);
+                    op(name.equals("inc") ? 0x63 : 0x67, -2);
+                    op(0x5C, 2); // dup2
+                    local(0x39, slot, -2);
+                    return true;
+                case "postinc":
+                case "postdec":
+                    local(0x18, slot, 2);
+                    op(0x5C, 2); // dup2
+                    pushDouble(1);
+                    op(name.equals("postinc") ? 0x63 : 0x67, -2);
+                    local(0x39, slot, -2);
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean binary(RValue[] args, int opcode) throws EvaluationException {
+        emit(args[0]);
+        emit(args[1]);
+        op(opcode, -2);
+        return true;
+    }
+
+    private boolean compare(RValue[] args, int compare, int jumpIfFalse) throws EvaluationException {
+        Label falseLabel = new Label();
+        emit(args[0]);
+        emit(args[1]);
+        op(compare, -3);
+        jump(jumpIfFalse, falseLabel);
+        pushBoolean(falseLabel, 1);
+        return true;
+    }
+
+    /**
+     * Push `value`, or the opposite value when jumping to the label
+     */
+    private void pushBoolean(Label otherLabel, int value) {
+        Label end = new Label();
+        pushDouble(value);
+        jump(0xA7, end);
+        stack -= 2;
+        bind(otherLabel);
+        pushDouble(1 - value);
+        bind(end);
+    }
+
+    private void jumpIfNotPositive(Label label) {
+        pushDouble(0);
+        op(0x97, -3); // dcmpl
+        jump(0x9E, label); // ifle
+    }
+
+    /*
+     * Variables
+     */
+
+    private void load(int index) {
+        op(0x2A, 1); // aload_0
+        field(0xB4, BASE, "vars", "[L" + VARIABLE + ";", 0);
+        pushInt(index);
+        op(0x32, -1); // aaload
+        field(0xB4, VARIABLE, "value", "D", 1);
+        local(0x39, 1 + index * 2, -2); // dstore
+    }
+
+    private void store(int index) {
+        op(0x2A, 1); // aload_0
+        field(0xB4, BASE, "vars", "[L" + VARIABLE + ";", 0);
+        pushInt(index);
+        op(0x32, -1); // aaload
+        local(0x18, 1 + index * 2, 2); // dload
+        field(0xB5, VARIABLE, "value", "D", -3);
+    }
+
+    /**
+     * Write the local slots to the variables (before the interpreter runs)
+     */
+    private void syncOut() {
+        for (int i = 0; i < variables.size(); i++) {
+            store(i);
+        }
+    }
+
+    /**
+     * Read the variables into the local slots (after the interpreter runs)
+     */
+    private void syncIn() {
+        for (int i = 0; i < variables.size(); i++) {
+            load(i);
+        }
+    }
+
+    private int allocate(int size) {
+        int slot = maxLocals;
+        maxLocals += size;
+        return slot;
+    }
+
+    /*
+     * Bytecode
+     */
+
+    private void u1(int value) {
+        if (length == code.length) {
+            byte[] tmp = new byte[code.length << 1];
+            System.arraycopy(code, 0, tmp, 0, length);
+            code = tmp;
+        }
+        code[length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+
+    private void op(int opcode, int delta) {
+        u1(opcode);
+        stack += delta;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void local(int opcode, int slot, int delta) {
+        if (slot > 0xFF) {
+            u1(0xC4); // wide
+            op(opcode, delta);
+            u2(slot);
+            if (opcode == 0x84) {
+                // iinc has a 2 byte constant when wide
+                u1(0);
+            }
+        } else {
+            op(opcode, delta);
+            u1(slot);
+        }
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(0x03 + value, 1); // iconst
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(0x10, 1); // bipush
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(0x11, 1); // sipush
+            u2(value);
+        } else {
+            op(0x13, 1); // ldc_w
+            u2(intConst(value));
+        }
+    }
+
+    private void pushDouble(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            op(0x0E, 2); // dconst_0
+        } else if (value == 1) {
+            op(0x0F, 2); // dconst_1
+        } else {
+            op(0x14, 2); // ldc2_w
+            u2(doubleConst(value));
+        }
+    }
+
+    private void field(int opcode, String owner, String name, String desc, int delta) {
+        op(opcode, delta);
+        u2(member(9, owner, name, desc));
+    }
+
+    private void invoke(int opcode, String owner, String name, String desc, int delta) {
+        op(opcode, delta);
+        u2(member(10, owner, name, desc));
+    }
+
+    private void jump(int opcode, Label label) {
+        int at = length;
+        op(opcode, opcode == 0xA7 ? 0 : -1);
+        if (label.position != -1) {
+            u2(label.position - at);
+        } else {
+            label.fixups.add(new int[]{at, length});
+            u2(0);
+        }
+    }
+
+    private void bind(Label label) {
+        label.position = length;
+        for (int[] fixup : label.fixups) {
+            int offset = length - fixup[0];
+            code[fixup[1]] = (byte) (offset >> 8);
+            code[fixup[1] + 1] = (byte) offset;
+        }
+        label.fixups.clear();
+    }
+
+    /*
+     * Constant pool
+     */
+
+    private int utf8(String value) {
+        String key = "U" + value;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            try {
+                pool.writeByte(1);
+                pool.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    private int classRef(String name) {
+        String key = "C" + name;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            int nameIndex = utf8(name);
+            write(7, nameIndex, -1);
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    private int member(int tag, String owner, String name, String desc) {
+        String key = tag + owner + "." + name + desc;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            int ownerIndex = classRef(owner);
+            String nameTypeKey = "N" + name + desc;
+            Integer nameType = poolIndex.get(nameTypeKey);
+            if (nameType == null) {
+                int nameIndex = utf8(name);
+                int descIndex = utf8(desc);
+                write(12, nameIndex, descIndex);
+                nameType = add(nameTypeKey, 1);
+            }
+            write(tag, ownerIndex, nameType);
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    private int intConst(int value) {
+        String key = "I" + value;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            try {
+                pool.writeByte(3);
+                pool.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    private int longConst(long value) {
+        String key = "J" + value;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            try {
+                pool.writeByte(5);
+                pool.writeLong(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 2);
+        }
+        return index;
+    }
+
+    private int doubleConst(double value) {
+        String key = "D" + Double.doubleToRawLongBits(value);
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            try {
+                pool.writeByte(6);
+                pool.writeDouble(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 2);
+        }
+        return index;
+    }
+
+    private void write(int tag, int a, int b) {
+        try {
+            pool.writeByte(tag);
+            pool.writeShort(a);
+            if (b != -1) {
+                pool.writeShort(b);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int add(String key, int size) {
+        int index = poolSize;
+        poolIndex.put(key, index);
+        poolSize += size;
+        return index;
+    }
+}
@@ -0,0 +1,113 @@
+package com.boydti.fawe.object.changeset;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
+import com.boydti.fawe.object.change.MutableBlockChange;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeSectionTest {
+
+    private static final char STONE = 1 << 4;
+    private static final char DIRT = 3 << 4;
+    private static final char WOOL = (35 << 4) + 14;
+
+    /**
+     * The previous blocks of a section: a few values, with some already the new block
+     */
+    private static char[] getPrevious() {
+        char[] previous = new char[ChangeSection.SIZE];
+        for (int i = 0; i < previous.length; i++) {
+            switch (i % 7) {
+                case 0:
+                    previous[i] = STONE;
+                    break;
+                case 1:
+                    previous[i] = WOOL;
+                    break;
+                case 2:
+                    previous[i] = (char) (i & 0xFF0);
+                    break;
+                default:
+                    previous[i] = 1;
+                    break;
+            }
+        }
+        return previous;
+    }
+
+    @Test
+    public void fullSectionRoundTrip() throws Exception {
+        char[] previous = getPrevious();
+        ChangeSection section = new ChangeSection(-3, 5, 7, true);
+        section.addSection(previous, DIRT);
+        assertEquals(ChangeSection.SIZE, section.size());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FaweOutputStream out = new FaweOutputStream(bytes);
+        section.write(out, -4, 2);
+        out.close();
+
+        ChangeSection read = new ChangeSection(true);
+        read.read(new FaweInputStream(new ByteArrayInputStream(bytes.toByteArray())), -4, 2);
+        assertEquals(-3, read.getChunkX());
+        assertEquals(5, read.getSectionY());
+        assertEquals(7, read.getChunkZ());
+        assertEquals(ChangeSection.SIZE, read.size());
+        for (int index = 0; index < ChangeSection.SIZE; index++) {
+            assertTrue(read.isSet(index));
+            assertEquals("from " + index, previous[index], read.getFrom(index));
+            assertEquals("to " + index, DIRT, read.getTo(index));
+        }
+    }
+
+    @Test
+    public void fullSectionHistoryRoundTrip() throws Exception {
+        boolean snapshots = Settings.IMP.HISTORY.SECTION_SNAPSHOTS;
+        Settings.IMP.HISTORY.SECTION_SNAPSHOTS = true;
+        try {
+            char[] previous = getPrevious();
+            MemoryOptimizedHistory changeSet = new MemoryOptimizedHistory("test");
+            changeSet.setChunkGrouped(true);
+            changeSet.addSection(2, 3, -1, previous, DIRT);
+            changeSet.close();
+
+            Iterator<ChangeSection> sections = changeSet.getSectionIterator();
+            assertTrue(sections.hasNext());
+            ChangeSection section = sections.next();
+            assertFalse(sections.hasNext());
+            assertEquals(2, section.getChunkX());
+            assertEquals(3, section.getSectionY());
+            assertEquals(-1, section.getChunkZ());
+            assertEquals(ChangeSection.SIZE, section.size());
+            for (int index = 0; index < ChangeSection.SIZE; index++) {
+                assertEquals("from " + index, previous[index], section.getFrom(index));
+                assertEquals("to " + index, DIRT, section.getCombined(index, true));
+            }
+
+            // Undo restores every block of the section
+            int count = 0;
+            Iterator<MutableBlockChange> changes = changeSet.getBlockIterator(false);
+            while (changes.hasNext()) {
+                MutableBlockChange change = changes.next();
+                int index = ChangeSection.getIndex(change.x, change.y, change.z);
+                assertEquals(2, change.x >> 4);
+                assertEquals(3, change.y >> 4);
+                assertEquals(-1, change.z >> 4);
+                assertEquals("id " + index, previous[index] >> 4, change.id);
+                assertEquals("data " + index, previous[index] & 15, change.data);
+                count++;
+            }
+            assertEquals(ChangeSection.SIZE, count);
+        } finally {
+            Settings.IMP.HISTORY.SECTION_SNAPSHOTS = snapshots;
+        }
+    }
+}
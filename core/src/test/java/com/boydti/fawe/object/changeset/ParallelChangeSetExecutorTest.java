@@ -0,0 +1,155 @@
+package com.boydti.fawe.object.changeset;
+
+import com.boydti.fawe.example.IFaweQueueMap;
+import com.boydti.fawe.example.NullQueueCharFaweChunk;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.RunnableVal;
+import com.boydti.fawe.util.MathMan;
+import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
+import com.sk89q.worldedit.history.UndoContext;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelChangeSetExecutorTest {
+
+    private static final int CHUNKS = 8;
+    private static final int WIDTH = CHUNKS << 4;
+    private static final int HEIGHT = 32;
+    private static final int STONE = 1 << 4;
+    private static final int DIRT = 3 << 4;
+
+    @Test
+    public void undoWhileDispatching() throws Exception {
+        undoWhileDispatching(false);
+    }
+
+    @Test
+    public void undoChunkGroupedWhileDispatching() throws Exception {
+        undoWhileDispatching(true);
+    }
+
+    private void undoWhileDispatching(boolean chunkGrouped) throws Exception {
+        final TestQueueMap map = new TestQueueMap();
+        MemoryOptimizedHistory changeSet = new MemoryOptimizedHistory("test");
+        changeSet.setChunkGrouped(chunkGrouped);
+        // Record replacing the stone with dirt
+        for (int x = 0; x < WIDTH; x++) {
+            for (int z = 0; z < WIDTH; z++) {
+                for (int y = 0; y < HEIGHT; y++) {
+                    map.world[x][y][z] = DIRT;
+                    changeSet.add(x, y, z, STONE, DIRT);
+                }
+            }
+        }
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    map.next(1, 1);
+                }
+            }
+        });
+        dispatcher.start();
+        try {
+            new ParallelChangeSetExecutor(changeSet, new UndoContext(), ChangeSetExecutor.Type.UNDO, map).resume(null);
+        } finally {
+            running.set(false);
+            dispatcher.join();
+        }
+        while (map.size() != 0) {
+            map.next(1, Long.MAX_VALUE);
+        }
+        for (int x = 0; x < WIDTH; x++) {
+            for (int z = 0; z < WIDTH; z++) {
+                for (int y = 0; y < HEIGHT; y++) {
+                    assertEquals("Block at " + x + "," + y + "," + z, STONE, map.world[x][y][z]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Dispatches chunks into an array in place of a world
+     */
+    private static class TestQueueMap implements IFaweQueueMap {
+        private final Long2ObjectOpenHashMap<FaweChunk> chunks = new Long2ObjectOpenHashMap<>();
+        private final int[][][] world = new int[WIDTH][HEIGHT][WIDTH];
+
+        @Override
+        public synchronized Collection<FaweChunk> getFaweCunks() {
+            return new ArrayList<>(chunks.values());
+        }
+
+        @Override
+        public synchronized void forEachChunk(RunnableVal<FaweChunk> onEach) {
+            for (FaweChunk chunk : chunks.values()) {
+                onEach.run(chunk);
+            }
+        }
+
+        @Override
+        public synchronized FaweChunk getFaweChunk(int cx, int cz) {
+            long pair = MathMan.pairInt(cx, cz);
+            FaweChunk chunk = chunks.get(pair);
+            if (chunk == null) {
+                chunks.put(pair, chunk = new NullQueueCharFaweChunk(cx, cz));
+            }
+            return chunk;
+        }
+
+        @Override
+        public synchronized FaweChunk getCachedFaweChunk(int cx, int cz) {
+            return chunks.get(MathMan.pairInt(cx, cz));
+        }
+
+        @Override
+        public synchronized void add(FaweChunk chunk) {
+            chunks.put(MathMan.pairInt(chunk.getX(), chunk.getZ()), chunk);
+        }
+
+        @Override
+        public synchronized void clear() {
+            chunks.clear();
+        }
+
+        @Override
+        public synchronized int size() {
+            return chunks.size();
+        }
+
+        @Override
+        public synchronized boolean next(int size, long time) {
+            Iterator<FaweChunk> iter = chunks.values().iterator();
+            if (!iter.hasNext()) {
+                return false;
+            }
+            FaweChunk chunk = iter.next();
+            iter.remove();
+            int bx = chunk.getX() << 4;
+            int bz = chunk.getZ() << 4;
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        int combined = chunk.getBlockCombinedId(x, y, z);
+                        if (combined != 0) {
+                            world[bx + x][y][bz + z] = combined == 1 ? 0 : combined;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized void runLocked(Runnable task) {
+            task.run();
+        }
+    }
+}
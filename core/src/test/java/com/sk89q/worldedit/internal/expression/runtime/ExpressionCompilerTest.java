@@ -0,0 +1,105 @@
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import com.boydti.fawe.config.Settings;
+import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionException;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ExpressionCompilerTest {
+
+    private static final String[] VARIABLES = {"x", "y", "z"};
+    private static final double[][] VALUES = {
+            {0, 0, 0},
+            {1, 2, 3},
+            {-5, 0.5, 7},
+            {12, -3, 255},
+            {7.25, 100, -0.75},
+    };
+
+    @Test
+    public void loops() throws ExpressionException {
+        check("a = 0; for (i = 0; i < 10; i++) { a += i * y; } a");
+        check("a = 0; for (i = x; i < 20; i += 3) { a = a * 2 + i; } a + i");
+        check("a = 1; for (i = 1, 8) { a *= i + z; } a");
+        check("i = 0; while (i < 20) { i += 2; y += i; } y");
+        check("i = 0; do { i++; x -= i; } while (i < 6); x");
+        check("a = 0; for (i = 0; i < 4; i++) { for (j = 0; j < 5; j++) { a += i * j + x; } } a");
+    }
+
+    @Test
+    public void breakAndContinue() throws ExpressionException {
+        check("a = 0; for (i = 0; i < 50; i++) { if (i > x + 10) break; a += i; } a");
+        check("a = 0; for (i = 0; i < 20; i++) { if (i % 3 == 0) continue; a += i * y; } a");
+        check("a = 0; i = 0; while (i < 30) { i++; if (i == 5) continue; if (i > 12) break; a += i; } a + i");
+        check("a = 0; for (i = 0, 15) { if (i == 4) continue; if (i == 9) break; a += z; } a");
+        check("a = 0; for (i = 0; i < 5; i++) { for (j = 0; j < 5; j++) { if (j > i) break; a += j; } if (a > 8) break; } a");
+    }
+
+    @Test
+    public void returns() throws ExpressionException {
+        check("if (x > 0) { return y * 2; } z");
+        check("for (i = 0; i < 20; i++) { if (i * i > z) return i; } -1");
+        check("a = abs(x); while (a < 100) { a = a * 2 + 1; if (a > 50) { return a; } } a");
+    }
+
+    @Test
+    public void compoundAssignment() throws ExpressionException {
+        check("x += y; y -= z; z *= 2; x");
+        check("x /= 4; y %= 3; z ^= 2; x + y + z");
+        check("a = x; a++; ++a; a--; --a; b = a++; c = ++a; a + b * 10 + c * 100");
+        check("x = y = z + 1; x * y");
+    }
+
+    @Test
+    public void functions() throws ExpressionException {
+        check("sin(x) + cos(y) + tan(z) * atan2(y, x)");
+        check("sqrt(abs(z)) + cbrt(x) + exp(y / 100) + ln(abs(x) + 1) + log10(abs(z) + 1)");
+        check("min(x, y) + max(y, z) + min(x, y, z) + max(x, y, z)");
+        check("floor(y) + ceil(y) + round(y) + rint(y)");
+        check("megabuf(x + 3) + megabuf(2) * y + x");
+        check("x > y ? x : y");
+        check("switch (z) { case 3: x = 1; break; case 7: y += 2; default: x -= 1; } x + y");
+        check("a = 0; for (i = 0; i < 8; i++) { switch (i) { case 1: a += x; break; case 3: continue; case 6: break; default: a += y; } a += 1; } a");
+        check("a = 0; for (i = 0; i < 8; i++) { switch (i) { case 5: a *= z; default: a += i; } if (a > 40) break; } a");
+    }
+
+    @Test
+    public void logicalAndBitwise() throws ExpressionException {
+        check("x && y");
+        check("x || y");
+        check("!x + !y");
+        check("(x > 0 && y < 3) || z == 7");
+        check("(x < 0 || y > 1) && !(z > 100)");
+        check("(z << 2) + (z >> 1) + (x << y) + ~x + ~z");
+        check("(x == y) + (x != z) + (x <= y) + (x >= z) + (x ~= y)");
+        check("a = 0; x > 0 && (a = 5); y > 0 || (a += 3); a");
+    }
+
+    private static void check(String source) throws ExpressionException {
+        Expression interpreted = Expression.compile(source, VARIABLES);
+        Expression compiled = Expression.compile(source, VARIABLES);
+        boolean enabled = Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS;
+        try {
+            Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS = false;
+            interpreted.optimize();
+            Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS = true;
+            compiled.optimize();
+        } finally {
+            Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS = enabled;
+        }
+        assertNotNull("Not compiled: " + source, ExpressionCompiler.compile(compiled.getRoot()));
+        for (double[] values : VALUES) {
+            String message = source + " with " + Arrays.toString(values);
+            assertEquals(message, interpreted.evaluate(values), compiled.evaluate(values), 0);
+            for (String name : VARIABLES) {
+                double expected = interpreted.getVariable(name, false).getValue();
+                double actual = compiled.getVariable(name, false).getValue();
+                assertEquals(message + " (" + name + ")", expected, actual, 0);
+            }
+        }
+    }
+}
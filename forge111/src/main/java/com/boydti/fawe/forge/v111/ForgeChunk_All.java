@@ -62,11 +62,11 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk, ForgeQueue_All> {
     public CharFaweChunk copy(boolean shallow) {
         ForgeChunk_All copy;
         if (shallow) {
-            copy = new ForgeChunk_All(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new ForgeChunk_All(getParent(), getX(), getZ(), getCombinedIdArrays(), count, air, heightMap);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new ForgeChunk_All(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new ForgeChunk_All(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(getCombinedIdArrays()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes;
             copy.chunk = chunk;
             copy.biomes = biomes.clone();
@@ -130,7 +130,6 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk, ForgeQueue_All> {
         if (sectionPalettes != null) {
             return;
         }
-        char[][] arrays = getCombinedIdArrays();
         char lastChar = Character.MAX_VALUE;
         for (int layer = 0; layer < 16; layer++) {
             if (getCount(layer) > 0) {
@@ -138,11 +137,10 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk, ForgeQueue_All> {
                     sectionPalettes = new BlockStateContainer[16];
                 }
                 BlockStateContainer palette = new BlockStateContainer();
-                char[] blocks = getIdArray(layer);
                 for (int y = 0; y < 16; y++) {
                     for (int z = 0; z < 16; z++) {
                         for (int x = 0; x < 16; x++) {
-                            char combinedId = blocks[FaweCache.CACHE_J[y][z][x]];
+                            char combinedId = getCombinedId(layer, FaweCache.CACHE_J[y][z][x]);
                             if (combinedId > 1) {
                                 palette.set(x, y, z, Block.getBlockById(combinedId >> 4).getStateFromMeta(combinedId & 0xF));
                             }
@@ -183,8 +181,7 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk, ForgeQueue_All> {
                         }
                     }
                 } else if (!getParent().getSettings().EXPERIMENTAL.KEEP_ENTITIES_IN_BLOCKS) {
-                    char[] array = this.getIdArray(i);
-                    if (array == null || entities[i] == null || entities[i].isEmpty()) continue;
+                    if (!hasSection(i) || entities[i] == null || entities[i].isEmpty()) continue;
                     Collection<Entity> ents = new ArrayList<>(entities[i]);
                     for (Entity entity : ents) {
                         if (entity instanceof EntityPlayer) {
@@ -194,7 +191,7 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk, ForgeQueue_All> {
                         int z = (MathMan.roundInt(entity.posZ) & 15);
                         int y = MathMan.roundInt(entity.posY);
                         if (y < 0 || y > 255) continue;
-                        if (array[FaweCache.CACHE_J[y][z][x]] != 0) {
+                        if (getCombinedId(i, FaweCache.CACHE_J[y][z][x]) != 0) {
                             nmsWorld.removeEntity(entity);
                         }
                     }
@@ -267,12 +264,8 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk, ForgeQueue_All> {
                     int ly = pos.getY();
                     int lz = pos.getZ() & 15;
                     int j = FaweCache.CACHE_I[ly][lz][lx];
-                    char[] array = this.getIdArray(j);
-                    if (array == null) {
-                        continue;
-                    }
                     int k = FaweCache.CACHE_J[ly][lz][lx];
-                    if (array[k] != 0) {
+                    if (getCombinedId(j, k) != 0) {
                         synchronized (ForgeChunk_All.class) {
                             iterator.remove();
                             tile.getValue().invalidate();
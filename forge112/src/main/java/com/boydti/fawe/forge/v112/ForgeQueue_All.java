@@ -506,6 +506,29 @@ public class ForgeQueue_All extends NMSMappedFaweQueue<World, Chunk, ExtendedBlo
         fieldNonEmptyBlockCount.set(section, nonEmptyBlockCount);
     }
 
+    /**
+     * Create a section filled with a single block
+     *
+     * @param y2
+     * @param flag
+     * @param combinedId
+     * @return
+     */
+    public ExtendedBlockStorage newSection(int y2, boolean flag, char combinedId) throws NoSuchFieldException, IllegalAccessException {
+        ExtendedBlockStorage section = new ExtendedBlockStorage(y2, flag);
+        IBlockState state = Block.getBlockById(combinedId >> 4).getStateFromMeta(combinedId & 0xF);
+        BlockStateContainer blocks = section.getData();
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    blocks.set(x, y, z, state);
+                }
+            }
+        }
+        setCount(0, 4096, section);
+        return section;
+    }
+
     @Override
     public CharFaweChunk getPrevious(CharFaweChunk fs, ExtendedBlockStorage[] sections, Map<?, ?> tilesGeneric, Collection<?>[] entitiesGeneric, Set<UUID> createdEntities, boolean all) throws Exception {
         Map<BlockPos, TileEntity> tiles = (Map<BlockPos, TileEntity>) tilesGeneric;
@@ -41,11 +41,11 @@ public class NukkitChunk extends CharFaweChunk<BaseFullChunk, NukkitQueue> {
     public CharFaweChunk copy(boolean shallow) {
         NukkitChunk copy;
         if (shallow) {
-            copy = new NukkitChunk(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new NukkitChunk(getParent(), getX(), getZ(), getCombinedIdArrays(), count, air, heightMap);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new NukkitChunk(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new NukkitChunk(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(getCombinedIdArrays()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
             copy.chunk = chunk;
         }
@@ -107,13 +107,10 @@ public class NukkitChunk extends CharFaweChunk<BaseFullChunk, NukkitQueue> {
                     int x = ent.getFloorX() & 15;
                     int y = ent.getFloorY();
                     int z = ent.getFloorZ() & 15;
-                    char[] idsLayer = this.ids[y >> 4];
-                    if (idsLayer != null) {
-                        if (idsLayer[FaweCache.CACHE_J[y][z][x]] != 0) {
-                            synchronized (world) {
-                                iter.remove();
-                                world.removeEntity(ent);
-                            }
+                    if (getCombinedId(y >> 4, FaweCache.CACHE_J[y][z][x]) != 0) {
+                        synchronized (world) {
+                            iter.remove();
+                            world.removeEntity(ent);
                         }
                     }
                 }
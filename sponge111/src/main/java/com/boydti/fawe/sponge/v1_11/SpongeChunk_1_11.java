@@ -65,11 +65,11 @@ public class SpongeChunk_1_11 extends CharFaweChunk<Chunk, SpongeQueue_1_11> {
     public CharFaweChunk copy(boolean shallow) {
         SpongeChunk_1_11 copy;
         if (shallow) {
-            copy = new SpongeChunk_1_11(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new SpongeChunk_1_11(getParent(), getX(), getZ(), getCombinedIdArrays(), count, air, heightMap);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new SpongeChunk_1_11(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new SpongeChunk_1_11(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(getCombinedIdArrays()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes;
             copy.chunk = chunk;
             copy.biomes = biomes.clone();
@@ -133,7 +133,6 @@ public class SpongeChunk_1_11 extends CharFaweChunk<Chunk, SpongeQueue_1_11> {
         if (sectionPalettes != null) {
             return;
         }
-        char[][] arrays = getCombinedIdArrays();
         char lastChar = Character.MAX_VALUE;
         for (int layer = 0; layer < 16; layer++) {
             if (getCount(layer) > 0) {
@@ -141,11 +140,10 @@ public class SpongeChunk_1_11 extends CharFaweChunk<Chunk, SpongeQueue_1_11> {
                     sectionPalettes = new BlockStateContainer[16];
                 }
                 BlockStateContainer palette = new BlockStateContainer();
-                char[] blocks = getIdArray(layer);
                 for (int y = 0; y < 16; y++) {
                     for (int z = 0; z < 16; z++) {
                         for (int x = 0; x < 16; x++) {
-                            char combinedId = blocks[FaweCache.CACHE_J[y][z][x]];
+                            char combinedId = getCombinedId(layer, FaweCache.CACHE_J[y][z][x]);
                             if (combinedId > 1) {
                                 palette.set(x, y, z, Block.getBlockById(combinedId >> 4).getStateFromMeta(combinedId & 0xF));
                             }
@@ -186,7 +184,6 @@ public class SpongeChunk_1_11 extends CharFaweChunk<Chunk, SpongeQueue_1_11> {
                         }
                     }
                 } else if (!getParent().getSettings().EXPERIMENTAL.KEEP_ENTITIES_IN_BLOCKS) {
-                    char[] array = this.getIdArray(i);
                     Collection<Entity> ents = new ArrayList<>(entities[i]);
                     synchronized (SpongeChunk_1_11.class) {
                         for (Entity entity : ents) {
@@ -196,10 +193,10 @@ public class SpongeChunk_1_11 extends CharFaweChunk<Chunk, SpongeQueue_1_11> {
                             int x = (MathMan.roundInt(entity.posX) & 15);
                             int z = (MathMan.roundInt(entity.posZ) & 15);
                             int y = MathMan.roundInt(entity.posY);
-                            if (array == null) {
+                            if (!hasSection(i)) {
                                 continue;
                             }
-                            if (y < 0 || y > 255 || array[FaweCache.CACHE_J[y][z][x]] != 0) {
+                            if (y < 0 || y > 255 || getCombinedId(i, FaweCache.CACHE_J[y][z][x]) != 0) {
                                 nmsWorld.removeEntity(entity);
                             }
                         }
@@ -269,12 +266,8 @@ public class SpongeChunk_1_11 extends CharFaweChunk<Chunk, SpongeQueue_1_11> {
                         int ly = pos.getY();
                         int lz = pos.getZ() & 15;
                         int j = FaweCache.CACHE_I[ly][lz][lx];
-                        char[] array = this.getIdArray(j);
-                        if (array == null) {
-                            continue;
-                        }
                         int k = FaweCache.CACHE_J[ly][lz][lx];
-                        if (array[k] != 0) {
+                        if (getCombinedId(j, k) != 0) {
                             iterator.remove();
                             if (invalidate == null) invalidate = new ArrayList<>();
                             invalidate.add(tile.getValue());